@@ -0,0 +1,151 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import jmce.sim.SIMException;
+import jmce.sim.cpu.AbstractCPU;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Abstract benchmark for one CPU core.
+ * <p>
+ * The cpu is created without any Swing or terminal hardware,
+ * initialized, resetted and loaded with one canned {@link Workload}.
+ * <p>
+ * Two benchmarks are available :
+ * <ul>
+ *  <li><tt>step</tt> execute {@link #INSTRUCTIONS} instructions using
+ *  <tt>AbstractCPU.step0()</tt>, the score in throughput mode is the
+ *  number of emulated instructions per second.</li>
+ *  <li><tt>slice</tt> execute 1 ms of emulated time like the inner
+ *  loop of <tt>AbstractCPU.run0()</tt>, the score in throughput mode
+ *  is the number of emulated ms per second.</li>
+ * </ul>
+ * The ns/op are available running the benchmark with <tt>-bm avgt -tu
+ * ns</tt> and the allocation for op with the option <tt>-prof gc</tt>.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ * @since 1.03
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class AbstractCPUBenchmark
+{
+	/** Number of instructions executed for each step invocation */
+	static public final int INSTRUCTIONS = 10000;
+
+	protected AbstractCPU cpu;
+	protected Workload program;
+	private int start,end;
+
+	/**
+	 * Create the cpu to benchmark.
+	 */
+	abstract protected AbstractCPU createCPU();
+
+	/**
+	 * Create the workload to execute.
+	 */
+	abstract protected Workload createWorkload();
+
+	@Setup(Level.Trial)
+	public void setup() throws SIMException
+	{
+		cpu = createCPU();
+		cpu.init(null);
+		cpu.reset();
+		program = createWorkload();
+		program.load(cpu);
+		start = program.getStart();
+		end = program.getEnd();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		cpu.stop();
+	}
+
+	/**
+	 * Execute one instruction and restart the workload if required.
+	 */
+	private final int step0() throws SIMException
+	{
+		int t = cpu.step0();
+
+		if (end != -1 && cpu.pc() == end)
+			cpu.pc(start);
+
+		return t;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(INSTRUCTIONS)
+	public long step() throws SIMException
+	{
+		long t = 0;
+
+		for (int i = INSTRUCTIONS ; --i >= 0 ;)
+			t += step0();
+
+		return t;
+	}
+
+	@Benchmark
+	public long slice() throws SIMException
+	{
+		int n = (int)cpu.getCycleMillis();
+
+		do
+		{
+			n -= step0();
+		}
+		while (n > 0);
+
+		return cpu.getCycle();
+	}
+}
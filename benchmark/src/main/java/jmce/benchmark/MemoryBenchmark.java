@@ -0,0 +1,157 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import jmce.sim.Memory;
+import jmce.sim.MemoryReadListener;
+import jmce.sim.MemoryWriteListener;
+import jmce.sim.SIMException;
+import jmce.sim.memory.BankedMemory;
+import jmce.sim.memory.PlainMemory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for the memory subsystem.
+ * <p>
+ * Read and write all the location of a 64 KB memory using
+ * <tt>getMemory()</tt> and <tt>setMemory()</tt>. The memory can be
+ * one <tt>PlainMemory</tt> or one <tt>BankedMemory</tt> with the MMU
+ * initialized and can have no listener, one global listener or one
+ * listener every 256 bytes.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ * @since 1.03
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemoryBenchmark
+{
+	static public final int SIZE = 0x10000;
+
+	@Param({"plain","banked"})
+	public String memory;
+
+	@Param({"none","global","address"})
+	public String listener;
+
+	private Memory m;
+	private int counter;
+
+	/**
+	 * Banked memory with public initMmu()
+	 */
+	static class Banked extends BankedMemory
+	{
+		Banked()
+		{
+			super("BANKED",SIZE,4,16,SIZE / 16);
+			initMmu();
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws SIMException
+	{
+		if (memory.equals("banked"))
+			m = new Banked();
+		else
+			m = new PlainMemory("PLAIN",SIZE);
+
+		MemoryReadListener r = new MemoryReadListener()
+		{
+			public int readMemory(Memory memory,int address,int value)
+			{
+				counter++;
+				return value;
+			}
+		};
+
+		MemoryWriteListener w = new MemoryWriteListener()
+		{
+			public void writeMemory(Memory memory,int address,int value,int oldValue)
+			{
+				counter++;
+			}
+		};
+
+		if (listener.equals("global"))
+		{
+			m.addMemoryReadListener(r);
+			m.addMemoryWriteListener(w);
+		}
+		else if (listener.equals("address"))
+		{
+			for (int a = 0 ; a < SIZE ; a += 256)
+			{
+				m.addMemoryReadListener(a,r);
+				m.addMemoryWriteListener(a,w);
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public int getMemory() throws SIMException
+	{
+		int v = 0;
+
+		for (int a = 0 ; a < SIZE ; a++)
+			v += m.getMemory(a);
+
+		return v;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public int setMemory() throws SIMException
+	{
+		for (int a = 0 ; a < SIZE ; a++)
+			m.setMemory(a,a);
+
+		return counter;
+	}
+}
@@ -0,0 +1,188 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.benchmark;
+
+import jmce.sim.CPU;
+import jmce.sim.Memory;
+import jmce.sim.MemoryWriteListener;
+import jmce.sim.SIMException;
+import jmce.util.FastArray;
+
+/**
+ * Canned instruction mix used by the benchmarks.
+ * <p>
+ * A workload is a set of memory blocks loaded in the main memory of
+ * one cpu after the reset and the address where the execution must
+ * start. All workloads are endless loop so the cpu can be stepped
+ * for any number of instructions without reaching an invalid opcode
+ * or an HALT.
+ * <p>
+ * Cpu cores without backward jump can define one end address, when
+ * the PC reach the end address the execution restart from the start
+ * address.
+ * <p>
+ * Optionally one I/O port can be defined as console, a write
+ * listener is installed on the port and count the number of
+ * characters written so the output do not require any terminal.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ * @since 1.03
+ */
+public class Workload
+{
+	private String name;
+	private int start;
+	private int end = -1;
+	private int consolePort = -1;
+	private long consoleCount = 0;
+	private FastArray<Integer> addresses = new FastArray<Integer>();
+	private FastArray<int[]> blocks = new FastArray<int[]>();
+
+	/**
+	 * Constructor with name and start address.
+	 */
+	public Workload(String name,int start)
+	{
+		this.name = name;
+		this.start = start;
+	}
+
+	/**
+	 * Add a block of bytes at the specified address.
+	 *
+	 * @return this workload.
+	 */
+	public Workload add(int address,int ... bytes)
+	{
+		addresses.add(address);
+		blocks.add(bytes);
+
+		return this;
+	}
+
+	/**
+	 * Add a string at the specified address.
+	 *
+	 * @return this workload.
+	 */
+	public Workload add(int address,String s)
+	{
+		int bytes[] = new int[s.length()];
+
+		for (int i = 0 ; i < bytes.length ; i++)
+			bytes[i] = s.charAt(i);
+
+		return add(address,bytes);
+	}
+
+	/**
+	 * Define the end address of a workload without loop.
+	 *
+	 * @return this workload.
+	 */
+	public Workload setEnd(int address)
+	{
+		end = address;
+
+		return this;
+	}
+
+	/**
+	 * Return the end address or -1 if the workload is a loop.
+	 */
+	public int getEnd()
+	{
+		return end;
+	}
+
+	/**
+	 * Define the I/O port used as console.
+	 *
+	 * @return this workload.
+	 */
+	public Workload setConsolePort(int port)
+	{
+		consolePort = port;
+
+		return this;
+	}
+
+	/**
+	 * Return the number of characters written on the console.
+	 */
+	public long getConsoleCount()
+	{
+		return consoleCount;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public int getStart()
+	{
+		return start;
+	}
+
+	/**
+	 * Load the workload in the cpu and set the PC to the start
+	 * address. Must be called after the reset of the cpu.
+	 */
+	public void load(CPU cpu) throws SIMException
+	{
+		Memory m = cpu.getMemory();
+
+		for (int i = 0 ; i < blocks.getSize() ; i++)
+		{
+			int a = addresses.get(i);
+			int bytes[] = blocks.get(i);
+
+			for (int j = 0 ; j < bytes.length ; j++)
+				m.setMemory(a + j,bytes[j]);
+		}
+
+		if (consolePort != -1)
+		{
+			cpu.addIOWriteListener(consolePort,new MemoryWriteListener()
+			{
+				public void writeMemory(Memory memory,int address,int value,int oldValue)
+				{
+					consoleCount++;
+				}
+			});
+		}
+
+		cpu.pc(start);
+	}
+
+	public String toString()
+	{
+		return name+" at "+jmce.util.Hex.formatWord(start);
+	}
+}
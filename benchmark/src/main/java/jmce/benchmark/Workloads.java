@@ -0,0 +1,276 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.benchmark;
+
+/**
+ * Factory of the canned workloads for every supported cpu.
+ * <p>
+ * The code is hand assembled, the comments on every line show the
+ * address and the source of the instruction.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ * @since 1.03
+ */
+public final class Workloads
+{
+	private Workloads()
+	{
+	}
+
+	/**
+	 * Intel 8080 / Z80 ZEXDOC like loop, execute ALU operation on
+	 * all register and accumulate the result in memory.
+	 */
+	static public Workload i8080Alu()
+	{
+		return new Workload("alu",0x0100).add(0x0100,
+			0x31,0x00,0xF0,		// 0100 LD	SP,F000
+			0x21,0x00,0x20,		// 0103 LD	HL,2000
+			0x06,0x00,		// 0106 LD	B,00
+			0x7E,			// 0108 LD	A,(HL)
+			0x80,			// 0109 ADD	A,B
+			0xA9,			// 010A XOR	A,C
+			0x07,			// 010B RLCA
+			0x4F,			// 010C LD	C,A
+			0x92,			// 010D SUB	A,D
+			0xA3,			// 010E AND	A,E
+			0xB0,			// 010F OR	A,B
+			0xFE,0x55,		// 0110 CP	A,55
+			0xCE,0x03,		// 0112 ADC	A,03
+			0x77,			// 0114 LD	(HL),A
+			0x23,			// 0115 INC	HL
+			0x05,			// 0116 DEC	B
+			0xC2,0x08,0x01,		// 0117 JP	NZ,0108
+			0x14,			// 011A INC	D
+			0x7C,			// 011B LD	A,H
+			0xE6,0x2F,		// 011C AND	A,2F
+			0x67,			// 011E LD	H,A
+			0xC3,0x06,0x01);	// 011F JP	0106
+	}
+
+	/**
+	 * Intel 8080 / Z80 Dhrystone like kernel, string copy and
+	 * string compare called as subroutine.
+	 */
+	static public Workload i8080Dhrystone()
+	{
+		return new Workload("dhrystone",0x0100).add(0x0100,
+			0x31,0x00,0xF0,		// 0100 LD	SP,F000
+			0x21,0x00,0x02,		// 0103 LD	HL,0200
+			0x11,0x00,0x03,		// 0106 LD	DE,0300
+			0xCD,0x20,0x01,		// 0109 CALL	0120
+			0x21,0x00,0x02,		// 010C LD	HL,0200
+			0x11,0x00,0x03,		// 010F LD	DE,0300
+			0xCD,0x30,0x01,		// 0112 CALL	0130
+			0xF5,			// 0115 PUSH	AF
+			0xF1,			// 0116 POP	AF
+			0xC3,0x03,0x01)		// 0117 JP	0103
+		.add(0x0120,
+			0x7E,			// 0120 LD	A,(HL)
+			0x12,			// 0121 LD	(DE),A
+			0x23,			// 0122 INC	HL
+			0x13,			// 0123 INC	DE
+			0xB7,			// 0124 OR	A,A
+			0xC2,0x20,0x01,		// 0125 JP	NZ,0120
+			0xC9)			// 0128 RET
+		.add(0x0130,
+			0x1A,			// 0130 LD	A,(DE)
+			0xBE,			// 0131 CP	A,(HL)
+			0xC0,			// 0132 RET	NZ
+			0x23,			// 0133 INC	HL
+			0x13,			// 0134 INC	DE
+			0xB7,			// 0135 OR	A,A
+			0xC2,0x30,0x01,		// 0136 JP	NZ,0130
+			0xC9)			// 0139 RET
+		.add(0x0200,"DHRYSTONE PROGRAM, SOME STRING\0");
+	}
+
+	/**
+	 * Intel 8080 / Z80 CP/M program calling the BDOS for console
+	 * output. The BDOS at FE00 implements function 2 (console
+	 * output) and 9 (print string) writing on the I/O port 01.
+	 */
+	static public Workload i8080Bdos()
+	{
+		return new Workload("bdos",0x0100).setConsolePort(0x01)
+		.add(0x0005,
+			0xC3,0x00,0xFE)		// 0005 JP	FE00
+		.add(0xFE00,
+			0x79,			// FE00 LD	A,C
+			0xFE,0x02,		// FE01 CP	A,02
+			0xC2,0x0A,0xFE,		// FE03 JP	NZ,FE0A
+			0x7B,			// FE06 LD	A,E
+			0xD3,0x01,		// FE07 OUT	(01),A
+			0xC9,			// FE09 RET
+			0xFE,0x09,		// FE0A CP	A,09
+			0xC0,			// FE0C RET	NZ
+			0x1A,			// FE0D LD	A,(DE)
+			0xFE,0x24,		// FE0E CP	A,'$'
+			0xC8,			// FE10 RET	Z
+			0xD3,0x01,		// FE11 OUT	(01),A
+			0x13,			// FE13 INC	DE
+			0xC3,0x0D,0xFE)		// FE14 JP	FE0D
+		.add(0x0100,
+			0x31,0x00,0xF0,		// 0100 LD	SP,F000
+			0x11,0x00,0x02,		// 0103 LD	DE,0200
+			0x0E,0x09,		// 0106 LD	C,09
+			0xCD,0x05,0x00,		// 0108 CALL	0005
+			0x1E,0x2A,		// 010B LD	E,'*'
+			0x0E,0x02,		// 010D LD	C,02
+			0xCD,0x05,0x00,		// 010F CALL	0005
+			0xC3,0x03,0x01)		// 0112 JP	0103
+		.add(0x0200,"HELLO FROM CP/M BDOS\r\n$");
+	}
+
+	/**
+	 * Z80 only instruction mix with index register, bit operation,
+	 * DJNZ and block move.
+	 */
+	static public Workload z80()
+	{
+		return new Workload("z80",0x0100).add(0x0100,
+			0x31,0x00,0xF0,		// 0100 LD	SP,F000
+			0xDD,0x21,0x00,0x20,	// 0103 LD	IX,2000
+			0x06,0x40,		// 0107 LD	B,40
+			0xDD,0x7E,0x01,		// 0109 LD	A,(IX+01)
+			0xCB,0x07,		// 010C RLC	A
+			0xCB,0x5F,		// 010E BIT	3,A
+			0xDD,0x77,0x00,		// 0110 LD	(IX+00),A
+			0xDD,0x23,		// 0113 INC	IX
+			0x10,0xF2,		// 0115 DJNZ	0109
+			0x21,0x00,0x20,		// 0117 LD	HL,2000
+			0x11,0x00,0x30,		// 011A LD	DE,3000
+			0x01,0x40,0x00,		// 011D LD	BC,0040
+			0xED,0xB0,		// 0120 LDIR
+			0xC3,0x03,0x01);	// 0122 JP	0103
+	}
+
+	/**
+	 * Intel 8086 checksum loop with memory access. Only the subset
+	 * of instructions implemented by the 8086 core is used. The
+	 * code is in F000:0100 and the reset vector F000:FFF0 jump to it.
+	 */
+	static public Workload i8086()
+	{
+		return new Workload("alu",0xFFFF0).add(0xFFFF0,
+			0xEA,0x00,0x01,0x00,0xF0) // F000:FFF0 JMP	F000:0100
+		.add(0xF0100,
+			0x31,0xC0,		// F000:0100 XOR	AX,AX
+			0x8E,0xD8,		// F000:0102 MOV	DS,AX
+			0xBF,0x02,0x00,		// F000:0104 MOV	DI,0002
+			0xBD,0x01,0x00,		// F000:0107 MOV	BP,0001
+			0xBE,0x00,0x10,		// F000:010A MOV	SI,1000
+			0xB9,0x00,0x01,		// F000:010D MOV	CX,0100
+			0x03,0x04,		// F000:0110 ADD	AX,[SI]
+			0x01,0xC3,		// F000:0112 ADD	BX,AX
+			0x31,0xDA,		// F000:0114 XOR	DX,BX
+			0x01,0x14,		// F000:0116 ADD	[SI],DX
+			0x01,0xFE,		// F000:0118 ADD	SI,DI
+			0x29,0xE9,		// F000:011A SUB	CX,BP
+			0x75,0xF2,		// F000:011C JNZ	0110
+			0xEA,0x0A,0x01,0x00,0xF0); // F000:011E JMP	F000:010A
+	}
+
+	/**
+	 * MOS 6502 checksum loop with zero page, indexed addressing and
+	 * subroutine call.
+	 */
+	static public Workload m6502()
+	{
+		return new Workload("alu",0x0200).add(0x0200,
+			0xA2,0xFF,		// 0200 LDX	#FF
+			0x9A,			// 0202 TXS
+			0xA2,0x00,		// 0203 LDX	#00
+			0xBD,0x00,0x03,		// 0205 LDA	0300,X
+			0x18,			// 0208 CLC
+			0x65,0x10,		// 0209 ADC	10
+			0x85,0x10,		// 020B STA	10
+			0x49,0x5A,		// 020D EOR	#5A
+			0x9D,0x00,0x04,		// 020F STA	0400,X
+			0x20,0x20,0x02,		// 0212 JSR	0220
+			0xE8,			// 0215 INX
+			0xD0,0xED,		// 0216 BNE	0205
+			0x4C,0x03,0x02)		// 0218 JMP	0203
+		.add(0x0220,
+			0x0A,			// 0220 ASL	A
+			0x60);			// 0221 RTS
+	}
+
+	/**
+	 * Intel 8051 checksum loop with indirect internal ram, SFR
+	 * access, DJNZ, subroutine call and external memory.
+	 */
+	static public Workload mcs51()
+	{
+		return new Workload("alu",0x0000).add(0x0000,
+			0x75,0x81,0x30,		// 0000 MOV	SP,#30
+			0x78,0x40,		// 0003 MOV	R0,#40
+			0x7A,0x20,		// 0005 MOV	R2,#20
+			0xE6,			// 0007 MOV	A,@R0
+			0x25,0xF0,		// 0008 ADD	A,B
+			0x33,			// 000A RLC	A
+			0x64,0x5A,		// 000B XRL	A,#5A
+			0xF6,			// 000D MOV	@R0,A
+			0xF5,0xF0,		// 000E MOV	B,A
+			0x08,			// 0010 INC	R0
+			0x12,0x00,0x20,		// 0011 LCALL	0020
+			0xDA,0xF1,		// 0014 DJNZ	R2,0007
+			0x90,0x10,0x00,		// 0016 MOV	DPTR,#1000
+			0xF0,			// 0019 MOVX	@DPTR,A
+			0xA3,			// 001A INC	DPTR
+			0xE0,			// 001B MOVX	A,@DPTR
+			0x80,0xE5)		// 001C SJMP	0003
+		.add(0x0020,
+			0x04,			// 0020 INC	A
+			0x22);			// 0021 RET
+	}
+
+	/**
+	 * Freescale M68HC05 straight line code with direct and indexed
+	 * addressing and subroutine call. The M68HC05 core do not
+	 * implement branch and jump so the workload define the end
+	 * address where the execution restart from the beginning.
+	 */
+	static public Workload m68hc05()
+	{
+		return new Workload("alu",0x0100).setEnd(0x0113).add(0x0100,
+			0xAE,0x00,		// 0100 LDX	#00
+			0xA6,0x5A,		// 0102 LDA	#5A
+			0xBB,0x80,		// 0104 ADD	80
+			0xBF,0x80,		// 0106 STX	80
+			0xA8,0xC3,		// 0108 EOR	#C3
+			0xE6,0xC0,		// 010A LDA	C0,X
+			0x3C,0x81,		// 010C INC	81
+			0x49,			// 010E ROLA
+			0xCD,0x01,0x20,		// 010F JSR	0120
+			0x5C)			// 0112 INCX
+		.add(0x0120,
+			0x48,			// 0120 ASLA
+			0x81);			// 0121 RTS
+	}
+}
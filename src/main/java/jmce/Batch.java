@@ -0,0 +1,529 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce;
+
+import java.io.*;
+
+import jmce.sim.*;
+
+import jmce.sim.Serial;
+import jmce.sim.audio.Audio;
+import jmce.sim.audio.AudioStream;
+import jmce.sim.audio.WaveFile;
+import jmce.sim.terminal.Terminal;
+import jmce.util.Hex;
+import jmce.util.Logger;
+import jmce.util.Timer;
+import jmce.util.TimerListener;
+
+/**
+ * Batch runner for jmce.
+ * <p>
+ * Run one cpu, configured in batch mode, at the maximum speed without
+ * any user interface till one of the exit condition is reached :
+ * <ul>
+ *  <li>The program counter reach the exit address.</li>
+ *  <li>The number of cycles is reached.</li>
+ *  <li>The console output contains the exit text.</li>
+ *  <li>One HALT is executed or the cpu stop with one exception.</li>
+ * </ul>
+ * The characters sent to the console are copied on the standard
+ * output and the optional input script is sent to the console one
+ * character at time when the previous one has been read. At the end
+ * one report with the emulated instructions/sec is printed on the
+ * standard error.
+ * <p>
+ * If a frame prefix is set the last frame of every video device is
+ * saved as PNG and the CRC32 of the frame is printed in the report,
+ * so the video output of regression runs can be compared without a
+ * display.
+ * <p>
+ * If an audio prefix is set the output of every audio device is
+ * captured in one WAV file.
+ * <p>
+ * If a snapshot file is set the state of the machine is saved at the
+ * exit so the next runs can restore it without repeating the boot.
+ * <p>
+ * At the exit the pending changes of all the disks are written.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ *
+ * @since 1.03
+ */
+public class Batch implements ExceptionListener
+{
+	private static Logger log = Logger.getLogger(Batch.class);
+	private int exitPC = -1;
+	private long exitCycle = -1;
+	private String exitOutput = null;
+	private String input = null;
+	private String framePrefix = null;
+	private String audioPrefix = null;
+	private String snapshotFile = null;
+	private java.util.List<Audio> audio = new java.util.ArrayList<Audio>();
+	private int inputPos;
+
+	/**
+	 * Exit text, KMP failure table and number of characters of the
+	 * exit text matched by the last output.
+	 */
+	private char exitText[];
+	private int exitFail[];
+	private int matched;
+
+	private PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)),false);
+	private CPU cpu;
+	private Terminal terminal;
+	private String reason = null;
+	private Throwable ex = null;
+
+	/**
+	 * Set the address where the cpu must be stopped.
+	 */
+	public void setExitPC(int pc)
+	{
+		exitPC = pc;
+	}
+
+	public int getExitPC()
+	{
+		return exitPC;
+	}
+
+	/**
+	 * Set the number of cycle after which the cpu must be stopped.
+	 */
+	public void setExitCycle(long n)
+	{
+		exitCycle = n;
+	}
+
+	public long getExitCycle()
+	{
+		return exitCycle;
+	}
+
+	/**
+	 * Set the text that stop the cpu when printed on the console.
+	 */
+	public void setExitOutput(String s)
+	{
+		exitOutput = s;
+	}
+
+	public String getExitOutput()
+	{
+		return exitOutput;
+	}
+
+	/**
+	 * Set the prefix of the PNG files with the last frame of the
+	 * video devices.
+	 */
+	public void setFramePrefix(String s)
+	{
+		framePrefix = s;
+	}
+
+	public String getFramePrefix()
+	{
+		return framePrefix;
+	}
+
+	/**
+	 * Set the prefix of the WAV files with the output of the audio
+	 * devices.
+	 */
+	public void setAudioPrefix(String s)
+	{
+		audioPrefix = s;
+	}
+
+	public String getAudioPrefix()
+	{
+		return audioPrefix;
+	}
+
+	/**
+	 * Set the file where the machine state is saved at the exit.
+	 */
+	public void setSnapshotFile(String s)
+	{
+		snapshotFile = s;
+	}
+
+	public String getSnapshotFile()
+	{
+		return snapshotFile;
+	}
+
+	/**
+	 * Set the text sent to the console.
+	 */
+	public void setInput(String s)
+	{
+		input = s;
+	}
+
+	public String getInput()
+	{
+		return input;
+	}
+
+	/**
+	 * Read the text sent to the console from one file, the new
+	 * line are translated in CR.
+	 */
+	public void setInputFile(String filename) throws SIMException
+	{
+		try
+		{
+			Reader r = new InputStreamReader(new FileInputStream(filename),"ISO-8859-1");
+			StringBuffer sb = new StringBuffer();
+			int c,last = -1;
+
+			while ((c = r.read()) != -1)
+			{
+				if (c == '\n')
+				{
+					if (last != '\r')
+						sb.append('\r');
+				}
+				else
+					sb.append((char)c);
+				last = c;
+			}
+
+			r.close();
+			input = sb.toString();
+		}
+		catch (IOException e)
+		{
+			throw new SIMIOException(filename,"Reading batch input");
+		}
+	}
+
+	/**
+	 * Stop the cpu for one exit condition.
+	 */
+	private void exit(String s) throws SIMException
+	{
+		reason = s;
+		throw new CPUAbortException(cpu,s);
+	}
+
+	/**
+	 * Prepare the KMP failure table of the exit text, for every
+	 * position the length of the longest proper prefix that is also
+	 * one suffix of the text matched till the position.
+	 */
+	private void setExitText(String s)
+	{
+		exitText = s.toCharArray();
+		exitFail = new int[exitText.length];
+		matched = 0;
+
+		for (int i = 1, k = 0 ; i < exitText.length ; i++)
+		{
+			while (k > 0 && exitText[i] != exitText[k])
+				k = exitFail[k - 1];
+
+			if (exitText[i] == exitText[k])
+				k++;
+
+			exitFail[i] = k;
+		}
+	}
+
+	/**
+	 * Called for every character sent from the cpu to the console.
+	 */
+	private void output(int c) throws SIMException
+	{
+		out.write(c);
+
+		if (exitText == null)
+			return;
+
+		char ch = (char)c;
+
+		while (matched > 0 && exitText[matched] != ch)
+			matched = exitFail[matched - 1];
+
+		if (exitText[matched] == ch)
+			matched++;
+
+		if (matched == exitText.length)
+		{
+			matched = exitFail[matched - 1];
+			exit("Output \""+exitOutput+"\"");
+		}
+	}
+
+	/**
+	 * Send the next character of the input script if the previous
+	 * one has been read.
+	 */
+	private void input() throws SIMException
+	{
+		if (input != null && inputPos < input.length() && !terminal.readyReadOutput())
+			terminal.write((int)input.charAt(inputPos++));
+	}
+
+	/**
+	 * Add the timer for the cycle exit condition.
+	 */
+	private void addCycleTimer()
+	{
+		long n = exitCycle - cpu.getCycle();
+
+		if (n > Integer.MAX_VALUE)
+			n = Integer.MAX_VALUE;
+
+		cpu.addTimerCycle(new Timer((int)n,false,new TimerListener()
+		{
+			public void timerExpired() throws SIMException
+			{
+				if (cpu.getCycle() >= exitCycle)
+					exit("Cycle "+exitCycle);
+				addCycleTimer();
+			}
+		}));
+	}
+
+	/**
+	 * Add to the list all the video devices in the hardware tree.
+	 */
+	private void findVideo(Hardware h,java.util.List<Video> list)
+	{
+		if (h instanceof Video)
+			list.add((Video)h);
+
+		for (int i = 0 ; i < h.getHardwareCount() ; i++)
+			findVideo(h.getHardware(i),list);
+	}
+
+	/**
+	 * Save the last frame of all the video devices and print the
+	 * CRC32 of the frames.
+	 */
+	private void saveFrames() throws SIMException
+	{
+		java.util.List<Video> list = new java.util.ArrayList<Video>();
+
+		findVideo(cpu,list);
+
+		for (int i = 0 ; i < list.size() ; i++)
+		{
+			FrameBuffer fb = list.get(i).getFrameBuffer();
+
+			if (fb == null)
+				continue;
+
+			String filename = list.size() == 1 ? framePrefix+".png" : framePrefix+"-"+i+".png";
+
+			FrameCapture.save(fb,filename);
+			System.err.println(String.format("Frame %s : %d frames, CRC %08X, saved in %s",
+							 list.get(i),fb.getFrameCount(),FrameCapture.getCRC(fb),filename));
+		}
+	}
+
+	/**
+	 * Add to the list all the audio devices in the hardware tree.
+	 */
+	private void findAudio(Hardware h,java.util.List<Audio> list)
+	{
+		if (h instanceof Audio)
+			list.add((Audio)h);
+
+		for (int i = 0 ; i < h.getHardwareCount() ; i++)
+			findAudio(h.getHardware(i),list);
+	}
+
+	/**
+	 * Start the capture of all the audio devices.
+	 */
+	private void captureAudio() throws SIMException
+	{
+		findAudio(cpu,audio);
+
+		for (int i = 0 ; i < audio.size() ; i++)
+		{
+			String filename = audio.size() == 1 ? audioPrefix+".wav" : audioPrefix+"-"+i+".wav";
+			audio.get(i).getAudioStream().setWaveFile(filename);
+		}
+	}
+
+	/**
+	 * Write the pending changes of all the disks in the hardware
+	 * tree.
+	 */
+	private void flushDisks(Hardware h) throws SIMException
+	{
+		if (h instanceof Disk)
+			((Disk)h).flush();
+
+		for (int i = 0 ; i < h.getHardwareCount() ; i++)
+			flushDisks(h.getHardware(i));
+	}
+
+	/**
+	 * Close the audio streams and print the number of captured
+	 * samples.
+	 */
+	private void closeAudio()
+	{
+		for (int i = 0 ; i < audio.size() ; i++)
+		{
+			AudioStream stream = audio.get(i).getAudioStream();
+			WaveFile wave = stream.getWaveFile();
+
+			stream.sync(cpu.getCycle());
+			stream.close();
+
+			if (wave != null)
+				System.err.println(String.format("Audio %s : %d samples, %d events lost, saved in %s",
+								 audio.get(i),wave.getSize(),stream.getDropped(),wave));
+		}
+	}
+
+	public synchronized void exceptionEvent(ExceptionEvent ev)
+	{
+		ex = ev.getEvent();
+		notifyAll();
+	}
+
+	/**
+	 * Run the cpu till one exit condition and return the exit code
+	 * 0 if one exit condition is reached, 1 if the cpu is stopped
+	 * with one error.
+	 */
+	public int run(CPU cpu) throws SIMException
+	{
+		this.cpu = cpu;
+
+		terminal = (Terminal)cpu.getHardwareTree(Serial.class,Terminal.class);
+
+		if (terminal != null)
+		{
+			terminal.addInputConsumer(new ByteConsumer()
+			{
+				public void consume(int c) throws SIMException
+				{
+					output(c);
+				}
+
+				public void consume(byte b[],int off,int len) throws SIMException
+				{
+					for (int i = 0 ; i < len ; i++)
+						output(b[off+i] & 0xff);
+				}
+			});
+
+			if (input != null)
+				cpu.addTimerCycle(new Timer((int)cpu.getCycleMillis(),true,new TimerListener()
+				{
+					public void timerExpired() throws SIMException
+					{
+						input();
+					}
+				}));
+		}
+		else if (input != null || exitOutput != null)
+			log.info("No terminal, console input/output ignored");
+
+		if (exitOutput != null && exitOutput.length() > 0)
+			setExitText(exitOutput);
+
+		if (exitCycle >= 0)
+			addCycleTimer();
+
+		if (exitPC >= 0)
+			cpu.setTill(exitPC);
+
+		cpu.addExceptionListener(this);
+
+		if (audioPrefix != null)
+			captureAudio();
+
+		long start = System.currentTimeMillis();
+
+		synchronized (this)
+		{
+			cpu.start();
+
+			while (ex == null)
+			{
+				try
+				{
+					wait();
+				}
+				catch (InterruptedException ignore)
+				{
+				}
+			}
+		}
+
+		long time = System.currentTimeMillis() - start;
+
+		out.flush();
+
+		if (reason == null && exitPC >= 0 && cpu.pc() == exitPC)
+			reason = "PC "+Hex.formatWord(exitPC);
+
+		if (reason == null && ex instanceof CPUAbortException && "HALT".equals(ex.getMessage()))
+			reason = "HALT";
+
+		if (time <= 0)
+			time = 1;
+		
+		System.err.println();
+		System.err.println("Batch exit : "+(reason != null ? reason : ex.toString()));
+		System.err.println("Cycles "+cpu.getCycle()+", instructions "+cpu.getInstructionCount()+" in "+time+" ms");
+		System.err.println(String.format("%.2f MIPS, %.2f Mhz emulated",
+						 cpu.getInstructionCount() / (time * 1000.0),
+						 cpu.getCycle() * cpu.getClockPerCycle() / (time * 1000.0)));
+
+		if (framePrefix != null)
+			saveFrames();
+
+		closeAudio();
+		flushDisks(cpu);
+
+		if (snapshotFile != null)
+		{
+			Snapshot s = new Snapshot();
+			s.save(cpu);
+			s.write(snapshotFile);
+			System.err.println(String.format("%s saved in %s",s,snapshotFile));
+		}
+
+		return reason != null ? 0 : 1;
+	}
+
+}
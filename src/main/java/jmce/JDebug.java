@@ -1370,6 +1370,10 @@ public class JDebug extends ApplicationFrame  implements ExceptionListener
 	 */
 	private  void performToolsProfile()
 	{
+		/** The switch core do not update the opcode counters */
+		if (cpu instanceof jmce.sim.cpu.AbstractCPU && ((jmce.sim.cpu.AbstractCPU)cpu).getSwitchCore())
+			showMessage("Profile not available with the switch core enabled");
+
 		SortedLong sl = new SortedLong();
 		performToolsProfile(sl,cpu.getOpcodes());
 		performTree("Profile",sl.createTree());
@@ -62,6 +62,11 @@ public class Jmce extends AbstractHardware implements ExceptionListener
 	private int port;
 	private boolean monitor = false;
 	private boolean debugger = false;
+	private boolean compiler = false;
+	private boolean switchCore = false;
+	private boolean fastLoad = false;
+	private Batch batch = null;
+	private String snapshot = null;
 	public CPU cpu = null;
 
 	static public Jmce getInstance()
@@ -76,7 +81,7 @@ public class Jmce extends AbstractHardware implements ExceptionListener
 		System.err.println("usage : jmce [options] class|xml\n");
 		System.err.println(" class  Is a class name of one CPU.");
 		System.err.println(" xml    Is the name of xml file with a configuration.\n");
-		System.err.println(" options : -g class -t type -p port -l file -m :\n");
+		System.err.println(" options : -g class -t type -p port -l file -m -d -c -s -f -b -x pc -n cycles -o text -i file -v prefix -a prefix -r file -w file :\n");
 		System.err.println(" -g class  Set the  default name for the class CRT.");
 		System.err.println(" -t type   Set the type of system monitor :");
 		System.err.println("            0 - Monitor on terminal (default).");
@@ -85,6 +90,18 @@ public class Jmce extends AbstractHardware implements ExceptionListener
 		System.err.println(" -l file   Set default file for log config. Default logging.properties");
 		System.err.println(" -m        Enable monitor implies -g jmce.sim.terminal.SwingCRT");
 		System.err.println(" -d        Elable the debugger");
+		System.err.println(" -c        Enable the compiler of hot blocks");
+		System.err.println(" -s        Enable the switch dispatched interpreter core");
+		System.err.println(" -f        Enable the fast load of the tape");
+		System.err.println(" -b        Batch mode, run at maximum speed without user interface");
+		System.err.println(" -x pc     Batch mode, exit when the program counter reach pc (hex)");
+		System.err.println(" -n cycles Batch mode, exit after the specified number of cycles");
+		System.err.println(" -o text   Batch mode, exit when text is printed on the console");
+		System.err.println(" -i file   Batch mode, send the file content to the console");
+		System.err.println(" -v prefix Batch mode, save the last video frame as prefix.png");
+		System.err.println(" -a prefix Batch mode, capture the audio output as prefix.wav");
+		System.err.println(" -r file   Restore the machine state from the snapshot file");
+		System.err.println(" -w file   Batch mode, save the machine state in the snapshot file at exit");
 		System.err.println();
 		System.err.println(" try:jmce jmce.sinclair.spectrum.Spectrum48K to start ZX (require swing).");
 		System.err.println("  or:jmce jmce.z80pack.Z80Pack to start Z80pack with default configuration.");
@@ -113,6 +130,19 @@ public class Jmce extends AbstractHardware implements ExceptionListener
 		error("invalid argument "+opt+" "+desc);
 	}
 	
+	/**
+	 * Return the batch runner creating it if necessary.
+	 *
+	 * @since 1.03
+	 */
+	Batch getBatch()
+	{
+		if (batch == null)
+			batch = new Batch();
+
+		return batch;
+	}
+	
 	void processOptions(String argv[]) throws SIMException
 	{
 		int i;
@@ -162,6 +192,70 @@ public class Jmce extends AbstractHardware implements ExceptionListener
 
 						break;
 						
+					case	'c':
+						compiler = true;
+						break;
+
+					case	's':
+						switchCore = true;
+						break;
+
+					case	'f':
+						fastLoad = true;
+						break;
+
+					case	'b':
+						getBatch();
+						break;
+
+					case	'x':
+						if (++i >= argv.length)
+							argumentRequired(s,"Exit address");
+						getBatch().setExitPC(Integer.parseInt(argv[i],16));
+						break;
+
+					case	'n':
+						if (++i >= argv.length)
+							argumentRequired(s,"Number of cycles");
+						getBatch().setExitCycle(Long.parseLong(argv[i]));
+						break;
+
+					case	'o':
+						if (++i >= argv.length)
+							argumentRequired(s,"Exit text");
+						getBatch().setExitOutput(argv[i]);
+						break;
+
+					case	'i':
+						if (++i >= argv.length)
+							argumentRequired(s,"Input file");
+						getBatch().setInputFile(argv[i]);
+						break;
+
+					case	'v':
+						if (++i >= argv.length)
+							argumentRequired(s,"Frame prefix");
+						getBatch().setFramePrefix(argv[i]);
+						break;
+
+					case	'a':
+						if (++i >= argv.length)
+							argumentRequired(s,"Audio prefix");
+						getBatch().setAudioPrefix(argv[i]);
+						break;
+
+					case	'r':
+						if (++i >= argv.length)
+							argumentRequired(s,"Snapshot file");
+						snapshot = argv[i];
+						break;
+
+					case	'w':
+						if (++i >= argv.length)
+							argumentRequired(s,"Snapshot file");
+						getBatch().setSnapshotFile(argv[i]);
+						break;
+						
 					case	'm':
 						SampleTerminal.setDefaultCRT("jmce.sim.terminal.SwingCRT");
 						monitor = true;
@@ -175,6 +269,13 @@ public class Jmce extends AbstractHardware implements ExceptionListener
 
 		}
 
+		if (batch != null)
+		{
+			if (monitor || debugger)
+				error("-b is not compatible with -m and -d");
+			SampleTerminal.setDefaultCRT(jmce.sim.terminal.NullCRT.class);
+		}
+
 		if (i >= argv.length)
 		{
 			if (!monitor)
@@ -269,6 +370,13 @@ public class Jmce extends AbstractHardware implements ExceptionListener
 				{
 					cpu.reset();
 
+					if (snapshot != null)
+						Snapshot.read(snapshot).restore(cpu);
+
+					/** Batch mode run till one exit condition */
+					if (batch != null)
+						System.exit(batch.run(cpu));
+
 
 					/**
 					 * If no one control the cpu
@@ -346,8 +454,24 @@ public class Jmce extends AbstractHardware implements ExceptionListener
 	public void setCPU(Object o) throws SIMException
 	{
 		cpu = (CPU)o;
+		if (compiler && cpu instanceof jmce.sim.cpu.AbstractCPU)
+			((jmce.sim.cpu.AbstractCPU)cpu).setCompiler(true);
+		if (switchCore && cpu instanceof jmce.sim.cpu.AbstractCPU)
+			((jmce.sim.cpu.AbstractCPU)cpu).setSwitchCore(true);
+		if (batch != null)
+			cpu.setBatchMode(true);
 		cpu.init(null);
-		cpu.initSwing(null);
+
+		if (fastLoad)
+		{
+			jmce.sim.tape.TapeFile tape = (jmce.sim.tape.TapeFile)cpu.getHardware(jmce.sim.tape.TapeFile.class);
+			if (tape != null)
+				tape.setFastLoad(true);
+		}
+
+		/** No user interface in batch mode */
+		if (batch == null)
+			cpu.initSwing(null);
 
 	}
 	
@@ -69,7 +69,7 @@ public class Console extends jmce.sim.Serial  implements MemoryReadListener,Memo
 				
 			case	17:
 				setLive();
-				return read();
+				return readByte();
 			default:
 				return 0;
 		}
@@ -27,6 +27,7 @@
 package jmce.commodore.vic20;
 
 import jmce.sim.*;
+import jmce.sim.tape.TapeData;
 import jmce.util.Logger;
 import jmce.util.Hex;
 
@@ -37,16 +38,56 @@ import jmce.util.Hex;
  * <p>
  * This version support only play.
  * <p>
+ * When the fast load is enabled the calls to the KERNAL LOAD from
+ * tape are intercepted, the standard CBM blocks are decoded from the
+ * pulses and copied directly in memory.
+ * <p>
  * @author Mario Viara
- * @version 1.01
+ * @version 1.03
  *
  * @since 1.01
  */
-public class Tape extends jmce.sim.tape.TapeFile implements jmce.sim.TapeEventListener,CycleListener,MemoryWriteListener
+public class Tape extends jmce.sim.tape.TapeFile implements jmce.sim.TapeEventListener,ScheduledCycleListener,MemoryWriteListener,CallListener
 {
 	private static Logger log = Logger.getLogger(Tape.class);
+
+	/** KERNAL LOAD entry point */
+	static public final int LOAD = 0xFFD5;
+
+	/** KERNAL zero page locations */
+	static private final int STATUS = 0x90;
+	static private final int EAL	= 0xAE;
+	static private final int TAPE1	= 0xB2;
+	static private final int FNLEN	= 0xB7;
+	static private final int SA	= 0xB9;
+	static private final int FA	= 0xBA;
+	static private final int FNADR	= 0xBB;
+
+	/** Size of the header block */
+	static private final int HEADER_SIZE = 192;
+
+	/** Pulses class */
+	static private final int SHORT	= 0;
+	static private final int MEDIUM	= 1;
+	static private final int LONG	= 2;
+	static private final int GAP	= 3;
+	static private final int EOT	= 4;
+
+	/** readByte special results */
+	static private final int BYTE_EOT = -1;
+	static private final int BYTE_END = -2;
+	static private final int BYTE_ERROR = -3;
+	
 	private jmce.mos.VIA6522 via2,via1;
 	private int pulse;
+
+	/** Play state seen by the cpu thread */
+	private boolean running;
+
+	/** Fast load decoder state */
+	private TapeData fastData;
+	private int shortPulse;
+	private boolean repeatNeeded;
 	public Tape()
 	{
 		super("VIC20-Tape");
@@ -95,8 +136,30 @@ public class Tape extends jmce.sim.tape.TapeFile implements jmce.sim.TapeEventLi
 	public void reset() throws SIMException
 	{
 		super.reset();
-		pulse= 0;
 		stop();
+		pulse= 0;
+	}
+
+	/**
+	 * Play and stop are called from the user interface thread, the
+	 * cpu only receive one request of sync and the new state is used
+	 * by the next call of cycle() so the cycles elapsed before belong
+	 * to the old state.
+	 *
+	 * @since 1.03
+	 */
+	public void play() throws SIMException
+	{
+		super.play();
+		if (cpu != null)
+			cpu.syncCycles();
+	}
+
+	public void stop() throws SIMException
+	{
+		super.stop();
+		if (cpu != null)
+			cpu.syncCycles();
 	}
 
 	public void registerCPU(CPU cpu) throws SIMException
@@ -104,6 +167,7 @@ public class Tape extends jmce.sim.tape.TapeFile implements jmce.sim.TapeEventLi
 		super.registerCPU(cpu);
 
 		cpu.addCycleListener(this);
+		((jmce.sim.cpu.AbstractCPU)cpu).setCallListener(LOAD,this);
 		via2.addPortBWriteListener(this);
 		
 		via1.addCA2MemoryWriteListener(new MemoryWriteListener()
@@ -112,6 +176,8 @@ public class Tape extends jmce.sim.tape.TapeFile implements jmce.sim.TapeEventLi
 			{
 				if ((value == 0) != getPower())
 				{
+					/** Elapsed cycles belong to the old motor state */
+					cpu.syncCycles();
 					setPower(value == 0);
 				}
 			}
@@ -119,9 +185,28 @@ public class Tape extends jmce.sim.tape.TapeFile implements jmce.sim.TapeEventLi
 		});
 	}
 
+	/**
+	 * The tape change state only at the end of the current pulse.
+	 *
+	 * @since 1.03
+	 */
+	public int getCycleDeadline()
+	{
+		if (running != isPlay())
+			return 0;
+
+		if (!running || !getPower() || pulse < 0)
+			return Integer.MAX_VALUE;
+
+		return pulse;
+	}
+
 	public void cycle(int n) throws SIMException
 	{
-		if (!isPlay() || !getPower())
+		boolean run = running;
+		running = isPlay();
+
+		if (!run || !getPower())
 			return;
 
 		if (pulse < 0)
@@ -157,6 +242,303 @@ public class Tape extends jmce.sim.tape.TapeFile implements jmce.sim.TapeEventLi
 		}
 	}
 
+	/**
+	 * Fast load called in place of the KERNAL LOAD.
+	 * <p>
+	 * Only LOAD (not VERIFY) from the device 1 is intercepted, if the
+	 * file is not found or the blocks cannot be decoded the tape is
+	 * restored and the KERNAL is called normally.
+	 *
+	 * @since 1.03
+	 */
+	public int call(CPU cpu,int address) throws SIMException
+	{
+		if (!getFastLoad())
+			return -1;
+
+		Register ra = cpu.getRegisterForName("A");
+		Register rx = cpu.getRegisterForName("X");
+		Register ry = cpu.getRegisterForName("Y");
+		Register rp = cpu.getRegisterForName("P");
+
+		if (ra.getRegister() != 0 || cpu.getByte(FA) != 1)
+			return -1;
+
+		fastData = getFastLoadData();
+
+		if (fastData == null)
+			return -1;
+
+		int position = fastData.getPosition();
+		byte header[] = null;
+		byte data[] = null;
+
+		shortPulse = 0;
+		repeatNeeded = false;
+
+		/** Search the header with the requested name */
+		while ((header = readBlock(HEADER_SIZE)) != null)
+		{
+			int type = header[0] & 0xff;
+
+			if (type == 5)
+			{
+				header = null;
+				break;
+			}
+
+			if (type != 1 && type != 3)
+				continue;
+
+			int len = getWord(header,3) - getWord(header,1);
+
+			if (len < 0 || (data = readBlock(len)) == null)
+			{
+				header = null;
+				break;
+			}
+
+			if (isFileName(cpu,header))
+				break;
+
+			data = null;
+		}
+
+		if (header == null || data == null)
+		{
+			log.info("Fast load failed");
+			fastData.setPosition(position);
+			return -1;
+		}
+
+		int start = getWord(header,1);
+
+		if (header[0] == 1 && cpu.getByte(SA) == 0)
+			start = rx.getRegister() | (ry.getRegister() << 8);
+
+		int end = start + data.length;
+
+		log.info("Fast load "+Hex.formatWord(start)+"-"+Hex.formatWord(end));
+
+		cpu.getMemory().setMemory(start,data,0,data.length);
+
+		/** Copy the header in the cassette buffer */
+		cpu.getMemory().setMemory(cpu.getWord(TAPE1),header,0,header.length);
+
+		cpu.setByte(STATUS,0);
+		cpu.setByte(EAL,end & 0xff);
+		cpu.setByte(EAL+1,end >>> 8);
+		rx.setRegister(end & 0xff);
+		ry.setRegister(end >>> 8);
+		rp.setRegister(rp.getRegister() & ~jmce.mos.M65XXConstants.P_C);
+
+		if (fastData.getPosition() == fastData.getSize())
+			stop();
+
+		return 6;
+	}
+
+	/**
+	 * Return true if the name in the header match the name of the
+	 * file requested.
+	 */
+	private boolean isFileName(CPU cpu,byte header[]) throws SIMException
+	{
+		int len = cpu.getByte(FNLEN);
+		int name = cpu.getWord(FNADR);
+
+		for (int i = 0 ; i < len && i < 16 ; i++)
+			if (cpu.getByte(name + i) != (header[5 + i] & 0xff))
+				return false;
+
+		return true;
+	}
+
+	private int getWord(byte b[],int i)
+	{
+		return (b[i] & 0xff) | ((b[i+1] & 0xff) << 8);
+	}
+
+	/**
+	 * Read one CBM block of the specified length.
+	 * <p>
+	 * Every block is recorded 2 times, the repeated copy is used
+	 * only if the first one is wrong and it is skipped if the first
+	 * one is good.
+	 */
+	private byte[] readBlock(int len)
+	{
+		for (;;)
+		{
+			int b = readByte();
+
+			if (b == BYTE_EOT)
+				return null;
+
+			if (b != 0x89 && b != 0x09)
+				continue;
+
+			boolean repeat = b == 0x09;
+
+			if (repeat && !repeatNeeded)
+				continue;
+
+			byte data[] = readBlockData(b,len);
+
+			if (data != null)
+			{
+				if (!repeat)
+					skipRepeat(len);
+				repeatNeeded = false;
+
+				return data;
+			}
+
+			repeatNeeded = !repeat;
+		}
+	}
+
+	/**
+	 * Skip the repeated copy of a block if present.
+	 */
+	private void skipRepeat(int len)
+	{
+		int position = fastData.getPosition();
+
+		if (readByte() != 0x09 || readBlockData(0x09,len) == null)
+			fastData.setPosition(position);
+	}
+
+	/**
+	 * Read the countdown sequence, the data and the checksum of a
+	 * block. Return null if any error.
+	 */
+	private byte[] readBlockData(int sync,int len)
+	{
+		for (int i = 1 ; i < 9 ; i++)
+			if (readByte() != sync - i)
+				return null;
+
+		byte data[] = new byte[len];
+		int checksum = 0;
+
+		for (int i = 0 ; i <= len ; i++)
+		{
+			int b = readByte();
+
+			if (b < 0)
+				return null;
+
+			checksum ^= b;
+
+			if (i < len)
+				data[i] = (byte)b;
+		}
+
+		return checksum == 0 ? data : null;
+	}
+
+	/**
+	 * Read one byte : a LONG MEDIUM marker followed by 8 bits LSB
+	 * first and the odd parity bit. A bit 0 is SHORT MEDIUM and a bit
+	 * 1 is MEDIUM SHORT.
+	 */
+	private int readByte()
+	{
+		int p;
+
+		do
+		{
+			p = readPulse();
+			if (p == EOT)
+				return BYTE_EOT;
+		} while (p != LONG);
+
+		p = readPulse();
+
+		if (p == SHORT)
+			return BYTE_END;
+
+		if (p != MEDIUM)
+			return p == EOT ? BYTE_EOT : BYTE_ERROR;
+
+		int value = 0;
+		int parity = 0;
+
+		for (int i = 0 ; i < 9 ; i++)
+		{
+			int p1 = readPulse();
+			int p2 = readPulse();
+			int bit;
+
+			if (p1 == SHORT && p2 == MEDIUM)
+				bit = 0;
+			else if (p1 == MEDIUM && p2 == SHORT)
+				bit = 1;
+			else
+				return p1 == EOT || p2 == EOT ? BYTE_EOT : BYTE_ERROR;
+
+			if (i < 8)
+				value |= bit << i;
+			parity ^= bit;
+		}
+
+		return parity == 1 ? value : BYTE_ERROR;
+	}
+
+	/**
+	 * Read and classify the next pulse.
+	 * <p>
+	 * The width of the short pulse is measured on the leader (a
+	 * sequence of short pulses) and the other are classified using
+	 * it, the nominal ratio are 1.4 for the medium and 1.8 for the
+	 * long one.
+	 */
+	private int readPulse()
+	{
+		while (shortPulse == 0)
+		{
+			int count = 0;
+			int width = 0;
+
+			while (count < 32)
+			{
+				TapePulse tp = fastData.nextPulse();
+
+				if (tp == null)
+					return EOT;
+
+				int w = tp.getWidth();
+
+				if (count > 0 && Math.abs(w - width) * 8 < width)
+					count++;
+				else
+				{
+					count = 1;
+					width = w;
+				}
+			}
+
+			shortPulse = width;
+		}
+
+		TapePulse tp = fastData.nextPulse();
+
+		if (tp == null)
+			return EOT;
+
+		int w = tp.getWidth() * 100;
+
+		if (w < shortPulse * 119)
+			return SHORT;
+		if (w < shortPulse * 158)
+			return MEDIUM;
+		if (w < shortPulse * 250)
+			return LONG;
+
+		return GAP;
+	}
+
 	private void setSense(boolean mode)
 	{
 		try
@@ -26,6 +26,8 @@
 */
 package jmce.f4fez.prm80;
 
+import java.util.zip.CRC32;
+
 import jmce.philips.P80c552;
 import jmce.sim.*;
 import jmce.atmel.AT24C16;
@@ -36,12 +38,48 @@ import jmce.atmel.AT24C16;
  * This class implements the I2C bus for the PRM80 project. The bus is
  * implemented not using one I2C controller buf only 2 open collector
  * pin.
+ * <p>
+ * Since 1.03 when the fast call is enabled the calls to the bit
+ * banged routines of the default firmware (START, STOP, send and
+ * receive one byte and the acknowledge bit) are intercepted and
+ * executed at transaction level, returning the same cycles and
+ * registers of the original routines. The routines are used only if
+ * the code at their address is the one of the default firmware,
+ * other firmware still use the pins.
  *
+ * @version 1.03
  */
-public class PRM8060I2cBus extends I2cBus
+public class PRM8060I2cBus extends I2cBus implements CallListener
 {
+	/** Address of the bit banged routines in the default firmware */
+	static public final int I2C_START	= 0x03D3;
+	static public final int I2C_STOP	= 0x03E4;
+	static public final int I2C_SEND	= 0x03F3;
+	static public final int I2C_RECV	= 0x0410;
+	static public final int I2C_ACK		= 0x0427;
+	static public final int I2C_NACK	= 0x0437;
+	static public final int I2C_GETACK	= 0x0445;
+
+	/** Bit where I2C_GETACK save the acknowledge */
+	static private final int ACK_BIT = 0x30;
+
+	/** CRC32 of the code from I2C_START to the end of I2C_GETACK */
+	static private final int ROUTINES_END = 0x0458;
+	static private final long ROUTINES_CRC = 0x8f15281dL;
+
 	private Memory memory = null;
+	private P80c552 cpu552;
+	private boolean fastCall = true;
+
+	/** Code memory generation of the last firmware check */
+	private int generation = -1;
+	private boolean firmware;
+
+	/** True if the next byte sent is the address */
+	private boolean address;
 
+	/** Acknowledge of the last byte sent */
+	private boolean ack;
 
 	public void init(Hardware parent) throws SIMException
 	{
@@ -59,6 +97,138 @@ public class PRM8060I2cBus extends I2cBus
 		P80c552 d = (P80c552)cpu;
 		setScl(d.getSfrBitOpenCollector(P80c552.P1,6));
 		setSda(d.getSfrBitOpenCollector(P80c552.P1,7));
+
+		cpu552 = d;
+		d.setCallListener(I2C_START,this);
+		d.setCallListener(I2C_STOP,this);
+		d.setCallListener(I2C_SEND,this);
+		d.setCallListener(I2C_RECV,this);
+		d.setCallListener(I2C_ACK,this);
+		d.setCallListener(I2C_NACK,this);
+		d.setCallListener(I2C_GETACK,this);
+	}
+
+	public void reset() throws SIMException
+	{
+		super.reset();
+		address = ack = false;
+		generation = -1;
+	}
+
+	/**
+	 * Enable the transaction level execution of the I2C routines
+	 * of the default firmware.
+	 *
+	 * @since 1.03
+	 */
+	public void setFastCall(boolean mode)
+	{
+		fastCall = mode;
+	}
+
+	public boolean getFastCall()
+	{
+		return fastCall;
+	}
+
+	/**
+	 * Return true if the code memory contains the routines of the
+	 * default firmware. The result is cached till the generation of
+	 * the code memory change.
+	 */
+	private boolean isFirmware() throws SIMException
+	{
+		Memory code = cpu552.getMemoryForName(P80c552.CODE_MEMORY);
+		int g = code instanceof jmce.sim.memory.AbstractMemory ? ((jmce.sim.memory.AbstractMemory)code).getGeneration() : -1;
+
+		if (g != -1 && g == generation)
+			return firmware;
+
+		CRC32 crc = new CRC32();
+
+		for (int a = I2C_START ; a < ROUTINES_END ; a++)
+			crc.update(cpu552.code(a));
+
+		generation = g;
+		firmware = crc.getValue() == ROUTINES_CRC;
+
+		return firmware;
+	}
+
+	/**
+	 * Execute one I2C routine of the default firmware.
+	 *
+	 * @return the cycles of the original routine including the call.
+	 *
+	 * @since 1.03
+	 */
+	public int call(CPU cpu,int a) throws SIMException
+	{
+		if (!fastCall || !isFirmware())
+			return -1;
+
+		int acc = cpu552.sfr(P80c552.ACC);
+		boolean c = cpu552.cy();
+
+		switch (a)
+		{
+			case	I2C_START:
+				address = true;
+				return 15;
+
+			case	I2C_STOP:
+				stop();
+				address = false;
+				return 14;
+
+			/** A is preserved, C is rotated 8 times with A */
+			case	I2C_SEND:
+				if (address)
+					ack = start(acc);
+				else
+					ack = write(acc);
+				address = false;
+				cpu552.cy(rotate(acc,c) != 0);
+				return 111;
+
+			/** The byte is shifted in A from C, C is the old bit 0 */
+			case	I2C_RECV:
+				cpu552.sfr(P80c552.ACC,read(false));
+				cpu552.cy((acc & 1) != 0);
+				return 83;
+
+			/** The acknowledge is used only from the slave to end the read */
+			case	I2C_ACK:
+				return 14;
+
+			case	I2C_NACK:
+				return 13;
+
+			case	I2C_GETACK:
+				cpu552.cy(ack);
+				cpu552.setBit(ACK_BIT,ack);
+				ack = false;
+				return 17;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Return the carry after 8 RLC A.
+	 */
+	static private int rotate(int a,boolean c)
+	{
+		int cy = c ? 1 : 0;
+
+		for (int i = 0 ; i < 8 ; i++)
+		{
+			int n = (a >>> 7) & 1;
+			a = ((a << 1) | cy) & 0xff;
+			cy = n;
+		}
+
+		return cy;
 	}
 
 }
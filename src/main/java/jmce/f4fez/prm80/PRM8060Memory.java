@@ -4,11 +4,13 @@ import java.util.ArrayList;
 
 import jmce.sim.Memory;
 import jmce.sim.SIMException;
+import jmce.sim.Snapshot;
+import jmce.sim.Snapshottable;
 import jmce.sim.memory.AbstractMemory;
 import jmce.sim.memory.PlainMemory;
 import jmce.util.Logger;
 
-public class PRM8060Memory extends AbstractMemory {
+public class PRM8060Memory extends AbstractMemory implements Snapshottable {
 
 	/** logger */
 	private static Logger log = Logger.getLogger(PRM8060Memory.class.getName());
@@ -17,6 +19,7 @@ public class PRM8060Memory extends AbstractMemory {
 
 	public PRM8060Memory() {
 		super("XDATA");
+		setVirtual(true);
 		elements = new ArrayList<MemoryElement>();
 		MemoryElement me = new MemoryElement(new PlainMemory("PRM80 main", 32768), 0, 32767, ElementAdressMapping.NO_MAP);
 		elements.add(me);
@@ -29,6 +32,33 @@ public class PRM8060Memory extends AbstractMemory {
 		return dbr;
 	}
 
+	/**
+	 * Save the memories of the elements, they are not in the hardware tree.
+	 *
+	 * @since 1.03
+	 */
+	@Override
+	public void saveState(Snapshot s) throws SIMException {
+		for (MemoryElement me : elements) {
+			if (me.getMemory() instanceof Snapshottable) {
+				((Snapshottable) me.getMemory()).saveState(s);
+			}
+		}
+	}
+
+	/**
+	 * @since 1.03
+	 */
+	@Override
+	public void loadState(Snapshot s) throws SIMException {
+		for (MemoryElement me : elements) {
+			if (me.getMemory() instanceof Snapshottable) {
+				((Snapshottable) me.getMemory()).loadState(s);
+			}
+		}
+		newGeneration();
+	}
+
 	@Override
 	protected final Memory mapMemory(int a) {
 		for (MemoryElement me : elements) {
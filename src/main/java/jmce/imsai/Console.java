@@ -65,7 +65,7 @@ public class Console extends jmce.sim.Serial  implements MemoryReadListener,Memo
 				return value;
 				
 			case	2:
-				return read();
+				return readByte();
 			default:
 				return 0;
 		}
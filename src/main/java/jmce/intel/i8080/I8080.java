@@ -54,6 +54,9 @@ import jmce.sim.memory.*;
  * For better rediability the mnemonics used on the disassembler are the
  * Z80 mnemonics and not the original Intel 8080.<p>
  *
+ * This CPU honor the {@link #setCallListener} method for CALL
+ * instructions.<p>
+ *
  * @author Mario Viara
  * @version 1.01
  */
@@ -63,6 +66,22 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	/** 8080 register */
 	public int A,F,BC,DE,HL,PC,SP;
 
+	/**
+	 * Lazy flags.
+	 * <p>
+	 * The arithmetic operations do not calculate F but save the
+	 * operation and the operands, F is calculated by f() only when
+	 * required. F must never be read directly, use f() and
+	 * f(int) to change it.
+	 */
+	static private final int FLAGS_NONE = 0;
+	static private final int FLAGS_ADC = 1;
+	static private final int FLAGS_SBC = 2;
+	static private final int FLAGS_INC = 3;
+	static private final int FLAGS_DEC = 4;
+	private int flagOp = FLAGS_NONE;
+	private int flagA,flagAns,flagC;
+
 	/**
 	 * Interrupt enable flag register. Interrupt are enable only
 	 * when the 2 flag (iff1,iff2) are both true.
@@ -305,7 +324,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	 */
 	protected final boolean FLAG_C()
 	{
-		return (F & FLAG_C) != 0 ? true : false;
+		return carry() != 0;
 	}
 
 	/**
@@ -314,9 +333,9 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	protected final void FLAG_C(boolean value)
 	{
 		if (value)
-			F |= FLAG_C;
+			F = f() | FLAG_C;
 		else
-			F &= ~FLAG_C;
+			F = f() & ~FLAG_C;
 	}
 
 	
@@ -325,7 +344,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	 */
 	protected final boolean FLAG_Z()
 	{
-		return ((F & FLAG_Z) != 0) ? true : false;
+		return ((f() & FLAG_Z) != 0) ? true : false;
 
 	}
 
@@ -334,7 +353,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	 */
 	protected final boolean FLAG_V()
 	{
-		return ((F & FLAG_PV) != 0) ? true : false;
+		return ((f() & FLAG_PV) != 0) ? true : false;
 	}
 
 	/**
@@ -342,7 +361,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	 */
 	protected final boolean FLAG_S()
 	{
-		return ((F & FLAG_S) != 0) ? true : false;
+		return ((f() & FLAG_S) != 0) ? true : false;
 	}
 
 	/**
@@ -350,7 +369,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	 */
 	protected final boolean FLAG_H()
 	{
-		return ((F & FLAG_H) != 0) ? true : false;
+		return ((f() & FLAG_H) != 0) ? true : false;
 	}
 
 	/**
@@ -359,9 +378,9 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	protected final void FLAG_Z(boolean value)
 	{
 		if (value)
-			F |= FLAG_Z;
+			F = f() | FLAG_Z;
 		else
-			F &= ~FLAG_Z;
+			F = f() & ~FLAG_Z;
 	}
 
 	/**
@@ -370,9 +389,9 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	protected final void FLAG_S(boolean value)
 	{
 		if (value)
-			F |= FLAG_S;
+			F = f() | FLAG_S;
 		else
-			F &= ~FLAG_S;
+			F = f() & ~FLAG_S;
 	}
 
 
@@ -382,9 +401,9 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	protected void FLAG_H(boolean value)
 	{
 		if (value)
-			F |= FLAG_H;
+			F = f() | FLAG_H;
 		else
-			F &= ~FLAG_H;
+			F = f() & ~FLAG_H;
 	}
 
 	/**
@@ -393,9 +412,9 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	protected final void FLAG_V(boolean value)
 	{
 		if (value)
-			F |= FLAG_PV;
+			F = f() | FLAG_PV;
 		else
-			F &= ~FLAG_PV;
+			F = f() & ~FLAG_PV;
 	}
 
 	/**
@@ -403,7 +422,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	 */
 	protected final boolean FLAG_N()
 	{
-		return ((F & FLAG_N) != 0) ? true : false;
+		return ((f() & FLAG_N) != 0) ? true : false;
 		
 	}
 
@@ -413,9 +432,9 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	protected final void FLAG_N(boolean value)
 	{
 		if (value)
-			F |= FLAG_N;
+			F = f() | FLAG_N;
 		else
-			F &= ~FLAG_N;
+			F = f() & ~FLAG_N;
 	}
 
 	/**
@@ -423,7 +442,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	 */
 	protected final boolean FLAG_3()
 	{
-		return ((F & FLAG_3) != 0) ? true : false;
+		return ((f() & FLAG_3) != 0) ? true : false;
 
 	}
 
@@ -432,7 +451,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	 */
 	protected final boolean FLAG_5()
 	{
-		return ((F & FLAG_5) != 0) ? true : false;
+		return ((f() & FLAG_5) != 0) ? true : false;
 
 	}
 
@@ -443,9 +462,9 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	protected final void FLAG_5(boolean value)
 	{
 		if (value)
-			F |= FLAG_5;
+			F = f() | FLAG_5;
 		else
-			F &= ~FLAG_5;
+			F = f() & ~FLAG_5;
 	}
 
 	/**
@@ -454,9 +473,9 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	protected final void FLAG_3(boolean value)
 	{
 		if (value)
-			F |= FLAG_3;
+			F = f() | FLAG_3;
 		else
-			F &= ~FLAG_3;
+			F = f() & ~FLAG_3;
 	}
 
 
@@ -545,7 +564,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 			{
 				String s = "";
 				
-				s += "["+Hex.formatByte(F)+"]";
+				s += "["+Hex.formatByte(f())+"]";
 
 				if (FLAG_S())
 					s += "S";
@@ -591,12 +610,12 @@ public class I8080 extends AbstractCPU implements I8080Constants
 			
 			public int getRegister()
 			{
-				return F;
+				return f();
 			}
 
 			public void setRegister(int value)
 			{
-				F = value;
+				f(value);
 			}
 
 
@@ -654,6 +673,28 @@ public class I8080 extends AbstractCPU implements I8080Constants
 
 
 
+	/**
+	 * Save the interrupt flip flop not available as register.
+	 *
+	 * @since 1.03
+	 */
+	public void saveState(Snapshot s) throws SIMException
+	{
+		super.saveState(s);
+		s.putBoolean(iff1);
+		s.putBoolean(iff2);
+	}
+
+	/**
+	 * @since 1.03
+	 */
+	public void loadState(Snapshot s) throws SIMException
+	{
+		super.loadState(s);
+		iff1 = s.getBoolean();
+		iff2 = s.getBoolean();
+	}
+
 	/**
 	 * Set the value of H register
 	 */
@@ -705,9 +746,69 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	/**
 	 * Set the value of F register.
 	 */
-	protected final void f(int value)
+	public final void f(int value)
 	{
 		F = value;
+		flagOp = FLAGS_NONE;
+	}
+
+	/**
+	 * Return the value of F register.
+	 * <p>
+	 * The flags of the last arithmetic operation are evaluated
+	 * only when required, this method evaluate the pending
+	 * operation and store the result in F.
+	 *
+	 * @since 1.03
+	 */
+	public final int f()
+	{
+		switch (flagOp)
+		{
+			case	FLAGS_NONE:
+				return F;
+				
+			case	FLAGS_ADC:
+				F = adc8Table[flagAns & 0xff][flagA][flagC];
+				break;
+				
+			case	FLAGS_SBC:
+				F = sbc8Table[flagAns & 0xff][flagA][flagC];
+				break;
+				
+			case	FLAGS_INC:
+				F = flagC | inc8Table[flagA];
+				break;
+				
+			case	FLAGS_DEC:
+				F = flagC | dec8Table[flagA];
+				break;
+		}
+
+		flagOp = FLAGS_NONE;
+		
+		return F;
+	}
+
+	/**
+	 * Return the carry flag (0 or 1) without evaluate all the
+	 * pending flags.
+	 *
+	 * @since 1.03
+	 */
+	protected final int carry()
+	{
+		switch (flagOp)
+		{
+			case	FLAGS_ADC:
+			case	FLAGS_SBC:
+				return (flagAns >>> 8) & 1;
+			case	FLAGS_INC:
+			case	FLAGS_DEC:
+				return flagC;
+			default:
+				return F & FLAG_C;
+		}
 	}
 
 	/**
@@ -715,7 +816,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	 */
 	public final int af()
 	{
-		return A << 8 | F;
+		return A << 8 | f();
 	}
 
 	/**
@@ -724,7 +825,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	protected final void af(int v)
 	{
 		A = v >> 8;
-		F = v & 0xff;
+		f(v & 0xff);
 
 	}
 
@@ -765,6 +866,33 @@ public class I8080 extends AbstractCPU implements I8080Constants
 		setWord(SP,value);
 	}
 
+	/**
+	 * Call a subroutine, PC must already point to the next
+	 * instruction.
+	 * <p>
+	 * If a CallListener is registered for the address the listener
+	 * is invoked in place of the call, when it return a negative
+	 * value the call is executed normally.
+	 *
+	 * @since 1.03
+	 */
+	protected final int call(int address) throws SIMException
+	{
+		CallListener l = getCallListener(address);
+
+		if (l != null)
+		{
+			int n = l.call(this,address);
+			if (n >= 0)
+				return n;
+		}
+
+		push(PC);
+		PC = address;
+
+		return 17;
+	}
+
 	/**
 	 * Pop a WORD (16 bit) from the stack and return it.
 	 */
@@ -862,7 +990,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 		value <<= 1;
 		value |= c;
 		value &= 0xff;
-		F = booleanTable[value];
+		f(booleanTable[value]);
 		FLAG_C(bit7);
 		
 		return value ;
@@ -880,7 +1008,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 		if (bit7)
 			value |= 0x01;
 
-		F = booleanTable[value];
+		f(booleanTable[value]);
 		FLAG_C(bit7);
 
 		
@@ -896,7 +1024,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 		value = (value >> 1) & 0x7f;
 		if (FLAG_C())
 			value |= 0x80;
-		F = booleanTable[value];
+		f(booleanTable[value]);
 		FLAG_C(bit0); 
 
 		return value;
@@ -977,7 +1105,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 		value = (value >>> 1) & 0x7f;
 		if (bit0)
 			value |= 0x80;
-		F = booleanTable[value];
+		f(booleanTable[value]);
 		FLAG_C(bit0);
 
 		return value;
@@ -999,7 +1127,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	{
 		A = (A | value) & 0xff;
 
-		F = booleanTable[A];
+		f(booleanTable[A]);
 	}
 
 	/**
@@ -1052,7 +1180,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	{
 		A  = (A ^ value) & 0xff;
 
-		F = booleanTable[A];
+		f(booleanTable[A]);
 	}
 
 	/**
@@ -1062,7 +1190,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	{
 		A = (A & value) & 0xff;
 
-		F = booleanTable[A] | FLAG_H;
+		f(booleanTable[A] | FLAG_H);
 	}
 
 	/**
@@ -1081,7 +1209,10 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	{
 		int ans = A + b + c;
 
-		F = adc8Table[ans & 0xff][A][c];
+		flagOp = FLAGS_ADC;
+		flagA = A;
+		flagAns = ans;
+		flagC = c;
 		A = ans & 0xff;
 	}
 
@@ -1102,7 +1233,10 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	{
 		int ans = A - b - c;
 
-		F = sbc8Table[ans & 0xff][A][c];
+		flagOp = FLAGS_SBC;
+		flagA = A;
+		flagAns = ans;
+		flagC = c;
 		A =  ans & 0xff;
 
 
@@ -1124,7 +1258,9 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	 */
 	public final int inc(int value)
 	{
-		F = (F & FLAG_C) | inc8Table[value];
+		flagC = carry();
+		flagOp = FLAGS_INC;
+		flagA = value;
 		return  (value + 1) & 0xff;
 
 	}
@@ -1135,7 +1271,9 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	 */
 	public final int dec(int value)
 	{
-		F = (F & FLAG_C) | dec8Table[value];
+		flagC = carry();
+		flagOp = FLAGS_DEC;
+		flagA = value;
 		return (value - 1) & 0xff;
 	}
 
@@ -1146,22 +1284,22 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	{
 		int ans = a - b - c;
 		
-		F = (F & (FLAG_3|FLAG_5)) | FLAG_N;
+		F = (f() & (FLAG_3|FLAG_5)) | FLAG_N;
 
 		if ((ans & 0x8000) != 0)
-			F |= FLAG_S;
+			F = f() | FLAG_S;
 		
 		if ((ans & 0xffff) == 0)
-			F |= FLAG_Z;
+			F = f() | FLAG_Z;
 		
 		if ((ans & 0x10000) != 0)
-			F |= FLAG_C;
+			F = f() | FLAG_C;
 
 		if (((b ^ a ) & (a ^ ans) & 0x8000) != 0)
-			F |= FLAG_PV;
+			F = f() | FLAG_PV;
 
 		if (((a ^ ans ^ b) & 0x1000) != 0)
-			F |= FLAG_H;
+			F = f() | FLAG_H;
 		
 
 		return ans & 0xffff;
@@ -1191,21 +1329,21 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	{
 		int ans = a + b + c;
 		
-		F = F & (FLAG_3|FLAG_5);
+		F = f() & (FLAG_3|FLAG_5);
 		
 		if ((ans &  0x8000) != 0)
-			F |= FLAG_S;
+			F = f() | FLAG_S;
 		if ((ans & 0x10000) != 0)
-			F |= FLAG_C;
+			F = f() | FLAG_C;
 			
 		if ((ans & 0xffff) == 0)
-			F |= FLAG_Z;
+			F = f() | FLAG_Z;
 		
 		if (((a ^ ans ^ b) & 0x1000) != 0)
-			F |= FLAG_H;
+			F = f() | FLAG_H;
 		
 		if (((b ^ a ^ 0x8000) & (b ^ ans) & 0x8000) != 0)
-			F |= FLAG_PV;
+			F = f() | FLAG_PV;
 		
 		return ans & 0xffff;
 	}
@@ -1240,7 +1378,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	public final boolean getFlagCCC(int opcode)
 	{
 		opcode = (opcode >> 3) & 0x07;
-		return (F & cccFlag[opcode]) == cccValue[opcode];
+		return (f() & cccFlag[opcode]) == cccValue[opcode];
 	}
 	
 	public String getCCC(int opcode)
@@ -1832,10 +1970,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 		{
 			public int exec(int pc) throws SIMException
 			{
-				push(PC);
-				PC = getWord(pc+1);
-
-				return 17;
+				return call(getWord(pc+1));
 			}
 		});
 		
@@ -2184,11 +2319,7 @@ public class I8080 extends AbstractCPU implements I8080Constants
 				{
 					
 					if (getFlagCCC(opcode))
-					{
-						push(PC);
-						PC = getWord(pc+1);
-						return 17;
-					}
+						return call(getWord(pc+1));
 					return 10;
 				}
 
@@ -2213,6 +2344,603 @@ public class I8080 extends AbstractCPU implements I8080Constants
 	}
 
 
+	/**
+	 * Switch core.
+	 * <p>
+	 * Exec all the 8080 instructions without the call to the
+	 * opcode, the number of cycle and the side effect must be the
+	 * same of the opcodes defined in initOpcodes(). The opcodes
+	 * not defined here are executed by the opcode table.
+	 *
+	 * @since 1.03
+	 */
+	protected int execSwitch(int pc) throws SIMException
+	{
+		int op = getByte(pc);
+		int v;
+
+		switch (op)
+		{
+			// NOP
+			case	0x00:
+				PC = pc + 1;
+				return 4;
+
+			// LD pp,word
+			case	0x01:
+			case	0x11:
+			case	0x21:
+			case	0x31:
+				PC = pc + 3;
+				setValuePP(op,getWord(pc+1));
+				return 11;
+
+			// LD (BC),A
+			case	0x02:
+				PC = pc + 1;
+				setByte(BC,A);
+				return 10;
+
+			// INC pp
+			case	0x03:
+			case	0x13:
+			case	0x23:
+			case	0x33:
+				PC = pc + 1;
+				setValuePP(op,(getValuePP(op) + 1) & 0xffff);
+				return 6;
+
+			// INC r
+			case	0x04:
+			case	0x0C:
+			case	0x14:
+			case	0x1C:
+			case	0x24:
+			case	0x2C:
+			case	0x3C:
+				PC = pc + 1;
+				v = op >> 3;
+				setValueRRR(v,inc(getValueRRR(v)));
+				return 4;
+
+			// DEC r and DEC (HL)
+			case	0x05:
+			case	0x0D:
+			case	0x15:
+			case	0x1D:
+			case	0x25:
+			case	0x2D:
+			case	0x35:
+			case	0x3D:
+				PC = pc + 1;
+				v = op >> 3;
+				setValueRRR(v,dec(getValueRRR(v)));
+				return 4;
+
+			// LD r,byte
+			case	0x06:
+			case	0x0E:
+			case	0x16:
+			case	0x1E:
+			case	0x26:
+			case	0x2E:
+			case	0x3E:
+				PC = pc + 2;
+				setValueRRR(op >> 3,getByte(pc+1));
+				return 7;
+
+			// RLCA
+			case	0x07:
+				PC = pc + 1;
+				rlca();
+				return 4;
+
+			// ADD HL,pp
+			case	0x09:
+			case	0x19:
+			case	0x29:
+			case	0x39:
+				PC = pc + 1;
+				HL = add16(HL,getValuePP(op));
+				return 6;
+
+			// LD A,(BC)
+			case	0x0A:
+				PC = pc + 1;
+				A = getByte(BC);
+				return 7;
+
+			// DEC pp
+			case	0x0B:
+			case	0x1B:
+			case	0x2B:
+			case	0x3B:
+				PC = pc + 1;
+				setValuePP(op,(getValuePP(op) - 1) & 0xffff);
+				return 6;
+
+			// RRCA
+			case	0x0F:
+				PC = pc + 1;
+				rrca();
+				return 4;
+
+			// LD (DE),A
+			case	0x12:
+				PC = pc + 1;
+				setByte(DE,A);
+				return 7;
+
+			// RLA
+			case	0x17:
+				PC = pc + 1;
+				rla();
+				return 4;
+
+			// LD A,(DE)
+			case	0x1A:
+				PC = pc + 1;
+				A = getByte(DE);
+				return 7;
+
+			// RRA
+			case	0x1F:
+				PC = pc + 1;
+				rra();
+				return 4;
+
+			// LD (word),HL
+			case	0x22:
+				PC = pc + 3;
+				setWord(getWord(pc+1),HL);
+				return 16;
+
+			// DAA
+			case	0x27:
+				PC = pc + 1;
+				daa();
+				return 4;
+
+			// LD HL,(word)
+			case	0x2A:
+				PC = pc + 3;
+				HL = getWord(getWord(pc+1));
+				return 16;
+
+			// CPL
+			case	0x2F:
+				PC = pc + 1;
+				cpl();
+				return 4;
+
+			// LD (word),A
+			case	0x32:
+				PC = pc + 3;
+				setByte(getWord(pc+1),A);
+				return 13;
+
+			// INC (HL)
+			case	0x34:
+				PC = pc + 1;
+				v = HL;
+				setByte(v,inc(getByte(v)));
+				return 11;
+
+			// LD (HL),byte
+			case	0x36:
+				PC = pc + 2;
+				setByte(HL,getByte(pc+1));
+				return 10;
+
+			// SCF
+			case	0x37:
+				PC = pc + 1;
+				scf();
+				return 4;
+
+			// LD A,(word)
+			case	0x3A:
+				PC = pc + 3;
+				A = getByte(getWord(pc+1));
+				return 13;
+
+			// CCF
+			case	0x3F:
+				PC = pc + 1;
+				ccf();
+				return 4;
+
+			// LD r,r
+			case	0x40:
+			case	0x41:
+			case	0x42:
+			case	0x43:
+			case	0x44:
+			case	0x45:
+			case	0x47:
+			case	0x48:
+			case	0x49:
+			case	0x4A:
+			case	0x4B:
+			case	0x4C:
+			case	0x4D:
+			case	0x4F:
+			case	0x50:
+			case	0x51:
+			case	0x52:
+			case	0x53:
+			case	0x54:
+			case	0x55:
+			case	0x57:
+			case	0x58:
+			case	0x59:
+			case	0x5A:
+			case	0x5B:
+			case	0x5C:
+			case	0x5D:
+			case	0x5F:
+			case	0x60:
+			case	0x61:
+			case	0x62:
+			case	0x63:
+			case	0x64:
+			case	0x65:
+			case	0x67:
+			case	0x68:
+			case	0x69:
+			case	0x6A:
+			case	0x6B:
+			case	0x6C:
+			case	0x6D:
+			case	0x6F:
+			case	0x78:
+			case	0x79:
+			case	0x7A:
+			case	0x7B:
+			case	0x7C:
+			case	0x7D:
+			case	0x7F:
+				PC = pc + 1;
+				setValueRRR(op >> 3,getValueRRR(op));
+				return 4;
+
+			// LD r,(HL)
+			case	0x46:
+			case	0x4E:
+			case	0x56:
+			case	0x5E:
+			case	0x66:
+			case	0x6E:
+			case	0x7E:
+				PC = pc + 1;
+				setValueRRR(op >> 3,getByte(HL));
+				return 7;
+
+			// LD (HL),r
+			case	0x70:
+			case	0x71:
+			case	0x72:
+			case	0x73:
+			case	0x74:
+			case	0x75:
+			case	0x77:
+				PC = pc + 1;
+				setByte(HL,getValueRRR(op));
+				return 7;
+
+			// HALT
+			case	0x76:
+				PC = pc + 1;
+				halt();
+				return 10;
+
+			// ADD A,r
+			case	0x80:
+			case	0x81:
+			case	0x82:
+			case	0x83:
+			case	0x84:
+			case	0x85:
+			case	0x86:
+			case	0x87:
+				PC = pc + 1;
+				adc8(getValueRRR(op),0);
+				return 4;
+
+			// ADC A,r
+			case	0x88:
+			case	0x89:
+			case	0x8A:
+			case	0x8B:
+			case	0x8C:
+			case	0x8D:
+			case	0x8E:
+			case	0x8F:
+				PC = pc + 1;
+				adc8(getValueRRR(op),carry());
+				return 4;
+
+			// SUB A,r
+			case	0x90:
+			case	0x91:
+			case	0x92:
+			case	0x93:
+			case	0x94:
+			case	0x95:
+			case	0x96:
+			case	0x97:
+				PC = pc + 1;
+				sbc8(getValueRRR(op),0);
+				return 4;
+
+			// SBC A,r
+			case	0x98:
+			case	0x99:
+			case	0x9A:
+			case	0x9B:
+			case	0x9C:
+			case	0x9D:
+			case	0x9E:
+			case	0x9F:
+				PC = pc + 1;
+				sbc8(getValueRRR(op),carry());
+				return 4;
+
+			// AND r
+			case	0xA0:
+			case	0xA1:
+			case	0xA2:
+			case	0xA3:
+			case	0xA4:
+			case	0xA5:
+			case	0xA6:
+			case	0xA7:
+				PC = pc + 1;
+				and(getValueRRR(op));
+				return 4;
+
+			// XOR A,r
+			case	0xA8:
+			case	0xA9:
+			case	0xAA:
+			case	0xAB:
+			case	0xAC:
+			case	0xAD:
+			case	0xAE:
+			case	0xAF:
+				PC = pc + 1;
+				xor(getValueRRR(op));
+				return 4;
+
+			// OR A,r
+			case	0xB0:
+			case	0xB1:
+			case	0xB2:
+			case	0xB3:
+			case	0xB4:
+			case	0xB5:
+			case	0xB6:
+			case	0xB7:
+				PC = pc + 1;
+				or(getValueRRR(op));
+				return 4;
+
+			// CP r
+			case	0xB8:
+			case	0xB9:
+			case	0xBA:
+			case	0xBB:
+			case	0xBC:
+			case	0xBD:
+			case	0xBE:
+			case	0xBF:
+				PC = pc + 1;
+				cp(getValueRRR(op));
+				return 4;
+
+			// RET ccc
+			case	0xC0:
+			case	0xC8:
+			case	0xD0:
+			case	0xD8:
+			case	0xE0:
+			case	0xE8:
+			case	0xF0:
+			case	0xF8:
+				PC = pc + 1;
+				if (getFlagCCC(op))
+				{
+					PC = pop();
+					return 11;
+				}
+				return 5;
+
+			// POP qq
+			case	0xC1:
+			case	0xD1:
+			case	0xE1:
+			case	0xF1:
+				PC = pc + 1;
+				setValueQQ(op,pop());
+				return 10;
+
+			// JP ccc,word
+			case	0xC2:
+			case	0xCA:
+			case	0xD2:
+			case	0xDA:
+			case	0xE2:
+			case	0xEA:
+			case	0xF2:
+			case	0xFA:
+				PC = pc + 3;
+				if (getFlagCCC(op))
+				{
+					PC = getWord(pc+1);
+					return 10;
+				}
+				return 3;
+
+			// JP word
+			case	0xC3:
+				PC = getWord(pc+1);
+				return 10;
+
+			// CALL ccc,word
+			case	0xC4:
+			case	0xCC:
+			case	0xD4:
+			case	0xDC:
+			case	0xE4:
+			case	0xEC:
+			case	0xF4:
+			case	0xFC:
+				PC = pc + 3;
+				if (getFlagCCC(op))
+					return call(getWord(pc+1));
+				return 10;
+
+			// PUSH qq
+			case	0xC5:
+			case	0xD5:
+			case	0xE5:
+			case	0xF5:
+				PC = pc + 1;
+				push(getValueQQ(op));
+				return 11;
+
+			// ADD A,byte
+			case	0xC6:
+				PC = pc + 2;
+				adc8(getByte(pc+1),0);
+				return 7;
+
+			// RST
+			case	0xC7:
+			case	0xCF:
+			case	0xD7:
+			case	0xDF:
+			case	0xE7:
+			case	0xEF:
+			case	0xF7:
+			case	0xFF:
+				PC = pc + 1;
+				push(PC);
+				PC = op & 0x38;
+				return 11;
+
+			// RET
+			case	0xC9:
+				PC = pc + 1;
+				PC = pop();
+				return 10;
+
+			// CALL word
+			case	0xCD:
+				PC = pc + 3;
+				return call(getWord(pc+1));
+
+			// ADC A,byte
+			case	0xCE:
+				PC = pc + 2;
+				adc8(getByte(pc+1),carry());
+				return 7;
+
+			// OUT (byte)
+			case	0xD3:
+				PC = pc + 2;
+				out(getByte(pc+1),0,A);
+				return 11;
+
+			// SUB A,byte
+			case	0xD6:
+				PC = pc + 2;
+				sbc8(getByte(pc+1),0);
+				return 7;
+
+			// IN (byte)
+			case	0xDB:
+				PC = pc + 2;
+				A = in(getByte(pc+1),A);
+				return 11;
+
+			// SBC A,byte
+			case	0xDE:
+				PC = pc + 2;
+				sbc8(getByte(pc+1),carry());
+				return 7;
+
+			// EX (SP),HL
+			case	0xE3:
+				PC = pc + 1;
+				v = getByte(SP);
+				setByte(SP,HL & 0xFF);
+				l(v);
+				v = getByte(SP+1);
+				setByte(SP+1,HL >>> 8);
+				h(v);
+				return 19;
+
+			// AND A,byte
+			case	0xE6:
+				PC = pc + 2;
+				and(getByte(pc+1));
+				return 7;
+
+			// JP HL
+			case	0xE9:
+				PC = HL;
+				return 10;
+
+			// EX DE,HL
+			case	0xEB:
+				PC = pc + 1;
+				v = HL;
+				HL = DE;
+				DE = v;
+				return 4;
+
+			// XOR A,byte
+			case	0xEE:
+				PC = pc + 2;
+				xor(getByte(pc+1));
+				return 7;
+
+			// DI
+			case	0xF3:
+				PC = pc + 1;
+				iff1 = iff2 = false;
+				return 4;
+
+			// OR A,byte
+			case	0xF6:
+				PC = pc + 2;
+				or(getByte(pc+1));
+				return 7;
+
+			// LD SP,HL
+			case	0xF9:
+				PC = pc + 1;
+				SP = HL;
+				return 6;
+
+			// EI
+			case	0xFB:
+				PC = pc + 1;
+				iff1 = iff2 = true;
+				return 4;
+
+			// CP byte
+			case	0xFE:
+				PC = pc + 2;
+				cp(getByte(pc+1));
+				return 7;
+
+			default:
+				return execOpcode(pc);
+		}
+	}
+
 	public int fireISR(Interrupt isr) throws SIMException
 	{
 		iff2 = iff1 = false;
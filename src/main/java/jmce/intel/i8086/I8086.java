@@ -104,7 +104,9 @@ public class I8086 extends AbstractCPU implements I8086Constants
 		setMemory(m);
 
 		/** Set memory name using segment:address format */
-		for (int i = 0 ; i < m.getSize() ; i++)
+		if (m instanceof AbstractMemory)
+			((AbstractMemory)m).setMemoryNameSegment(16);
+		else for (int i = 0 ; i < m.getSize() ; i++)
 		{
 			m.setMemoryName(i,Hex.formatWord((i & 0xffff0000) >>> 4)+":"+Hex.formatWord(i & 0xffff));
 		}			
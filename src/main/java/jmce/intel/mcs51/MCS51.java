@@ -26,6 +26,8 @@
 */
 package jmce.intel.mcs51;
 
+import java.util.Arrays;
+
 import jmce.sim.CPU;
 import jmce.sim.CPUException;
 import jmce.sim.CallListener;
@@ -71,6 +73,11 @@ import jmce.util.Logger;
  * when accessed in direct mode the first 128 byte reference the DATA
  * memory the other 128 byte (Location from 128 to 255) reference the
  * SFR memory.
+ * <p>
+ * Since 1.03 the default SFR memory is a {@link SfrMemory}, the
+ * registers without listener (ACC, B, PSW, SP, DPTR ...) are accessed
+ * directly in its array and only the registers of the peripherals call
+ * the memory listeners.
  * 
  * <h3>Implemented peripheral :</h3>
  * <ul>
@@ -108,6 +115,15 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 
 	/** Memories */
 	private Memory data = null ,sfr = null ,xdata = null;
+
+	/** Value of the SFR when the memory is a SfrMemory */
+	private int sfrs[] = new int[SfrMemory.SIZE];
+
+	/** True for the SFR that must be read using the memory */
+	private boolean sfrRead[] = new boolean[SfrMemory.SIZE];
+
+	/** True for the SFR that must be written using the memory */
+	private boolean sfrWrite[] = new boolean[SfrMemory.SIZE];
 	
 	@SuppressWarnings("unused")
 	private Register RPC,RSP,RA,RB,RPSW;
@@ -152,13 +168,13 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 
 		public final void setRegister(int value) throws SIMException
 		{
-			setIndex((sfr.getMemory(PSW) & 0x18) + r);
+			setIndex((sfr(PSW) & 0x18) + r);
 			super.setRegister(value);
 		}
 
 		public final int getRegister() throws SIMException
 		{
-			setIndex((sfr.getMemory(PSW) & 0x18) + r);
+			setIndex((sfr(PSW) & 0x18) + r);
 			return super.getRegister();
 		}
 		
@@ -231,10 +247,30 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 
 	/**
 	 * Setr the memory used as SFR.
-	 */ 
+	 * <p>
+	 * Since 1.03 when the memory is a SfrMemory the registers without
+	 * listener are accessed directly in the array of the memory,
+	 * otherwise every access use the memory interface.
+	 */
 	protected void setSfr(Memory m)
 	{
 		sfr = m;
+
+		if (m instanceof SfrMemory)
+		{
+			SfrMemory f = (SfrMemory)m;
+			sfrs = f.reg;
+			sfrRead = f.readHook;
+			sfrWrite = f.writeHook;
+		}
+		else
+		{
+			sfrs = new int[SfrMemory.SIZE];
+			sfrRead = new boolean[SfrMemory.SIZE];
+			sfrWrite = new boolean[SfrMemory.SIZE];
+			Arrays.fill(sfrRead,true);
+			Arrays.fill(sfrWrite,true);
+		}
 	}
 
 
@@ -267,7 +303,10 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 	 */
 	public final int sfr(int add) throws SIMException
 	{
-		return sfr.getMemory(add);
+		if (sfrRead[add])
+			return sfr.getMemory(add);
+
+		return sfrs[add];
 				
 	}
 
@@ -276,7 +315,38 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 	 */
 	public final void sfr(int add,int value) throws SIMException
 	{
-		sfr.setMemory(add,value);
+		if (sfrWrite[add])
+			sfr.setMemory(add,value);
+		else
+			sfrs[add] = value & 0xff;
+	}
+
+	/**
+	 * Set bits in one SFR without calling the read listeners like
+	 * Memory.setBit().
+	 *
+	 * @since 1.03
+	 */
+	private final void sfrOr(int add,int mask) throws SIMException
+	{
+		if (sfrWrite[add])
+			sfr.setBit(add,mask);
+		else
+			sfrs[add] |= mask;
+	}
+
+	/**
+	 * Reset bits in one SFR without calling the read listeners like
+	 * Memory.clrBit().
+	 *
+	 * @since 1.03
+	 */
+	private final void sfrAnd(int add,int mask) throws SIMException
+	{
+		if (sfrWrite[add])
+			sfr.clrBit(add,mask);
+		else
+			sfrs[add] &= ~mask;
 	}
 
 
@@ -612,9 +682,9 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 		if (add >= 128)
 		{
 			if (value)
-				sfr.setBit(add,mask);
+				sfrOr(add,mask);
 			else
-				sfr.clrBit(add,mask);
+				sfrAnd(add,mask);
 		}
 		else
 		{
@@ -748,7 +818,7 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 		 * 128 bytes are used.
 		 */
 		if (m == null)
-			m = (Memory)addHardware(new PlainMemory(SFR_MEMORY,256));
+			m = (Memory)addHardware(new SfrMemory(SFR_MEMORY));
 		setSfr(m);
 		setIO(m);
 		
@@ -963,7 +1033,7 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 	 */
 	public void sfrReset(int sfr,int mask) throws SIMException
 	{
-		this.sfr.clrBit(sfr,mask);
+		sfrAnd(sfr,mask);
 	}
 
 	/**
@@ -974,7 +1044,7 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 	 */
 	public void sfrSet(int sfr,int mask) throws SIMException
 	{
-		this.sfr.setBit(sfr,mask);
+		sfrOr(sfr,mask);
 	}
 
 	public OpenCollectorMemoryBit getSfrBitOpenCollector(int address,int bit)
@@ -1022,12 +1092,12 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 
 	protected final int r(int r) throws SIMException
 	{
-		return data.getMemory((sfr.getMemory(PSW) & 0x18) + r);
+		return data.getMemory((sfr(PSW) & 0x18) + r);
 	}
 
 	protected final void r(int r,int n) throws SIMException
 	{
-		data.setMemory((sfr.getMemory(PSW) & 0x18) + r,n);
+		data.setMemory((sfr(PSW) & 0x18) + r,n);
 	}
 	
 	public void code(int addr,int value) throws SIMException
@@ -1040,7 +1110,7 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 	 */
 	protected final int acc() throws SIMException
 	{
-		return sfr.getMemory(ACC);
+		return sfr(ACC);
 	}
 
 	/**
@@ -1048,7 +1118,7 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 	 */
 	protected final void acc(int value) throws SIMException
 	{
-		sfr.setMemory(ACC,value);
+		sfr(ACC,value);
 	}
 
 	/**
@@ -1056,7 +1126,7 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 	 */
 	private final int b() throws SIMException
 	{
-		return sfr.getMemory(B);
+		return sfr(B);
 	}
 
 	/**
@@ -1064,7 +1134,7 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 	 */
 	private final void b(int value) throws SIMException
 	{
-		sfr.setMemory(B,value);
+		sfr(B,value);
 	}
 
 	/**
@@ -1072,7 +1142,7 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 	 */
 	private final int dptr() throws SIMException
 	{
-		return sfr.getMemory(DPH) << 8 | sfr.getMemory(DPL);
+		return sfr(DPH) << 8 | sfr(DPL);
 	}
 
 	/**
@@ -1080,8 +1150,8 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 	 */
 	private final void dptr(int value) throws SIMException
 	{
-		sfr.setMemory(DPH,value >>> 8);
-		sfr.setMemory(DPL,value);
+		sfr(DPH,value >>> 8);
+		sfr(DPL,value);
 	}
 
 	/**
@@ -1089,7 +1159,7 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 	 */
 	public final int psw() throws SIMException
 	{
-		return sfr.getMemory(PSW);
+		return sfr(PSW);
 	}
 
 	/**
@@ -1097,22 +1167,25 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 	 */
 	public final void psw(int value) throws SIMException
 	{
-		sfr.setMemory(PSW,value);
+		sfr(PSW,value);
 
 	}
 
 	public final void cy(boolean value) throws SIMException
 	{
 		if (value)
-			sfr.setBit(PSW,PSW_CY);
+			sfrOr(PSW,PSW_CY);
 		else
-			sfr.clrBit(PSW,PSW_CY);
+			sfrAnd(PSW,PSW_CY);
 
 	}
 
 	public final boolean cy() throws SIMException
 	{
-		return sfr.isBit(PSW,PSW_CY);
+		if (sfrRead[PSW])
+			return sfr.isBit(PSW,PSW_CY);
+
+		return (sfrs[PSW] & PSW_CY) != 0;
 	}
 
 	public final void ac(boolean value) throws SIMException
@@ -1198,7 +1271,7 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 	 */
 	public final int popw() throws SIMException
 	{
-		int sp = sfr.getMemory(SP);
+		int sp = sfr(SP);
 		int value = data(sp) << 8;
 
 		if (--sp < 0)
@@ -1207,7 +1280,7 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 
 		if (--sp < 0)
 			throw new CPUException(this,"Stack underflow at "+RPC.hexValue());
-		sfr.setMemory(SP,sp);
+		sfr(SP,sp);
 		
 		return value;
 
@@ -1218,11 +1291,11 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 	 */
 	public final int pop() throws SIMException
 	{
-		int sp = sfr.getMemory(SP);
+		int sp = sfr(SP);
 		int value = data(sp);
 		if (--sp < 0)
 			throw new CPUException(this,"Stack underflow at "+RPC.hexValue());
-		sfr.setMemory(SP,sp);
+		sfr(SP,sp);
 
 		return value;
 	}
@@ -1232,14 +1305,14 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 	 */
 	public final void pushw(int value) throws SIMException
 	{
-		int sp = sfr.getMemory(SP);
+		int sp = sfr(SP);
 		if (++sp > 255)
 			throw new CPUException(this,"Stack overflow at "+RPC.hexValue());
 		data(sp,value);
 		if (++sp > 255)
 			throw new CPUException(this,"Stack overflow at "+RPC.hexValue());
 		data(sp,value >> 8);
-		sfr.setMemory(SP,sp);
+		sfr(SP,sp);
 	}
 
 	/**
@@ -1247,11 +1320,11 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 	 */
 	public final void push(int value) throws SIMException
 	{
-		int sp = sfr.getMemory(SP);
+		int sp = sfr(SP);
 		if (++sp > 255)
 			throw new CPUException(this,"Stack overflow at "+RPC.hexValue());
 		data(sp,value);
-		sfr.setMemory(SP,sp);
+		sfr(SP,sp);
 	}
 
 	
@@ -1287,14 +1360,16 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 			CallListener l = getCallListener(address);
 			
 			if (l != null)
-				return l.call(MCS51.this,address);
-			else
 			{
-				pushw(pc+2);
-				pc(getAddress(pc));
-
-				return times;
+				int n = l.call(MCS51.this,address);
+				if (n >= 0)
+					return n;
 			}
+
+			pushw(pc+2);
+			pc(address);
+
+			return times;
 		}
 
 	}
@@ -2477,14 +2552,16 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 			CallListener l = getCallListener(address);
 
 			if (l != null)
-				return l.call(MCS51.this,address);
-			else
 			{
-				pushw(pc+3);
-				pc(address);
-			
-				return times;
+				int n = l.call(MCS51.this,address);
+				if (n >= 0)
+					return n;
 			}
+
+			pushw(pc+3);
+			pc(address);
+			
+			return times;
 		}
 
 	}
@@ -2911,7 +2988,7 @@ public class MCS51 extends AbstractCPU implements MCS51Constants
 
 	public void sfrSetBit(int add,int mask) throws SIMException
 	{
-		sfr.setBit(add,mask);
+		sfrOr(add,mask);
 	}
 
 	/**
@@ -109,7 +109,7 @@ public class Serial extends jmce.sim.Serial implements MemoryReadListener, Memor
 	}
 
 	@Override
-	public void writeInput(Integer c) throws SIMException {
+	public void writeInput(int c) throws SIMException {
 		super.writeInput(c);
 		feedCpu();
 	}
@@ -123,7 +123,7 @@ public class Serial extends jmce.sim.Serial implements MemoryReadListener, Memor
 		}
 
 		if (readyRead()) {
-			sbuf = read();
+			sbuf = readByte();
 			sbufSent = false;
 			cpu.setIOByte(SCON, cpu.getIOByte(SCON) | SCON_RI);
 		}
@@ -153,8 +153,11 @@ public class Serial extends jmce.sim.Serial implements MemoryReadListener, Memor
 				break;
 
 			case SBUF:
+				/** Timer overflow before the write do not belong to this transmission */
+				cpu.syncCycles();
 				sbuf = v;
 				startTxClockCounter();
+				cpu.syncCycles();
 				break;
 				
 			case PCON:
@@ -259,6 +262,18 @@ public class Serial extends jmce.sim.Serial implements MemoryReadListener, Memor
 						}
 					}
 				}
+
+				/**
+				 * Return the number of overflow till the end of the current transmission.
+				 */
+				@Override
+				public int getOverflowDeadline(final int timer) {
+					if (timer == 0 || txClockCounter == -1) {
+						return Integer.MAX_VALUE;
+					}
+
+					return divider + 1 + smodCounter * 17 + txClockCounter * 17 * (smod ? 1 : 2);
+				}
 			};
 			timer.addOverflowListener(listener);
 		}
@@ -0,0 +1,139 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.intel.mcs51;
+
+import java.util.Arrays;
+
+import jmce.sim.SIMException;
+import jmce.sim.Snapshot;
+import jmce.sim.Snapshottable;
+import jmce.sim.memory.AbstractMemory;
+
+/**
+ * Special function register file of the MCS51.
+ * <p>
+ * The registers are stored in one primitive array that the cpu access
+ * directly. For every address the memory keep one read and one write
+ * flag, set when at the address is registered one listener, the
+ * register is read only or the memory is mapped. Only when the flag is
+ * set the cpu use the standard memory interface and the listeners
+ * registered by the peripherals are called, so register like ACC, PSW,
+ * B, SP and DPTR are always accessed as plain array elements.
+ * <p>
+ * The flags are updated by the memory every time one hook change.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ * @since 1.03
+ */
+public class SfrMemory extends AbstractMemory implements Snapshottable
+{
+	/** Number of SFR, only the upper 128 are used */
+	static public final int SIZE = 256;
+
+	/** Value of the registers */
+	final int reg[] = new int[SIZE];
+
+	/** True if the read of the register must use the memory interface */
+	final boolean readHook[] = new boolean[SIZE];
+
+	/** True if the write of the register must use the memory interface */
+	final boolean writeHook[] = new boolean[SIZE];
+
+	/**
+	 * Constructor with memory name.
+	 */
+	public SfrMemory(String name)
+	{
+		super(name);
+		setSize(SIZE);
+		Arrays.fill(reg,0xff);
+	}
+
+	protected void set(int a,int v)
+	{
+		reg[a] = v & 0xff;
+	}
+
+	protected int get(int a)
+	{
+		return reg[a];
+	}
+
+	/**
+	 * Update the flags of the changed address.
+	 */
+	@Override
+	protected void hooksChanged(int a)
+	{
+		if (a < 0)
+		{
+			for (int i = 0 ; i < SIZE ; i++)
+				updateHooks(i);
+		}
+		else if (a < SIZE)
+			updateHooks(a);
+	}
+
+	private void updateHooks(int a)
+	{
+		boolean mapped = isVirtual() || mapMemory(a) != this;
+
+		readHook[a] = mapped || getMemoryReadListenerCount() > 0 || getMemoryReadListenerCount(a) > 0;
+		writeHook[a] = mapped || getMemoryWriteListenerCount() > 0 || getMemoryWriteListenerCount(a) > 0 || getReadOnly(a);
+	}
+
+	/**
+	 * Reset the memory to initial state. Fill the registers with 0xff
+	 */
+	@Override
+	public void reset() throws SIMException
+	{
+		super.reset();
+		Arrays.fill(reg,0xff);
+		newGeneration();
+	}
+
+	/**
+	 * Save the value of the registers.
+	 */
+	public void saveState(Snapshot s) throws SIMException
+	{
+		s.putPages(reg,0,SIZE);
+	}
+
+	/**
+	 * Restore the value of the registers.
+	 */
+	public void loadState(Snapshot s) throws SIMException
+	{
+		int m[] = s.getPages();
+
+		System.arraycopy(m,0,reg,0,Math.min(m.length,SIZE));
+		newGeneration();
+	}
+}
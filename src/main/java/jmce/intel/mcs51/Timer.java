@@ -31,26 +31,40 @@ import java.util.List;
 
 import jmce.sim.AbstractPeripheral;
 import jmce.sim.CPU;
-import jmce.sim.CycleListener;
 import jmce.sim.Memory;
 import jmce.sim.MemoryReadListener;
 import jmce.sim.MemoryWriteListener;
 import jmce.sim.SIMException;
+import jmce.sim.ScheduledCycleListener;
+import jmce.sim.Snapshot;
+import jmce.sim.Snapshottable;
 import jmce.sim.TimerOverflowListener;
 
 /**
  * Standard Timer0/Timer1  for 8051 family. <p>
  *
  * For each timer only MODE 0,MODE 1 and MODE 2 are supported.
+ * <p>
+ * Since 1.03 the timers are not advanced after every instruction. The
+ * counters are updated from the cpu cycles only when one of the timer
+ * SFR is accessed and the cpu call the timer only at the next overflow
+ * that set TF or that is waited by one overflow listener. A stopped
+ * timer or a running timer with TF already set cost nothing.
  *
  * @author Mario Viara
- * @version 1.00
+ * @version 1.03
  *
  */
-public class Timer extends AbstractPeripheral implements CycleListener
+public class Timer extends AbstractPeripheral implements ScheduledCycleListener,Snapshottable,MCS51Constants
 {
 	private MCS51 mcs51;
 	private List<TimerOverflowListener> overflowListeners = new ArrayList<TimerOverflowListener>();
+
+	/** True when the timers are updated by the cpu */
+	private boolean inCycle = false;
+
+	/** True when TF must not be changed by the elapsed overflow */
+	private boolean tfLocked = false;
 	
 	/**
 	 * Implementation of single timer.
@@ -58,7 +72,7 @@ public class Timer extends AbstractPeripheral implements CycleListener
 	 * Support Timer mode 0,1,2
 	 * 
 	 * @author Mario Viara
-	 * @version 1.00
+	 * @version 1.03
 	 */
 	class SingleTimer implements MCS51Constants
 	{
@@ -105,132 +119,209 @@ public class Timer extends AbstractPeripheral implements CycleListener
 			irq.addInterruptCondition(IE,ET);
 			irq.addInterruptCondition(TCON,TF);
 			
-			cpu.addIOWriteListener(TCON,new MemoryWriteListener()
-			{
-				public void writeMemory(Memory m,int r,int v,int oldValue)
-				{
-					tcon = v >> tconShift;
-
-				}
-			});
-
 			cpu.addIOWriteListener(TMOD,new MemoryWriteListener()
 			{
-				public void writeMemory(Memory m,int r,int v,int oldValue)
+				public void writeMemory(Memory m,int r,int v,int oldValue) throws SIMException
 				{
+					mcs51.syncCycles();
 					tmod = v >> tmodShift;
+					mcs51.syncCycles();
 
 				}
 			});
 
 			cpu.addIOReadListener(TH0+timer,new MemoryReadListener()
 			{
-				public int readMemory(Memory m,int r,int v)
+				public int readMemory(Memory m,int r,int v) throws SIMException
 				{
+					mcs51.syncCycles();
 					return TH;
 				}
 			});
 
 			cpu.addIOWriteListener(TH0+timer,new MemoryWriteListener()
 			{
-				public void writeMemory(Memory m,int r,int v,int oldValue)
+				public void writeMemory(Memory m,int r,int v,int oldValue) throws SIMException
 				{
+					mcs51.syncCycles();
 					TH = v;
+					mcs51.syncCycles();
 				}
 			});
 
 			cpu.addIOReadListener(TL0+timer,new MemoryReadListener()
 			{
-				public int readMemory(Memory m,int r,int v)
+				public int readMemory(Memory m,int r,int v) throws SIMException
 				{
+					mcs51.syncCycles();
 					return TL;
 				}
 			});
 
 			cpu.addIOWriteListener(MCS51Constants.TL0+timer,new MemoryWriteListener()
 			{
-				public void writeMemory(Memory m,int r,int v,int oldValue)
+				public void writeMemory(Memory m,int r,int v,int oldValue) throws SIMException
 				{
+					mcs51.syncCycles();
 					TL = v;
+					mcs51.syncCycles();
 				}
 			});
 
 		}
 
 		/**
-		 * Called at every istruction cycle
+		 * Return the number of cycles till the next overflow.
+		 */
+		private int getOverflowCycles()
+		{
+			switch (tmod & (TMOD_T0_M0 | TMOD_T0_M1))
+			{
+				case	0:
+					return 0x2000 - ((TH << 5) + (TL & 0x1f));
+				case	TMOD_T0_M0:
+					return 0x10000 - ((TH << 8) | TL);
+				case	TMOD_T0_M1:
+					return 0x100 - TL;
+			}
+
+			return Integer.MAX_VALUE;
+		}
+
+		/**
+		 * Return the number of cycles between two overflow.
+		 */
+		private int getOverflowPeriod()
+		{
+			switch (tmod & (TMOD_T0_M0 | TMOD_T0_M1))
+			{
+				case	0:
+					return 0x2000;
+				case	TMOD_T0_M0:
+					return 0x10000;
+				case	TMOD_T0_M1:
+					return 0x100 - TH;
+			}
+
+			return Integer.MAX_VALUE;
+		}
+
+		/**
+		 * Return the number of cycles till the next overflow that
+		 * change the state of the cpu or of one listener.
+		 */
+		int getCycleDeadline()
+		{
+			// Nothing to do if the timer is not running
+			if ((tcon & TCON_TR0) == 0)
+				return Integer.MAX_VALUE;
+
+			/** When TF is already set only the listeners can wait one overflow */
+			int n = (tcon & TCON_TF0) == 0 ? 1 : Integer.MAX_VALUE;
+
+			for (int i = 0 ; i < overflowListeners.size() ; i++)
+				n = Math.min(n,overflowListeners.get(i).getOverflowDeadline(timer));
+
+			if (n == Integer.MAX_VALUE)
+				return Integer.MAX_VALUE;
+
+			long d = getOverflowCycles() + (long)(n - 1) * getOverflowPeriod();
+
+			return d > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int)d;
+		}
+
+		/**
+		 * Advance the timer of the elapsed cycles.
 		 */
 		final void cycle(int n)  throws SIMException
 		{
-			int tl;
+			int count,overflow = 0;
 
 			// Do nothing if timer is not running
-			if ((tcon & TCON_TR0) == 0)
+			if ((tcon & TCON_TR0) == 0 || n <= 0)
 				return;
 
 
 			switch (tmod & (TMOD_T0_M0 | TMOD_T0_M1))
 			{
 				case	0:	// 13 bit timer
-					tl = TL + n;
-					TL = tl & 0x1f;
-
-					if (tl > 0x1f)
-					{
-						TH = (TH + 1) & 0xff;
-						if (TH == 0)
-						{
-							//System.out.println("Timer"+timer+" TF13");
-							overflow();
-						}
-					}
-
+					count = (TH << 5) + (TL & 0x1f) + n;
+					overflow = count >>> 13;
+					TH = (count >>> 5) & 0xff;
+					TL = count & 0x1f;
 					break;
 
 					// Mode 1
 				case	TMOD_T0_M0:
-					tl = TL + n;
-					TL= tl & 0xff;
-					if (tl > 255)
-					{
-
-						TH = (TH + 1) & 0xff;
-						if (TH == 0)
-						{
-							overflow();
-						}
-					}
+					count = ((TH << 8) | TL) + n;
+					overflow = count >>> 16;
+					TH = (count >>> 8) & 0xff;
+					TL = count & 0xff;
 					break;
 
 					// Mode 2
 				case	TMOD_T0_M1:
-					tl = TL;
+					count = TL + n;
 
-					while (n-- > 0)
+					if (count > 0xff)
 					{
-						tl = (tl + 1) & 0xff;
-
-						if (tl == 0)
-						{
-							tl = TL = TH;
-							overflow();
-						}
-
+						int period = 0x100 - TH;
+						count -= 0x100;
+						overflow = 1 + count / period;
+						count = TH + count % period;
 					}
-					TL = tl;
+
+					TL = count;
 					break;
 
 			}
 
+			if (overflow > 0)
+				overflow(overflow);
+
 		}
 
 
-		private void overflow() throws SIMException {
-			mcs51.sfrSet(TCON,TF);
-			callOverflowListeners(timer);
+		private void overflow(int n) throws SIMException {
+			if (!tfLocked)
+				mcs51.sfrSet(TCON,TF);
 
+			while (n-- > 0)
+				callOverflowListeners(timer);
+
+		}
+
+		/**
+		 * Update the copy of TCON.
+		 */
+		void setTcon(int v)
+		{
+			tcon = v >> tconShift;
+		}
+
+		/**
+		 * Return the TF bit in TCON position.
+		 */
+		int getTF()
+		{
+			return (tcon << tconShift) & TF;
+		}
+
+		void saveState(Snapshot s) throws SIMException
+		{
+			s.putInt(TH);
+			s.putInt(TL);
+			s.putInt(tcon);
+			s.putInt(tmod);
 		}
 
+		void loadState(Snapshot s) throws SIMException
+		{
+			TH = s.getInt();
+			TL = s.getInt();
+			tcon = s.getInt();
+			tmod = s.getInt();
+		}
 
 	}
 
@@ -255,16 +346,102 @@ public class Timer extends AbstractPeripheral implements CycleListener
 		this.mcs51 = (MCS51)cpu;
 		timer0.registerCPU(mcs51);
 		timer1.registerCPU(mcs51);
+
+		cpu.addIOWriteListener(TCON,new MemoryWriteListener()
+		{
+			public void writeMemory(Memory m,int r,int v,int oldValue) throws SIMException
+			{
+				/**
+				 * Overflow set by the timers do not change the
+				 * deadline, write of the program to TR or TF do.
+				 */
+				if (inCycle || ((v ^ oldValue) & (TCON_TR0|TCON_TF0|TCON_TR1|TCON_TF1)) == 0)
+				{
+					timer0.setTcon(v);
+					timer1.setTcon(v);
+					return;
+				}
+
+				/** Elapsed overflow do not change the TF written now */
+				tfLocked = true;
+				try
+				{
+					mcs51.syncCycles();
+				}
+				finally
+				{
+					tfLocked = false;
+				}
+				
+				timer0.setTcon(v);
+				timer1.setTcon(v);
+				mcs51.syncCycles();
+			}
+		});
+
+		cpu.addIOReadListener(TCON,new MemoryReadListener()
+		{
+			public int readMemory(Memory m,int r,int v) throws SIMException
+			{
+				mcs51.syncCycles();
+
+				return (v & ~(TCON_TF0|TCON_TF1)) | timer0.getTF() | timer1.getTF();
+			}
+		});
 		
 	}
 
 
 	public final void cycle(int n) throws SIMException
 	{
-		timer0.cycle(n);
-		timer1.cycle(n);
+		inCycle = true;
+		try
+		{
+			timer0.cycle(n);
+			timer1.cycle(n);
+		}
+		finally
+		{
+			inCycle = false;
+		}
+	}
+
+	public int getCycleDeadline()
+	{
+		return Math.min(timer0.getCycleDeadline(),timer1.getCycleDeadline());
+	}
+
+	/**
+	 * Save the counters and the copy of TCON and TMOD.
+	 *
+	 * @since 1.03
+	 */
+	public void saveState(Snapshot s) throws SIMException
+	{
+		timer0.saveState(s);
+		timer1.saveState(s);
+	}
+
+	/**
+	 * Restore the counters and the copy of TCON and TMOD.
+	 *
+	 * @since 1.03
+	 */
+	public void loadState(Snapshot s) throws SIMException
+	{
+		timer0.loadState(s);
+		timer1.loadState(s);
 	}
 	
+	/**
+	 * Add a listener called at every overflow.
+	 * <p>
+	 * Since 1.03 the listeners are called when the timer is updated,
+	 * possibly some overflow later. A listener that need to be called
+	 * at the exact cycle must return from getOverflowDeadline() the
+	 * number of overflow it can wait and call CPU.syncCycles() when
+	 * this number change.
+	 */
 	public void addOverflowListener(final TimerOverflowListener listener) {
 		this.overflowListeners.add(listener);
 	}
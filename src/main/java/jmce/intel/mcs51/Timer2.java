@@ -31,16 +31,32 @@ import jmce.sim.*;
 /**
  *
  * Standard Intel 8052 Timer2.
+ * <p>
+ * Since 1.03 the counter is updated from the cpu cycles only when
+ * TL2, TH2 or T2CON are accessed and the cpu call the timer only at
+ * the overflow that set TF2.
  *
  * @author Mario Viara
- * @version 1.00
+ * @version 1.03
  */
-public class Timer2 extends AbstractPeripheral implements CycleListener,MCS52Constants
+public class Timer2 extends AbstractPeripheral implements ScheduledCycleListener,Snapshottable,MCS52Constants
 {
 	private Interrupt8051 irq;
 	private MCS52 mcs52;
 	private int t2 = 0;
 
+	/** Copy of T2CON */
+	private int t2con = 0;
+
+	/** Copy of RCAP2H/RCAP2L */
+	private int rcap2 = 0;
+
+	/** True when the timer is updated by the cpu */
+	private boolean inCycle = false;
+
+	/** True when TF2 must not be changed by the elapsed overflow */
+	private boolean tfLocked = false;
+
 	/**
 	 * Standard constructor
 	 */
@@ -71,8 +87,9 @@ public class Timer2 extends AbstractPeripheral implements CycleListener,MCS52Con
 
 		mcs52.addIOReadListener(TL2,new MemoryReadListener()
 		{
-			public int readMemory(Memory memory,int address,int value)
+			public int readMemory(Memory memory,int address,int value) throws SIMException
 			{
+				mcs52.syncCycles();
 				return t2 & 0xff;
 			}
 			
@@ -80,8 +97,9 @@ public class Timer2 extends AbstractPeripheral implements CycleListener,MCS52Con
 
 		mcs52.addIOReadListener(TH2,new MemoryReadListener()
 		{
-			public int readMemory(Memory memory,int address,int value)
+			public int readMemory(Memory memory,int address,int value) throws SIMException
 			{
+				mcs52.syncCycles();
 				return (t2 >>> 8 ) & 0xff;
 			}
 
@@ -90,18 +108,80 @@ public class Timer2 extends AbstractPeripheral implements CycleListener,MCS52Con
 
 		mcs52.addIOWriteListener(TL2,new MemoryWriteListener()
 		{
-			public void	writeMemory(Memory memory,int address,int value,int oldValue)
+			public void	writeMemory(Memory memory,int address,int value,int oldValue) throws SIMException
 			{
+				mcs52.syncCycles();
 				t2 = (t2 & 0xff00) | value;
+				mcs52.syncCycles();
 			}
 			
 		});
 
 		mcs52.addIOWriteListener(TH2,new MemoryWriteListener()
 		{
-			public void	writeMemory(Memory memory,int address,int value,int oldValue)
+			public void	writeMemory(Memory memory,int address,int value,int oldValue) throws SIMException
 			{
+				mcs52.syncCycles();
 				t2 = (t2 & 0x00ff) | (value << 8);
+				mcs52.syncCycles();
+			}
+
+		});
+
+		mcs52.addIOWriteListener(RCAP2L,new MemoryWriteListener()
+		{
+			public void	writeMemory(Memory memory,int address,int value,int oldValue) throws SIMException
+			{
+				mcs52.syncCycles();
+				rcap2 = (rcap2 & 0xff00) | value;
+			}
+			
+		});
+
+		mcs52.addIOWriteListener(RCAP2H,new MemoryWriteListener()
+		{
+			public void	writeMemory(Memory memory,int address,int value,int oldValue) throws SIMException
+			{
+				mcs52.syncCycles();
+				rcap2 = (rcap2 & 0x00ff) | (value << 8);
+			}
+
+		});
+
+		mcs52.addIOWriteListener(T2CON,new MemoryWriteListener()
+		{
+			public void	writeMemory(Memory memory,int address,int value,int oldValue) throws SIMException
+			{
+				/** The overflow set by the timer do not change the deadline */
+				if (inCycle || ((value ^ oldValue) & (T2CON_TF2|T2CON_TR2|T2CON_CP)) == 0)
+				{
+					t2con = value;
+					return;
+				}
+
+				/** Elapsed overflow do not change the TF2 written now */
+				tfLocked = true;
+				try
+				{
+					mcs52.syncCycles();
+				}
+				finally
+				{
+					tfLocked = false;
+				}
+
+				t2con = value;
+				mcs52.syncCycles();
+			}
+
+		});
+
+		mcs52.addIOReadListener(T2CON,new MemoryReadListener()
+		{
+			public int readMemory(Memory memory,int address,int value) throws SIMException
+			{
+				mcs52.syncCycles();
+				return (value & ~T2CON_TF2) | (t2con & T2CON_TF2);
 			}
 
 		});
@@ -114,7 +194,7 @@ public class Timer2 extends AbstractPeripheral implements CycleListener,MCS52Con
 	{
 
 		/** Do nothing if timer2 not running */
-		if (!mcs52.sfrIsBit(T2CON,T2CON_TR2))
+		if ((t2con & T2CON_TR2) == 0 || n <= 0)
 			return;
 
 
@@ -123,18 +203,62 @@ public class Timer2 extends AbstractPeripheral implements CycleListener,MCS52Con
 		
 		if (t2 > 0xffff)
 		{
-			mcs52.sfrSetBit(T2CON,T2CON_TF2);
-
 			/** Check for auto reload  */
-			if (!mcs52.sfrIsBit(T2CON,T2CON_CP))
+			int base = (t2con & T2CON_CP) == 0 ? rcap2 : 0;
+
+			t2 = base + (t2 - 0x10000) % (0x10000 - base);
+
+			if (!tfLocked)
 			{
-				t2 = mcs52.sfr(RCAP2H) * 256 + mcs52.sfr(RCAP2L);
+				inCycle = true;
+				try
+				{
+					mcs52.sfrSetBit(T2CON,T2CON_TF2);
+				}
+				finally
+				{
+					inCycle = false;
+				}
 			}
 		}
 
 	}
 
+	/**
+	 * The cpu must call the timer only at the overflow that set TF2.
+	 *
+	 * @since 1.03
+	 */
+	public int getCycleDeadline()
+	{
+		if ((t2con & T2CON_TR2) == 0 || (t2con & T2CON_TF2) != 0)
+			return Integer.MAX_VALUE;
+
+		return 0x10000 - t2;
+	}
 
-}
+	/**
+	 * Save the counter and the copy of T2CON and RCAP2.
+	 *
+	 * @since 1.03
+	 */
+	public void saveState(Snapshot s) throws SIMException
+	{
+		s.putInt(t2);
+		s.putInt(t2con);
+		s.putInt(rcap2);
+	}
 
+	/**
+	 * Restore the counter and the copy of T2CON and RCAP2.
+	 *
+	 * @since 1.03
+	 */
+	public void loadState(Snapshot s) throws SIMException
+	{
+		t2 = s.getInt();
+		t2con = s.getInt();
+		rcap2 = s.getInt();
+	}
 
+}
@@ -48,6 +48,8 @@ import jmce.sim.memory.PlainMemory;
  *  <li>Only offical and documented opcodes are implemented</li>
  * </ul>
  * 
+ * <p>This CPU honor the {@link #setCallListener} method for JSR
+ * instructions.
  * <p>
  * @author Mario Viara
  * @version 1.00
@@ -703,12 +705,7 @@ public class M6502 extends AbstractCPU implements M65XXConstants
 		{
 			public void exec(OperandGeneric ge,int pc) throws SIMException
 			{
-				int v = ge.getValue(pc);
-				P(P_S,(v & 0x80) != 0);
-				P(P_V,(v & 0x40) != 0);
-				v &= A;
-				P(P_Z,v == 0);
-
+				bit(ge.getValue(pc));
 			}
 		};
 
@@ -720,18 +717,7 @@ public class M6502 extends AbstractCPU implements M65XXConstants
 		{
 			public void exec(OperandGeneric ge,int pc) throws SIMException
 			{
-				int v = ge.getValue(pc);
-				boolean c = (v & 0x01) != 0;
-
-				v >>>= 1;
-
-				if (P(P_C))
-					v |= 0x80;
-				P(P_C,c);
-				ge.setValue(pc,v);
-				setFlagZS(v);
-
-
+				ge.setValue(pc,ror(ge.getValue(pc)));
 			}
 		};
 
@@ -746,18 +732,7 @@ public class M6502 extends AbstractCPU implements M65XXConstants
 		{
 			public void exec(OperandGeneric ge,int pc) throws SIMException
 			{
-				int v = ge.getValue(pc);
-				boolean c = (v & 0x80) != 0;
-
-				v <<= 1;
-
-				if (P(P_C))
-					v |= 0x01;
-				v &= 0xff;
-				P(P_C,c);
-				ge.setValue(pc,v);
-				setFlagZS(v);
-
+				ge.setValue(pc,rol(ge.getValue(pc)));
 			}
 		};
 
@@ -800,11 +775,7 @@ public class M6502 extends AbstractCPU implements M65XXConstants
 		{
 			public void exec(OperandGeneric ge,int pc) throws SIMException
 			{
-				int value = ge.getValue(pc) << 1;
-				P(P_C,(value & 0x100) != 0);
-				value &= 0xff;
-				ge.setValue(pc,value);
-				setFlagZS(value);
+				ge.setValue(pc,asl(ge.getValue(pc)));
 			}
 
 		};
@@ -822,11 +793,7 @@ public class M6502 extends AbstractCPU implements M65XXConstants
 		{
 			public void exec(OperandGeneric ge,int pc) throws SIMException
 			{
-				int value = ge.getValue(pc);
-				P(P_C,(value & 0x01) != 0);
-				value >>>= 1;
-				ge.setValue(pc,value);
-				setFlagZS(value);
+				ge.setValue(pc,lsr(ge.getValue(pc)));
 			}
 
 		};
@@ -859,16 +826,7 @@ public class M6502 extends AbstractCPU implements M65XXConstants
 		{
 			public void exec(OperandGeneric ge,int pc) throws SIMException
 			{
-				int v = ge.getValue(pc);
-				int a = A + v;
-				if (P(P_C))
-					a += 1;
-				P(P_C,(a > 0xff));
-				
-				/** AS in Z80 */
-				boolean o = ((A ^ v ^ 0x80) & (v ^ a) & 0x80) != 0;
-				P(P_V,o);
-				setAcc(a);
+				adc(ge.getValue(pc));
 			}
 		});
 
@@ -876,15 +834,7 @@ public class M6502 extends AbstractCPU implements M65XXConstants
 		{
 			public void exec(OperandGeneric ge,int pc) throws SIMException
 			{
-				int c = P(P_C) ? 0 : 1;
-				int v = ge.getValue(pc);
-				int a = A - v - c;
-				P(P_C,(a & 0x100) == 0);
-				
-				/** AS in Z80 */
-				boolean o = ((v ^ A) & (A ^ a) & 0x80) != 0;
-				P(P_V,o);
-				setAcc(a);
+				sbc(ge.getValue(pc));
 			}
 		});
 
@@ -1146,9 +1096,7 @@ public class M6502 extends AbstractCPU implements M65XXConstants
 		{
 			public int exec(int pc) throws SIMException
 			{
-				push16(PC-1);
-				PC = getWord(pc+1);
-				return 6;
+				return jsr(getWord(pc+1));
 			}
 		});
 
@@ -1446,6 +1394,33 @@ public class M6502 extends AbstractCPU implements M65XXConstants
 		push(value);
 	}
 
+	/**
+	 * Jump to a subroutine, PC must already point to the next
+	 * instruction.
+	 * <p>
+	 * If a CallListener is registered for the address the listener
+	 * is invoked in place of the JSR, when it return a negative
+	 * value the JSR is executed normally.
+	 *
+	 * @since 1.03
+	 */
+	protected final int jsr(int address) throws SIMException
+	{
+		CallListener l = getCallListener(address);
+
+		if (l != null)
+		{
+			int n = l.call(this,address);
+			if (n >= 0)
+				return n;
+		}
+
+		push16(PC-1);
+		PC = address;
+
+		return 6;
+	}
+
 	/**
 	 * Pop a word (16 bit) from the stack
 	 */
@@ -1518,6 +1493,108 @@ public class M6502 extends AbstractCPU implements M65XXConstants
 		return v;
 	}
 
+	/**
+	 * Add with carry.
+	 */
+	private final void adc(int v) throws SIMException
+	{
+		int a = A + v;
+		if (P(P_C))
+			a += 1;
+		P(P_C,(a > 0xff));
+				
+		/** AS in Z80 */
+		boolean o = ((A ^ v ^ 0x80) & (v ^ a) & 0x80) != 0;
+		P(P_V,o);
+		setAcc(a);
+	}
+
+	/**
+	 * Subtract with borrow.
+	 */
+	private final void sbc(int v) throws SIMException
+	{
+		int c = P(P_C) ? 0 : 1;
+		int a = A - v - c;
+		P(P_C,(a & 0x100) == 0);
+				
+		/** AS in Z80 */
+		boolean o = ((v ^ A) & (A ^ a) & 0x80) != 0;
+		P(P_V,o);
+		setAcc(a);
+	}
+
+	/**
+	 * Test the bits of the accumulator.
+	 */
+	private final void bit(int v) throws SIMException
+	{
+		P(P_S,(v & 0x80) != 0);
+		P(P_V,(v & 0x40) != 0);
+		v &= A;
+		P(P_Z,v == 0);
+	}
+
+	/**
+	 * Arithmetic shift left.
+	 */
+	private final int asl(int v) throws SIMException
+	{
+		v <<= 1;
+		P(P_C,(v & 0x100) != 0);
+		v &= 0xff;
+		setFlagZS(v);
+
+		return v;
+	}
+
+	/**
+	 * Logical shift right.
+	 */
+	private final int lsr(int v) throws SIMException
+	{
+		P(P_C,(v & 0x01) != 0);
+		v >>>= 1;
+		setFlagZS(v);
+
+		return v;
+	}
+
+	/**
+	 * Rotate left through the carry.
+	 */
+	private final int rol(int v) throws SIMException
+	{
+		boolean c = (v & 0x80) != 0;
+
+		v <<= 1;
+
+		if (P(P_C))
+			v |= 0x01;
+		v &= 0xff;
+		P(P_C,c);
+		setFlagZS(v);
+
+		return v;
+	}
+
+	/**
+	 * Rotate right through the carry.
+	 */
+	private final int ror(int v) throws SIMException
+	{
+		boolean c = (v & 0x01) != 0;
+
+		v >>>= 1;
+
+		if (P(P_C))
+			v |= 0x80;
+		P(P_C,c);
+		setFlagZS(v);
+
+		return v;
+	}
+	
 	/**
 	 * 8 bit compare.
 	 */
@@ -1546,6 +1623,1045 @@ public class M6502 extends AbstractCPU implements M65XXConstants
 		return PC;
 	}
 
+	/**
+	 * Switch core.
+	 * <p>
+	 * Exec all the 6502 instructions without the call to the
+	 * opcode, the number of cycle and the side effect are the
+	 * same of the opcodes defined in initOpcodes() but the
+	 * statistics of the addressing mode are not updated.
+	 *
+	 * @since 1.03
+	 */
+	protected int execSwitch(int pc) throws SIMException
+	{
+		int a;
+		
+		switch (getByte(pc))
+		{
+			// BRK
+			case	0x00:
+				PC = pc + 2;
+				push16(PC);
+				push(P|P_B);
+				P |= P_I;
+				PC = vectorToAddress(BRK_VECTOR);
+				return 7;
+
+			// ORA (zp,X)
+			case	0x01:
+				PC = pc + 2;
+				setAcc(A | getByte(zpix.getAddress(pc)));
+				return 6;
+
+			// ORA zp
+			case	0x05:
+				PC = pc + 2;
+				setAcc(A | getByte(zp.getAddress(pc)));
+				return 3;
+
+			// ASL zp
+			case	0x06:
+				PC = pc + 2;
+				a = zp.getAddress(pc);
+				setByte(a,asl(getByte(a)));
+				return 3;
+
+			// PHP
+			case	0x08:
+				PC = pc + 1;
+				push(P);
+				return 3;
+
+			// ORA #n
+			case	0x09:
+				PC = pc + 2;
+				setAcc(A | getByte(pc+1));
+				return 2;
+
+			// ASL A
+			case	0x0A:
+				PC = pc + 1;
+				setAcc(asl(A));
+				return 2;
+
+			// ORA abs
+			case	0x0D:
+				PC = pc + 3;
+				setAcc(A | getByte(abs.getAddress(pc)));
+				return 4;
+
+			// ASL abs
+			case	0x0E:
+				PC = pc + 3;
+				a = abs.getAddress(pc);
+				setByte(a,asl(getByte(a)));
+				return 4;
+
+			// BPL
+			case	0x10:
+				PC = pc + 2;
+				if ((P & P_S) == 0)
+				{
+					PC = addOffset(PC,getByte(pc+1));
+					return 3;
+				}
+				return 2;
+
+			// ORA (zp),Y
+			case	0x11:
+				PC = pc + 2;
+				setAcc(A | getByte(zpiy.getAddress(pc)));
+				return 7;
+
+			// ORA (zp)
+			case	0x12:
+				PC = pc + 2;
+				setAcc(A | getByte(zpi.getAddress(pc)));
+				return 5;
+
+			// ORA zp,X
+			case	0x15:
+				PC = pc + 2;
+				setAcc(A | getByte(zpx.getAddress(pc)));
+				return 5;
+
+			// ASL zp,X
+			case	0x16:
+				PC = pc + 2;
+				a = zpx.getAddress(pc);
+				setByte(a,asl(getByte(a)));
+				return 5;
+
+			// CLC
+			case	0x18:
+				PC = pc + 1;
+				P &= ~P_C;
+				return 2;
+
+			// ORA abs,Y
+			case	0x19:
+				PC = pc + 3;
+				setAcc(A | getByte(absy.getAddress(pc)));
+				return 5;
+
+			// ORA abs,X
+			case	0x1D:
+				PC = pc + 3;
+				setAcc(A | getByte(absx.getAddress(pc)));
+				return 5;
+
+			// ASL abs,X
+			case	0x1E:
+				PC = pc + 3;
+				a = absx.getAddress(pc);
+				setByte(a,asl(getByte(a)));
+				return 5;
+
+			// JSR abs
+			case	0x20:
+				PC = pc + 3;
+				return jsr(getWord(pc+1));
+
+			// AND (zp,X)
+			case	0x21:
+				PC = pc + 2;
+				setAcc(A & getByte(zpix.getAddress(pc)));
+				return 6;
+
+			// BIT zp
+			case	0x24:
+				PC = pc + 2;
+				bit(getByte(zp.getAddress(pc)));
+				return 4;
+
+			// AND zp
+			case	0x25:
+				PC = pc + 2;
+				setAcc(A & getByte(zp.getAddress(pc)));
+				return 3;
+
+			// ROL zp
+			case	0x26:
+				PC = pc + 2;
+				a = zp.getAddress(pc);
+				setByte(a,rol(getByte(a)));
+				return 3;
+
+			// PLP
+			case	0x28:
+				PC = pc + 1;
+				P = pop();
+				if (P(P_D))
+					throw new SIMException("Decimal mode not supported");
+				return 4;
+
+			// AND #n
+			case	0x29:
+				PC = pc + 2;
+				setAcc(A & getByte(pc+1));
+				return 2;
+
+			// ROL A
+			case	0x2A:
+				PC = pc + 1;
+				setAcc(rol(A));
+				return 2;
+
+			// BIT abs
+			case	0x2C:
+				PC = pc + 3;
+				bit(getByte(abs.getAddress(pc)));
+				return 5;
+
+			// AND abs
+			case	0x2D:
+				PC = pc + 3;
+				setAcc(A & getByte(abs.getAddress(pc)));
+				return 4;
+
+			// ROL abs
+			case	0x2E:
+				PC = pc + 3;
+				a = abs.getAddress(pc);
+				setByte(a,rol(getByte(a)));
+				return 4;
+
+			// BMI
+			case	0x30:
+				PC = pc + 2;
+				if ((P & P_S) != 0)
+				{
+					PC = addOffset(PC,getByte(pc+1));
+					return 3;
+				}
+				return 2;
+
+			// AND (zp),Y
+			case	0x31:
+				PC = pc + 2;
+				setAcc(A & getByte(zpiy.getAddress(pc)));
+				return 7;
+
+			// AND (zp)
+			case	0x32:
+				PC = pc + 2;
+				setAcc(A & getByte(zpi.getAddress(pc)));
+				return 5;
+
+			// AND zp,X
+			case	0x35:
+				PC = pc + 2;
+				setAcc(A & getByte(zpx.getAddress(pc)));
+				return 5;
+
+			// ROL zp,X
+			case	0x36:
+				PC = pc + 2;
+				a = zpx.getAddress(pc);
+				setByte(a,rol(getByte(a)));
+				return 5;
+
+			// SEC
+			case	0x38:
+				PC = pc + 1;
+				P |= P_C;
+				return 2;
+
+			// AND abs,Y
+			case	0x39:
+				PC = pc + 3;
+				setAcc(A & getByte(absy.getAddress(pc)));
+				return 5;
+
+			// AND abs,X
+			case	0x3D:
+				PC = pc + 3;
+				setAcc(A & getByte(absx.getAddress(pc)));
+				return 5;
+
+			// ROL abs,X
+			case	0x3E:
+				PC = pc + 3;
+				a = absx.getAddress(pc);
+				setByte(a,rol(getByte(a)));
+				return 5;
+
+			// RTI
+			case	0x40:
+				/** Pop flag and ignore B bit */
+				P = pop() & ~P_B;
+				PC = pop16();
+				return 6;
+
+			// EOR (zp,X)
+			case	0x41:
+				PC = pc + 2;
+				setAcc(A ^ getByte(zpix.getAddress(pc)));
+				return 6;
+
+			// EOR zp
+			case	0x45:
+				PC = pc + 2;
+				setAcc(A ^ getByte(zp.getAddress(pc)));
+				return 3;
+
+			// LSR zp
+			case	0x46:
+				PC = pc + 2;
+				a = zp.getAddress(pc);
+				setByte(a,lsr(getByte(a)));
+				return 3;
+
+			// PHA
+			case	0x48:
+				PC = pc + 1;
+				push(A);
+				return 3;
+
+			// EOR #n
+			case	0x49:
+				PC = pc + 2;
+				setAcc(A ^ getByte(pc+1));
+				return 2;
+
+			// LSR A
+			case	0x4A:
+				PC = pc + 1;
+				setAcc(lsr(A));
+				return 2;
+
+			// JMP abs
+			case	0x4C:
+				PC = getWord(pc+1);
+				return 6;
+
+			// EOR abs
+			case	0x4D:
+				PC = pc + 3;
+				setAcc(A ^ getByte(abs.getAddress(pc)));
+				return 4;
+
+			// LSR abs
+			case	0x4E:
+				PC = pc + 3;
+				a = abs.getAddress(pc);
+				setByte(a,lsr(getByte(a)));
+				return 4;
+
+			// BVC
+			case	0x50:
+				PC = pc + 2;
+				if ((P & P_V) == 0)
+				{
+					PC = addOffset(PC,getByte(pc+1));
+					return 3;
+				}
+				return 2;
+
+			// EOR (zp),Y
+			case	0x51:
+				PC = pc + 2;
+				setAcc(A ^ getByte(zpiy.getAddress(pc)));
+				return 7;
+
+			// EOR (zp)
+			case	0x52:
+				PC = pc + 2;
+				setAcc(A ^ getByte(zpi.getAddress(pc)));
+				return 5;
+
+			// EOR zp,X
+			case	0x55:
+				PC = pc + 2;
+				setAcc(A ^ getByte(zpx.getAddress(pc)));
+				return 5;
+
+			// LSR zp,X
+			case	0x56:
+				PC = pc + 2;
+				a = zpx.getAddress(pc);
+				setByte(a,lsr(getByte(a)));
+				return 5;
+
+			// CLI
+			case	0x58:
+				PC = pc + 1;
+				P &= ~P_I;
+				return 2;
+
+			// EOR abs,Y
+			case	0x59:
+				PC = pc + 3;
+				setAcc(A ^ getByte(absy.getAddress(pc)));
+				return 5;
+
+			// EOR abs,X
+			case	0x5D:
+				PC = pc + 3;
+				setAcc(A ^ getByte(absx.getAddress(pc)));
+				return 5;
+
+			// LSR abs,X
+			case	0x5E:
+				PC = pc + 3;
+				a = absx.getAddress(pc);
+				setByte(a,lsr(getByte(a)));
+				return 5;
+
+			// RTS
+			case	0x60:
+				PC = (pop16()+1) & 0xffff;
+				return 6;
+
+			// ADC (zp,X)
+			case	0x61:
+				PC = pc + 2;
+				adc(getByte(zpix.getAddress(pc)));
+				return 6;
+
+			// ADC zp
+			case	0x65:
+				PC = pc + 2;
+				adc(getByte(zp.getAddress(pc)));
+				return 3;
+
+			// ROR zp
+			case	0x66:
+				PC = pc + 2;
+				a = zp.getAddress(pc);
+				setByte(a,ror(getByte(a)));
+				return 2;
+
+			// PLA
+			case	0x68:
+				PC = pc + 1;
+				setAcc(pop());
+				return 4;
+
+			// ADC #n
+			case	0x69:
+				PC = pc + 2;
+				adc(getByte(pc+1));
+				return 2;
+
+			// ROR A
+			case	0x6A:
+				PC = pc + 1;
+				setAcc(ror(A));
+				return 1;
+
+			// JMP (abs)
+			case	0x6C:
+				PC = getWord(getWord(pc+1));
+				return 9;
+
+			// ADC abs
+			case	0x6D:
+				PC = pc + 3;
+				adc(getByte(abs.getAddress(pc)));
+				return 4;
+
+			// ROR abs
+			case	0x6E:
+				PC = pc + 3;
+				a = abs.getAddress(pc);
+				setByte(a,ror(getByte(a)));
+				return 3;
+
+			// BVS
+			case	0x70:
+				PC = pc + 2;
+				if ((P & P_V) != 0)
+				{
+					PC = addOffset(PC,getByte(pc+1));
+					return 3;
+				}
+				return 2;
+
+			// ADC (zp),Y
+			case	0x71:
+				PC = pc + 2;
+				adc(getByte(zpiy.getAddress(pc)));
+				return 7;
+
+			// ADC (zp)
+			case	0x72:
+				PC = pc + 2;
+				adc(getByte(zpi.getAddress(pc)));
+				return 5;
+
+			// ADC zp,X
+			case	0x75:
+				PC = pc + 2;
+				adc(getByte(zpx.getAddress(pc)));
+				return 5;
+
+			// ROR zp,X
+			case	0x76:
+				PC = pc + 2;
+				a = zpx.getAddress(pc);
+				setByte(a,ror(getByte(a)));
+				return 4;
+
+			// SEI
+			case	0x78:
+				PC = pc + 1;
+				P |= P_I;
+				return 2;
+
+			// ADC abs,Y
+			case	0x79:
+				PC = pc + 3;
+				adc(getByte(absy.getAddress(pc)));
+				return 5;
+
+			// ADC abs,X
+			case	0x7D:
+				PC = pc + 3;
+				adc(getByte(absx.getAddress(pc)));
+				return 5;
+
+			// ROR abs,X
+			case	0x7E:
+				PC = pc + 3;
+				a = absx.getAddress(pc);
+				setByte(a,ror(getByte(a)));
+				return 4;
+
+			// STA (zp,X)
+			case	0x81:
+				PC = pc + 2;
+				setByte(zpix.getAddress(pc),A);
+				return 6;
+
+			// STY zp
+			case	0x84:
+				PC = pc + 2;
+				setByte(zp.getAddress(pc),Y);
+				return 3;
+
+			// STA zp
+			case	0x85:
+				PC = pc + 2;
+				setByte(zp.getAddress(pc),A);
+				return 3;
+
+			// STX zp
+			case	0x86:
+				PC = pc + 2;
+				setByte(zp.getAddress(pc),X);
+				return 3;
+
+			// DEY
+			case	0x88:
+				PC = pc + 1;
+				Y = dec8(Y);
+				return 2;
+
+			// TXA
+			case	0x8A:
+				PC = pc + 1;
+				setAcc(X);
+				return 2;
+
+			// STY abs
+			case	0x8C:
+				PC = pc + 3;
+				setByte(abs.getAddress(pc),Y);
+				return 4;
+
+			// STA abs
+			case	0x8D:
+				PC = pc + 3;
+				setByte(abs.getAddress(pc),A);
+				return 4;
+
+			// STX abs
+			case	0x8E:
+				PC = pc + 3;
+				setByte(abs.getAddress(pc),X);
+				return 4;
+
+			// BCC
+			case	0x90:
+				PC = pc + 2;
+				if ((P & P_C) == 0)
+				{
+					PC = addOffset(PC,getByte(pc+1));
+					return 3;
+				}
+				return 2;
+
+			// STA (zp),Y
+			case	0x91:
+				PC = pc + 2;
+				setByte(zpiy.getAddress(pc),A);
+				return 7;
+
+			// STY zp,X
+			case	0x94:
+				PC = pc + 2;
+				setByte(zpx.getAddress(pc),Y);
+				return 5;
+
+			// STA zp,X
+			case	0x95:
+				PC = pc + 2;
+				setByte(zpx.getAddress(pc),A);
+				return 5;
+
+			// STX zp,Y
+			case	0x96:
+				PC = pc + 2;
+				setByte(zpy.getAddress(pc),X);
+				return 5;
+
+			// TYA
+			case	0x98:
+				PC = pc + 1;
+				setAcc(Y);
+				return 2;
+
+			// STA abs,Y
+			case	0x99:
+				PC = pc + 3;
+				setByte(absy.getAddress(pc),A);
+				return 5;
+
+			// TXS
+			case	0x9A:
+				PC = pc + 1;
+				S = X;
+				return 2;
+
+			// STA abs,X
+			case	0x9D:
+				PC = pc + 3;
+				setByte(absx.getAddress(pc),A);
+				return 5;
+
+			// LDY #n
+			case	0xA0:
+				PC = pc + 2;
+				Y = getByte(pc+1);
+				setFlagZS(Y);
+				return 2;
+
+			// LDA (zp,X)
+			case	0xA1:
+				PC = pc + 2;
+				setAcc(getByte(zpix.getAddress(pc)));
+				return 6;
+
+			// LDX #n
+			case	0xA2:
+				PC = pc + 2;
+				X = getByte(pc+1);
+				setFlagZS(X);
+				return 2;
+
+			// LDY zp
+			case	0xA4:
+				PC = pc + 2;
+				Y = getByte(zp.getAddress(pc));
+				setFlagZS(Y);
+				return 3;
+
+			// LDA zp
+			case	0xA5:
+				PC = pc + 2;
+				setAcc(getByte(zp.getAddress(pc)));
+				return 3;
+
+			// LDX zp
+			case	0xA6:
+				PC = pc + 2;
+				X = getByte(zp.getAddress(pc));
+				setFlagZS(X);
+				return 3;
+
+			// TAY
+			case	0xA8:
+				PC = pc + 1;
+				Y = A;
+				setFlagZS(Y);
+				return 2;
+
+			// LDA #n
+			case	0xA9:
+				PC = pc + 2;
+				setAcc(getByte(pc+1));
+				return 2;
+
+			// TAX
+			case	0xAA:
+				PC = pc + 1;
+				X = A;
+				setFlagZS(X);
+				return 2;
+
+			// LDY abs
+			case	0xAC:
+				PC = pc + 3;
+				Y = getByte(abs.getAddress(pc));
+				setFlagZS(Y);
+				return 4;
+
+			// LDA abs
+			case	0xAD:
+				PC = pc + 3;
+				setAcc(getByte(abs.getAddress(pc)));
+				return 4;
+
+			// LDX abs
+			case	0xAE:
+				PC = pc + 3;
+				X = getByte(abs.getAddress(pc));
+				setFlagZS(X);
+				return 4;
+
+			// BCS
+			case	0xB0:
+				PC = pc + 2;
+				if ((P & P_C) != 0)
+				{
+					PC = addOffset(PC,getByte(pc+1));
+					return 3;
+				}
+				return 2;
+
+			// LDA (zp),Y
+			case	0xB1:
+				PC = pc + 2;
+				setAcc(getByte(zpiy.getAddress(pc)));
+				return 7;
+
+			// LDA (zp)
+			case	0xB2:
+				PC = pc + 2;
+				setAcc(getByte(zpi.getAddress(pc)));
+				return 5;
+
+			// LDY zp,X
+			case	0xB4:
+				PC = pc + 2;
+				Y = getByte(zpx.getAddress(pc));
+				setFlagZS(Y);
+				return 5;
+
+			// LDA zp,X
+			case	0xB5:
+				PC = pc + 2;
+				setAcc(getByte(zpx.getAddress(pc)));
+				return 5;
+
+			// LDX zp,Y
+			case	0xB6:
+				PC = pc + 2;
+				X = getByte(zpy.getAddress(pc));
+				setFlagZS(X);
+				return 5;
+
+			// CLV
+			case	0xB8:
+				PC = pc + 1;
+				P &= ~P_V;
+				return 2;
+
+			// LDA abs,Y
+			case	0xB9:
+				PC = pc + 3;
+				setAcc(getByte(absy.getAddress(pc)));
+				return 5;
+
+			// TSX
+			case	0xBA:
+				PC = pc + 1;
+				X = S;
+				setFlagZS(X);
+				return 2;
+
+			// LDY abs,X
+			case	0xBC:
+				PC = pc + 3;
+				Y = getByte(absx.getAddress(pc));
+				setFlagZS(Y);
+				return 5;
+
+			// LDA abs,X
+			case	0xBD:
+				PC = pc + 3;
+				setAcc(getByte(absx.getAddress(pc)));
+				return 5;
+
+			// LDX abs,Y
+			case	0xBE:
+				PC = pc + 3;
+				X = getByte(absy.getAddress(pc));
+				setFlagZS(X);
+				return 5;
+
+			// CPY #n
+			case	0xC0:
+				PC = pc + 2;
+				cmp8(Y,getByte(pc+1));
+				return 2;
+
+			// CMP (zp,X)
+			case	0xC1:
+				PC = pc + 2;
+				cmp8(A,getByte(zpix.getAddress(pc)));
+				return 7;
+
+			// CPY zp
+			case	0xC4:
+				PC = pc + 2;
+				cmp8(Y,getByte(zp.getAddress(pc)));
+				return 3;
+
+			// CMP zp
+			case	0xC5:
+				PC = pc + 2;
+				cmp8(A,getByte(zp.getAddress(pc)));
+				return 4;
+
+			// DEC zp
+			case	0xC6:
+				PC = pc + 2;
+				a = zp.getAddress(pc);
+				setByte(a,dec8(getByte(a)));
+				return 3;
+
+			// INY
+			case	0xC8:
+				PC = pc + 1;
+				Y = inc8(Y);
+				return 2;
+
+			// CMP #n
+			case	0xC9:
+				PC = pc + 2;
+				cmp8(A,getByte(pc+1));
+				return 3;
+
+			// DEX
+			case	0xCA:
+				PC = pc + 1;
+				X = dec8(X);
+				return 2;
+
+			// CPY abs
+			case	0xCC:
+				PC = pc + 3;
+				cmp8(Y,getByte(abs.getAddress(pc)));
+				return 4;
+
+			// CMP abs
+			case	0xCD:
+				PC = pc + 3;
+				cmp8(A,getByte(abs.getAddress(pc)));
+				return 5;
+
+			// DEC abs
+			case	0xCE:
+				PC = pc + 3;
+				a = abs.getAddress(pc);
+				setByte(a,dec8(getByte(a)));
+				return 4;
+
+			// BNE
+			case	0xD0:
+				PC = pc + 2;
+				if ((P & P_Z) == 0)
+				{
+					PC = addOffset(PC,getByte(pc+1));
+					return 3;
+				}
+				return 2;
+
+			// CMP (zp),Y
+			case	0xD1:
+				PC = pc + 2;
+				cmp8(A,getByte(zpiy.getAddress(pc)));
+				return 8;
+
+			// CMP (zp)
+			case	0xD2:
+				PC = pc + 2;
+				cmp8(A,getByte(zpi.getAddress(pc)));
+				return 6;
+
+			// CMP zp,X
+			case	0xD5:
+				PC = pc + 2;
+				cmp8(A,getByte(zpx.getAddress(pc)));
+				return 6;
+
+			// DEC zp,X
+			case	0xD6:
+				PC = pc + 2;
+				a = zpx.getAddress(pc);
+				setByte(a,dec8(getByte(a)));
+				return 5;
+
+			// CLD
+			case	0xD8:
+				PC = pc + 1;
+				P &= ~P_D;
+				return 2;
+
+			// CMP abs,Y
+			case	0xD9:
+				PC = pc + 3;
+				cmp8(A,getByte(absy.getAddress(pc)));
+				return 6;
+
+			// CMP abs,X
+			case	0xDD:
+				PC = pc + 3;
+				cmp8(A,getByte(absx.getAddress(pc)));
+				return 6;
+
+			// DEC abs,X
+			case	0xDE:
+				PC = pc + 3;
+				a = absx.getAddress(pc);
+				setByte(a,dec8(getByte(a)));
+				return 5;
+
+			// CPX #n
+			case	0xE0:
+				PC = pc + 2;
+				cmp8(X,getByte(pc+1));
+				return 2;
+
+			// SBC (zp,X)
+			case	0xE1:
+				PC = pc + 2;
+				sbc(getByte(zpix.getAddress(pc)));
+				return 6;
+
+			// CPX zp
+			case	0xE4:
+				PC = pc + 2;
+				cmp8(X,getByte(zp.getAddress(pc)));
+				return 3;
+
+			// SBC zp
+			case	0xE5:
+				PC = pc + 2;
+				sbc(getByte(zp.getAddress(pc)));
+				return 3;
+
+			// INC zp
+			case	0xE6:
+				PC = pc + 2;
+				a = zp.getAddress(pc);
+				setByte(a,inc8(getByte(a)));
+				return 3;
+
+			// INX
+			case	0xE8:
+				PC = pc + 1;
+				X = inc8(X);
+				return 2;
+
+			// SBC #n
+			case	0xE9:
+				PC = pc + 2;
+				sbc(getByte(pc+1));
+				return 2;
+
+			// NOP
+			case	0xEA:
+				PC = pc + 1;
+				return 2;
+
+			// CPX abs
+			case	0xEC:
+				PC = pc + 3;
+				cmp8(X,getByte(abs.getAddress(pc)));
+				return 4;
+
+			// SBC abs
+			case	0xED:
+				PC = pc + 3;
+				sbc(getByte(abs.getAddress(pc)));
+				return 4;
+
+			// INC abs
+			case	0xEE:
+				PC = pc + 3;
+				a = abs.getAddress(pc);
+				setByte(a,inc8(getByte(a)));
+				return 4;
+
+			// BEQ
+			case	0xF0:
+				PC = pc + 2;
+				if ((P & P_Z) != 0)
+				{
+					PC = addOffset(PC,getByte(pc+1));
+					return 3;
+				}
+				return 2;
+
+			// SBC (zp),Y
+			case	0xF1:
+				PC = pc + 2;
+				sbc(getByte(zpiy.getAddress(pc)));
+				return 7;
+
+			// SBC (zp)
+			case	0xF2:
+				PC = pc + 2;
+				sbc(getByte(zpi.getAddress(pc)));
+				return 5;
+
+			// SBC zp,X
+			case	0xF5:
+				PC = pc + 2;
+				sbc(getByte(zpx.getAddress(pc)));
+				return 5;
+
+			// INC zp,X
+			case	0xF6:
+				PC = pc + 2;
+				a = zpx.getAddress(pc);
+				setByte(a,inc8(getByte(a)));
+				return 5;
+
+			// SED
+			case	0xF8:
+				PC = pc + 1;
+				P |= P_D;
+				throw new SIMException("Decimal mode not supported");
+
+			// SBC abs,Y
+			case	0xF9:
+				PC = pc + 3;
+				sbc(getByte(absy.getAddress(pc)));
+				return 5;
+
+			// SBC abs,X
+			case	0xFD:
+				PC = pc + 3;
+				sbc(getByte(absx.getAddress(pc)));
+				return 5;
+
+			// INC abs,X
+			case	0xFE:
+				PC = pc + 3;
+				a = absx.getAddress(pc);
+				setByte(a,inc8(getByte(a)));
+				return 5;
+
+			default:
+				return execOpcode(pc);
+		}
+	}
+
 	public int fireISR(Interrupt irq) throws SIMException
 	{
 		push16(PC);
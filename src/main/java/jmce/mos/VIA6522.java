@@ -58,13 +58,18 @@ import jmce.mos.M6502;
  * <ul>
  *  <li>Must be connected to a MOS 65xx microprocessor.</li>
  * </ul>
+ * <p>
+ * Since 1.03 the timers are not decremented after every instruction,
+ * the counters are updated from the elapsed cycles when one timer
+ * register is accessed and the cpu call the VIA only when one armed
+ * timer reach zero.
  * 
  * @author Mario Viara
- * @version 1.00
+ * @version 1.03
  *
  * @since 1.01
  */
-public class VIA6522 extends AbstractPeripheral implements MemoryWriteListener,MemoryReadListener,CycleListener
+public class VIA6522 extends AbstractPeripheral implements MemoryWriteListener,MemoryReadListener,ScheduledCycleListener,Snapshottable
 {
 	private static Logger log = Logger.getLogger(VIA6522.class);
 
@@ -271,20 +276,28 @@ public class VIA6522 extends AbstractPeripheral implements MemoryWriteListener,M
 
 			if (i == 5)
 			{
+				/** The pulse end after the current instruction */
+				cpu.syncCycles();
 				setC2(false);
 				autoSetC2 = true;
+				cpu.syncCycles();
 			}
 			
 		}
 
 		public void cycle(int n) throws SIMException
 		{
-			if (autoSetC2)
+			if (autoSetC2 && n > 0)
 			{
 				autoSetC2 = false;
 				setC2(true);
 			}
 		}
+
+		boolean isPulse()
+		{
+			return autoSetC2;
+		}
 		
 		public boolean irq1() throws SIMException
 		{
@@ -325,6 +338,26 @@ public class VIA6522 extends AbstractPeripheral implements MemoryWriteListener,M
 		}
 
 
+		void saveState(Snapshot s) throws SIMException
+		{
+			s.putBoolean(c1);
+			s.putBoolean(c2);
+			s.putBoolean(autoSetC2);
+			s.putInt(dir);
+			s.putInt(in);
+			s.putInt(out);
+		}
+
+		void loadState(Snapshot s) throws SIMException
+		{
+			c1 = s.getBoolean();
+			c2 = s.getBoolean();
+			autoSetC2 = s.getBoolean();
+			dir = s.getInt();
+			in = s.getInt();
+			out = s.getInt();
+		}
+
 		void addC2MemoryWriteListener(MemoryWriteListener l)
 		{
 			mwl2.add(l);
@@ -447,46 +480,136 @@ public class VIA6522 extends AbstractPeripheral implements MemoryWriteListener,M
 
 	public void cycle(int n) throws SIMException
 	{
+		if (n <= 0)
+			return;
+		
 		pa.cycle(n);
 		pb.cycle(n);
 
-		for (;n > 0 ; n--)
+		cycleTimer1(n);
+		cycleTimer2(n);
+	}
+
+	/**
+	 * Decrement the timer 1 of the elapsed cycles.
+	 *
+	 * @since 1.03
+	 */
+	private void cycleTimer1(int n) throws SIMException
+	{
+		int zero = timer1Counter == 0 ? 0x10000 : timer1Counter;
+
+		if (n < zero)
 		{
-			timer1Counter = (timer1Counter - 1) & 0xffff;
+			timer1Counter -= n;
+			return;
+		}
 
-			if (timer1Counter == 0)
-			{
-				if (timer1Interrupt)
-				{
-					irqTimer1.setActive(true);
-				}
+		n -= zero;
+		
+		if (timer1Interrupt)
+		{
+			irqTimer1.setActive(true);
+		}
 
-				/** Reload counter ? */
-				if ((acr & 0x40) != 0)
-				{
-					timer1Counter = timer1Latch;
-				}
-				else
-				{
-					timer1Interrupt = false;
-				}
-			}
+		/** Reload counter ? */
+		if ((acr & 0x40) != 0)
+		{
+			int period = timer1Latch == 0 ? 0x10000 : timer1Latch;
+			timer1Counter = (timer1Latch - n % period) & 0xffff;
+		}
+		else
+		{
+			timer1Interrupt = false;
+			timer1Counter = -n & 0xffff;
+		}
+	}
 
-			timer2Counter = (timer2Counter - 1) & 0xffff;
+	/**
+	 * Decrement the timer 2 of the elapsed cycles.
+	 *
+	 * @since 1.03
+	 */
+	private void cycleTimer2(int n) throws SIMException
+	{
+		int zero = timer2Counter == 0 ? 0x10000 : timer2Counter;
 
-			if (timer2Counter == 0)
-			{
-				if (timer2Interrupt)
-				{
-					irqTimer2.setActive(true);
-					timer2Interrupt = false;
-				}
+		if (n >= zero && timer2Interrupt)
+		{
+			irqTimer2.setActive(true);
+			timer2Interrupt = false;
+		}
 
-			}
+		timer2Counter = (timer2Counter - n) & 0xffff;
+	}
 
+	/**
+	 * The cpu must call the VIA when one armed timer reach zero or
+	 * at the end of one pulse on CA2/CB2.
+	 *
+	 * @since 1.03
+	 */
+	public int getCycleDeadline()
+	{
+		int d = Integer.MAX_VALUE;
 
+		if (pa.isPulse() || pb.isPulse())
+			d = 1;
 
-		}
+		if (timer1Interrupt)
+			d = Math.min(d,timer1Counter == 0 ? 0x10000 : timer1Counter);
+
+		if (timer2Interrupt)
+			d = Math.min(d,timer2Counter == 0 ? 0x10000 : timer2Counter);
+
+		return d;
+	}
+
+	/**
+	 * Save the registers, the timers and the ports, the cpu save the
+	 * state of the interrupts.
+	 *
+	 * @since 1.03
+	 */
+	public void saveState(Snapshot s) throws SIMException
+	{
+		s.putInt(ier);
+		s.putInt(acr);
+		s.putInt(pcr);
+		s.putInt(timer1Counter);
+		s.putInt(timer1Latch);
+		s.putInt(timer2Counter);
+		s.putInt(timer2Latch);
+		s.putBoolean(timer1Interrupt);
+		s.putBoolean(timer2Interrupt);
+		pa.saveState(s);
+		pb.saveState(s);
+	}
+
+	/**
+	 * @since 1.03
+	 */
+	public void loadState(Snapshot s) throws SIMException
+	{
+		ier = s.getInt();
+		acr = s.getInt();
+		pcr = s.getInt();
+		timer1Counter = s.getInt();
+		timer1Latch = s.getInt();
+		timer2Counter = s.getInt();
+		timer2Latch = s.getInt();
+		timer1Interrupt = s.getBoolean();
+		timer2Interrupt = s.getBoolean();
+		pa.loadState(s);
+		pb.loadState(s);
+	}
+
+	/**
+	 * Return true if the register is used by the timers.
+	 */
+	private boolean isTimerRegister(int address)
+	{
+		return (address >= T1CL && address <= ACR) || address == IFR;
 	}
 
 
@@ -495,6 +618,20 @@ public class VIA6522 extends AbstractPeripheral implements MemoryWriteListener,M
 	{
 		address &= 0x0f;
 
+		if (isTimerRegister(address))
+		{
+			/** Elapsed cycles belong to the old timer state */
+			cpu.syncCycles();
+			writeRegister(address,value);
+			cpu.syncCycles();
+		}
+		else
+			writeRegister(address,value);
+	}
+
+	private void writeRegister(int address,int value) throws SIMException
+	{
+
 		//log.info(this+" Write "+Hex.formatByte(address)+"="+Hex.formatByte(value));
 
 		switch (address)
@@ -577,6 +714,9 @@ public class VIA6522 extends AbstractPeripheral implements MemoryWriteListener,M
 	public int readMemory(Memory memory,int address,int value) throws SIMException
 	{
 		address &= 0x0f;
+
+		if (isTimerRegister(address))
+			cpu.syncCycles();
 		
 		switch (address)
 		{
@@ -807,8 +947,10 @@ public class VIA6522 extends AbstractPeripheral implements MemoryWriteListener,M
 		pb.setC1(mode);
 	}
 
-	public int getTimer2Counter()
+	public int getTimer2Counter() throws SIMException
 	{
+		cpu.syncCycles();
+		
 		return timer2Counter;
 	}
 	
@@ -26,8 +26,6 @@
 */
 package jmce.mos;
 
-import java.awt.*;
-import javax.swing.*;
 import javax.sound.sampled.*;
 
 import jmce.sim.*;
@@ -83,12 +81,17 @@ import jmce.util.Hex;
  * </pre>
  *  </ul>
  * </ul>
+ * <p>
+ * Since 1.03 the screen is rendered in one FrameBuffer, without
+ * scale, every 20 ms when the video memory or the registers are
+ * changed.
+ * 
  * @author Mario Viara
- * @version 1.00
+ * @version 1.03
  *
  * @since 1.01
  */
-public class VIC6561 extends AbstractPeripheral  implements MemoryWriteListener,MemoryReadListener,SwingHardware,CycleListener
+public class VIC6561 extends AbstractPeripheral  implements MemoryWriteListener,MemoryReadListener,SwingHardware,CycleListener,Video
 {
 	private static Logger log = Logger.getLogger(VIC6561.class);
 	static public int sample = 44100;
@@ -212,40 +215,40 @@ public class VIC6561 extends AbstractPeripheral  implements MemoryWriteListener,
 	}
 	
 	/** Color palette */
-	private static Color colors[] =
+	private static int colors[] =
 	{	
 		// Black
-		new Color(0x000000),
+		0x000000,
 		// White
-		new Color(0xFFFFFF),
+		0xFFFFFF,
 		// Red
-		new Color(0xF00000),
+		0xF00000,
 		// Cyan
-		new Color(0x00F0F0),
+		0x00F0F0,
 		// Magenta
-		new Color(0x600060),
+		0x600060,
 		// Green
-		new Color(0x00A000),
+		0x00A000,
 		// Blue
-		new Color(0x0000F0),
+		0x0000F0,
 		// Yellow
-		new Color(0xD0D000),
+		0xD0D000,
 		// Orange
-		new Color(0xC0A000),
+		0xC0A000,
 		// Light orange
-		new Color(0xFFA000),
+		0xFFA000,
 		// Pink
-		new Color(0xF08080),
+		0xF08080,
 		// Light cyan
-		new Color(0x00FFFF),
+		0x00FFFF,
 		// Light magenta
-		new Color(0xFF00FF),
+		0xFF00FF,
 		// Light green
-		new Color(0x00FF00),
+		0x00FF00,
 		// Light blue
-		new Color(0x00A0FF),
+		0x00A0FF,
 		// Light yellow
-		new Color(0xFFFF00),
+		0xFFFF00,
 	};
 
 	/** Control registers */
@@ -258,119 +261,89 @@ public class VIC6561 extends AbstractPeripheral  implements MemoryWriteListener,
 	 * 2 - Foreground color
 	 * 3 - Auxiliary color
 	 */
-	private Color multiColors[] = new Color[4];
+	private int multiColors[] = new int[4];
 
 	private VIC6561Oscillator channels[] = new VIC6561Oscillator[4];
+
+	/** Frame buffer without scale */
+	private FrameBuffer fb = new FrameBuffer(sizeWidth,sizeHeight);
+
+	/** True if the screen must be rendered again */
+	private boolean changed = true;
 	
-	/** Swing component used for the GUI */
-	class VIC6561Component extends JComponent implements jmce.swing.Repaintable
+	/**
+	 * Render the whole screen in the frame buffer.
+	 *
+	 * @since 1.03
+	 */
+	private void render()
 	{
-		
-		/**
-		 * 
-		 */
-		private static final long serialVersionUID = 1L;
-		private Dimension size = null;
-		
-		public void updateComponent()
-		{
-			repaint();
-		}
-
-		public Dimension getPreferredSize()
-		{
-			if (size == null)
+		fb.fill(0,0,sizeWidth,sizeHeight,multiColors[1]);
+			
+		for (int r = 0 ; r < numRows ; r++)
+			for (int c = 0 ; c < numColumns ; c++)
 			{
-				size = new Dimension(scaleWidth*sizeWidth,scaleHeight*sizeHeight);
-				log.info(VIC6561.this+" SIZE="+size);
+				try
+				{
+					paintChar(r,c);
+				}
+				catch (Exception ex)
+				{
+				}
 			}
+	}
 
-			return size;
-		}
+	private void paintChar(int r,int c) throws SIMException
+	{
+		int ch = getVideoByte(r*numColumns + c + videoRam);
+		int color = getVideoByte(r*numColumns + c + colourRam);
 
-		public void paintComponent(Graphics g)
+		int ox = (cr[0] & 0x7f) + c*8;
+		int oy = cr[1] + r*8;
+		
+		/** multi color ? */
+		if ((color & 0x08) != 0)
 		{
-			Insets insets = getInsets();
-
-			g.translate(insets.left,insets.top);
-			g.setColor(multiColors[1]);
-			g.fillRect(0,0,size.width,size.height);
+			multiColors[2] = colors[color & 0x07];
 			
-			for (int r = 0 ; r < numRows ; r++)
-				for (int c = 0 ; c < numColumns ; c++)
+			for (int y = 0 ; y < 8 ; y++)
+			{
+				int mask = getVideoByte(charRam+ch*8+y);
+
+				for (int x = 0 ; x < 4 ; x ++)
 				{
-					try
-					{
-						paintChar(g,r,c);
-					}
-					catch (Exception ex)
-					{
-					}
+					int cl = (mask & 0xc0) >> 6;
+					mask <<= 2;
+					fb.fill(ox+x*2,oy+y,2,1,multiColors[cl & 0x03]);
 				}
-
+			}
 
 		}
-
-
-		void paintChar(Graphics g,int r,int c) throws SIMException
+		else	/** Hi resolution mode */
 		{
-			int ch = getVideoByte(r*numColumns + c + videoRam);
-			int color = getVideoByte(r*numColumns + c + colourRam);
 
-			Point origin = new Point((cr[0] & 0x7f)*scaleWidth,cr[1]*scaleHeight);
-			
-			/** multi color ? */
-			if ((color & 0x08) != 0)
-			{
-				multiColors[2] = colors[color & 0x07];
-				
-				for (int y = 0 ; y < 8 ; y++)
-				{
-					int mask = getVideoByte(charRam+ch*8+y);
-
-					for (int x = 0 ; x < 4 ; x ++)
-					{
-						int cl = (mask & 0xc0) >> 6;
-						mask <<= 2;
-						g.setColor(multiColors[cl & 0x03]);
-						g.fillRect(origin.x+(c*8+x*2)*scaleWidth,origin.y+(r*8+y)*scaleHeight,scaleWidth*2,scaleHeight);
-
-					}
-				}
+			int bg = multiColors[0];
+			int fg = colors[color & 0x07];
 
+			if ((cr[CRF] & 0x08) == 0)
+			{
+				int tmp = fg;
+				fg = bg;
+				bg = tmp;
 			}
-			else	/** Hi resolution mode */
+			
+			for (int y = 0 ; y < 8 ; y++)
 			{
+				int mask = getVideoByte(charRam+ch*8+y);
 
-				Color bg = multiColors[0];
-				Color fg = colors[color & 0x07];
-
-				if ((cr[CRF] & 0x08) == 0)
-				{
-					Color tmp = fg;
-					fg = bg;
-					bg = tmp;
-				}
-				
-				for (int y = 0 ; y < 8 ; y++)
+				for (int x = 0 ; x < 8 ; x ++)
 				{
-					int mask = getVideoByte(charRam+ch*8+y);
-
-					for (int x = 0 ; x < 8 ; x ++)
-					{
-						if ((mask & 0x80) != 0)
-							g.setColor(fg);
-						else
-							g.setColor(bg);
-
-						mask <<= 1;
-						g.fillRect(origin.x+(c*8+x)*scaleWidth,origin.y+(r*8+y)*scaleHeight,scaleWidth,scaleHeight);
-					}
+					fb.setPixel(ox+x,oy+y,(mask & 0x80) != 0 ? fg : bg);
+					mask <<= 1;
 				}
 			}
 		}
-		
-	};
+	}
 
 	/** Control register 2 number of columns */
 	static public final int CR2 = 0x02;
@@ -406,7 +379,7 @@ public class VIC6561 extends AbstractPeripheral  implements MemoryWriteListener,
 	private int numRows = 23;
 
 	/** Swing component */
-	private VIC6561Component comp = new VIC6561Component();
+	private jmce.swing.FrameBufferComponent comp = new jmce.swing.FrameBufferComponent(fb,scaleWidth,scaleHeight);
 
 	private SourceDataLine line;
 	int cyclePerSample;
@@ -447,6 +420,7 @@ public class VIC6561 extends AbstractPeripheral  implements MemoryWriteListener,
 	public void setSizeWidth(int n)
 	{
 		sizeWidth = n;
+		fb.setSize(sizeWidth,sizeHeight);
 	}
 
 	/**
@@ -455,6 +429,7 @@ public class VIC6561 extends AbstractPeripheral  implements MemoryWriteListener,
 	public void setSizeHeight(int n)
 	{
 		sizeHeight = n;
+		fb.setSize(sizeWidth,sizeHeight);
 	}
 	
 	/**
@@ -463,6 +438,7 @@ public class VIC6561 extends AbstractPeripheral  implements MemoryWriteListener,
 	public void setScaleWidth(int n)
 	{
 		scaleWidth = n;
+		comp.setScale(scaleWidth,scaleHeight);
 	}
 
 	/**
@@ -471,6 +447,7 @@ public class VIC6561 extends AbstractPeripheral  implements MemoryWriteListener,
 	public void setScaleHeight(int n)
 	{
 		scaleHeight = n;
+		comp.setScale(scaleWidth,scaleHeight);
 	}
 
 	/**
@@ -558,6 +535,20 @@ public class VIC6561 extends AbstractPeripheral  implements MemoryWriteListener,
 		setClock(cpu.getClock());
 		
 		cpu.addCycleListener(this);
+
+		/** One frame every 20 ms if the screen is changed */
+		cpu.addTimerMs(new jmce.util.Timer(20,true,new jmce.util.TimerListener()
+		{
+			public void timerExpired() throws SIMException
+			{
+				if (changed)
+				{
+					changed = false;
+					render();
+					fb.frame();
+				}
+			}
+		}));
 	}
 
 
@@ -597,8 +588,7 @@ public class VIC6561 extends AbstractPeripheral  implements MemoryWriteListener,
 
 	private void updateComponent()
 	{
-		jmce.swing.Util.repaintLater(comp);
-		//comp.repaint();
+		changed = true;
 	}
 
 	/**
@@ -632,6 +622,11 @@ public class VIC6561 extends AbstractPeripheral  implements MemoryWriteListener,
 		return comp;
 	}
 
+	public FrameBuffer getFrameBuffer()
+	{
+		return fb;
+	}
+
 	public void cycle(int n) throws SIMException
 	{
 		boolean value ;
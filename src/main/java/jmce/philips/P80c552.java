@@ -18,6 +18,7 @@ import jmce.sim.memory.PlainMemory;
  * <ul>
  *   <li>Port 4</li>
  *   <li>Port 5</li>
+ *   <li>SIO1 I2C master, see <tt>Sio1</tt>.</li>
  *   <li>1 x 256 byte DATA memory.</li>
  * </ul>
  * 
@@ -26,7 +27,7 @@ import jmce.sim.memory.PlainMemory;
  * <ul>
  *   <li>Timer2</li>
  *   <li>PWM</li>
- *   <li>I2c</li>
+ *   <li>I2c slave modes</li>
  *   <li>Capture latch</li>
  *   <li>Comparators</li>
  *   <li>T3 Watchdog</li>
@@ -63,6 +64,10 @@ public class P80c552 extends MCS51 implements P80c552Constants
 		super.initNames();
 		setSfrName(P4,	"P4");
 		setSfrName(P5,	"P5");
+		setSfrName(S1CON,"S1CON");
+		setSfrName(S1STA,"S1STA");
+		setSfrName(S1DAT,"S1DAT");
+		setSfrName(S1ADR,"S1ADR");
 	}
 
 	@Override
@@ -74,6 +79,9 @@ public class P80c552 extends MCS51 implements P80c552Constants
 		if (getHardware(Adc.class) == null) {
 			addHardware(new Adc());
 		}
+
+		if (getHardware(Sio1.class) == null)
+			addHardware(new Sio1());
 		super.initPeripherals();
 		
 	}
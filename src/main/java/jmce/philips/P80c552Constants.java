@@ -21,6 +21,25 @@ public interface P80c552Constants extends MCS51Constants
 	/** ADC */
 	static public final int ADCON = 0xC5;
 	static public final int ADCH = 0xC6;
+
+	/** SIO1 I2C serial port */
+	static public final int S1CON	= 0xD8;
+	static public final int S1STA	= 0xD9;
+	static public final int S1DAT	= 0xDA;
+	static public final int S1ADR	= 0xDB;
+
+	/** S1CON bits */
+	static public final int S1CON_CR2	= 0x80;
+	static public final int S1CON_ENS1	= 0x40;
+	static public final int S1CON_STA	= 0x20;
+	static public final int S1CON_STO	= 0x10;
+	static public final int S1CON_SI	= 0x08;
+	static public final int S1CON_AA	= 0x04;
+	static public final int S1CON_CR1	= 0x02;
+	static public final int S1CON_CR0	= 0x01;
+
+	/** Enable SIO1 interrupt */
+	static public final int IE_ES1	= 0x20;
 	
 }
 
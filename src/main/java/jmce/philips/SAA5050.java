@@ -25,8 +25,7 @@
    in this Software without prior written authorization from Mario Viara.
 */
 package jmce.philips;
-import java.awt.*;
-import javax.swing.*;
+import java.awt.Color;
 import jmce.sim.*;
 
 /**
@@ -61,12 +60,15 @@ import jmce.sim.*;
  * <p>
  * <tt>dotSize</tt> Set the size in pixel of a single dot. Default is
  * 2.<p>
+ * Since 1.03 the screen is rendered in one FrameBuffer with one pixel
+ * for every dot, the dot size is used only to scale the Swing
+ * component.
  * <p>
  * @author Mario Viara
- * @version 1.00
+ * @version 1.03
  * @since 1.01
  */
-public class SAA5050 extends AbstractPeripheral implements SwingHardware,MemoryWriteListener
+public class SAA5050 extends AbstractPeripheral implements SwingHardware,MemoryWriteListener,Video
 {
 	public final static Color colors[] = {Color.red,Color.green,Color.yellow,Color.blue,Color.magenta,Color.cyan,Color.white};
 	private DisplaySAA5050 dsp ;
@@ -79,12 +81,20 @@ public class SAA5050 extends AbstractPeripheral implements SwingHardware,MemoryW
 	static private final int numRows = 24;
 	static private final int sizeRow = 80;
 	
+	/** Frame buffer without the dot size */
+	private FrameBuffer fb = new FrameBuffer(numCols * 6,numRows * 10);
+
+	/** Swing component */
+	private jmce.swing.FrameBufferComponent comp = new jmce.swing.FrameBufferComponent(fb,dotSize,dotSize);
+
+	/** True if the screen must be rendered again */
+	private boolean changed = true;
+	
 	/**
-	 * Inner class with the Swing component
+	 * Inner class with the renderer
 	 */
-	class DisplaySAA5050 extends JComponent 
+	class DisplaySAA5050
 	{
-		private static final long serialVersionUID = 1L;
 		Color fa = colors[6];
 		Color fg = colors[6];
 		Color bg = Color.black;
@@ -96,22 +106,8 @@ public class SAA5050 extends AbstractPeripheral implements SwingHardware,MemoryW
 		private boolean skip[] = new boolean[256];
 		private boolean blink;
 
-		DisplaySAA5050()
-		{
-			setPreferredSize(new Dimension(numCols * 6 * dotSize,numRows * 10 * dotSize));
-		}
-
-		public void updateComponent()
+		public void render()
 		{
-			repaint();
-		}
-
-		public void paintComponent(Graphics g)
-		{
-			Insets insets = getInsets();
-
-			g.translate(insets.left,insets.top);
-
 			int pos = scroll;
 			fa = fg = colors[6];
 			fontAlpha = Saa5050FontNormal.font;
@@ -132,7 +128,7 @@ public class SAA5050 extends AbstractPeripheral implements SwingHardware,MemoryW
 					{
 						if (!skip[c])
 						{
-							teletext(g,c,r,m.getMemory(base+pos+c));
+							teletext(c,r,m.getMemory(base+pos+c));
 							skip[c] = doubleHeight;
 						}
 						else
@@ -148,7 +144,7 @@ public class SAA5050 extends AbstractPeripheral implements SwingHardware,MemoryW
 			}
 		}
 
-		void teletext(Graphics g,int c,int r,int code)
+		void teletext(int c,int r,int code)
 		{
 			switch (code)
 			{
@@ -231,30 +227,29 @@ public class SAA5050 extends AbstractPeripheral implements SwingHardware,MemoryW
 
 			lastCode = code;
 			if (graphics)
-				paintChar(g,c,r,code,fg,bg,fontGraphics);
+				paintChar(c,r,code,fg,bg,fontGraphics);
 			else
-				paintChar(g,c,r,code,fa,bg,fontAlpha);
+				paintChar(c,r,code,fa,bg,fontAlpha);
 
 		}
 
-		void drawLine(Graphics g,int x,int y,Color fg,Color bg,int font[],int pos)
+		void drawLine(int x,int y,Color fg,Color bg,int font[],int pos)
 		{
+			int f = fg.getRGB() & 0xffffff;
+			int b = bg.getRGB() & 0xffffff;
+			
 			for (int x1 = 0 ; x1 < 6 ; x1++)
 			{
-				if (font[pos] == 0)
-					g.setColor(bg);
-				else
-					g.setColor(fg);
-				g.fillRect(x,y,dotSize,dotSize);
-				x += dotSize;
+				fb.setPixel(x,y,font[pos] == 0 ? b : f);
+				x++;
 				pos++;
 			}
 
 		}
 
-		void paintChar(Graphics g,int c,int r,int code,Color fg,Color bg,int font[])
+		void paintChar(int c,int r,int code,Color fg,Color bg,int font[])
 		{
-			int y = r * 10 * dotSize;
+			int y = r * 10;
 			int pos = (code - 32) * 60;
 			Color tmp;
 
@@ -276,17 +271,17 @@ public class SAA5050 extends AbstractPeripheral implements SwingHardware,MemoryW
 
 			for (int y1 = 0 ; y1 < 10 ; y1++)
 			{
-				int x = c * 6 * dotSize;
+				int x = c * 6;
 
-				drawLine(g,x,y,fg,bg,font,pos);
+				drawLine(x,y,fg,bg,font,pos);
 
 				if (doubleHeight)
 				{
-					y += dotSize;
-					drawLine(g,x,y,fg,bg,font,pos);
+					y++;
+					drawLine(x,y,fg,bg,font,pos);
 				}
 
-				y += dotSize;
+				y++;
 				pos += 6;
 
 			}
@@ -311,7 +306,12 @@ public class SAA5050 extends AbstractPeripheral implements SwingHardware,MemoryW
 
 	public java.awt.Component getComponent()
 	{
-		return dsp;
+		return comp;
+	}
+
+	public FrameBuffer getFrameBuffer()
+	{
+		return fb;
 	}
 
 
@@ -332,7 +332,7 @@ public class SAA5050 extends AbstractPeripheral implements SwingHardware,MemoryW
 	public void setScroll(int scroll)
 	{
 		this.scroll = scroll;
-		dsp.repaint();
+		changed = true;
 	}
 
 	public void registerCPU(CPU cpu) throws SIMException
@@ -347,19 +347,33 @@ public class SAA5050 extends AbstractPeripheral implements SwingHardware,MemoryW
 			public void timerExpired()
 			{
 				doBlink = !doBlink;
-				dsp.repaint();
+				changed = true;
 			}
 		});
 
 		cpu.addTimerMs(timer);
 
+		/** One frame every 20 ms if the screen is changed */
+		cpu.addTimerMs(new jmce.util.Timer(20,true,new jmce.util.TimerListener()
+		{
+			public void timerExpired() throws SIMException
+			{
+				if (changed)
+				{
+					changed = false;
+					dsp.render();
+					fb.frame();
+				}
+			}
+		}));
+
 
 	}
 
 
 	public void	writeMemory(jmce.sim.Memory m,int address,int value,int oldValue) throws SIMException
 	{
-		dsp.repaint();
+		changed = true;
 
 	}
 }
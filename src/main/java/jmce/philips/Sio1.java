@@ -0,0 +1,239 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.philips;
+
+import jmce.intel.mcs51.Interrupt8051;
+import jmce.intel.mcs51.MCS51;
+import jmce.sim.*;
+import jmce.util.Logger;
+import jmce.util.Hex;
+
+/**
+ * SIO1 I2C serial port of the Philips 80C552.
+ * <p>
+ * Only the master transmitter and master receiver modes are
+ * implemented. The transfer is done at transaction level on one
+ * <tt>I2cBus</tt> : when the program clear SI the whole byte is moved
+ * to or from the slave and SI is set again with the new status in
+ * S1STA, without simulating the SCL clock.
+ * <p>
+ * The bus used is the first <tt>I2cBus</tt> child of this peripheral,
+ * if not present the first <tt>I2cBus</tt> of the cpu, so the same
+ * slaves of one bit banged bus on P1.6/P1.7 can be used. If no bus is
+ * found one new empty bus is created.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ * @since 1.03
+ *
+ * @see jmce.sim.I2cBus
+ */
+public class Sio1 extends AbstractPeripheral implements MemoryWriteListener,P80c552Constants
+{
+	private static Logger log = Logger.getLogger(Sio1.class);
+
+	/** Status codes */
+	static public final int STATUS_START		= 0x08;
+	static public final int STATUS_RESTART		= 0x10;
+	static public final int STATUS_SLA_W_ACK	= 0x18;
+	static public final int STATUS_SLA_W_NACK	= 0x20;
+	static public final int STATUS_DATA_W_ACK	= 0x28;
+	static public final int STATUS_DATA_W_NACK	= 0x30;
+	static public final int STATUS_SLA_R_ACK	= 0x40;
+	static public final int STATUS_SLA_R_NACK	= 0x48;
+	static public final int STATUS_DATA_R_ACK	= 0x50;
+	static public final int STATUS_DATA_R_NACK	= 0x58;
+	static public final int STATUS_IDLE		= 0xF8;
+
+	private MCS51 mcs51;
+	private I2cBus bus;
+	private int status;
+
+	/** True when S1CON is changed by the SIO1 itself */
+	private boolean inUpdate = false;
+
+	public Sio1()
+	{
+		super("SIO1");
+	}
+
+	/**
+	 * Return the bus used by the SIO1.
+	 */
+	public I2cBus getBus()
+	{
+		return bus;
+	}
+
+	public void init(Hardware parent) throws SIMException
+	{
+		bus = (I2cBus)getHardware(I2cBus.class);
+		if (bus == null && parent != null)
+			bus = (I2cBus)parent.getHardware(I2cBus.class);
+		if (bus == null)
+			addHardware(bus = new I2cBus());
+
+		super.init(parent);
+	}
+
+	public void registerCPU(CPU cpu) throws SIMException
+	{
+		super.registerCPU(cpu);
+		mcs51 = (MCS51)cpu;
+
+		/**
+		 * The write listeners are called from the last added so
+		 * the interrupt must see the S1CON written by the program
+		 * before the SI set by this listener.
+		 */
+		cpu.addIOWriteListener(S1CON,this);
+		cpu.addIOReadListener(S1STA,new MemoryReadListener()
+		{
+			public int readMemory(Memory memory,int address,int value) throws SIMException
+			{
+				return status;
+			}
+		});
+
+		Interrupt8051 irq = new Interrupt8051(mcs51,"SIO1",0x002B);
+		irq.addInterruptCondition(IE,IE_ES1);
+		irq.addInterruptCondition(S1CON,S1CON_SI);
+	}
+
+	public void reset() throws SIMException
+	{
+		super.reset();
+		status = STATUS_IDLE;
+	}
+
+	/**
+	 * Set SI with the new status.
+	 */
+	private void setStatus(int status) throws SIMException
+	{
+		log.fine("Status "+Hex.formatByte(status));
+		this.status = status;
+		mcs51.sfrSet(S1CON,S1CON_SI);
+	}
+
+	/**
+	 * Generate a start or a repeated start condition.
+	 */
+	private void start() throws SIMException
+	{
+		if (status == STATUS_IDLE)
+			setStatus(STATUS_START);
+		else
+			setStatus(STATUS_RESTART);
+	}
+
+	/**
+	 * Execute the next byte transfer with the current status.
+	 */
+	private void transfer(int s1con) throws SIMException
+	{
+		int data = mcs51.sfr(S1DAT);
+
+		switch (status)
+		{
+			case	STATUS_START:
+			case	STATUS_RESTART:
+				if ((data & 1) != 0)
+					setStatus(bus.start(data) ? STATUS_SLA_R_ACK : STATUS_SLA_R_NACK);
+				else
+					setStatus(bus.start(data) ? STATUS_SLA_W_ACK : STATUS_SLA_W_NACK);
+				break;
+
+			/** After a not acknowledge the byte is transmitted anyway */
+			case	STATUS_SLA_W_ACK:
+			case	STATUS_DATA_W_ACK:
+			case	STATUS_SLA_W_NACK:
+			case	STATUS_DATA_W_NACK:
+				setStatus(bus.write(data) ? STATUS_DATA_W_ACK : STATUS_DATA_W_NACK);
+				break;
+
+			case	STATUS_SLA_R_ACK:
+			case	STATUS_DATA_R_ACK:
+				boolean aa = (s1con & S1CON_AA) != 0;
+				mcs51.sfr(S1DAT,bus.read(!aa));
+				setStatus(aa ? STATUS_DATA_R_ACK : STATUS_DATA_R_NACK);
+				break;
+
+			/** No slave drive the bus, one more byte is received */
+			case	STATUS_SLA_R_NACK:
+			case	STATUS_DATA_R_NACK:
+				mcs51.sfr(S1DAT,bus.read(true));
+				setStatus(STATUS_DATA_R_NACK);
+				break;
+		}
+	}
+
+	/**
+	 * Implementation of the S1CON write listener.
+	 */
+	public void writeMemory(Memory m,int address,int value,int oldValue) throws SIMException
+	{
+		if (inUpdate)
+			return;
+
+		inUpdate = true;
+
+		try
+		{
+			if ((value & S1CON_ENS1) == 0)
+			{
+				if (status != STATUS_IDLE)
+					bus.stop();
+				status = STATUS_IDLE;
+				return;
+			}
+
+			/** Nothing to do until SI is cleared */
+			if ((value & S1CON_SI) != 0)
+				return;
+
+			if ((oldValue & S1CON_SI) == 0 && status != STATUS_IDLE)
+				return;
+
+			if ((value & S1CON_STO) != 0)
+			{
+				bus.stop();
+				status = STATUS_IDLE;
+				mcs51.sfrReset(S1CON,S1CON_STO);
+			}
+
+			if ((value & S1CON_STA) != 0)
+				start();
+			else if (status != STATUS_IDLE)
+				transfer(value);
+		}
+		finally
+		{
+			inUpdate = false;
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.sim;
+
+import jmce.util.ByteRingBuffer;
+
+/**
+ * Buffered producer of bytes.
+ * <p>
+ * Primitive version of BufferedDeviceProducer&lt;Integer&gt;. If one or
+ * more consumer are installed the bytes are sent directly otherwise
+ * are stored in one ByteRingBuffer and later can be received. Standard
+ * DeviceConsumer&lt;Integer&gt; are supported thru one adapter.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ *
+ * @since 1.03
+ * @see BufferedDeviceProducer
+ */
+public class ByteDeviceProducer
+{
+	private ByteRingBuffer buffer;
+	private ByteConsumer consumers[] = new ByteConsumer[0];
+
+	/**
+	 * Adapter for DeviceConsumer&lt;Integer&gt;
+	 */
+	static class Adapter implements ByteConsumer
+	{
+		private DeviceConsumer<Integer> c;
+
+		Adapter(DeviceConsumer<Integer> c)
+		{
+			this.c = c;
+		}
+		
+		public void consume(int v) throws SIMException
+		{
+			c.consume(v);
+		}
+
+		public void consume(byte b[],int off,int len) throws SIMException
+		{
+			for (int i = 0 ; i < len ; i++)
+				c.consume(b[off+i] & 0xff);
+		}
+	}
+	
+	/**
+	 * Default contructor.
+	 *
+	 * Create a new instance wih the ring buffer of the default
+	 * size.
+	 */
+	public ByteDeviceProducer()
+	{
+		buffer = new ByteRingBuffer();
+	}
+
+	public ByteDeviceProducer(int size)
+	{
+		buffer = new ByteRingBuffer(size);
+	}
+
+	/**
+	 * Add a new consumer and send to it the buffered bytes.
+	 */
+	public void addConsumer(ByteConsumer c)
+	{
+		ByteConsumer v[] = new ByteConsumer[consumers.length+1];
+		System.arraycopy(consumers,0,v,0,consumers.length);
+		v[consumers.length] = c;
+		consumers = v;
+		
+		try
+		{
+			consumeBuffer();
+		}
+		catch (Exception ignore)
+		{
+		}
+	}
+
+	public void addConsumer(DeviceConsumer<Integer> c)
+	{
+		addConsumer(new Adapter(c));
+	}
+
+	public void removeConsumer(ByteConsumer c)
+	{
+		for (int i = 0 ; i < consumers.length ; i++)
+		{
+			if (consumers[i] == c)
+			{
+				ByteConsumer v[] = new ByteConsumer[consumers.length-1];
+				System.arraycopy(consumers,0,v,0,i);
+				System.arraycopy(consumers,i+1,v,i,v.length - i);
+				consumers = v;
+				return;
+			}
+		}
+	}
+
+	public void removeConsumer(DeviceConsumer<Integer> c)
+	{
+		for (int i = 0 ; i < consumers.length ; i++)
+			if (consumers[i] instanceof Adapter && ((Adapter)consumers[i]).c == c)
+			{
+				removeConsumer(consumers[i]);
+				return;
+			}
+	}
+
+	private void consumeBuffer() throws SIMException
+	{
+		if (consumers.length > 0)
+			while (!buffer.isEmpty())
+				produce(buffer.get());
+	}
+
+	/**
+	 * Produce one byte.
+	 */
+	public void produce(int c) throws SIMException
+	{
+		ByteConsumer v[] = consumers;
+		
+		if (v.length == 0)
+		{
+			buffer.put(c);
+			return;
+		}
+
+		for (int i = 0 ; i < v.length ; i++)
+			v[i].consume(c);
+	}
+
+	/**
+	 * Produce len bytes.
+	 *
+	 * @return the number of bytes produced, less than len only if
+	 * no consumer is installed and the buffer is full.
+	 */
+	public int produce(byte b[],int off,int len) throws SIMException
+	{
+		ByteConsumer v[] = consumers;
+
+		if (v.length == 0)
+			return buffer.put(b,off,len);
+
+		for (int i = 0 ; i < v.length ; i++)
+			v[i].consume(b,off,len);
+
+		return len;
+	}
+
+	public boolean isFull()
+	{
+		return buffer.isFull();
+	}
+
+	public boolean isEmpty()
+	{
+		return buffer.isEmpty();
+	}
+
+	/**
+	 * Return the next buffered byte.
+	 */
+	public int consume()
+	{
+		if (buffer.isEmpty())
+			throw new java.lang.Error("Consume empty buffer");
+
+		return buffer.get();
+	}
+}
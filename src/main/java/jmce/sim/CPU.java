@@ -117,13 +117,27 @@ public interface CPU extends Hardware,Runnable,InterruptManager
 	 * <p>
 	 * This event is fired  after  the execution of every
 	 * instructions. Please use only when necessary because can have
-	 * large impact on simulator performance.
+	 * large impact on simulator performance. ScheduledCycleListener
+	 * are called only when their deadline is reached.
 	 *
 	 * @param l - The listener to register.
 	 * 
 	 */
 	public void addCycleListener(CycleListener l);
 
+	/**
+	 * Deliver to all the ScheduledCycleListener the cycles
+	 * accumulated since the last call and recalculate the deadline.
+	 * <p>
+	 * The listeners are called only from the cpu thread, when called
+	 * from other thread the cpu sync at the next instruction.
+	 *
+	 * @since 1.03
+	 *
+	 * @see ScheduledCycleListener
+	 */
+	public void syncCycles() throws SIMException;
+
 	/**
 	 * Add a Register
 	 */
@@ -539,6 +553,33 @@ public interface CPU extends Hardware,Runnable,InterruptManager
 	 */
 	public boolean getRealTime();
 
+	/**
+	 * Set the batch mode.
+	 * <p>
+	 * In batch mode the cpu run at the maximum speed, idle() do not
+	 * sleep, no status timer is started and HALT stop the cpu with
+	 * one CPUAbortException. Must be called before init().
+	 *
+	 * @since 1.03
+	 */
+	public void setBatchMode(boolean mode);
+
+	/**
+	 * Return the batch mode.
+	 *
+	 * @since 1.03
+	 * @see #setBatchMode
+	 */
+	public boolean getBatchMode();
+
+	/**
+	 * Return the number of instructions executed from the last
+	 * reset.
+	 *
+	 * @since 1.03
+	 */
+	public long getInstructionCount();
+
 	/**
 	 * Abort the cpu execution.
 	 *<p>
@@ -593,9 +634,16 @@ public interface CPU extends Hardware,Runnable,InterruptManager
 	public void notifyInterrupt(Interrupt isr);
 
 	/**
-	 * Add a new interrupt to this CPU
+	 * Add a new interrupt to this CPU and return the interrupt line.
 	 *
 	 * @since 1.01
 	 */
-	public void addInterrupt(Interrupt isr);
+	public int addInterrupt(Interrupt isr);
+
+	/**
+	 * Set the ready state of one interrupt line.
+	 *
+	 * @since 1.03
+	 */
+	public void setInterruptLine(int line,boolean ready);
 }
@@ -30,7 +30,7 @@ package jmce.sim;
  * Listener to intercept function call.
  *
  * @author Mario Viara
- * @version 1.00
+ * @version 1.03
  */
 public interface CallListener
 {
@@ -40,7 +40,8 @@ public interface CallListener
 	 * @param cpu - CPU.
 	 * @param address - Address in memory.
 	 *
-	 * @return The number of CPU cycle elapsed.
+	 * @return The number of CPU cycle elapsed or a negative value
+	 * to let the CPU execute the call normally.
 	 */
 	public int call(CPU cpu,int address) throws SIMException;
 }
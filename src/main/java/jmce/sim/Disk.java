@@ -125,6 +125,13 @@ public interface Disk extends Peripheral
 	 */
 	public void dismount() throws SIMException;
 
+	/**
+	 * Write the pending changes to the storage of the disk.
+	 *
+	 * @since 1.03
+	 */
+	public void flush() throws SIMException;
+
 	/**
 	 * Mount the disk.
 	 *
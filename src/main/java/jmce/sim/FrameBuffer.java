@@ -0,0 +1,171 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.sim;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import jmce.util.FastArray;
+
+/**
+ * Frame buffer of one video device.
+ * <p>
+ * The pixels are stored in one int[] with the RGB value of every
+ * pixel, row after row, without any scaling. The array is the
+ * raster of a BufferedImage so a Swing consumer can draw it without
+ * any conversion and a headless consumer can save it as image or
+ * calculate an hash.
+ * <p>
+ * When a frame is complete the device call frame() and all the
+ * registered FrameListener are called.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ *
+ * @since 1.03
+ */
+public class FrameBuffer
+{
+	private int width,height;
+	private int pixels[];
+	private BufferedImage image;
+	private long frames = 0;
+	private FastArray<FrameListener> listeners = new FastArray<FrameListener>();
+
+	/**
+	 * Constructor with the size in pixel.
+	 */
+	public FrameBuffer(int width,int height)
+	{
+		setSize(width,height);
+	}
+
+	/**
+	 * Change the size of the frame buffer. The content is lost.
+	 */
+	public void setSize(int width,int height)
+	{
+		if (image != null && width == this.width && height == this.height)
+			return;
+
+		this.width = width;
+		this.height = height;
+		image = new BufferedImage(width,height,BufferedImage.TYPE_INT_RGB);
+		pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+	}
+
+	public int getWidth()
+	{
+		return width;
+	}
+
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 * Return the array with the RGB value of the pixels.
+	 */
+	public int[] getPixels()
+	{
+		return pixels;
+	}
+
+	/**
+	 * Return the image that share the pixels.
+	 */
+	public BufferedImage getImage()
+	{
+		return image;
+	}
+
+	/**
+	 * Set one pixel, pixels outside the frame are ignored.
+	 */
+	public final void setPixel(int x,int y,int rgb)
+	{
+		if (x >= 0 && x < width && y >= 0 && y < height)
+			pixels[y * width + x] = rgb;
+	}
+
+	/**
+	 * Fill one rectangle clipped to the frame.
+	 */
+	public final void fill(int x,int y,int w,int h,int rgb)
+	{
+		if (x < 0)
+		{
+			w += x;
+			x = 0;
+		}
+
+		if (y < 0)
+		{
+			h += y;
+			y = 0;
+		}
+
+		if (x + w > width)
+			w = width - x;
+
+		if (y + h > height)
+			h = height - y;
+
+		for (int i = 0 ; i < h ; i++)
+			java.util.Arrays.fill(pixels,(y + i) * width + x,(y + i) * width + x + w,rgb);
+	}
+
+	/**
+	 * Return the number of frame generated.
+	 */
+	public long getFrameCount()
+	{
+		return frames;
+	}
+
+	public void addFrameListener(FrameListener l)
+	{
+		listeners.add(l);
+	}
+
+	public void removeFrameListener(FrameListener l)
+	{
+		listeners.remove(l);
+	}
+
+	/**
+	 * Called from the device when the frame is complete.
+	 */
+	public void frame() throws SIMException
+	{
+		frames++;
+
+		for (int i = 0 ; i < listeners.getSize() ; i++)
+			listeners.get(i).frameUpdated(this);
+	}
+}
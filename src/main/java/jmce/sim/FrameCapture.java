@@ -0,0 +1,106 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Headless consumer of a FrameBuffer.
+ * <p>
+ * Save the frames as PNG file and calculate the CRC32 of the pixels
+ * to compare the video output of regression runs without a display.
+ * If the interval is greater than 0 one frame every interval is
+ * saved as <tt>prefix-nnnnnn.png</tt>.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ *
+ * @since 1.03
+ */
+public class FrameCapture implements FrameListener
+{
+	private String prefix;
+	private int interval;
+
+	/**
+	 * Constructor with the prefix of the file names and the interval
+	 * in frames, 0 to not save any frame automatically.
+	 */
+	public FrameCapture(String prefix,int interval)
+	{
+		this.prefix = prefix;
+		this.interval = interval;
+	}
+
+	public void frameUpdated(FrameBuffer fb) throws SIMException
+	{
+		if (interval > 0 && fb.getFrameCount() % interval == 0)
+			save(fb,prefix+"-"+String.format("%06d",fb.getFrameCount())+".png");
+	}
+
+	/**
+	 * Save the current frame as PNG.
+	 */
+	static public void save(FrameBuffer fb,String filename) throws SIMException
+	{
+		try
+		{
+			ImageIO.write(fb.getImage(),"png",new File(filename));
+		}
+		catch (IOException ex)
+		{
+			throw new SIMIOException(filename,"Writing frame");
+		}
+	}
+
+	/**
+	 * Return the CRC32 of the pixels of the current frame.
+	 */
+	static public long getCRC(FrameBuffer fb)
+	{
+		int pixels[] = fb.getPixels();
+		byte row[] = new byte[fb.getWidth() * 3];
+		CRC32 crc = new CRC32();
+
+		for (int y = 0 ; y < fb.getHeight() ; y++)
+		{
+			for (int x = 0,p = y * fb.getWidth() ; x < fb.getWidth() ; x++,p++)
+			{
+				row[x*3+0] = (byte)(pixels[p] >> 16);
+				row[x*3+1] = (byte)(pixels[p] >> 8);
+				row[x*3+2] = (byte)pixels[p];
+			}
+			crc.update(row,0,row.length);
+		}
+
+		return crc.getValue();
+	}
+}
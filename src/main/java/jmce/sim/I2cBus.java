@@ -50,9 +50,17 @@ import jmce.sim.memory.*;
  * <p>
  * This version is not multi master can support only one master
  * connected to one or more slave devices.
+ * <p>
+ * Since 1.03 the bus can also be driven at transaction level with
+ * <tt>start()</tt>, <tt>write()</tt>, <tt>read()</tt> and
+ * <tt>stop()</tt>. Every call move one whole byte to or from the slave
+ * without decoding the SCL/SDA edges, so one hardware I2C controller
+ * can use the same slaves of the bit banged bus. The two ways share
+ * the selected slave and the byte counter, the wires are optional when
+ * only the transaction level is used.
  *
  * @author Mario Viara
- * @version 1.00
+ * @version 1.03
  *
  * @see I2cSlave
  */
@@ -110,10 +118,13 @@ public class I2cBus extends jmce.sim.AbstractPeripheral implements MemoryWriteLi
 	public void reset() throws SIMException
 	{
 		super.reset();
-		SDA.set(true);
-		SCL.set(true);
-		oldSda = SDA.get();
-		oldScl = SCL.get();
+		if (SDA != null && SCL != null)
+		{
+			SDA.set(true);
+			SCL.set(true);
+			oldSda = SDA.get();
+			oldScl = SCL.get();
+		}
 
 		i2cIdle();
 	}
@@ -369,6 +380,132 @@ public class I2cBus extends jmce.sim.AbstractPeripheral implements MemoryWriteLi
 		ignore = false;
 	}
 
+	/**
+	 * Generate a start or repeated start condition and send the
+	 * address byte.
+	 *
+	 * @param address - Slave address, bit 0 is the read flag.
+	 *
+	 * @return true if one slave acknowledged the address.
+	 *
+	 * @since 1.03
+	 */
+	public boolean start(int address) throws SIMException
+	{
+		i2cStart();
+		address &= 0xff;
+		i2cRecv(address);
+		read = (address & 1) != 0;
+
+		boolean result = ph != null && ack;
+		ack = false;
+
+		return result;
+	}
+
+	/**
+	 * Send one data byte to the slave selected by <tt>start()</tt>.
+	 *
+	 * @param value - Byte to send.
+	 *
+	 * @return true if the slave acknowledged the byte.
+	 *
+	 * @since 1.03
+	 */
+	public boolean write(int value) throws SIMException
+	{
+		if (ph == null || read)
+			return false;
+
+		i2cRecv(value & 0xff);
+
+		boolean result = ack;
+		ack = false;
+
+		return result;
+	}
+
+	/**
+	 * Receive one data byte from the slave selected by
+	 * <tt>start()</tt>.
+	 *
+	 * @param last - True if the master does not acknowledge the byte.
+	 *
+	 * @return the byte, 0xFF if no slave is selected.
+	 *
+	 * @since 1.03
+	 */
+	public int read(boolean last) throws SIMException
+	{
+		if (ph == null || !read || lastByte)
+			return 0xff;
+
+		int value = ph.i2cRead(byteCount++) & 0xff;
+		lastByte = last;
+		log.fine("I2CSEND "+Hex.formatByte(value));
+
+		return value;
+	}
+
+	/**
+	 * Generate a stop condition.
+	 *
+	 * @since 1.03
+	 */
+	public void stop()
+	{
+		i2cStop();
+	}
+
+	/**
+	 * Write one complete message : start, address, data and stop.
+	 *
+	 * @param address - Slave address, bit 0 is ignored.
+	 * @param data - Data bytes.
+	 * @param offset - First byte to send.
+	 * @param len - Number of byte to send.
+	 *
+	 * @return true if the slave acknowledged the address and all the
+	 * bytes.
+	 *
+	 * @since 1.03
+	 */
+	public boolean write(int address,int data[],int offset,int len) throws SIMException
+	{
+		boolean result = start(address & 0xfe);
+
+		for (int i = 0 ; result && i < len ; i++)
+			result = write(data[offset + i]);
+
+		stop();
+
+		return result;
+	}
+
+	/**
+	 * Read one complete message : start, address, data and stop.
+	 *
+	 * @param address - Slave address, bit 0 is ignored.
+	 * @param data - Buffer for the received bytes.
+	 * @param offset - First byte to fill.
+	 * @param len - Number of byte to read.
+	 *
+	 * @return true if the slave acknowledged the address.
+	 *
+	 * @since 1.03
+	 */
+	public boolean read(int address,int data[],int offset,int len) throws SIMException
+	{
+		boolean result = start(address | 0x01);
+
+		for (int i = 0 ; i < len ; i++)
+			data[offset + i] = result ? read(i == len - 1) : 0xff;
+
+		stop();
+
+		return result;
+	}
+
 	/**
 	 * Implementation of listener to receive write on the bit
 	 * mapped to the wire of the I2cBUS.
@@ -36,6 +36,9 @@ import jmce.util.FastArray;
  * <p>
  * When the constructor is called the interrupt is added to the specified InterruptManager (normally the CPU) and the
  * interrupt will be fired when the 2 properties enabled and active are both true.
+ * <p>
+ * Since 1.03 the interrupt notify the managers only when the ready state change, the manager keep the ready
+ * interrupts in one bit mask so the state of the interrupt must be changed only using setActive() and setEnabled().
  * 
  * @author Mario Viara
  * @version 1.03
@@ -61,6 +64,12 @@ public class Interrupt {
 	/** Array with all manager installed */
 	private FastArray<InterruptManager> mgrs = new FastArray<InterruptManager>();
 
+	/** Line assigned from every manager */
+	private int lines[] = new int[0];
+
+	/** Last ready state notified to the managers */
+	private boolean ready = false;
+
 	/**
 	 * Constructor with all parameter
 	 */
@@ -88,8 +97,13 @@ public class Interrupt {
 	 * @since 1.02
 	 */
 	public void addInterruptManager(InterruptManager mgr) {
-		mgr.addInterrupt(this);
+		int l[] = new int[lines.length + 1];
+		System.arraycopy(lines, 0, l, 0, lines.length);
+		l[lines.length] = mgr.addInterrupt(this);
+		lines = l;
 		mgrs.add(mgr);
+		if (ready)
+			mgr.setInterruptLine(l[lines.length - 1], true);
 	}
 
 	/**
@@ -185,8 +199,7 @@ public class Interrupt {
 	 */
 	public final void setEnabled(boolean mode) throws SIMException {
 		enabled = mode;
-		if (enabled)
-			checkReady();
+		checkReady();
 	}
 
 	/**
@@ -196,8 +209,7 @@ public class Interrupt {
 	 */
 	public final void setActive(boolean mode) throws SIMException {
 		active = mode;
-		if (active)
-			checkReady();
+		checkReady();
 	}
 
 	/**
@@ -206,17 +218,27 @@ public class Interrupt {
 	 * @since 1.01
 	 */
 	public boolean isReady() throws SIMException {
-		return isActive() & isEnabled();
+		return active & enabled;
 	}
 
 	/**
-	 * Called when the enabled or the active property is changed. Notify the CPU that this interrupt require attention.
+	 * Called when the enabled or the active property is changed. Notify the managers when the ready state change.
+	 * <p>
+	 * Since 1.03 is public so the manager can check again the ready state from
+	 * {@link InterruptManager#notifyInterrupt}.
 	 *
 	 * @since 1.01
 	 */
-	protected final void checkReady() throws SIMException {
+	public final synchronized void checkReady() throws SIMException {
+		boolean r = active & enabled;
+
+		if (r == ready)
+			return;
+
+		ready = r;
+
 		for (int i = mgrs.getSize(); --i >= 0;)
-			mgrs.get(i).notifyInterrupt(this);
+			mgrs.get(i).setInterruptLine(lines[i], r);
 	}
 
 	/**
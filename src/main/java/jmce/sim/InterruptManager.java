@@ -29,15 +29,36 @@ package jmce.sim;
 /**
  * Interface for interrupt manager. Normally is implemented from the
  * CPU.
+ * <p>
+ * Since 1.03 every interrupt added to the manager receive one line
+ * number and the interrupt notify the manager every time its ready
+ * state (active and enabled) change, so the manager can keep the
+ * ready interrupts in one bit mask. The line number is also the
+ * priority, the last added interrupt have the higher priority.
  *
  * @author Mario Viara
+ * @version 1.03
  * @since 1.02
  */
 public interface InterruptManager
 {
-	/** Add a new interrupt to the menager */
-	public void addInterrupt(Interrupt isr);
+	/**
+	 * Add a new interrupt to the manager.
+	 *
+	 * @return the line assigned to the interrupt.
+	 */
+	public int addInterrupt(Interrupt isr);
 
-	/** Notify interrupt ready */
+	/**
+	 * Notify interrupt ready. The manager check again the ready
+	 * state of the interrupt.
+	 */
 	public void notifyInterrupt(Interrupt isr);
+
+	/**
+	 * Set the ready state of one interrupt line.
+	 *
+	 * @since 1.03
+	 */
+	public void setInterruptLine(int line,boolean ready);
 }
@@ -40,9 +40,13 @@ package jmce.sim;
  * <p>Memory can have <code>MemoryReadListener</code> called when one
  * memory location must be read. Multiple MemoryReadListener can be
  * installed and are called in installation order.
+ *
+ * <p>Block of memory can be transferred with one call, used by disk
+ * and DMA controller and snapshot loader. The listeners are called
+ * like for the single byte operation.
  * 
  * @author Mario Viara
- * @version 1.01
+ * @version 1.03
  * 
  */
 public interface Memory extends Peripheral
@@ -66,6 +70,42 @@ public interface Memory extends Peripheral
 	 */
 	public int	getMemory(int address) throws SIMException;
 
+	/**
+	 * Set a block of memory.
+	 *
+	 * @param address - Memory address of the first byte
+	 * @param data - Source array
+	 * @param offset - Offset of the first byte in the array
+	 * @param len - Number of byte to set
+	 *
+	 * @since 1.03
+	 */
+	public void	setMemory(int address,byte data[],int offset,int len) throws SIMException;
+
+	/**
+	 * Get a block of memory.
+	 *
+	 * @param address - Memory address of the first byte
+	 * @param data - Destination array
+	 * @param offset - Offset of the first byte in the array
+	 * @param len - Number of byte to get
+	 *
+	 * @since 1.03
+	 */
+	public void	getMemory(int address,byte data[],int offset,int len) throws SIMException;
+
+	/**
+	 * Copy a block from another memory.
+	 *
+	 * @param address - Destination address in this memory
+	 * @param from - Source memory
+	 * @param fromAddress - Source address
+	 * @param len - Number of byte to copy
+	 *
+	 * @since 1.03
+	 */
+	public void	copyMemory(int address,Memory from,int fromAddress,int len) throws SIMException;
+
 	/**
 	 * Return the size of the memory in byte.
 	 */
@@ -29,12 +29,21 @@ package jmce.sim;
 
 /**
  * Sample abstract class for serial chars device.
+ * <p>
+ * Since 1.03 the characters are moved thru one primitive byte channel
+ * (ByteDeviceProducer) without boxing, the generic methods of
+ * Device&lt;Integer&gt; are implemented as adapter on the byte
+ * channel. Two Serial connected together use only the byte channel.
  *
  * @author Mario Viara
- * @version 1.00
+ * @version 1.03
  */
 abstract public class Serial extends Device<Integer> implements Console
 {
+	private Device<Integer> connected = null;
+	private ByteDeviceProducer input  = new ByteDeviceProducer();
+	private ByteDeviceProducer output = new ByteDeviceProducer();
+	
 	public Serial()
 	{
 		super("Serial");
@@ -45,6 +54,273 @@ abstract public class Serial extends Device<Integer> implements Console
 		super(name);
 	}
 	
+	public void removeInputConsumer(DeviceConsumer<Integer> c)
+	{
+		input.removeConsumer(c);
+	}
+
+	/**
+	 * @since 1.03
+	 */
+	public void removeInputConsumer(ByteConsumer c)
+	{
+		input.removeConsumer(c);
+	}
+
+	public void addInputConsumer(DeviceConsumer<Integer> c)
+	{
+		input.addConsumer(c);
+	}
+
+	/**
+	 * @since 1.03
+	 */
+	public void addInputConsumer(ByteConsumer c)
+	{
+		input.addConsumer(c);
+	}
+
+	public void addInputProducer(DeviceProducer<Integer> c) throws SIMException
+	{
+		c.addConsumer(new DeviceConsumer<Integer>()
+		{
+			public void consume(Integer c) throws SIMException
+			{
+				input.produce(c);
+			}
+		});
+	}
+
+	public void removeOutputConsumer(DeviceConsumer<Integer> c)
+	{
+		output.removeConsumer(c);
+	}
+
+	/**
+	 * @since 1.03
+	 */
+	public void removeOutputConsumer(ByteConsumer c)
+	{
+		output.removeConsumer(c);
+	}
+
+	public void addOutputConsumer(DeviceConsumer<Integer> c) throws SIMException
+	{
+		output.addConsumer(c);
+	}
+
+	/**
+	 * @since 1.03
+	 */
+	public void addOutputConsumer(ByteConsumer c) throws SIMException
+	{
+		output.addConsumer(c);
+	}
+
+	public void addOutputProducer(DeviceProducer<Integer> c) throws SIMException
+	{
+		c.addConsumer(new DeviceConsumer<Integer>()
+		{
+			public void consume(Integer c) throws SIMException
+			{
+				output.produce(c);
+			}
+		});
+	}
+
+	public boolean readyRead()
+	{
+		return !input.isEmpty();
+	}
+
+	/**
+	 * Read the next byte from the input, wait if no one is
+	 * available.
+	 *
+	 * @since 1.03
+	 */
+	public int readByte() throws SIMException
+	{
+		while (input.isEmpty())
+			idle();
+
+		return input.consume();
+	}
+
+	public Integer read() throws SIMException
+	{
+		return readByte();
+	}
+
+	public boolean readyWrite()
+	{
+		return !output.isFull();
+	}
+
+	/**
+	 * Write one byte in the output buffer.
+	 *
+	 * @since 1.03
+	 */
+	public void write(int c) throws SIMException
+	{
+		while (output.isFull())
+			idle();
+		
+		output.produce(c);
+	}
+
+	public void write(Integer c) throws SIMException
+	{
+		write(c.intValue());
+	}
+
+	/**
+	 * Write len bytes in the output buffer.
+	 *
+	 * @since 1.03
+	 */
+	public void write(byte b[],int off,int len) throws SIMException
+	{
+		while (len > 0)
+		{
+			while (output.isFull())
+				idle();
+
+			int n = output.produce(b,off,len);
+			off += n;
+			len -= n;
+		}
+	}
+
+	public boolean readyReadOutput()
+	{
+		return !output.isEmpty();
+	}
+
+	/**
+	 * Read the next byte from the output, wait if no one is
+	 * available.
+	 *
+	 * @since 1.03
+	 */
+	public int readOutputByte() throws SIMException
+	{
+		while (output.isEmpty())
+			idle();
+
+		return output.consume();
+	}
+
+	public Integer readOutput() throws SIMException
+	{
+		return readOutputByte();
+	}
+
+	/**
+	 * Write one byte in the input buffer.
+	 *
+	 * @since 1.03
+	 */
+	public void writeInput(int c) throws SIMException
+	{
+		while (input.isFull())
+			idle();
+
+		input.produce(c);
+	}
+
+	public void writeInput(Integer c) throws SIMException
+	{
+		writeInput(c.intValue());
+	}
+
+	/**
+	 * Write len bytes in the input buffer.
+	 * <p>
+	 * The bytes are written one at time with writeInput(int) so sub
+	 * class that override it see every byte.
+	 *
+	 * @since 1.03
+	 */
+	public void writeInput(byte b[],int off,int len) throws SIMException
+	{
+		for (int i = 0 ; i < len ; i++)
+			writeInput(b[off+i] & 0xff);
+	}
+
+	public Device<Integer> getConnected()
+	{
+		return connected;
+	}
+
+	/**
+	 * Connect another device to this. If the other device is one
+	 * Serial the two are connected thru the byte channel.
+	 */
+	public void setConnected(final Device<Integer> c) throws SIMException
+	{
+		if (this.connected != null)
+			throw new java.lang.Error("Multiple connected device not supported");
+
+		this.connected = c;
+
+		if (c instanceof Serial)
+		{
+			final Serial s = (Serial)c;
+
+			addOutputConsumer(new ByteConsumer()
+			{
+				public void consume(int v) throws SIMException
+				{
+					s.writeInput(v);
+				}
+
+				public void consume(byte b[],int off,int len) throws SIMException
+				{
+					s.writeInput(b,off,len);
+				}
+			});
+
+			s.addOutputConsumer(new ByteConsumer()
+			{
+				public void consume(int v) throws SIMException
+				{
+					writeInput(v);
+				}
+
+				public void consume(byte b[],int off,int len) throws SIMException
+				{
+					writeInput(b,off,len);
+				}
+			});
+		}
+		else
+		{
+			addOutputConsumer(new ByteConsumer()
+			{
+				public void consume(int v) throws SIMException
+				{
+					c.writeInput(v);
+				}
+
+				public void consume(byte b[],int off,int len) throws SIMException
+				{
+					for (int i = 0 ; i < len ; i++)
+						c.writeInput(b[off+i] & 0xff);
+				}
+			});
+
+			c.addOutputConsumer(new DeviceConsumer<Integer>()
+			{
+				public void consume(Integer v) throws SIMException
+				{
+					writeInput(v.intValue());
+				}
+			});
+		}
+	}
+
 	public void putchar(int c) throws SIMException
 	{
 		write(c);
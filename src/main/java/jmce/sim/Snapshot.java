@@ -0,0 +1,524 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.sim;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import jmce.util.Logger;
+
+/**
+ * Snapshot of the state of one machine.
+ * <p>
+ * The snapshot is taken walking the hardware tree, every hardware
+ * implementing Snapshottable write its state in one record
+ * identified by the path of the hardware in the tree. The restore
+ * must be done on one machine with the same configuration, already
+ * initialized and reset, the records are matched using the path so
+ * one record without hardware is ignored and one hardware without
+ * record keep the current state. The hardware is restored after its
+ * children, so for example the cpu restore the timers after the
+ * peripherals have restarted them. One hardware not Snapshottable
+ * that declare fields able to hold state is reported with one warning
+ * when the snapshot is taken.
+ * <p>
+ * The content of the memory is stored in pages of PAGE_SIZE bytes,
+ * the pages with the same content are stored only one time so the
+ * empty memory and the ROM images used in more banks take the space
+ * of one page.
+ * <p>
+ * The snapshot can be saved in one file, optionally compressed,
+ * with this format :
+ * <pre>
+ *	int	MAGIC
+ *	int	VERSION
+ *	int	Flags (FLAG_COMPRESSED)
+ *	The rest of the file is compressed with GZIP if the flag is set.
+ *	int	Page size
+ *	int	Number of pages
+ *	byte	Pages
+ *	int	Number of records
+ *	UTF	Record path
+ *	int	Record length
+ *	byte	Record data
+ * </pre>
+ * <p>
+ * The cpu must be stopped, or the snapshot must be taken from the
+ * cpu thread, while the snapshot is saved or restored.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ *
+ * @since 1.03
+ */
+public class Snapshot
+{
+	private static Logger log = Logger.getLogger(Snapshot.class);
+
+	static private final int MAGIC = 0x4A4D4345;
+	static private final int VERSION = 1;
+	static private final int FLAG_COMPRESSED = 1;
+
+	/** Size of the memory pages */
+	static public final int PAGE_SIZE = 4096;
+
+	/** Pool of memory pages and index of the page for content */
+	private ArrayList<byte[]> pages = new ArrayList<byte[]>();
+	private HashMap<ByteBuffer,Integer> pageIndex = new HashMap<ByteBuffer,Integer>();
+
+	/** Records for path */
+	private LinkedHashMap<String,byte[]> records = new LinkedHashMap<String,byte[]>();
+
+	private boolean compressed = true;
+
+	/** Current record */
+	private String path;
+	private ByteArrayOutputStream bos;
+	private DataOutputStream out;
+	private DataInputStream in;
+
+	/**
+	 * Set if the snapshot file must be compressed.
+	 */
+	public void setCompressed(boolean mode)
+	{
+		compressed = mode;
+	}
+
+	public boolean getCompressed()
+	{
+		return compressed;
+	}
+
+	/**
+	 * Return the number of distinct memory pages.
+	 */
+	public int getPageCount()
+	{
+		return pages.size();
+	}
+
+	/**
+	 * Return the number of records.
+	 */
+	public int getRecordCount()
+	{
+		return records.size();
+	}
+
+	/**
+	 * Take the snapshot of the hardware tree.
+	 */
+	public void save(Hardware root) throws SIMException
+	{
+		pages.clear();
+		pageIndex.clear();
+		records.clear();
+
+		if (root instanceof CPU)
+			((CPU)root).syncCycles();
+
+		save(root,root.getName(),new IdentityHashMap<Hardware,Hardware>());
+
+		log.info("Snapshot saved "+records.size()+" records "+pages.size()+" pages");
+	}
+
+	private void save(Hardware h,String path,IdentityHashMap<Hardware,Hardware> done) throws SIMException
+	{
+		if (done.put(h,h) != null)
+			return;
+
+		/** The image of the disks is not in the snapshot */
+		if (h instanceof Disk)
+			((Disk)h).flush();
+
+		if (h instanceof Snapshottable)
+		{
+			this.path = path;
+			bos = new ByteArrayOutputStream();
+			out = new DataOutputStream(bos);
+			((Snapshottable)h).saveState(this);
+			records.put(path,bos.toByteArray());
+			out = null;
+		}
+		else if (hasState(h.getClass()))
+			log.warning(path+" ("+h.getClass().getName()+") has state not saved in the snapshot");
+
+		HashMap<String,Integer> names = new HashMap<String,Integer>();
+
+		for (int i = 0 ; i < h.getHardwareCount() ; i++)
+		{
+			Hardware c = h.getHardware(i);
+			save(c,childPath(path,c,names),done);
+		}
+	}
+
+	/**
+	 * Restore the snapshot in the hardware tree.
+	 */
+	public void restore(Hardware root) throws SIMException
+	{
+		restore(root,root.getName(),new IdentityHashMap<Hardware,Hardware>());
+
+		log.info("Snapshot restored "+records.size()+" records");
+	}
+
+	private void restore(Hardware h,String path,IdentityHashMap<Hardware,Hardware> done) throws SIMException
+	{
+		if (done.put(h,h) != null)
+			return;
+
+		HashMap<String,Integer> names = new HashMap<String,Integer>();
+
+		for (int i = 0 ; i < h.getHardwareCount() ; i++)
+		{
+			Hardware c = h.getHardware(i);
+			restore(c,childPath(path,c,names),done);
+		}
+
+		if (h instanceof Snapshottable)
+		{
+			byte data[] = records.get(path);
+
+			if (data == null)
+				log.warning("No snapshot for "+path);
+			else
+			{
+				this.path = path;
+				in = new DataInputStream(new ByteArrayInputStream(data));
+				((Snapshottable)h).loadState(this);
+				in = null;
+			}
+		}
+	}
+
+	/**
+	 * Return true if the class of one hardware not Snapshottable can
+	 * hold state : one of the classes after the base classes of
+	 * jmce.sim declare one instance field of primitive or array type
+	 * that is not final.
+	 */
+	static private boolean hasState(Class<?> c)
+	{
+		for (; c != null && c != Object.class ; c = c.getSuperclass())
+		{
+			if (c.getName().startsWith("jmce.sim.Abstract") || c.getName().startsWith("jmce.sim.memory.Abstract"))
+				break;
+
+			for (Field f : c.getDeclaredFields())
+			{
+				int m = f.getModifiers();
+
+				if (Modifier.isStatic(m) || Modifier.isFinal(m) || Modifier.isTransient(m))
+					continue;
+
+				if (f.getType().isPrimitive() || f.getType().isArray())
+					return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Return the path of one child, the children with the same
+	 * name are numbered.
+	 */
+	private String childPath(String path,Hardware c,HashMap<String,Integer> names)
+	{
+		String name = c.getName();
+		Integer n = names.get(name);
+
+		names.put(name,n == null ? 1 : n + 1);
+
+		if (n != null)
+			name += "#"+n;
+
+		return path+"/"+name;
+	}
+
+	/**
+	 * Write the snapshot in one file.
+	 */
+	public void write(String filename) throws SIMException
+	{
+		try
+		{
+			DataOutputStream f = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+			f.writeInt(MAGIC);
+			f.writeInt(VERSION);
+			f.writeInt(compressed ? FLAG_COMPRESSED : 0);
+
+			DataOutputStream d = compressed ? new DataOutputStream(new GZIPOutputStream(f)) : f;
+
+			d.writeInt(PAGE_SIZE);
+			d.writeInt(pages.size());
+			for (int i = 0 ; i < pages.size() ; i++)
+				d.write(pages.get(i));
+
+			d.writeInt(records.size());
+			for (Map.Entry<String,byte[]> e : records.entrySet())
+			{
+				d.writeUTF(e.getKey());
+				d.writeInt(e.getValue().length);
+				d.write(e.getValue());
+			}
+
+			d.close();
+		}
+		catch (IOException e)
+		{
+			throw new SIMIOException(filename,"Writing snapshot");
+		}
+	}
+
+	/**
+	 * Read one snapshot from file.
+	 */
+	static public Snapshot read(String filename) throws SIMException
+	{
+		Snapshot s = new Snapshot();
+
+		try
+		{
+			DataInputStream f = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)));
+
+			if (f.readInt() != MAGIC || f.readInt() != VERSION)
+			{
+				f.close();
+				throw new SIMIOException(filename,"Not a valid snapshot");
+			}
+
+			s.compressed = (f.readInt() & FLAG_COMPRESSED) != 0;
+
+			DataInputStream d = s.compressed ? new DataInputStream(new BufferedInputStream(new GZIPInputStream(f))) : f;
+
+			if (d.readInt() != PAGE_SIZE)
+			{
+				d.close();
+				throw new SIMIOException(filename,"Invalid snapshot page size");
+			}
+
+			int n = d.readInt();
+			for (int i = 0 ; i < n ; i++)
+			{
+				byte page[] = new byte[PAGE_SIZE];
+				d.readFully(page);
+				s.pages.add(page);
+			}
+
+			n = d.readInt();
+			for (int i = 0 ; i < n ; i++)
+			{
+				String path = d.readUTF();
+				byte data[] = new byte[d.readInt()];
+				d.readFully(data);
+				s.records.put(path,data);
+			}
+
+			d.close();
+		}
+		catch (IOException e)
+		{
+			throw new SIMIOException(filename,"Reading snapshot");
+		}
+
+		return s;
+	}
+
+	private SIMException error(IOException e)
+	{
+		return new SIMException("Snapshot "+path+" : "+e,e);
+	}
+
+	public void putInt(int v) throws SIMException
+	{
+		try
+		{
+			out.writeInt(v);
+		}
+		catch (IOException e)
+		{
+			throw error(e);
+		}
+	}
+
+	public void putLong(long v) throws SIMException
+	{
+		try
+		{
+			out.writeLong(v);
+		}
+		catch (IOException e)
+		{
+			throw error(e);
+		}
+	}
+
+	public void putBoolean(boolean v) throws SIMException
+	{
+		try
+		{
+			out.writeBoolean(v);
+		}
+		catch (IOException e)
+		{
+			throw error(e);
+		}
+	}
+
+	public void putString(String v) throws SIMException
+	{
+		try
+		{
+			out.writeUTF(v);
+		}
+		catch (IOException e)
+		{
+			throw error(e);
+		}
+	}
+
+	public int getInt() throws SIMException
+	{
+		try
+		{
+			return in.readInt();
+		}
+		catch (IOException e)
+		{
+			throw error(e);
+		}
+	}
+
+	public long getLong() throws SIMException
+	{
+		try
+		{
+			return in.readLong();
+		}
+		catch (IOException e)
+		{
+			throw error(e);
+		}
+	}
+
+	public boolean getBoolean() throws SIMException
+	{
+		try
+		{
+			return in.readBoolean();
+		}
+		catch (IOException e)
+		{
+			throw error(e);
+		}
+	}
+
+	public String getString() throws SIMException
+	{
+		try
+		{
+			return in.readUTF();
+		}
+		catch (IOException e)
+		{
+			throw error(e);
+		}
+	}
+
+	/**
+	 * Write one block of memory, every value is saved as byte in
+	 * the shared page pool.
+	 */
+	public void putPages(int data[],int offset,int len) throws SIMException
+	{
+		putInt(len);
+
+		for (int p = 0 ; p < len ; p += PAGE_SIZE)
+		{
+			byte page[] = new byte[PAGE_SIZE];
+			int n = Math.min(PAGE_SIZE,len - p);
+
+			for (int i = 0 ; i < n ; i++)
+				page[i] = (byte)data[offset + p + i];
+
+			ByteBuffer key = ByteBuffer.wrap(page);
+			Integer index = pageIndex.get(key);
+
+			if (index == null)
+			{
+				index = pages.size();
+				pages.add(page);
+				pageIndex.put(key,index);
+			}
+
+			putInt(index);
+		}
+	}
+
+	/**
+	 * Read one block of memory written by putPages().
+	 *
+	 * @return one new array with the values 0 - 255.
+	 */
+	public int[] getPages() throws SIMException
+	{
+		int len = getInt();
+		int data[] = new int[len];
+
+		for (int p = 0 ; p < len ; p += PAGE_SIZE)
+		{
+			int index = getInt();
+
+			if (index < 0 || index >= pages.size())
+				throw new SIMException("Snapshot "+path+" invalid page "+index);
+
+			byte page[] = pages.get(index);
+			int n = Math.min(PAGE_SIZE,len - p);
+
+			for (int i = 0 ; i < n ; i++)
+				data[p + i] = page[i] & 0xff;
+		}
+
+		return data;
+	}
+
+	public String toString()
+	{
+		return "Snapshot "+records.size()+" records "+pages.size()+" pages";
+	}
+}
@@ -70,6 +70,20 @@ public class TapePulse
 		this(DATA_TOGGLE,width);
 	}
 
+	/**
+	 * Change type and width of the pulse.
+	 * <p>
+	 * Used by the tapes that generate the pulses on demand to return
+	 * always the same instance.
+	 *
+	 * @since 1.03
+	 */
+	public void set(int type,int width)
+	{
+		this.type = type;
+		this.width = width;
+	}
+
 	/**
 	 * Return the pulse width
 	 */
@@ -3,4 +3,13 @@ package jmce.sim;
 
 public interface TimerOverflowListener {
 	public void overflow(int timer);
+
+	/**
+	 * Return the number of overflow of the timer that can happen
+	 * before the listener change the state of the cpu,
+	 * Integer.MAX_VALUE if the listener has no pending event.
+	 *
+	 * @since 1.03
+	 */
+	public int getOverflowDeadline(int timer);
 }
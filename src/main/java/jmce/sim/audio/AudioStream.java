@@ -0,0 +1,473 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.sim.audio;
+
+import javax.sound.sampled.*;
+
+import jmce.sim.*;
+import jmce.util.Logger;
+
+/**
+ * Cycle timestamped audio stream.
+ * <p>
+ * The emulated device post the changes of the output level stamped
+ * with the cpu cycle when they happen, one mixer thread resample
+ * the events at the sample rate and write the samples to one
+ * SourceDataLine and/or to one WAV file. The device must also call
+ * sync() periodically (for example every 20 ms of emulated time) to
+ * let the mixer generate the samples when the level do not change.
+ * <p>
+ * The events are stored in one lock free ring buffer with one single
+ * producer, the cpu thread, and one single consumer, the mixer
+ * thread. When the ring is full the events are discarded, except when
+ * one WAV file is open, in this case the producer wait the mixer so
+ * the captured audio is complete also when the cpu run faster than
+ * the real time.
+ * <p>
+ * When the cpu cycle restart, after one reset of the cpu or the
+ * restore of one snapshot, the device must call reset() with the new
+ * cycle. One event with a cycle lower than the previous one also
+ * restart the time base of the mixer.
+ * <p>
+ * The output is 8 bit unsigned mono, the level of each sample is the
+ * average of the levels during the sample time. Beside the level the
+ * stream can generate one square wave at the specified frequency for
+ * the devices with one programmable tone generator.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ *
+ * @since 1.03
+ */
+public class AudioStream implements Runnable
+{
+	private static Logger log = Logger.getLogger(AudioStream.class);
+
+	/** Size of the event ring must be a power of 2 */
+	static private final int SIZE = 8192;
+	static private final int MASK = SIZE - 1;
+
+	/** Event type in the high byte of the event */
+	static private final int LEVEL	= 0x00000000;
+	static private final int TONE	= 0x01000000;
+	static private final int SYNC	= 0x02000000;
+	static private final int RESET	= 0x03000000;
+	static private final int TYPE	= 0xff000000;
+
+	/** Mixer polling time in ms */
+	static private final int pollTime = 5;
+
+	private String name;
+	private int rate;
+	private volatile long clock = 1000000;
+	private volatile float pwmRatio = 0.5f;
+
+	/** Event ring */
+	private final long stamps[] = new long[SIZE];
+	private final int events[] = new int[SIZE];
+	private volatile int head = 0;
+	private volatile int tail = 0;
+	private int dropped = 0;
+
+	private SourceDataLine line = null;
+	private volatile WaveFile wave = null;
+	private Thread thread = null;
+	private volatile boolean running = false;
+
+	/** Mixer state, time are in cycle * rate units */
+	private boolean started = false;
+	private long time;
+	private long next;
+	private long acc;
+	private int level = 0;
+	private int tone = 0;
+	private double phase = 0;
+	private byte buffer[];
+	private int bufferLen = 0;
+
+	/**
+	 * Create one audio stream.
+	 *
+	 * @param name - Name of the stream.
+	 * @param rate - Sample rate in sample for second.
+	 */
+	public AudioStream(String name,int rate)
+	{
+		this.name = name;
+		this.rate = rate;
+		buffer = new byte[rate / 50];
+	}
+
+	/**
+	 * Set the number of cpu cycles for second.
+	 */
+	public void setClock(long clock)
+	{
+		if (clock > 0)
+			this.clock = clock;
+	}
+
+	public long getClock()
+	{
+		return clock;
+	}
+
+	public int getSampleRate()
+	{
+		return rate;
+	}
+
+	/**
+	 * Set the duty cycle of the square wave generated by tone().
+	 */
+	public void setPwmRatio(float pwmRatio)
+	{
+		this.pwmRatio = pwmRatio;
+	}
+
+	public float getPwmRatio()
+	{
+		return pwmRatio;
+	}
+
+	/**
+	 * Open the audio line.
+	 *
+	 * @return true if the line is available.
+	 */
+	public boolean openLine()
+	{
+		if (line != null)
+			return true;
+
+		try
+		{
+			AudioFormat fmt = new AudioFormat(rate,8,1,false,false);
+			DataLine.Info info = new DataLine.Info(SourceDataLine.class, fmt);
+			SourceDataLine l = (SourceDataLine) AudioSystem.getLine(info);
+
+			/** Max 200 ms of latency */
+			l.open(fmt,rate / 5);
+			l.start();
+			line = l;
+		}
+		catch (Exception ex)
+		{
+			log.warning(ex);
+		}
+
+		return line != null;
+	}
+
+	public boolean isLineOpen()
+	{
+		return line != null;
+	}
+
+	/**
+	 * Set the name of the WAV file where the audio is captured.
+	 *
+	 * @param filename - Name of the file, null to stop the capture.
+	 */
+	public void setWaveFile(String filename) throws SIMException
+	{
+		WaveFile old = wave;
+
+		wave = filename == null ? null : new WaveFile(filename,rate);
+
+		if (old != null)
+			old.close();
+	}
+
+	public WaveFile getWaveFile()
+	{
+		return wave;
+	}
+
+	/**
+	 * Return the number of events discarded because the ring was full.
+	 */
+	public int getDropped()
+	{
+		return dropped;
+	}
+
+	/**
+	 * Post one change of the output level.
+	 *
+	 * @param cycle - Cpu cycle of the change.
+	 * @param level - New level 0 - 255.
+	 */
+	public void level(long cycle,int level)
+	{
+		post(cycle,LEVEL | (level & 0xff));
+	}
+
+	/**
+	 * Post one change of the tone generator.
+	 *
+	 * @param cycle - Cpu cycle of the change.
+	 * @param freq - Frequency in Hz of the square wave, 0 to stop
+	 * the tone and return to the last level.
+	 */
+	public void tone(long cycle,int freq)
+	{
+		if (freq < 0)
+			freq = 0;
+		post(cycle,TONE | (freq & 0xffffff));
+	}
+
+	/**
+	 * Generate the samples till the specified cycle.
+	 */
+	public void sync(long cycle)
+	{
+		post(cycle,SYNC);
+	}
+
+	/**
+	 * Restart the time base of the stream at the specified cycle.
+	 */
+	public void reset(long cycle)
+	{
+		post(cycle,RESET);
+	}
+
+	private void post(long cycle,int event)
+	{
+		int h = head;
+		int n = (h + 1) & MASK;
+
+		while (n == tail)
+		{
+			if (wave == null || !running)
+			{
+				dropped++;
+				return;
+			}
+			Thread.yield();
+		}
+
+		stamps[h] = cycle;
+		events[h] = event;
+		head = n;
+	}
+
+	/**
+	 * Start the mixer thread.
+	 */
+	public synchronized void start()
+	{
+		if (thread != null)
+			return;
+
+		running = true;
+		thread = new Thread(this,"Audio "+name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop the mixer, write the pending samples and close the line
+	 * and the WAV file.
+	 */
+	public synchronized void close()
+	{
+		if (thread != null)
+		{
+			running = false;
+			try
+			{
+				thread.join();
+			}
+			catch (InterruptedException ignore)
+			{
+			}
+			thread = null;
+		}
+
+		mix();
+		flush();
+
+		if (line != null)
+		{
+			line.close();
+			line = null;
+		}
+
+		if (wave != null)
+		{
+			wave.close();
+			wave = null;
+		}
+	}
+
+	public void run()
+	{
+		while (running)
+		{
+			if (!mix())
+			{
+				try
+				{
+					Thread.sleep(pollTime);
+				}
+				catch (InterruptedException ignore)
+				{
+				}
+			}
+		}
+	}
+
+	/**
+	 * Process all the pending events.
+	 *
+	 * @return false if there are no events.
+	 */
+	private boolean mix()
+	{
+		int h = head;
+		int t = tail;
+
+		if (t == h)
+			return false;
+
+		while (t != h)
+		{
+			long cycle = stamps[t];
+			int event = events[t];
+			t = (t + 1) & MASK;
+			tail = t;
+
+			if ((event & TYPE) == RESET)
+				started = false;
+
+			advance(cycle);
+
+			switch (event & TYPE)
+			{
+				case	LEVEL:
+					level = event & 0xff;
+					break;
+				case	TONE:
+					tone = event & 0xffffff;
+					break;
+			}
+		}
+
+		flush();
+
+		return true;
+	}
+
+	/**
+	 * Generate the samples from the last event to the cycle.
+	 */
+	private void advance(long cycle)
+	{
+		long now = cycle * rate;
+
+		/** The cycle moved back, restart the time base */
+		if (!started || now < time)
+		{
+			started = true;
+			time = now;
+			next = now + clock;
+			acc = 0;
+			return;
+		}
+
+		if (now == time)
+			return;
+
+		while (now >= next)
+		{
+			acc += level * (next - time);
+			time = next;
+			next += clock;
+			sample();
+		}
+
+		acc += level * (now - time);
+		time = now;
+	}
+
+	private void sample()
+	{
+		int v;
+
+		if (tone > 0)
+		{
+			phase += (double)tone / rate;
+			phase -= Math.floor(phase);
+			v = phase < pwmRatio ? 255 : 0;
+		}
+		else
+			v = (int)(acc / clock);
+
+		acc = 0;
+		buffer[bufferLen++] = (byte)v;
+
+		if (bufferLen >= buffer.length)
+			flush();
+	}
+
+	/**
+	 * Write the samples to the line and to the WAV file. The line
+	 * is never blocking, if there is no room the samples are lost.
+	 */
+	private void flush()
+	{
+		if (bufferLen == 0)
+			return;
+
+		if (line != null && line.available() >= bufferLen)
+			line.write(buffer,0,bufferLen);
+
+		WaveFile w = wave;
+
+		if (w != null)
+		{
+			try
+			{
+				w.write(buffer,0,bufferLen);
+			}
+			catch (SIMException ex)
+			{
+				log.warning(ex);
+				wave = null;
+			}
+		}
+
+		bufferLen = 0;
+	}
+
+	public String toString()
+	{
+		return "Audio "+name+" SR="+rate+" line="+(line != null)+(wave != null ? " wave="+wave : "");
+	}
+}
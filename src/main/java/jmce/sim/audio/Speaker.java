@@ -26,8 +26,6 @@
 */
 package jmce.sim.audio;
 
-import javax.sound.sampled.*;
-
 import jmce.sim.*;
 import jmce.util.Timer;
 import jmce.util.TimerListener;
@@ -36,30 +34,28 @@ import jmce.util.Logger;
 
 /**
  * Sample speaker peripheral.
+ * <p>
+ * Since 1.03 the tone is generated by one AudioStream, the changes of
+ * frequency are stamped with the cpu cycle and the stream is synced
+ * every 20 ms of emulated time.
  *
  * @author Mario Viara
- * @version 1.01
+ * @version 1.03
  */
-public class Speaker extends jmce.sim.AbstractPeripheral
+public class Speaker extends jmce.sim.AbstractPeripheral implements Audio
 {
 	private static Logger log = Logger.getLogger(Speaker.class);
 	
-	/** Feed audio streeam time in ms */
-	private static final int feedTime = 20;
+	/** Sync audio stream time in ms */
+	private static final int syncTime = 20;
 
 	/** Sample rate in sample for second */
 	private int sample = 4000;
 	private int freq = 0;
 
 	private boolean installed = false;
-	private AudioFormat fmt;
-	private SourceDataLine line;
-	private int bufferLen = 0;
 	private boolean speaker = true;
-	
-	private byte buffer[] ;
-    
-    private float pwmRatio = 0.5f;
+	private AudioStream stream;
 
 	public Speaker()
 	{
@@ -69,67 +65,73 @@ public class Speaker extends jmce.sim.AbstractPeripheral
 
 	public void setSpeaker(boolean mode)
 	{
-		if (!installed)
-			return;
-		
 		if (mode != speaker)
 		{
-			
 			speaker = mode;
-
-			if (speaker)
-				line.start();
-			else
-				line.stop();
-			
 			log.fine("Speaker="+mode);
-			if (mode)
-				line.start();
-			else
-				line.stop();
+			stream.tone(cycle(),speaker ? freq : 0);
 		}
 	}
 	
 	public void setSampleRate(int n)
 	{
 		sample = n;
-		buffer = new byte[sample];
+		stream = new AudioStream(getName(),sample);
 		log.fine("Sample rate="+n);
 	}
 	
 	public void init(Hardware p) throws SIMException
 	{
 		super.init(p);
+		installed = stream.openLine();
+	}
+
+	public void registerCPU(CPU cpu) throws SIMException
+	{
+		super.registerCPU(cpu);
+
+		stream.setClock(cpu.getClock() / Math.max(1,cpu.getClockPerCycle()));
 		
-		try
+		cpu.addTimerMs(new Timer(syncTime,true,new TimerListener()
 		{
-			fmt = new AudioFormat(sample ,8,1,false,false);
-			DataLine.Info info = new DataLine.Info(SourceDataLine.class, fmt);
-			line = (SourceDataLine) AudioSystem.getLine(info);
-			line.open(fmt);
-			line.start();
-
-	
-			Timer timer = new Timer(feedTime,true,new TimerListener()
+			public void timerExpired()
 			{
-				public void timerExpired()
-				{
-					feed();
-				}
-			});
+				sync();
+			}
+		}));
 
-			installed = true;
-			Timer.addTimer(timer);
-			
-		}
-		catch (Exception e)
-		{
-			installed = false;
-			System.out.println(e);
-		}
+		stream.start();
+	}
 
+	public void destroy() throws SIMException
+	{
+		stream.close();
+		super.destroy();
+	}
+
+	public AudioStream getAudioStream()
+	{
+		return stream;
+	}
+
+	/**
+	 * Return the current cycle, without cpu one cycle for
+	 * microsecond.
+	 */
+	private long cycle()
+	{
+		return cpu != null ? cpu.getCycle() : System.nanoTime() / 1000;
 	}
 
+	/**
+	 * Generate the samples till the current cycle.
+	 *
+	 * @since 1.03
+	 */
+	public void sync()
+	{
+		stream.sync(cycle());
+	}
 
 	/**
 	 * Return true if the speaker is installed and correctly
@@ -148,63 +150,19 @@ public class Speaker extends jmce.sim.AbstractPeripheral
 			return;
 		freq = f;
 
-		if (!installed)
-			return;
-		
 		log.fine("Freq="+f);
-		if (f <= 0 )
-		{
-			bufferLen = 0;
-			line.stop();
-		}
-		else
-		{
-			if (speaker)
-				line.start();
-			bufferLen =  sample / f ;
-			if (bufferLen > buffer.length)
-				bufferLen = buffer.length;
-			for (int i = 0 ; i < bufferLen ; i++)
-				buffer[i] = (byte)(i < bufferLen*pwmRatio ? 255 : 0);
-		}
-
-		line.flush();
+		if (speaker)
+			stream.tone(cycle(),f);
 	}
     
     public void setPwmRatio(final float pwmRatio)
 	{
-		this.pwmRatio = pwmRatio;
+		stream.setPwmRatio(pwmRatio);
 	}
     
     public float getPwmRatio()
 	{
-		return pwmRatio;
-	}
-
-	/**
-	 * Must be called every feedTime ms
-	 */
-	void feed()
-	{
-		if (!speaker)
-			return;
-		
-		if (bufferLen <= 0)
-			return;
-		
-		int count = 0;
-		
-		for (;;)
-		{
-			if (line.available() < bufferLen)
-				break;
-			count += line.write(buffer,0,bufferLen);
-			
-		}
-
-		if (count > 0)
-			log.finer("Written "+count+" bytes");
-			
+		return stream.getPwmRatio();
 	}
 
 	static public void delay(int n)
@@ -226,11 +184,17 @@ public class Speaker extends jmce.sim.AbstractPeripheral
 		try
 		{
 			s.init(null);
+			s.getAudioStream().start();
 			for (int i = 0 ; i < music.length ; i++)
 			{
 				s.setFreq(music[i]);
-				delay(200);
+				for (int j = 0 ; j < 200 / syncTime ; j++)
+				{
+					delay(syncTime);
+					s.sync();
+				}
 			}
+			s.destroy();
 		}
 		catch (Exception e)
 		{
@@ -0,0 +1,143 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.sim.audio;
+
+import java.io.RandomAccessFile;
+import java.io.IOException;
+
+import jmce.sim.*;
+
+/**
+ * Writer for WAV file with 8 bit unsigned mono PCM samples.
+ * <p>
+ * The size in the RIFF header is updated at every write, so the file
+ * is valid also if the simulator is terminated without closing it.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ *
+ * @since 1.03
+ */
+public class WaveFile
+{
+	/** Size of the RIFF header */
+	static private final int HEADER = 44;
+
+	private String filename;
+	private RandomAccessFile file;
+	private int size = 0;
+
+	/**
+	 * Create a new WAV file.
+	 *
+	 * @param filename - Name of the file.
+	 * @param rate - Sample rate in sample for second.
+	 */
+	public WaveFile(String filename,int rate) throws SIMException
+	{
+		this.filename = filename;
+
+		try
+		{
+			file = new RandomAccessFile(filename,"rw");
+			file.setLength(0);
+			file.writeBytes("RIFF");
+			writeInt(HEADER - 8);
+			file.writeBytes("WAVEfmt ");
+			writeInt(16);
+			writeShort(1);		// PCM
+			writeShort(1);		// Mono
+			writeInt(rate);
+			writeInt(rate);		// Byte for second
+			writeShort(1);		// Block align
+			writeShort(8);		// Bit for sample
+			file.writeBytes("data");
+			writeInt(0);
+		}
+		catch (IOException e)
+		{
+			throw new SIMIOException(filename,"Creating wave file");
+		}
+	}
+
+	private void writeInt(int v) throws IOException
+	{
+		writeShort(v);
+		writeShort(v >>> 16);
+	}
+
+	private void writeShort(int v) throws IOException
+	{
+		file.write(v & 0xff);
+		file.write((v >>> 8) & 0xff);
+	}
+
+	/**
+	 * Append samples to the file and update the header.
+	 */
+	public void write(byte buffer[],int offset,int len) throws SIMException
+	{
+		try
+		{
+			file.seek(HEADER + size);
+			file.write(buffer,offset,len);
+			size += len;
+			file.seek(4);
+			writeInt(HEADER - 8 + size);
+			file.seek(40);
+			writeInt(size);
+		}
+		catch (IOException e)
+		{
+			throw new SIMIOException(filename,"Writing wave file");
+		}
+	}
+
+	/**
+	 * Return the number of samples written.
+	 */
+	public int getSize()
+	{
+		return size;
+	}
+
+	public void close()
+	{
+		try
+		{
+			file.close();
+		}
+		catch (IOException ignore)
+		{
+		}
+	}
+
+	public String toString()
+	{
+		return filename;
+	}
+}
@@ -43,6 +43,9 @@ import jmce.sim.CPUException;
 import jmce.sim.CallListener;
 import jmce.sim.CpuRuntime;
 import jmce.sim.CycleListener;
+import jmce.sim.ScheduledCycleListener;
+import jmce.sim.Snapshot;
+import jmce.sim.Snapshottable;
 import jmce.sim.Decoder;
 import jmce.sim.ExceptionEvent;
 import jmce.sim.ExceptionListener;
@@ -61,6 +64,7 @@ import jmce.sim.SIMIOException;
 import jmce.sim.SIMInterrupted;
 import jmce.sim.Serial;
 import jmce.sim.TraceListener;
+import jmce.sim.memory.AbstractMemory;
 import jmce.sim.terminal.Terminal;
 import jmce.util.FastArray;
 import jmce.util.Hex;
@@ -136,13 +140,22 @@ class SortedVector<E> extends TreeMap<Long,Vector<E>>
  * little problem for play game, in this case use the method {@link
  * #setRealTime} to enable the real time emulation.
  * <p>
+ * Since 1.03 the cpu implements Snapshottable and save the cycle
+ * counter, the registers, the interrupts and the timers. Subclass with
+ * state not available as register must override saveState() and
+ * loadState().
+ * <p>
+ * Also since 1.03 the interrupts ready to be served are kept in a bit
+ * mask updated by the interrupt itself when the state change, so the
+ * cpu do not scan the interrupt list before each instruction.
+ * <p>
  *
  * @author Mario Viara
- * @version 1.01
+ * @version 1.03
  *
  * @see #setRealTime
  */
-public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakPointListener
+public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakPointListener,Snapshottable
 {
 	
 	private static final Logger log = Logger.getLogger(AbstractCPU.class);
@@ -161,21 +174,57 @@ public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakP
 
 	/** Vector with all cycle listener for performance */
 	private CycleListener cycleListenersVector[] = new CycleListener[0];
+
+	/** Cycle listener called only at deadline since 1.03 */
+	private FastArray<ScheduledCycleListener> scheduledCycleListeners = new FastArray<ScheduledCycleListener>();
+	private ScheduledCycleListener scheduledListeners[] = new ScheduledCycleListener[0];
+
+	/** Cycles not yet delivered to the scheduled listeners */
+	private int scheduledCycles = 0;
+
+	/** Cycles to the next deadline of the scheduled listeners */
+	private int scheduledDeadline = 0;
 	
 	private FastArray<Decoder> decoders = new FastArray<Decoder>();
 	private FastArray<ExceptionListener> exceptionListeners = new FastArray<ExceptionListener>();
 	private FastArray<Register> regs = new FastArray<Register>();
 	
-	/** Array with all installed interrupt */
+	/** Array with all installed interrupt, the index is the line */
 	protected FastArray<Interrupt> interrupts = new FastArray<Interrupt>();
+
+	/**
+	 * Bit mask of the ready interrupt lines, the last bit is set
+	 * when one of the lines from MAX_LINE is ready.
+	 */
+	private volatile long pendingInterrupts = 0;
+
+	/** Bit mask of the ready lines from MAX_LINE */
+	private long overflowInterrupts[] = new long[0];
+
+	/** First line not in the pendingInterrupts mask */
+	static private final int MAX_LINE = 63;
 	
 	private Terminal terminal = null;
 	private Timeout timeoutUsage = new Timeout(5000);
 	private long oldCycle;
 	private MultiOpcode opcodes = new MultiOpcode(0);
+
+	/** Cache of decoded opcode */
+	private OpcodeCache opcodeCache = null;
+
+	/** Flag to enable the cache of decoded opcode */
+	private boolean opcodeCacheEnabled = true;
+
+	/** Flag to enable the compiler of hot blocks */
+	private boolean compilerEnabled = false;
+
+	/** Flag to enable the switch core */
+	private boolean switchCoreEnabled = false;
+
+	/** Set when one opcode access the I/O space, used by the compiler */
+	private boolean ioAccess = false;
 	private Thread thread = null;
 	private boolean running = false;
-	private volatile boolean checkInterrupt = true;
 	private int maxOpcodeLen = -1;
 	private long clock;
 	private int  clockPerCycle = 1;
@@ -193,6 +242,12 @@ public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakP
 	 * speed in real time.
 	 */
 	private boolean realTime = false;
+
+	/** Batch mode flag since 1.03 */
+	private boolean batchMode = false;
+
+	/** Number of instructions executed */
+	private long instructions;
 	
 	/**
 	 * Main memory.
@@ -493,19 +548,239 @@ public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakP
 	protected final void setMemory(Memory m)
 	{
 		memory = m;
+
+		/** Cache already created at init, create a new one */
+		if (opcodeCache != null)
+			updateOpcodeCache();
+	}
+
+	/**
+	 * Enable or disable the cache of decoded opcode.
+	 *
+	 * @since 1.03
+	 */
+	public final void setOpcodeCache(boolean mode)
+	{
+		opcodeCacheEnabled = mode;
+		updateOpcodeCache();
+	}
+
+	/**
+	 * Return true if the cache of decoded opcode is enabled.
+	 *
+	 * @since 1.03
+	 */
+	public final boolean getOpcodeCache()
+	{
+		return opcodeCacheEnabled;
+	}
+
+	/**
+	 * Create the cache of decoded opcode for the current memory.
+	 */
+	private void updateOpcodeCache()
+	{
+		if (opcodeCache != null)
+		{
+			opcodeCache.dispose();
+			opcodeCache = null;
+		}
+
+		if (opcodeCacheEnabled && memory instanceof AbstractMemory)
+		{
+			opcodeCache = new OpcodeCache(this,(AbstractMemory)memory);
+			opcodeCache.setCompiler(compilerEnabled);
+		}
+	}
+
+	/**
+	 * Enable or disable the compiler of hot blocks.
+	 * <p>
+	 * When enabled run() execute the blocks of opcodes executed
+	 * more frequently using code generated at runtime. The
+	 * compiler require the cache of decoded opcode.
+	 *
+	 * @since 1.03
+	 * @see BlockCompiler
+	 */
+	public final void setCompiler(boolean mode)
+	{
+		compilerEnabled = mode;
+
+		if (opcodeCache != null)
+			opcodeCache.setCompiler(mode);
+	}
+
+	/**
+	 * Return true if the compiler of hot blocks is enabled.
+	 *
+	 * @since 1.03
+	 */
+	public final boolean getCompiler()
+	{
+		return compilerEnabled;
+	}
+
+	/**
+	 * Enable or disable the switch core.
+	 * <p>
+	 * When enabled run() execute the instructions calling
+	 * execSwitch() instead of the exec() method of the opcode,
+	 * the opcodes are still used for the disassembler and for
+	 * the debugger. The switch core have precedence over the
+	 * compiler of hot blocks.
+	 * <p>
+	 * The instructions executed by the switch core are not counted
+	 * in the opcode statistics (<tt>AbstractOpcode.getCounter()</tt>),
+	 * looking up the opcode only for the counter would cost like
+	 * the table interpreter.
+	 *
+	 * @since 1.03
+	 * @see #execSwitch
+	 */
+	public final void setSwitchCore(boolean mode)
+	{
+		switchCoreEnabled = mode;
+	}
+
+	/**
+	 * Return true if the switch core is enabled.
+	 *
+	 * @since 1.03
+	 */
+	public final boolean getSwitchCore()
+	{
+		return switchCoreEnabled;
 	}
 
 	public void addCycleListener(CycleListener l)
 	{
+		if (l instanceof ScheduledCycleListener)
+		{
+			scheduledCycleListeners.add((ScheduledCycleListener)l);
+			scheduledListeners = scheduledCycleListeners.toArray(scheduledListeners);
+			scheduledDeadline = 0;
+			return;
+		}
+		
 		cycleListeners.add(l);
 		cycleListenersVector = cycleListeners.toArray(cycleListenersVector);
 	}
 
+	/**
+	 * When called from one thread different from the cpu emulation
+	 * thread only request the cpu to sync at the next instruction,
+	 * the listeners are always called from the cpu thread.
+	 */
+	public final void syncCycles() throws SIMException
+	{
+		if (thread != null && Thread.currentThread() != thread)
+		{
+			scheduledDeadline = 0;
+			return;
+		}
+
+		int n = scheduledCycles;
+		scheduledCycles = 0;
+
+		for (int i = 0 ; i < scheduledListeners.length ; i++)
+			scheduledListeners[i].cycle(n);
+
+		/**
+		 * The next deadline is limited to 1 ms so one request of sync
+		 * from other thread lost while the deadline is updated is
+		 * not delayed too much.
+		 */
+		int d = cycleMs > 0 ? cycleMs : 1;
+		for (int i = 0 ; i < scheduledListeners.length ; i++)
+		{
+			int l = scheduledListeners[i].getCycleDeadline();
+			if (l < d)
+				d = l;
+		}
+
+		scheduledDeadline = d;
+	}
+
 
 	
+	/**
+	 * Save the state of the cpu.
+	 *
+	 * @since 1.03
+	 */
+	public void saveState(Snapshot s) throws SIMException
+	{
+		s.putLong(cycle);
+		s.putLong(instructions);
+
+		s.putInt(getRegisterCount());
+		for (int i = 0 ; i < getRegisterCount() ; i++)
+		{
+			Register r = getRegisterAt(i);
+			s.putString(r.getName());
+			s.putInt(r.getRegister());
+		}
+
+		s.putInt(interrupts.getSize());
+		for (int i = 0 ; i < interrupts.getSize() ; i++)
+		{
+			Interrupt isr = interrupts.get(i);
+			s.putBoolean(isr.isEnabled());
+			s.putBoolean(isr.isActive());
+		}
+
+		cycleTimer.saveState(s);
+		msTimer.saveState(s);
+	}
+
+	/**
+	 * Restore the state of the cpu.
+	 *
+	 * @since 1.03
+	 */
+	public void loadState(Snapshot s) throws SIMException
+	{
+		cycle = s.getLong();
+		instructions = s.getLong();
+		scheduledCycles = 0;
+		scheduledDeadline = 0;
+
+		int n = s.getInt();
+		for (int i = 0 ; i < n ; i++)
+		{
+			String name = s.getString();
+			int value = s.getInt();
+			Register r = getRegisterForName(name);
+
+			if (r != null)
+				r.setRegister(value);
+		}
+
+		n = s.getInt();
+		for (int i = 0 ; i < n ; i++)
+		{
+			boolean enabled = s.getBoolean();
+			boolean active = s.getBoolean();
+
+			if (i < interrupts.getSize())
+			{
+				Interrupt isr = interrupts.get(i);
+				isr.setEnabled(enabled);
+				isr.setActive(active);
+			}
+		}
+
+		cycleTimer.loadState(s);
+		msTimer.loadState(s);
+	}
+
 	public void setOpcode(AbstractOpcode o)
 	{
 		opcodes.setOpcode(o);
+
+		if (opcodeCache != null)
+			opcodeCache.flush();
 		
 	}
 
@@ -730,6 +1005,9 @@ public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakP
 		
 		// Reset cycle
 		cycle = 0;
+		instructions = 0;
+		scheduledCycles = 0;
+		scheduledDeadline = 0;
 
 		till = -1;
 
@@ -808,6 +1086,9 @@ public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakP
 	/**
 	 * Check if interrupt are enabled and fire the interrupt if new
 	 * one is ready.
+	 * <p>
+	 * Since 1.03 the ready interrupts are kept in one bit mask so
+	 * when no interrupt is ready the cost is one test.
 	 *
 	 * @since 1.01
 	 */
@@ -817,25 +1098,59 @@ public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakP
 		/**
 		 * Check interrupt if necessary
 		 */
-		if (checkInterrupt && isInterruptEnabled())
+		if (pendingInterrupts != 0 && isInterruptEnabled())
 		{
+			Interrupt irq = nextInterrupt();
 
-			for (int i = interrupts.getSize() ; --i >= 0 ;)
+			if (irq != null)
 			{
-				Interrupt irq = interrupts.get(i);
-				if (irq.isReady())
-				{
-					irq.startISR();
-					fireISR(irq);
-					irq.endISR();
-					return;
-				}
+				irq.startISR();
+				fireISR(irq);
+				irq.endISR();
+			}
+		}
+				
+	}
+
+	/**
+	 * Return the ready interrupt with the higher priority.
+	 *
+	 * @since 1.03
+	 */
+	private final Interrupt nextInterrupt()
+	{
+		long p = pendingInterrupts;
+
+		if (p == 0)
+			return null;
+
+		int line = 63 - Long.numberOfLeadingZeros(p);
+
+		if (line == MAX_LINE)
+		{
+			synchronized (this)
+			{
+				long o[] = overflowInterrupts;
 
+				for (int i = o.length ; --i >= 0 ;)
+					if (o[i] != 0)
+						return interrupts.get(MAX_LINE + i * 64 + 63 - Long.numberOfLeadingZeros(o[i]));
 			}
 
-			checkInterrupt = false;
+			return null;
 		}
-				
+
+		return interrupts.get(line);
+	}
+
+	/**
+	 * Return the number of instructions executed since the reset.
+	 *
+	 * @since 1.03
+	 */
+	final long getInstructions()
+	{
+		return instructions;
 	}
 
 	/**
@@ -843,24 +1158,200 @@ public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakP
 	 */
 	public final int step0() throws SIMException
 	{
-		int i;
+		checkBreakPoint();
+		checkInterrupt();
 
+		return exec0();
+	}
+
+	/**
+	 * Exec one instruction or one compiled block.
+	 * <p>
+	 * Used by run0() when the compiler is enabled, fall back to
+	 * the interpreter when one break point is defined, with trace
+	 * enabled or when the block is not compiled.
+	 */
+	final int stepBlock() throws SIMException
+	{
 		checkBreakPoint();
 		checkInterrupt();
 
-		int pc = pc();
+		BlockCompiler compiler = opcodeCache.getCompiler();
 		
-		if (pc == till)
+		if (compiler == null || trace || till != -1 || bps.getSize() > 0)
+			return exec0();
+
+		int pc = pc();
+		CompiledBlock b = compiler.getBlock(pc);
+
+		if (b == null)
 		{
-			till = -1;
-			throw new CPUException(this,"Till break");
+			ioAccess = false;
+			int t = exec0();
+
+			if (compiler.isRecording())
+				compiler.record(pc,pc(),ioAccess);
+
+			return t;
 		}
 
-		AbstractOpcode o = getOpcodeAt(pc);
+		/** The block account the cycles of every opcode executed */
+		try
+		{
+			return b.exec(this);
+		}
+		catch (SIMInterrupted ie)
+		{
+			log.fine(ie.toString()+" AT "+Hex.formatWord(pc())+" ==> "+Hex.formatWord(b.pcs[b.index]));
+			pc(b.pcs[b.index]);
+			return b.cycles;
+		}
+		catch (SIMException e)
+		{
+			pc(b.pcs[b.index]);
+			throw e;
+		}
+	}
+
+	/**
+	 * Called by one compiled block after every opcode.
+	 * <p>
+	 * Update the cycles like the interpreter do after one
+	 * instruction and return true if the block can continue with
+	 * the next opcode.
+	 *
+	 * @param t - Cycles used by the opcode.
+	 * @param next - Address of the next opcode in the block.
+	 *
+	 * @since 1.03
+	 */
+	final boolean blockCycle(int t,int next) throws SIMException
+	{
+		instructions++;
+		elapsedCycle(t);
+
+		if (pc() != next || bpReceived)
+			return false;
+
+		return pendingInterrupts == 0 || !isInterruptEnabled();
+	}
+
+	/**
+	 * Exec one instruction with the switch core.
+	 * <p>
+	 * Used by run0() when the switch core is enabled, fall back
+	 * to the interpreter when one break point is defined or with
+	 * trace enabled.
+	 */
+	final int stepSwitch() throws SIMException
+	{
+		checkBreakPoint();
+		checkInterrupt();
+
+		if (trace || till != -1 || bps.getSize() > 0)
+			return exec0();
+
+		int pc = pc();
+		int t;
+
+		try
+		{
+			t = execSwitch(pc);
+		}
+		catch (SIMInterrupted ie)
+		{
+			log.fine(ie.toString()+" AT "+Hex.formatWord(pc())+" ==> "+Hex.formatWord(pc));
+			pc(pc);
+			return 0;
+		}
+		catch (SIMException e)
+		{
+			pc(pc);
+			throw e;
+		}
+
+		instructions++;
+		elapsedCycle(t);
+
+		return t;
+	}
+
+	/**
+	 * Exec the instruction at the specified address without the
+	 * call to the exec() method of the opcode.
+	 * <p>
+	 * The implementation must decode the opcode, set the program
+	 * counter to the next instruction, exec the instruction and
+	 * return the number of cycle like the opcode. Normally is
+	 * implemented with one switch on the opcode value so the jvm
+	 * can inline the code of all the instructions. The opcodes not
+	 * implemented can be executed calling execOpcode(), this is
+	 * also the default implementation.
+	 *
+	 * @param pc - Address of the instruction.
+	 * @return the number of cycle.
+	 *
+	 * @since 1.03
+	 */
+	protected int execSwitch(int pc) throws SIMException
+	{
+		return execOpcode(pc);
+	}
+
+	/**
+	 * Exec the opcode at the specified address calling the exec()
+	 * method of the opcode.
+	 *
+	 * @param pc - Address of the instruction.
+	 * @return the number of cycle.
+	 *
+	 * @since 1.03
+	 */
+	protected final int execOpcode(int pc) throws SIMException
+	{
+		AbstractOpcode o = opcodeCache != null ? opcodeCache.getOpcodeAt(pc) : getOpcodeAt(pc);
 		
 		if (o == null)
 			throw new CPUException(this,decodeAt(pc));
+
+		int t;
 		
+		/** Istruction with runtime */
+		if (o.runtimeOpcode)
+		{
+			CpuRuntime rt = runtimeExec;
+			rt.clear();
+			rt.pc = pc;
+			RuntimeOpcode ro = (RuntimeOpcode)o;
+			t = ro.exec(rt);
+			pc(pc+rt.length+ro.getLength());
+		}
+		else
+		{
+			pc(pc+o.getLength());
+			t = o.exec(pc);
+		}
+			
+		o.incCounter();
+
+		return t;
+	}
+	
+	/**
+	 * Exec the instruction at the current program counter.
+	 */
+	private final int exec0() throws SIMException
+	{
+		int i;
+
+		int pc = pc();
+		
+		if (pc == till)
+		{
+			till = -1;
+			throw new CPUException(this,"Till break");
+		}
+
 		checkBreakPoint();
 
 		if (trace) 
@@ -869,32 +1360,10 @@ public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakP
 
 		int t;
 		int oldPC = pc;
-		CpuRuntime rt = null;
 		
 		try
 		{
-			/** Istruction with runtime */
-			if (o.runtimeOpcode)
-			{
-				if (rt == null)
-				{
-					rt = runtimeExec;
-					rt.clear();
-				}
-				
-				rt.pc = pc;
-				RuntimeOpcode ro = (RuntimeOpcode)o;
-				t = ro.exec(rt);
-				pc(pc+rt.length+ro.getLength());
-			}
-			else
-			{
-				pc(pc+o.getLength());
-				t = o.exec(pc);
-			}
-			
-			o.incCounter();
-
+			t = execOpcode(pc);
 		}
 		catch (SIMInterrupted ie)
 		{
@@ -924,6 +1393,7 @@ public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakP
 		
 
 		// CPU timing
+		instructions++;
 		elapsedCycle(t);
 
 		return t;
@@ -943,6 +1413,10 @@ public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakP
 
 		for (int i = cycleListenersVector.length ; --i >= 0 ;)
 			cycleListenersVector[i].cycle(t);
+
+		// Scheduled listener only at the deadline
+		if ((scheduledCycles += t) >= scheduledDeadline)
+			syncCycles();
 	}
 
 	/**
@@ -994,7 +1468,23 @@ public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakP
 			/**
 			 * Run the cpu for 1 ms
 			 */
-			do
+			if (switchCoreEnabled)
+			{
+				do
+				{
+					n -= stepSwitch();
+				}
+				while (n > 0);
+			}
+			else if (opcodeCache != null && compilerEnabled)
+			{
+				do
+				{
+					n -= stepBlock();
+				}
+				while (n > 0);
+			}
+			else do
 			{
 				n -= step0();
 			}
@@ -1012,7 +1502,11 @@ public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakP
 				checkAbort();
 
 
-				if (!realTime)
+				if (batchMode)
+				{
+					count = 0;
+				}
+				else if (!realTime)
 				{
 					count = 0;
 					if (timeoutNice.isExpired())
@@ -1263,6 +1757,10 @@ public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakP
 	 */
 	private final long idle0() throws SIMException
 	{
+		/** In batch mode the cpu never sleep */
+		if (batchMode && Thread.currentThread() == thread)
+			return NS1MS;
+		
 		Timeout t = new Timeout(true);
 		long elapsed;
 		
@@ -1301,7 +1799,7 @@ public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakP
 		
 		elapsedCycle((int)(cycleMs*(n/NS1MS)));
 
-		if (checkInterrupt && isInterruptEnabled())
+		if (pendingInterrupts != 0 && isInterruptEnabled())
 			throw new SIMInterrupted("Interrupt ready");
 		
 		setStatusLine('*');
@@ -1454,9 +1952,12 @@ public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakP
 			}
 		});
 
-		TimerManager.addTimer(t);
+		/** No status line in batch mode */
+		if (!batchMode)
+			TimerManager.addTimer(t);
 
 		runtimeExec = createRuntime();
+		updateOpcodeCache();
 	}
 
 	public void addResetListener(ResetListener l)
@@ -1617,11 +2118,13 @@ public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakP
 
 	public final void setIOByte(int a,int v) throws SIMException
 	{
+		ioAccess = true;
 		io.setMemory(a,v);
 	}
 
 	public final int getIOByte(int a) throws SIMException
 	{
+		ioAccess = true;
 		int v = io.getMemory(a);
 		return v;
 	}
@@ -1662,6 +2165,21 @@ public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakP
 		return realTime;
 	}
 
+	public void setBatchMode(boolean mode)
+	{
+		batchMode = mode;
+	}
+
+	public boolean getBatchMode()
+	{
+		return batchMode;
+	}
+
+	public final long getInstructionCount()
+	{
+		return instructions;
+	}
+
 	public void abort(String s)
 	{
 		abort = s;
@@ -1706,6 +2224,9 @@ public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakP
 	 */
 	protected void halt() throws SIMException
 	{
+		if (batchMode)
+			throw new CPUAbortException(this,"HALT");
+		
 		if (!isInterruptEnabled())
 			throw new CPUException(this,"HALT with Interrupt disabled");
 
@@ -1759,14 +2280,70 @@ public abstract class AbstractCPU extends AbstractHardware implements CPU,BreakP
 				terminal.setStatusLine(0,terminal.getNumCol() - 1,c);
 	}
 
-	public final void addInterrupt(Interrupt irq)
+	public final int addInterrupt(Interrupt irq)
 	{
 		interrupts.add(irq);
+
+		return interrupts.getSize() - 1;
 	}
 
+	/**
+	 * The interrupt already know its lines and the last ready state
+	 * notified, so the check is delegated to the interrupt.
+	 */
 	public final void notifyInterrupt(Interrupt irq)
 	{
-		checkInterrupt = true;
+		try
+		{
+			irq.checkReady();
+		}
+		catch (SIMException ignore)
+		{
+		}
+	}
+
+	/**
+	 * Set the ready state of one interrupt line.
+	 *
+	 * @since 1.03
+	 */
+	public final synchronized void setInterruptLine(int line,boolean ready)
+	{
+		if (line < MAX_LINE)
+		{
+			if (ready)
+				pendingInterrupts |= 1L << line;
+			else
+				pendingInterrupts &= ~(1L << line);
+			return;
+		}
+
+		line -= MAX_LINE;
+
+		int w = line >>> 6;
+
+		if (w >= overflowInterrupts.length)
+		{
+			long o[] = new long[w + 1];
+			System.arraycopy(overflowInterrupts,0,o,0,overflowInterrupts.length);
+			overflowInterrupts = o;
+		}
+
+		if (ready)
+			overflowInterrupts[w] |= 1L << (line & 63);
+		else
+			overflowInterrupts[w] &= ~(1L << (line & 63));
+
+		boolean any = false;
+
+		for (int i = 0 ; i < overflowInterrupts.length ; i++)
+			if (overflowInterrupts[i] != 0)
+				any = true;
+
+		if (any)
+			pendingInterrupts |= 1L << MAX_LINE;
+		else
+			pendingInterrupts &= ~(1L << MAX_LINE);
 	}
 
 	/**
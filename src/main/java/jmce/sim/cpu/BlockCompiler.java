@@ -0,0 +1,604 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.sim.cpu;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+
+import jmce.sim.*;
+import jmce.util.Logger;
+
+/**
+ * Compiler of hot blocks in JVM classes.<p>
+ *
+ * Every address executed by the interpreter have one counter, when
+ * the counter reach <tt>THRESHOLD</tt> the following opcodes are
+ * recorded while executed by the interpreter till the program
+ * counter is not sequential or <tt>MAX_BLOCK</tt> opcodes are
+ * recorded. The recorded block is compiled in one hidden class
+ * where every opcode is executed from a different call site so
+ * HotSpot can inline the opcode, the register access and the flag
+ * calculation across all the block.
+ * <p>
+ * After every opcode the generated code add the cycles of the
+ * opcode to the cpu, like the interpreter, so the cycle listeners,
+ * the scheduled deadlines and <tt>getCycle()</tt> see the same
+ * values also inside one block. The block return when the program
+ * counter is not the expected one (branch taken or exception), when
+ * one enabled interrupt is pending or one break point is received,
+ * so the next opcode is executed only if the interpreter would have
+ * executed it too.
+ * <p>
+ * Only the address cached by the <tt>OpcodeCache</tt> can be
+ * compiled so the address with read listener (I/O mapped, break
+ * point) are never compiled. The recording end at every opcode that
+ * access the I/O space, so IN/OUT and the other port opcodes are
+ * always executed by the interpreter. When a cached opcode is invalidated
+ * by a write all the blocks in the same page are removed, a page
+ * invalidated more than <tt>MAX_INVALIDATE</tt> times is considered
+ * self modified and is always executed by the interpreter.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ * @since 1.03
+ * @see CompiledBlock
+ */
+final class BlockCompiler
+{
+	private static Logger log = Logger.getLogger(BlockCompiler.class);
+
+	/** Number of execution before compile one address */
+	static final int THRESHOLD = 256;
+
+	/** Max number of opcode in one block */
+	static final int MAX_BLOCK = 32;
+
+	/** Max number of invalidate in one page */
+	static final int MAX_INVALIDATE = 8;
+	
+	static private final int PAGE_SHIFT = 8;
+	static private final int PAGE_SIZE = 1 << PAGE_SHIFT;
+	static private final int PAGE_MASK = PAGE_SIZE - 1;
+
+	/** Max number of generated classes kept for reuse */
+	static final int MAX_CLASSES = 4096;
+
+	/** Counter set for address that must not be compiled */
+	static private final int NEVER = -1;
+
+	/** Lookup used to define the hidden classes */
+	static private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+	/** Generated classes for each sequence of opcodes */
+	private HashMap<String,Class<?>> classes = new HashMap<String,Class<?>>();
+	
+	private AbstractCPU cpu;
+	private OpcodeCache cache;
+	private int size;
+	private CompiledBlock blocks[][];
+	private int counters[][];
+	private int invalidates[];
+
+	/** Recorded block */
+	private AbstractOpcode recordOps[] = new AbstractOpcode[MAX_BLOCK];
+	private int recordPcs[] = new int[MAX_BLOCK];
+	private int recordCount = 0;
+	private int recordPc = -1;
+	private int recordNext = -1;
+
+	/** Statistics */
+	private int compiled = 0;
+	
+	BlockCompiler(AbstractCPU cpu,OpcodeCache cache,int size)
+	{
+		this.cpu = cpu;
+		this.cache = cache;
+		this.size = size;
+		flush();
+	}
+
+	/**
+	 * Remove all compiled blocks.
+	 */
+	void flush()
+	{
+		blocks = new CompiledBlock[(size + PAGE_MASK) >>> PAGE_SHIFT][];
+		counters = new int[blocks.length][];
+		invalidates = new int[blocks.length];
+		recordPc = -1;
+	}
+
+	/**
+	 * Resize and flush the compiler.
+	 */
+	void flush(int size)
+	{
+		this.size = size;
+		flush();
+	}
+
+	/**
+	 * Return true if one block is in recording.
+	 */
+	final boolean isRecording()
+	{
+		return recordPc != -1;
+	}
+
+	/**
+	 * Return the compiled block at the specified address or null.
+	 * <p>
+	 * If the address is not compiled update the counter and start
+	 * recording when the threshold is reached.
+	 */
+	final CompiledBlock getBlock(int pc)
+	{
+		if (pc < 0 || pc >= size)
+			return null;
+
+		int page = pc >>> PAGE_SHIFT;
+		CompiledBlock b[] = blocks[page];
+
+		if (b != null && b[pc & PAGE_MASK] != null)
+			return b[pc & PAGE_MASK];
+
+		if (recordPc != -1)
+			return null;
+		
+		int c[] = counters[page];
+
+		if (c == null)
+		{
+			c = new int[PAGE_SIZE];
+			counters[page] = c;
+			if (invalidates[page] > MAX_INVALIDATE)
+				java.util.Arrays.fill(c,NEVER);
+		}
+
+		int n = c[pc & PAGE_MASK];
+
+		if (n != NEVER && ++n >= THRESHOLD)
+		{
+			n = NEVER;
+			recordPc = pc;
+			recordNext = pc;
+			recordCount = 0;
+		}
+
+		c[pc & PAGE_MASK] = n;
+
+		return null;
+	}
+
+	/**
+	 * Record one opcode executed by the interpreter.
+	 *
+	 * @param pc - Address of the opcode.
+	 * @param newPc - Program counter after the execution.
+	 * @param io - True if the opcode accessed the I/O space.
+	 */
+	final void record(int pc,int newPc,boolean io) throws SIMException
+	{
+		if (pc != recordNext)
+		{
+			endRecord();
+			return;
+		}
+		
+		AbstractOpcode o = cache.getCachedOpcode(pc);
+
+		if (o == null || o.runtimeOpcode || io)
+		{
+			endRecord();
+			return;
+		}
+
+		recordOps[recordCount] = o;
+		recordPcs[recordCount] = pc;
+		recordCount++;
+		recordNext = pc + o.getLength();
+
+		if (newPc != recordNext || recordCount >= MAX_BLOCK)
+			endRecord();
+	}
+
+	/**
+	 * End the recording and compile the block.
+	 */
+	private void endRecord()
+	{
+		int pc = recordPc;
+
+		recordPc = -1;
+
+		/** Block with one opcode do not need to be compiled */
+		if (recordCount < 2)
+			return;
+
+		AbstractOpcode ops[] = new AbstractOpcode[recordCount];
+		int pcs[] = new int[recordCount];
+
+		System.arraycopy(recordOps,0,ops,0,recordCount);
+		System.arraycopy(recordPcs,0,pcs,0,recordCount);
+
+		try
+		{
+			CompiledBlock b = compile(ops,pcs);
+			int page = pc >>> PAGE_SHIFT;
+
+			if (blocks[page] == null)
+				blocks[page] = new CompiledBlock[PAGE_SIZE];
+			blocks[page][pc & PAGE_MASK] = b;
+			compiled++;
+		}
+		catch (Throwable e)
+		{
+			log.warning("Compile block at "+pc+" "+e);
+		}
+	}
+
+	/**
+	 * Invalidate all the blocks that can use the specified address.
+	 */
+	final void invalidate(int a)
+	{
+		if (a < 0 || a >= size)
+			return;
+		
+		int page = a >>> PAGE_SHIFT;
+
+		/** One block can start in the previous page */
+		for (int p = page > 0 ? page - 1 : 0 ; p <= page ; p++)
+		{
+			if (blocks[p] != null)
+			{
+				blocks[p] = null;
+				counters[p] = null;
+				invalidates[p]++;
+			}
+		}
+
+		if (recordPc != -1 && (recordPc >>> PAGE_SHIFT) >= page - 1 && (recordPc >>> PAGE_SHIFT) <= page)
+			recordPc = -1;
+	}
+
+	/**
+	 * Compile the block.
+	 */
+	private CompiledBlock compile(AbstractOpcode ops[],int pcs[]) throws Throwable
+	{
+		/**
+		 * The generated code depend only from the address and the
+		 * length of the opcodes so one class can be shared by
+		 * all the blocks with the same layout.
+		 */
+		StringBuilder sb = new StringBuilder();
+
+		for (int i = 0 ; i < ops.length ; i++)
+			sb.append(pcs[i]).append(',').append(ops[i].getLength()).append(';');
+
+		String key = sb.toString();
+		Class<?> c;
+
+		c = classes.get(key);
+
+		if (c == null)
+		{
+			/** Forget the old classes, the unused are unloaded */
+			if (classes.size() >= MAX_CLASSES)
+				classes.clear();
+
+			byte code[] = generate(pcs,ops);
+			c = lookup.defineHiddenClass(code,true).lookupClass();
+			classes.put(key,c);
+		}
+
+		CompiledBlock b = (CompiledBlock)lookup.findConstructor(c,MethodType.methodType(void.class)).invoke();
+		b.ops = ops;
+		b.pcs = pcs;
+
+		return b;
+	}
+
+	/**
+	 * Return the number of compiled blocks.
+	 */
+	final int getCompiledCount()
+	{
+		return compiled;
+	}
+
+	/*
+	 * Class file generator.
+	 *
+	 * The generated class use the version 49 of the class file so
+	 * the stack map frame are not required.
+	 */
+	static private final String BLOCK = "jmce/sim/cpu/CompiledBlock";
+	static private final String OPCODE = "jmce/sim/cpu/AbstractOpcode";
+	static private final String CPU = "jmce/sim/cpu/AbstractCPU";
+	
+	static private final int ALOAD_0 = 0x2a;
+	static private final int ALOAD_1 = 0x2b;
+	static private final int ASTORE_2 = 0x4d;
+	static private final int ALOAD_2 = 0x2c;
+	static private final int ISTORE_3 = 0x3e;
+	static private final int ILOAD_3 = 0x1d;
+	static private final int ICONST_0 = 0x03;
+	static private final int IADD = 0x60;
+	static private final int POP = 0x57;
+	static private final int IFNE = 0x9a;
+	static private final int IRETURN = 0xac;
+	static private final int RETURN = 0xb1;
+	static private final int DUP = 0x59;
+	static private final int AALOAD = 0x32;
+	static private final int LDC_W = 0x13;
+	static private final int GETFIELD = 0xb4;
+	static private final int PUTFIELD = 0xb5;
+	static private final int INVOKEVIRTUAL = 0xb6;
+	static private final int INVOKESPECIAL = 0xb7;
+	static private final int INVOKEINTERFACE = 0xb9;
+	
+	private static byte[] generate(int pcs[],AbstractOpcode ops[]) throws IOException
+	{
+		ConstantPool cp = new ConstantPool();
+		int thisClass = cp.classRef(BLOCK+"$Block");
+		int superClass = cp.classRef(BLOCK);
+		int init = cp.methodRef(BLOCK,"<init>","()V");
+		int fieldOps = cp.fieldRef(BLOCK,"ops","[L"+OPCODE+";");
+		int fieldIndex = cp.fieldRef(BLOCK,"index","I");
+		int fieldCycles = cp.fieldRef(BLOCK,"cycles","I");
+		int exec = cp.methodRef(OPCODE,"exec","(I)I");
+		int incCounter = cp.methodRef(OPCODE,"incCounter","()V");
+		int blockCycle = cp.methodRef(CPU,"blockCycle","(II)Z");
+		int setPc = cp.interfaceMethodRef("jmce/sim/CPU","pc","(I)V");
+		
+		/** Constructor */
+		ByteArrayOutputStream ctor = new ByteArrayOutputStream();
+		ctor.write(ALOAD_0);
+		ctor.write(INVOKESPECIAL);
+		u2(ctor,init);
+		ctor.write(RETURN);
+
+		/** Method exec(AbstractCPU) */
+		ByteArrayOutputStream m = new ByteArrayOutputStream();
+
+		/* cycles = 0 */
+		m.write(ALOAD_0);
+		m.write(ICONST_0);
+		m.write(PUTFIELD);
+		u2(m,fieldCycles);
+
+		for (int i = 0 ; i < ops.length ; i++)
+		{
+			int next = cp.integer(pcs[i] + ops[i].getLength());
+
+			/* index = i */
+			m.write(ALOAD_0);
+			m.write(LDC_W);
+			u2(m,cp.integer(i));
+			m.write(PUTFIELD);
+			u2(m,fieldIndex);
+
+			/* cpu.pc(next) */
+			m.write(ALOAD_1);
+			m.write(LDC_W);
+			u2(m,next);
+			m.write(INVOKEINTERFACE);
+			u2(m,setPc);
+			m.write(2);
+			m.write(0);
+
+			/* o = ops[i] */
+			m.write(ALOAD_0);
+			m.write(GETFIELD);
+			u2(m,fieldOps);
+			m.write(LDC_W);
+			u2(m,cp.integer(i));
+			m.write(AALOAD);
+			m.write(ASTORE_2);
+			
+			/* t = o.exec(pc) */
+			m.write(ALOAD_2);
+			m.write(LDC_W);
+			u2(m,cp.integer(pcs[i]));
+			m.write(INVOKEVIRTUAL);
+			u2(m,exec);
+			m.write(ISTORE_3);
+
+			/* o.incCounter() */
+			m.write(ALOAD_2);
+			m.write(INVOKEVIRTUAL);
+			u2(m,incCounter);
+
+			/* cycles += t */
+			m.write(ALOAD_0);
+			m.write(DUP);
+			m.write(GETFIELD);
+			u2(m,fieldCycles);
+			m.write(ILOAD_3);
+			m.write(IADD);
+			m.write(PUTFIELD);
+			u2(m,fieldCycles);
+
+			/* if (!cpu.blockCycle(t,next)) return cycles */
+			m.write(ALOAD_1);
+			m.write(ILOAD_3);
+			m.write(LDC_W);
+			u2(m,next);
+			m.write(INVOKEVIRTUAL);
+			u2(m,blockCycle);
+
+			if (i + 1 < ops.length)
+			{
+				m.write(IFNE);
+				u2(m,3 + 5);
+				m.write(ALOAD_0);
+				m.write(GETFIELD);
+				u2(m,fieldCycles);
+				m.write(IRETURN);
+			}
+			else
+				m.write(POP);
+		}
+
+		m.write(ALOAD_0);
+		m.write(GETFIELD);
+		u2(m,fieldCycles);
+		m.write(IRETURN);
+
+		int code = cp.utf8("Code");
+		int nameInit = cp.utf8("<init>");
+		int descInit = cp.utf8("()V");
+		int nameExec = cp.utf8("exec");
+		int descExec = cp.utf8("(Ljmce/sim/cpu/AbstractCPU;)I");
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bos);
+
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0);
+		out.writeShort(49);
+		cp.write(out);
+		out.writeShort(0x0030);		// ACC_FINAL | ACC_SUPER
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		out.writeShort(0);		// interfaces
+		out.writeShort(0);		// fields
+		out.writeShort(2);		// methods
+		method(out,0x0000,nameInit,descInit,code,1,1,ctor.toByteArray());
+		method(out,0x0000,nameExec,descExec,code,4,4,m.toByteArray());
+		out.writeShort(0);		// attributes
+		out.flush();
+
+		return bos.toByteArray();
+	}
+
+	private static void method(DataOutputStream out,int access,int name,int desc,int code,int maxStack,int maxLocals,byte bytecode[]) throws IOException
+	{
+		out.writeShort(access);
+		out.writeShort(name);
+		out.writeShort(desc);
+		out.writeShort(1);
+		out.writeShort(code);
+		out.writeInt(12 + bytecode.length);
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(bytecode.length);
+		out.write(bytecode);
+		out.writeShort(0);		// exception table
+		out.writeShort(0);		// attributes
+	}
+	
+	private static void u2(ByteArrayOutputStream out,int v)
+	{
+		out.write(v >>> 8);
+		out.write(v);
+	}
+
+	/**
+	 * Constant pool of the generated class.
+	 */
+	static private final class ConstantPool
+	{
+		private ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		private DataOutputStream out = new DataOutputStream(bos);
+		private HashMap<String,Integer> map = new HashMap<String,Integer>();
+		private int count = 1;
+
+		private int add(String key,int tag,int a,int b,String s) throws IOException
+		{
+			Integer i = map.get(key);
+
+			if (i != null)
+				return i;
+
+			out.writeByte(tag);
+
+			if (s != null)
+				out.writeUTF(s);
+			else if (tag == 3)
+				out.writeInt(a);
+			else
+			{
+				out.writeShort(a);
+				if (b >= 0)
+					out.writeShort(b);
+			}
+
+			map.put(key,count);
+
+			return count++;
+		}
+
+		int utf8(String s) throws IOException
+		{
+			return add("U"+s,1,0,0,s);
+		}
+
+		int integer(int v) throws IOException
+		{
+			return add("I"+v,3,v,0,null);
+		}
+
+		int classRef(String name) throws IOException
+		{
+			return add("C"+name,7,utf8(name),-1,null);
+		}
+
+		private int nameAndType(String name,String desc) throws IOException
+		{
+			return add("N"+name+" "+desc,12,utf8(name),utf8(desc),null);
+		}
+		
+		int fieldRef(String owner,String name,String desc) throws IOException
+		{
+			return add("F"+owner+"."+name+" "+desc,9,classRef(owner),nameAndType(name,desc),null);
+		}
+
+		int methodRef(String owner,String name,String desc) throws IOException
+		{
+			return add("M"+owner+"."+name+" "+desc,10,classRef(owner),nameAndType(name,desc),null);
+		}
+
+		int interfaceMethodRef(String owner,String name,String desc) throws IOException
+		{
+			return add("J"+owner+"."+name+" "+desc,11,classRef(owner),nameAndType(name,desc),null);
+		}
+
+		void write(DataOutputStream dos) throws IOException
+		{
+			out.flush();
+			dos.writeShort(count);
+			dos.write(bos.toByteArray());
+		}
+	}
+}
@@ -0,0 +1,308 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.sim.cpu;
+
+import jmce.sim.*;
+import jmce.sim.memory.AbstractMemory;
+import jmce.util.FastArray;
+
+/**
+ * Cache of decoded opcode.<p>
+ *
+ * For every address of the main memory the cache store the opcode
+ * resolved walking the <tt>MultiOpcode</tt> tables so when the
+ * same address is executed again the decode phase is skipped.
+ * Only address that can be read without listener are cached, every
+ * byte used to decode the opcode is marked as code in the memory and
+ * the cached opcodes are invalidated when one marked byte is changed.
+ * The marks do not disable the fast write path of the memory page
+ * like a specific <tt>MemoryWriteListener</tt>. The whole cache is
+ * flushed when the generation of the memory change (bank switch,
+ * reset, new read listener).
+ * <p>
+ * The marks are set on the physical memory where the code is
+ * stored, following the mapping of virtual memories, so a write
+ * to the same bank using another mapping invalidate the opcodes.
+ * For every page of the cpu the cache keep the physical memory and
+ * address where the page is mapped to convert the address of the
+ * physical memory back to the address of the cpu.
+ * <p>
+ * The cache is allocated in pages of 256 entry only for the
+ * memory that is really executed.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ * @since 1.03
+ */
+final class OpcodeCache implements MemoryWriteListener
+{
+	static private final int PAGE_SHIFT = 8;
+	static private final int PAGE_SIZE = 1 << PAGE_SHIFT;
+	static private final int PAGE_MASK = PAGE_SIZE - 1;
+
+	private AbstractCPU cpu;
+	private AbstractMemory memory;
+	private AbstractOpcode pages[][];
+	private int size;
+	private int generation;
+
+	/** Physical memory and address of every page with cached opcodes */
+	private AbstractMemory pageMemory[];
+	private int pageBase[];
+
+	/** Physical memory with the code listener installed */
+	private FastArray<AbstractMemory> physical = new FastArray<AbstractMemory>();
+
+	/** Max number of byte used to decode one opcode */
+	private int maxDecode = 1;
+
+	/** Compiler of hot blocks or null */
+	private BlockCompiler compiler = null;
+
+	OpcodeCache(AbstractCPU cpu,AbstractMemory memory)
+	{
+		this.cpu = cpu;
+		this.memory = memory;
+
+		flush();
+	}
+
+	/**
+	 * Remove all listener installed by the cache.
+	 */
+	void dispose()
+	{
+		for (int i = physical.getSize(); --i >= 0 ;)
+			physical.get(i).removeCodeListener(this);
+		physical.clear();
+
+		pages = new AbstractOpcode[0][];
+		size = 0;
+	}
+	
+	/**
+	 * Invalidate all cached opcode.
+	 */
+	void flush()
+	{
+		generation = memory.getGeneration();
+		size = memory.getSize();
+		pages = new AbstractOpcode[(size + PAGE_MASK) >>> PAGE_SHIFT][];
+		pageMemory = new AbstractMemory[pages.length];
+		pageBase = new int[pages.length];
+
+		if (compiler != null)
+			compiler.flush(size);
+	}
+
+	/**
+	 * Enable or disable the compiler of hot blocks.
+	 */
+	void setCompiler(boolean mode)
+	{
+		compiler = mode ? new BlockCompiler(cpu,this,size) : null;
+	}
+
+	/**
+	 * Return the compiler of hot blocks or null.
+	 */
+	final BlockCompiler getCompiler()
+	{
+		if (generation != memory.getGeneration())
+			flush();
+
+		return compiler;
+	}
+
+	/**
+	 * Return the opcode at the specified address only if it is
+	 * already in the cache.
+	 */
+	final AbstractOpcode getCachedOpcode(int pc)
+	{
+		if (pc < 0 || pc >= size)
+			return null;
+
+		AbstractOpcode p[] = pages[pc >>> PAGE_SHIFT];
+
+		return p == null ? null : p[pc & PAGE_MASK];
+	}
+
+	/**
+	 * Return the opcode at the specified address.
+	 */
+	final AbstractOpcode getOpcodeAt(int pc) throws SIMException
+	{
+		if (generation != memory.getGeneration())
+			flush();
+
+		if (pc >= 0 && pc < size)
+		{
+			AbstractOpcode p[] = pages[pc >>> PAGE_SHIFT];
+
+			if (p != null)
+			{
+				AbstractOpcode o = p[pc & PAGE_MASK];
+
+				if (o != null)
+					return o;
+			}
+
+			return decode(pc);
+		}
+
+		return cpu.getOpcodeAt(pc);
+	}
+
+	/**
+	 * Decode the opcode at the specified address and store it
+	 * in the cache if possible.
+	 */
+	private AbstractOpcode decode(int pc) throws SIMException
+	{
+		AbstractOpcode base = cpu.getOpcodes();
+		AbstractOpcode o;
+		int len = 0;
+		
+		for (;;)
+		{
+			if (pc + len >= size || !memory.isFastRead(pc + len))
+				return cpu.getOpcodeAt(pc);
+			
+			o = base.getOpcode(cpu.fetch(pc + len++));
+			
+			if (o == null)
+				return null;
+
+			if (o.isMultiOpcode())
+				base = o;
+			else
+				break;
+		}
+
+		for (int i = 0 ; i < len ; i++)
+		{
+			if (!mark(pc + i))
+				return o;
+		}
+
+		if (len > maxDecode)
+			maxDecode = len;
+
+		AbstractOpcode p[] = pages[pc >>> PAGE_SHIFT];
+
+		if (p == null)
+		{
+			p = new AbstractOpcode[PAGE_SIZE];
+			pages[pc >>> PAGE_SHIFT] = p;
+		}
+
+		p[pc & PAGE_MASK] = o;
+
+		return o;
+	}
+
+	/**
+	 * Mark the address as code in the physical memory.
+	 *
+	 * @return false if the page of the address is not mapped on
+	 * consecutive addresses of one physical memory.
+	 */
+	private boolean mark(int a)
+	{
+		int page = a >>> PAGE_SHIFT;
+		AbstractMemory m = memory.getPhysicalMemory(a);
+		int base = memory.getPhysicalAddress(a) - (a & PAGE_MASK);
+
+		if (pageMemory[page] == null)
+		{
+			if (!physical.contains(m))
+			{
+				m.addCodeListener(this);
+				physical.add(m);
+			}
+
+			pageMemory[page] = m;
+			pageBase[page] = base;
+		}
+		else if (pageMemory[page] != m || pageBase[page] != base)
+			return false;
+
+		m.setCode(base + (a & PAGE_MASK));
+
+		return true;
+	}
+
+	/**
+	 * Invalidate all opcode decoded using the written address of
+	 * one physical memory.
+	 */
+	public void writeMemory(Memory m,int a,int v,int oldValue)
+	{
+		if (v == oldValue)
+			return;
+
+		/** Not virtual memory are mapped only at the same address */
+		if (m == memory && !memory.isVirtual())
+		{
+			invalidate(a);
+			return;
+		}
+
+		for (int p = 0 ; p < pageMemory.length ; p++)
+		{
+			if (pageMemory[p] == m && a - pageBase[p] >= 0 && a - pageBase[p] < PAGE_SIZE)
+				invalidate((p << PAGE_SHIFT) + a - pageBase[p]);
+		}
+	}
+
+	/**
+	 * Invalidate all opcode decoded using the cpu address.
+	 */
+	private void invalidate(int a)
+	{
+		boolean cached = false;
+
+		for (int pc = a - maxDecode + 1 ; pc <= a ; pc++)
+		{
+			if (pc >= 0 && pc < size)
+			{
+				AbstractOpcode p[] = pages[pc >>> PAGE_SHIFT];
+
+				if (p != null && p[pc & PAGE_MASK] != null)
+				{
+					p[pc & PAGE_MASK] = null;
+					cached = true;
+				}
+			}
+		}
+
+		/** Compiled blocks use only cached opcodes */
+		if (cached && compiler != null)
+			compiler.invalidate(a);
+	}
+}
@@ -29,6 +29,8 @@ package jmce.sim.disk;
 import jmce.sim.*;
 
 import jmce.util.Logger;
+import jmce.util.Timer;
+import jmce.util.TimerListener;
 
 /**
  * Abstract implementation of <code>Disk</code>.
@@ -38,13 +40,21 @@ import jmce.util.Logger;
  * <code>read</code> method to access the phisical disk and if
  * necessary can override the <code>mount</code> and
  * <code>dismount</code> method.
+ * <p>
+ * Since 1.03 flush() is called every <tt>FLUSH_TIME</tt> ms of
+ * emulated time so disks that keep the changes in memory write them
+ * also when the simulator is not stopped normally.
  * 
  * @author Mario Viara
- * @version 1.01
+ * @version 1.03
  */
 public abstract class AbstractDisk extends jmce.sim.AbstractPeripheral implements Disk
 {
 	private static Logger log = Logger.getLogger(AbstractDisk.class);
+
+	/** Time in ms between two automatic flush */
+	static private final int FLUSH_TIME = 2000;
+
 	protected int numTrack,numHead,numSector,sectorSize;
 	protected boolean mounted = false;
 	protected boolean readOnly = false;
@@ -129,6 +139,34 @@ public abstract class AbstractDisk extends jmce.sim.AbstractPeripheral implement
 	{
 		setMounted(false);
 	}
+
+	/**
+	 * Start the timer of the automatic flush.
+	 *
+	 * @since 1.03
+	 */
+	public void registerCPU(CPU cpu) throws SIMException
+	{
+		super.registerCPU(cpu);
+
+		cpu.addTimerMs(new Timer(FLUSH_TIME,true,new TimerListener()
+		{
+			public void timerExpired() throws SIMException
+			{
+				flush();
+			}
+		}));
+	}
+
+	/**
+	 * The default implementation write every sector immediately
+	 * and do nothing.
+	 *
+	 * @since 1.03
+	 */
+	public void flush() throws SIMException
+	{
+	}
 	
 	public boolean isMounted()
 	{
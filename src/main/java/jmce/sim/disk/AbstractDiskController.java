@@ -37,7 +37,7 @@ import jmce.sim.cpm.*;
  * @author Mario Viara
  * @version 1.00
  */
-public class AbstractDiskController extends jmce.sim.AbstractPeripheral implements DiskController
+public class AbstractDiskController extends jmce.sim.AbstractPeripheral implements DiskController,Snapshottable
 {
 	protected int drive;
 	protected final Disk nullDisk = new NullDisk();
@@ -71,6 +71,56 @@ public class AbstractDiskController extends jmce.sim.AbstractPeripheral implemen
 		return (Disk)getHardware(n);
 	}
 
+	/**
+	 * Save the selected drive and the position of all the disk, the
+	 * content of the disk is not saved.
+	 *
+	 * @since 1.03
+	 */
+	public void saveState(Snapshot s) throws SIMException
+	{
+		s.putInt(drive);
+		s.putInt(getDiskCount());
+
+		for (int i = 0 ; i < getDiskCount() ; i++)
+		{
+			Disk d = getDisk(i);
+			s.putInt(d.getTrack());
+			s.putInt(d.getSector());
+			s.putInt(d.getHead());
+		}
+	}
+
+	/**
+	 * @since 1.03
+	 */
+	public void loadState(Snapshot s) throws SIMException
+	{
+		int n = s.getInt();
+
+		if (n >= 0 && n < getDiskCount())
+			setDrive(n);
+		else
+			drive = n;
+
+		n = s.getInt();
+
+		for (int i = 0 ; i < n ; i++)
+		{
+			int track = s.getInt();
+			int sector = s.getInt();
+			int head = s.getInt();
+
+			if (i < getDiskCount())
+			{
+				Disk d = getDisk(i);
+				d.setTrack(track);
+				d.setSector(sector);
+				d.setHead(head);
+			}
+		}
+	}
+
 	public void addDirDiskIBM3740(String dir)
 	{
 		addDirDiskCPM(dir,new DPB3740());
@@ -27,10 +27,13 @@
 package jmce.sim.disk;
 
 import java.io.*;
+import java.util.Arrays;
+import java.util.HashSet;
 
 import jmce.sim.*;
 import jmce.sim.cpm.*;
 import jmce.util.Logger;
+import jmce.util.FastArray;
 
 /**
  * Directory disk in CP/M format.
@@ -41,6 +44,21 @@ import jmce.util.Logger;
  * name with the user name. For example if the root directory is disks
  * the file WS.COM for the user 0 will be read/write from disks/WS.COM
  * and for the user 1 disks/1/WS.COM
+ * <p>
+ * Since 1.03 the disk is virtual : at mount only the directory is
+ * created from the size of the files, the data block are read from
+ * the local file only when the emulated system read them and only
+ * the sector written are stored in memory. The files changed are
+ * written back in the directory only by flush(), called when the
+ * disk is dismounted, when the simulator is stopped and at the end
+ * of one batch run. Writing back the files at every update of the
+ * directory rewrite the whole file for every new extent.
+ * <p>
+ * The snapshot save the image of the whole disk, because the files
+ * in the directory can change after the snapshot. At restore only
+ * the sectors different from the current disk are stored in memory
+ * and marked as changed, so they are written back like the sectors
+ * written by the emulated system.
  * 
  * <p>When the simulator is stopped if the property @see #setRO is
  * set to false the file are written back in the directory.<p>
@@ -68,16 +86,45 @@ import jmce.util.Logger;
  * </ul>
  * 
  * @author Mario Viara
- * @version 1.01
+ * @version 1.03
  */
-public class DirDiskCPM extends MemoryDisk implements DiskCPM
+public class DirDiskCPM extends AbstractDisk implements DiskCPM,Snapshottable
 {
 	private static Logger log = Logger.getLogger(DirDiskCPM.class);
 	static private final String bootloader = "BOOTLOADER.BIN";
 	private DPB dpb;
 	private String directory;
 	private boolean vol = false;
-	private CpmDisk disk = null;
+
+	/** Number of sector for block and block size in bytes */
+	private int blockSector,blockSize;
+
+	/** Number of block used by the directory */
+	private int dirBlock;
+
+	/** Directory image and copy of the last version written back */
+	private byte dir[],savedDir[];
+
+	/** Sector written by the emulated system indexed by position */
+	private byte sectors[][];
+
+	/** Physical to logical sector translation */
+	private int logical[];
+
+	/** Local file , offset in the file and changed flag for each block */
+	private int blockFile[];
+	private int blockOffset[];
+	private boolean blockDirty[];
+
+	/** Local files mapped in the disk */
+	private FastArray<File> localFiles = new FastArray<File>();
+
+	/** Next free FCB and data block used during the mount */
+	private int nextFCB,nextBlock;
+
+	/** Local file currently open */
+	private RandomAccessFile rf = null;
+	private int rfIndex = -1;
 	
 	public DirDiskCPM()
 	{
@@ -188,7 +235,7 @@ public class DirDiskCPM extends MemoryDisk implements DiskCPM
 	{
 		super.destroy();
 
-		if (disk == null)
+		if (dir == null)
 			return;
 		
 		if (vol)
@@ -196,8 +243,33 @@ public class DirDiskCPM extends MemoryDisk implements DiskCPM
 			log.info("Directory R/O");
 			return;
 		}
+
+		flush();
+		closeFile();
+	}
+
+	/**
+	 * Write back in the directory all the files changed.
+	 *
+	 * Only the files with one FCB or one data block modified from
+	 * the last flush are written.
+	 *
+	 * @since 1.03
+	 */
+	public void flush() throws SIMException
+	{
+		if (!isMounted() || vol || savedDir == null)
+			return;
+
+		/** Called periodically, do not read the directory if nothing is changed */
+		if (!isChanged())
+			return;
+
+		/** Reading the directory use the sector buffer */
+		byte save[] = new byte[buffer.length];
+		System.arraycopy(buffer,0,save,0,buffer.length);
 		
-		disk = new CpmDisk(dpb,this);
+		CpmDisk disk = new CpmDisk(dpb,this);
 		
 		try
 		{		
@@ -208,11 +280,12 @@ public class DirDiskCPM extends MemoryDisk implements DiskCPM
 			throw new SIMIOException(directory,e.getMessage());
 		}
 		
-		log.fine("Process "+disk+" Files="+disk.getFileCount());
-		
 		for (int i = 0 ; i < disk.getFileCount() ; i++)
 		{
 			CpmFile f = disk.getFileAt(i);
+
+			if (!isChanged(f))
+				continue;
 			
 			String to = directory+"/";
 			if (f.getUser() != 0)
@@ -223,24 +296,236 @@ public class DirDiskCPM extends MemoryDisk implements DiskCPM
 			log.fine("Write "+f+" as "+to);
 			try
 			{
+				detachFile(new File(to));
 				disk.getFile(f,to);
 			}
 			catch (Exception e)
 			{
 				throw new SIMIOException(f.getName(),e.toString());
 			}
+
 		}
 
+		/**
+		 * All the changed files are written, the blocks and FCB
+		 * not used by one file will be written with the file
+		 * that will use them.
+		 */
+		Arrays.fill(blockDirty,false);
+		System.arraycopy(dir,0,savedDir,0,dir.length);
+
+		System.arraycopy(save,0,buffer,0,buffer.length);
+	}
+
+	/**
+	 * Return true if one FCB or one data block is changed from the
+	 * last flush.
+	 */
+	private boolean isChanged()
+	{
+		for (int i = 0 ; i < blockDirty.length ; i++)
+			if (blockDirty[i])
+				return true;
+
+		return !Arrays.equals(dir,savedDir);
+	}
 
+	/**
+	 * Return true if one FCB or one data block of the file is
+	 * changed from the last flush.
+	 */
+	private boolean isChanged(CpmFile f)
+	{
+		for (int i = 0 ; i < f.getBlockCount() ; i++)
+			if (blockDirty[f.getBlockAt(i)])
+				return true;
 		
+		for (int i = 0 ; i < f.getFCBCount() ; i++)
+		{
+			int offset = f.getFCBAt(i) * FCB.SIZE;
+			for (int j = 0 ; j < FCB.SIZE ; j++)
+				if (dir[offset+j] != savedDir[offset+j])
+					return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Before overwriting one local file all the block still read
+	 * from it are copied in memory.
+	 */
+	private void detachFile(File file) throws SIMException
+	{
+		String path = file.getAbsolutePath();
+		
+		for (int i = 0 ; i < localFiles.getSize() ; i++)
+		{
+			if (!localFiles.get(i).getAbsolutePath().equalsIgnoreCase(path))
+				continue;
+
+			for (int b = 0 ; b < blockFile.length ; b++)
+			{
+				if (blockFile[b] != i)
+					continue;
+				
+				for (int s = 0 ; s < blockSector ; s++)
+				{
+					int secno = b * blockSector + s;
+					int track = secno / dpb.getSPT() + dpb.getOFF();
+					int sector = dpb.translateSector(secno % dpb.getSPT() + 1);
+					int index = track * getNumSector() + sector - 1;
+
+					if (sectors[index] == null)
+					{
+						sectors[index] = new byte[DPB.SECSIZ];
+						readFile(i,blockOffset[b] + s * DPB.SECSIZ,sectors[index]);
+					}
+				}
+
+				blockFile[b] = -1;
+			}
+
+			if (rfIndex == i)
+				closeFile();
+		}
+	}
+
+	private void closeFile() throws SIMException
+	{
+		try
+		{
+			if (rf != null)
+				rf.close();
+		}
+		catch (java.io.IOException e)
+		{
+			throw new SIMIOException(directory,e.toString());
+		}
+		
+		rf = null;
+		rfIndex = -1;
+	}
+
+	/**
+	 * Read one sector from a local file, the part after the end of
+	 * the file is filled with 0x1A.
+	 */
+	private void readFile(int index,int offset,byte sector[]) throws SIMException
+	{
+		int n = 0;
+
+		try
+		{
+			if (rfIndex != index)
+			{
+				closeFile();
+				rf = new RandomAccessFile(localFiles.get(index),"r");
+				rfIndex = index;
+			}
+			
+			rf.seek(offset);
+
+			while (n < DPB.SECSIZ)
+			{
+				int count = rf.read(sector,n,DPB.SECSIZ - n);
+				if (count <= 0)
+					break;
+				n += count;
+			}
+		}
+		catch (java.io.IOException e)
+		{
+			throw new SIMIOException(localFiles.get(index).getName(),e.toString());
+		}
+
+		Arrays.fill(sector,n,DPB.SECSIZ,(byte)0x1A);
+	}
+
+	/**
+	 * Add one local file to the directory.
+	 *
+	 * Only the FCBs are created, the data is read from the file
+	 * when requested. The FCB are the same created by
+	 * CpmDisk.putFile().
+	 */
+	private void addFile(int user,String name,File file) throws Exception
+	{
+		FCB fcb = new FCB();
+		int index = localFiles.getSize();
+		int fcbBlock = dpb.getDSM() < 0x100 ? 16 : 8;
+		int blockCount = 0;
+		long length = file.length();
+		
+		localFiles.add(file);
+		
+		fcb.clear();
+		fcb.setUser(user);
+		fcb.setFileName(name);
+		fcb.setEX(0);
+		fcb.setRC(0);
+
+		int entry = allocateFCB();
+
+		for (long offset = 0 ; offset < length ; offset += blockSize)
+		{
+			int recordCount = (int)((Math.min(blockSize,length - offset) + DPB.SECSIZ - 1) / DPB.SECSIZ);
+
+			if (blockCount >= fcbBlock)
+			{
+				fcb.getBuffer(dir,entry * FCB.SIZE);
+				entry = allocateFCB();
+				fcb.clearBlocks();
+				fcb.setRC(0);
+				fcb.setEX(fcb.getEX()+1);
+				blockCount = 0;
+			}
+
+			int b = allocateBlock();
+			
+			if (fcbBlock == 16)
+				fcb.setBlockByte(blockCount++,b);
+			else
+				fcb.setBlockWord(blockCount++,b);
+
+			int record = (recordCount + fcb.getRC()) & 0xff;
+			if (record > 128)
+			{
+				fcb.setEX(fcb.getEX()+1);
+				record -= 128;
+			}
+			fcb.setRC(record);
+
+			blockFile[b] = index;
+			blockOffset[b] = (int)offset;
+		}
+
+		fcb.getBuffer(dir,entry * FCB.SIZE);
+	}
+
+	private int allocateFCB() throws Exception
+	{
+		if (nextFCB > dpb.getDRM())
+			throw new Exception("No free FCB entry");
+
+		return nextFCB++;
 	}
 
+	private int allocateBlock() throws Exception
+	{
+		if (nextBlock > dpb.getDSM())
+			throw new Exception("Out of disk space");
+
+		return nextBlock++;
+	}
+	
 	/**
 	 * Mount one single directory
 	 */
 	public void mountDir(String s,int u) throws Exception
 	{
 		File file = new File(s);
+		HashSet<String> names = new HashSet<String>();
 
 		if (file.isDirectory() == false)
 			return;
@@ -267,16 +552,15 @@ public class DirDiskCPM extends MemoryDisk implements DiskCPM
 				writeBootLoader(directory+"/"+bootloader);
 			else
 			{
-				if (isValidCpmFile(name))
+				if (!isValidCpmFile(name))
+					log.info(name+" is not a valid CP/M file");
+				else if (!names.add(name))
+					log.info(name+" Already exist");
+				else
 				{
-					FileInputStream is = new FileInputStream(file);
-					log.finer("Writing FILE="+file);
-					disk.putFile(u,name,is);
-					is.close();
+					log.finer("Add FILE="+file);
+					addFile(u,name,file);
 				}
-				else
-					log.info(name+" is not a valid CP/M file");
-
 			}
 
 		}
@@ -289,25 +573,205 @@ public class DirDiskCPM extends MemoryDisk implements DiskCPM
 		if (isMounted())
 			return true;
 
+		if (dpb.getEXM() != 0)
+			throw new SIMIOException(directory,"DPB.EXM="+dpb.getEXM()+" not supported");
+		
 		super.mount();
 
-		disk = new CpmDisk(dpb,this);
-
+		blockSector = dpb.getBLM() + 1;
+		blockSize = blockSector * DPB.SECSIZ;
+		dirBlock = new CpmDisk(dpb,this).getNumDirBlock();
+		dir = new byte[dirBlock * blockSize];
+		Arrays.fill(dir,FCB.DELETED);
+		savedDir = null;
+		sectors = new byte[getNumTrack() * getNumHead() * getNumSector()][];
+		logical = new int[getNumSector() + 1];
+		for (int s = 1 ; s <= getNumSector() ; s++)
+			logical[dpb.translateSector(s)] = s;
+		blockFile = new int[dpb.getDSM() + 1];
+		Arrays.fill(blockFile,-1);
+		blockOffset = new int[dpb.getDSM() + 1];
+		blockDirty = new boolean[dpb.getDSM() + 1];
+		localFiles.clear();
+		closeFile();
+		nextFCB = 0;
+		nextBlock = dirBlock;
 
 		try
 		{
-			disk.format();
-			disk.mount();
 			mountDir(directory,0);
 			for (int u = 1 ; u < 16 ; u++)
 				mountDir(directory+"/"+u,u);
-			
-			return true;
 		}
 		catch (Exception e)
 		{
 			throw new SIMIOException(directory,e.toString());
 		}
+
+		savedDir = new byte[dir.length];
+		System.arraycopy(dir,0,savedDir,0,dir.length);
+		
+		return true;
+	}
+
+	public void dismount() throws SIMException
+	{
+		flush();
+		closeFile();
+		super.dismount();
+	}
+
+	/**
+	 * Save the image of the disk.
+	 *
+	 * @since 1.03
+	 */
+	public void saveState(Snapshot s) throws SIMException
+	{
+		if (!isMounted())
+		{
+			s.putInt(-1);
+			return;
+		}
+
+		byte save[] = new byte[buffer.length];
+		System.arraycopy(buffer,0,save,0,buffer.length);
+
+		int image[] = new int[sectors.length * DPB.SECSIZ];
+
+		for (int i = 0 ; i < sectors.length ; i++)
+		{
+			read(i * DPB.SECSIZ);
+			for (int j = 0 ; j < DPB.SECSIZ ; j++)
+				image[i * DPB.SECSIZ + j] = buffer[j] & 0xff;
+		}
+
+		System.arraycopy(save,0,buffer,0,buffer.length);
+
+		s.putInt(sectors.length);
+		s.putPages(image,0,image.length);
+	}
+
+	/**
+	 * Restore the image of the disk.
+	 *
+	 * @since 1.03
+	 */
+	public void loadState(Snapshot s) throws SIMException
+	{
+		int n = s.getInt();
+
+		if (n < 0)
+			return;
+
+		int image[] = s.getPages();
+
+		if (!isMounted() || n != sectors.length)
+		{
+			log.warning("Snapshot of "+directory+" not restored, different disk");
+			return;
+		}
+
+		byte save[] = new byte[buffer.length];
+		System.arraycopy(buffer,0,save,0,buffer.length);
+
+		for (int i = 0 ; i < n ; i++)
+		{
+			int secno = getLogicalSector(i);
+			int block = secno / blockSector;
+			boolean changed = false;
+
+			read(i * DPB.SECSIZ);
+
+			for (int j = 0 ; j < DPB.SECSIZ ; j++)
+			{
+				if ((buffer[j] & 0xff) != image[i * DPB.SECSIZ + j])
+				{
+					changed = true;
+					buffer[j] = (byte)image[i * DPB.SECSIZ + j];
+				}
+			}
+
+			if (!changed)
+				continue;
+			
+			/** The directory is compared with savedDir at flush */
+			if (secno >= 0 && block < dirBlock)
+			{
+				System.arraycopy(buffer,0,dir,secno * DPB.SECSIZ,DPB.SECSIZ);
+				continue;
+			}
+
+			if (sectors[i] == null)
+				sectors[i] = new byte[DPB.SECSIZ];
+			System.arraycopy(buffer,0,sectors[i],0,DPB.SECSIZ);
+
+			if (secno >= 0 && block <= dpb.getDSM())
+				blockDirty[block] = true;
+		}
+
+		System.arraycopy(save,0,buffer,0,buffer.length);
+	}
+
+	/**
+	 * Return the logical CP/M sector of one position on the disk or
+	 * -1 for the reserved track.
+	 */
+	private int getLogicalSector(int index)
+	{
+		int track = index / getNumSector();
+
+		if (track < dpb.getOFF())
+			return -1;
+
+		return (track - dpb.getOFF()) * dpb.getSPT() + logical[index % getNumSector() + 1] - 1;
+	}
+
+	protected final int read(int pos) throws SIMException
+	{
+		int index = pos / DPB.SECSIZ;
+		
+		if (sectors[index] != null)
+		{
+			System.arraycopy(sectors[index],0,buffer,0,DPB.SECSIZ);
+			return DPB.SECSIZ;
+		}
+
+		int secno = getLogicalSector(index);
+		int block = secno / blockSector;
+
+		if (secno < 0)
+			Arrays.fill(buffer,(byte)0xFF);
+		else if (block < dirBlock)
+			System.arraycopy(dir,secno * DPB.SECSIZ,buffer,0,DPB.SECSIZ);
+		else if (block <= dpb.getDSM() && blockFile[block] >= 0)
+			readFile(blockFile[block],blockOffset[block] + (secno % blockSector) * DPB.SECSIZ,buffer);
+		else
+			Arrays.fill(buffer,block < dirBlock * 2 ? FCB.DELETED : 0);
+
+		return DPB.SECSIZ;
+	}
+
+	protected final int write(int pos) throws SIMException
+	{
+		int index = pos / DPB.SECSIZ;
+		int secno = getLogicalSector(index);
+		int block = secno / blockSector;
+		
+		if (secno >= 0 && block < dirBlock)
+		{
+			System.arraycopy(buffer,0,dir,secno * DPB.SECSIZ,DPB.SECSIZ);
+			return DPB.SECSIZ;
+		}
+
+		if (sectors[index] == null)
+			sectors[index] = new byte[DPB.SECSIZ];
+		System.arraycopy(buffer,0,sectors[index],0,DPB.SECSIZ);
+
+		if (secno >= 0 && block <= dpb.getDSM())
+			blockDirty[block] = true;
+		
+		return DPB.SECSIZ;
 	}
 
 	private void writeBootLoader(String name) throws SIMException
@@ -28,6 +28,8 @@ package jmce.sim.disk;
 
 import java.io.RandomAccessFile;
 import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 import jmce.util.Logger;
 import jmce.sim.*;
@@ -38,9 +40,18 @@ import jmce.sim.*;
  * <p>
  * One copy of the disk is stored in one file and the disk read and
  * write operation operate in this file.
+ * <p>
+ * Since 1.03 the image is mapped in memory so read and write of one
+ * sector are only memory copy. The modified sectors are written back
+ * by the operating system, flush() force the write of the image and
+ * is called periodically, when the disk is dismounted, when one
+ * snapshot is saved and at the end of one batch run. One write after
+ * the end of a short image grow the file to the size of the disk in
+ * one step. Set mapped to false to use the old seek/read/write
+ * implementation.
  *
  * @author Mario Viara
- * @version 1.00
+ * @version 1.03
  */
 public class ImageDisk extends AbstractDisk
 {
@@ -48,6 +59,11 @@ public class ImageDisk extends AbstractDisk
 	private String imageName;
 	private RandomAccessFile rf = null;
 
+	/** Memory mapped image since 1.03 */
+	private boolean mapped = true;
+	private MappedByteBuffer map = null;
+	private boolean dirty = false;
+
 	public ImageDisk(String name)
 	{
 		this(77,1,26,128,name);
@@ -83,6 +99,46 @@ public class ImageDisk extends AbstractDisk
 		return imageName;
 	}
 
+	/**
+	 * Enable / disable the memory mapped image.
+	 *
+	 * @since 1.03
+	 */
+	public void setMapped(boolean mode)
+	{
+		mapped = mode;
+	}
+
+	public boolean getMapped()
+	{
+		return mapped;
+	}
+
+	/**
+	 * Map the image in memory if enabled.
+	 */
+	private void map() throws java.io.IOException
+	{
+		map = null;
+		
+		if (mapped && rf.length() <= Integer.MAX_VALUE)
+			map = rf.getChannel().map(FileChannel.MapMode.READ_WRITE,0,rf.length());
+	}
+
+	/**
+	 * Write the modified sectors of the mapped image to the file.
+	 *
+	 * @since 1.03
+	 */
+	public void flush()
+	{
+		if (map != null && dirty)
+		{
+			map.force();
+			dirty = false;
+		}
+	}
+
 	/**
 	 * Dismount the disk.
 	 */
@@ -91,6 +147,9 @@ public class ImageDisk extends AbstractDisk
 		setMounted(false);
 		try
 		{
+			flush();
+			map = null;
+			
 			if (rf != null)
 			{
 				rf.close();
@@ -136,6 +195,16 @@ public class ImageDisk extends AbstractDisk
 			throw new SIMIOException(imageName,"open()");
 		}
 
+		try
+		{
+			map();
+		}
+		catch (java.io.IOException e)
+		{
+			log.info(imageName+" cannot be mapped "+e);
+			map = null;
+		}
+
 		return setMounted(true);
 	}
 	
@@ -148,6 +217,17 @@ public class ImageDisk extends AbstractDisk
 		log.fine("Read at "+pos+" from "+imageName+" Len="+buffer.length);
 		try
 		{
+			if (map != null)
+			{
+				int n = map.capacity() - pos;
+				if (n <= 0)
+					return -1;
+				if (n > sectorSize)
+					n = sectorSize;
+				map.get(pos,buffer,0,n);
+				return n;
+			}
+			
 			rf.seek(pos);
 		
 			int n = rf.read(buffer,0,sectorSize);
@@ -168,6 +248,24 @@ public class ImageDisk extends AbstractDisk
 		log.fine("Write at "+pos+" to "+imageName+" len="+buffer.length);
 		try
 		{
+			/**
+			 * Write after the end, grow the file to the size of
+			 * the disk and map it again.
+			 */
+			if (map != null && pos + sectorSize > map.capacity())
+			{
+				flush();
+				rf.setLength(Math.max((long)getDiskSize(),(long)pos + sectorSize));
+				map();
+			}
+
+			if (map != null)
+			{
+				map.put(pos,buffer,0,sectorSize);
+				dirty = true;
+				return sectorSize;
+			}
+			
 			rf.seek(pos);
 
 			rf.write(buffer,0,sectorSize);
@@ -45,9 +45,21 @@ import jmce.util.Logger;
  * All method not relative to set/get memory operation are implemented from this class. Also implements helper to make
  * simple add virtual memory features this make the class a little bit more complex but do not change the performance on
  * critical operation. All subclass must remember to call the method setSize() to allocate space for listener and names.
+ * <p>
+ *
+ * For performance reason the memory is divided in pages of 256 bytes and specific listener, read only flags and names
+ * are stored in a sparse page table allocated only for the pages that need them. When no global listener is installed
+ * and the memory is not virtual the access to pages without hooks is served directly from the method get() and set()
+ * without any listener dispatch. Subclass implementing virtual memory must call setVirtual() or setVirtual(a,len) for
+ * the mapped range.
+ * <p>
+ *
+ * Block transfer are executed one page at time, pages without hooks are copied with setBlock() and getBlock(), virtual
+ * memory without global listener transfer every mapped range to the mapped memory and the others use setMemory() and
+ * getMemory() for every byte so listener and read only flags are honored.
  *
  * @author Mario Viara
- * @version 1.02
+ * @version 1.03
  */
 public abstract class AbstractMemory extends AbstractPeripheral implements Memory {
 
@@ -56,8 +68,8 @@ public abstract class AbstractMemory extends AbstractPeripheral implements Memor
 	/** Array with all virtual memory */
 	protected FastArray<AbstractMemory> vms = new FastArray<AbstractMemory>();
 
-	/** Local read only flag */
-	private boolean rol[];
+	/** Array with all memory using this one as virtual memory */
+	private FastArray<AbstractMemory> parents = new FastArray<AbstractMemory>();
 
 	/** Array with global MemoryWriteListener */
 	private FastArray<MemoryWriteListener> mwl = new FastArray<MemoryWriteListener>();
@@ -65,14 +77,14 @@ public abstract class AbstractMemory extends AbstractPeripheral implements Memor
 	/** Array with global MemoryReadListener */
 	private FastArray<MemoryReadListener> mrl = new FastArray<MemoryReadListener>();
 
-	/** Array with specific MemoryWriteListener */
-	private FastArray<MemoryWriteListener>[] mwls;
+	/** Array with listener of the addresses marked as code */
+	private FastArray<MemoryWriteListener> cwl = new FastArray<MemoryWriteListener>();
 
-	/** Array with specific MemoryReadListener */
-	private FastArray<MemoryReadListener>[] mrls;
+	/** Page table with specific listener, read only flags and mapping */
+	private Page[] pages = new Page[0];
 
-	// Array with memory location name
-	private String[] names = new String[0];
+	/** Page table with memory location name */
+	private String[][] names = new String[0][];
 
 	/** Size of this memory */
 	protected int size;
@@ -80,6 +92,30 @@ public abstract class AbstractMemory extends AbstractPeripheral implements Memor
 	/** Name lenght to format address in hex */
 	private int nameLength = 4;
 
+	/** Number of bits of the offset when names are formatted as segment:offset */
+	private int nameSegment = 0;
+
+	/** Number of bit of one page */
+	static private final int PAGE_SHIFT = 8;
+
+	/** Size of one page */
+	static private final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+	/** Mask of the offset in one page */
+	static private final int PAGE_MASK = PAGE_SIZE - 1;
+
+	/** True if all the memory is mapped on other memory */
+	private boolean virtual = false;
+
+	/** True if read can be done directly on pages without hooks */
+	private boolean fastRead = true;
+
+	/** True if write can be done directly on pages without hooks */
+	private boolean fastWrite = true;
+
+	/** Generation of the memory map */
+	private int generation = 0;
+
 	public AbstractMemory() {
 		this(CPU.MAIN_MEMORY);
 	}
@@ -102,8 +138,108 @@ public abstract class AbstractMemory extends AbstractPeripheral implements Memor
 	 */
 	abstract protected int get(int a);
 
+	/**
+	 * Set a block of memory.
+	 * <p>
+	 * Used by subclass to implement block transfer on the phisical memory, the default implementation call set() for
+	 * every byte.
+	 *
+	 * @since 1.03
+	 */
+	protected void setBlock(int a, byte data[], int offset, int len) {
+		for (int i = 0; i < len; i++)
+			set(a + i, data[offset + i] & 0xff);
+	}
+
+	/**
+	 * Get a block of memory.
+	 * <p>
+	 * Used by subclass to implement block transfer on the phisical memory, the default implementation call get() for
+	 * every byte.
+	 *
+	 * @since 1.03
+	 */
+	protected void getBlock(int a, byte data[], int offset, int len) {
+		for (int i = 0; i < len; i++)
+			data[offset + i] = (byte) get(a + i);
+	}
+
+	/**
+	 * Page of memory with specific listener, read only flags or mapping.
+	 * <p>
+	 * All arrays are allocated only when required, a page without any hook is removed from the page table.
+	 *
+	 * @since 1.03
+	 */
+	static private final class Page {
+		/** Specific MemoryWriteListener */
+		FastArray<MemoryWriteListener>[] mwls;
+
+		/** Specific MemoryReadListener */
+		FastArray<MemoryReadListener>[] mrls;
+
+		/** Read only flags */
+		boolean rol[];
+
+		/** Addresses marked as code, do not disable the fast path */
+		boolean code[];
+
+		/** True if the page is mapped on other memory */
+		boolean mapped;
+
+		/** True if read in this page can not use the fast path */
+		boolean read;
+
+		/** True if write in this page can not use the fast path */
+		boolean write;
+
+		/**
+		 * Update the read and write flags and return true if the page does not have any hook.
+		 */
+		boolean update() {
+			read = write = mapped;
+
+			for (int i = 0; i < PAGE_SIZE; i++) {
+				if (rol != null && rol[i])
+					write = true;
+				if (mrls != null && mrls[i] != null && mrls[i].getSize() > 0)
+					read = true;
+				if (mwls != null && mwls[i] != null && mwls[i].getSize() > 0)
+					write = true;
+			}
+
+			return !read && !write && code == null;
+		}
+	}
+
+	/**
+	 * Return the page for the address, allocating a new one if required.
+	 */
+	private Page getPage(int a) {
+		Page p = pages[a >>> PAGE_SHIFT];
+
+		if (p == null) {
+			p = new Page();
+			pages[a >>> PAGE_SHIFT] = p;
+		}
+
+		return p;
+	}
+
+	/**
+	 * Update the page for the address and remove it if it does not have any hook.
+	 */
+	private void updatePage(int a) {
+		Page p = pages[a >>> PAGE_SHIFT];
+
+		if (p != null && p.update())
+			pages[a >>> PAGE_SHIFT] = null;
+	}
+
 	public final boolean getReadOnly(int add) {
-		return rol[add];
+		Page p = pages[add >>> PAGE_SHIFT];
+
+		return p != null && p.rol != null && p.rol[add & PAGE_MASK];
 	}
 
 	public final void setReadOnly() {
@@ -119,20 +255,137 @@ public abstract class AbstractMemory extends AbstractPeripheral implements Memor
 			return;
 		}
 
-		for (int i = 0; i < len; i++)
-			rol[a + i] = true;
+		for (int i = 0; i < len; i++) {
+			Page p = getPage(a + i);
+
+			if (p.rol == null)
+				p.rol = new boolean[PAGE_SIZE];
+			p.rol[(a + i) & PAGE_MASK] = true;
+			p.write = true;
+			hooksChanged(a + i);
+		}
 	}
 
 	public final void setReadOnly(int add) {
 		setReadOnly(add, 1);
 	}
 
+	/**
+	 * Add a listener called when one address marked as code is changed.
+	 * <p>
+	 * Used by cache of decoded memory, unlike a specific MemoryWriteListener the marked addresses do not disable the
+	 * fast path of the page, only the write of one marked address check the listeners.
+	 *
+	 * @since 1.03
+	 */
+	public final void addCodeListener(MemoryWriteListener l) {
+		cwl.add(l);
+	}
+
+	/**
+	 * Remove one code listener, when no more listener are installed all the marks are removed.
+	 *
+	 * @since 1.03
+	 */
+	public final void removeCodeListener(MemoryWriteListener l) {
+		cwl.remove(l);
+
+		if (cwl.getSize() > 0)
+			return;
+
+		for (int i = 0; i < pages.length; i++) {
+			if (pages[i] != null) {
+				pages[i].code = null;
+				updatePage(i << PAGE_SHIFT);
+			}
+		}
+	}
+
+	/**
+	 * Mark the address as code. Addresses mapped on other memory are ignored.
+	 *
+	 * @since 1.03
+	 */
+	public final void setCode(int a) {
+		if (a < 0 || a >= size || mapMemory(a) != this)
+			return;
+
+		Page p = getPage(a);
+
+		if (p.code == null)
+			p.code = new boolean[PAGE_SIZE];
+		p.code[a & PAGE_MASK] = true;
+	}
+
+	/**
+	 * Return the memory where the address is stored following all the virtual mappings.
+	 * <p>
+	 * The same physical memory can be mapped at more addresses, marks and listeners installed on the physical memory
+	 * see every write whatever is the mapping used.
+	 *
+	 * @since 1.03
+	 */
+	public final AbstractMemory getPhysicalMemory(int a) {
+		AbstractMemory m = this;
+
+		for (;;) {
+			Memory mm = m.mapMemory(a);
+
+			if (mm == m || !(mm instanceof AbstractMemory))
+				return m;
+			a = m.mapAddress(a);
+			m = (AbstractMemory) mm;
+		}
+	}
+
+	/**
+	 * Return the address in the memory returned by getPhysicalMemory().
+	 *
+	 * @since 1.03
+	 */
+	public final int getPhysicalAddress(int a) {
+		AbstractMemory m = this;
+
+		for (;;) {
+			Memory mm = m.mapMemory(a);
+
+			if (mm == m || !(mm instanceof AbstractMemory))
+				return a;
+			a = m.mapAddress(a);
+			m = (AbstractMemory) mm;
+		}
+	}
+
+	/**
+	 * Return true if the address is marked as code.
+	 */
+	private boolean isCode(int a) {
+		Page p = pages[a >>> PAGE_SHIFT];
+
+		return p != null && p.code != null && p.code[a & PAGE_MASK];
+	}
+
+	/**
+	 * Notify the code listeners if the value is changed.
+	 */
+	private void codeChanged(int a, int v, int oldValue) throws SIMException {
+		if (v == oldValue)
+			return;
+
+		for (int i = cwl.getSize(); --i >= 0;)
+			cwl.get(i).writeMemory(this, a, v, oldValue);
+	}
+
 	public final void addMemoryWriteListener(MemoryWriteListener l) {
 		mwl.add(l);
+		updateFast();
+		hooksChanged(-1);
 	}
 
 	public final void removeMemoryWriteListener(MemoryWriteListener l) {
 		mwl.remove(l);
+		updateFast();
+		hooksChanged(-1);
 	}
 
 	public final void addMemoryWriteListener(int a, MemoryWriteListener l) {
@@ -144,36 +397,57 @@ public abstract class AbstractMemory extends AbstractPeripheral implements Memor
 			return;
 		}
 
-		FastArray<MemoryWriteListener> m = mwls[a];
+		Page p = getPage(a);
+
+		if (p.mwls == null)
+			p.mwls = newListeners();
+
+		FastArray<MemoryWriteListener> m = p.mwls[a & PAGE_MASK];
 
 		if (m == null) {
 			m = new FastArray<MemoryWriteListener>();
-			mwls[a] = m;
+			p.mwls[a & PAGE_MASK] = m;
 		}
 
 		m.add(l);
+		p.write = true;
+		hooksChanged(a);
 
 	}
 
 	public void removeMemoryWriteListener(int a, MemoryWriteListener l) {
+		Page p = pages[a >>> PAGE_SHIFT];
 
-		FastArray<MemoryWriteListener> m = mwls[a];
+		if (p == null || p.mwls == null || p.mwls[a & PAGE_MASK] == null)
+			return;
 
-		m.remove(l);
+		p.mwls[a & PAGE_MASK].remove(l);
+		updatePage(a);
+		hooksChanged(a);
 	}
 
 	public void addMemoryReadListener(MemoryReadListener l) {
 		mrl.add(l);
+		updateFast();
+		newGeneration();
+		hooksChanged(-1);
 	}
 
 	public void removeMemoryReadListener(MemoryReadListener l) {
 		mrl.remove(l);
+		updateFast();
+		hooksChanged(-1);
 	}
 
 	public void removeMemoryReadListener(int a, MemoryReadListener l) {
-		FastArray<MemoryReadListener> m = mrls[a];
+		Page p = pages[a >>> PAGE_SHIFT];
+
+		if (p == null || p.mrls == null || p.mrls[a & PAGE_MASK] == null)
+			return;
 
-		m.remove(l);
+		p.mrls[a & PAGE_MASK].remove(l);
+		updatePage(a);
+		hooksChanged(a);
 	}
 
 	public void addMemoryReadListener(int a, MemoryReadListener l) {
@@ -184,14 +458,48 @@ public abstract class AbstractMemory extends AbstractPeripheral implements Memor
 			return;
 		}
 
-		FastArray<MemoryReadListener> m = mrls[a];
+		Page p = getPage(a);
+
+		if (p.mrls == null)
+			p.mrls = newListeners();
+
+		FastArray<MemoryReadListener> m = p.mrls[a & PAGE_MASK];
 		if (m == null) {
 			m = new FastArray<MemoryReadListener>();
-			mrls[a] = m;
+			p.mrls[a & PAGE_MASK] = m;
 		}
 
 		m.add(l);
+		p.read = true;
+		newGeneration();
+		hooksChanged(a);
+
+	}
 
+	/**
+	 * Create the array of specific listener for one page.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> FastArray<T>[] newListeners() {
+		return (FastArray<T>[]) new FastArray<?>[PAGE_SIZE];
+	}
+
+	/**
+	 * Return the specific write listener for the address or null.
+	 */
+	private FastArray<MemoryWriteListener> getWriteListeners(int a) {
+		Page p = pages[a >>> PAGE_SHIFT];
+
+		return p == null || p.mwls == null ? null : p.mwls[a & PAGE_MASK];
+	}
+
+	/**
+	 * Return the specific read listener for the address or null.
+	 */
+	private FastArray<MemoryReadListener> getReadListeners(int a) {
+		Page p = pages[a >>> PAGE_SHIFT];
+
+		return p == null || p.mrls == null ? null : p.mrls[a & PAGE_MASK];
 	}
 
 	public int getMemoryWriteListenerCount() {
@@ -199,7 +507,7 @@ public abstract class AbstractMemory extends AbstractPeripheral implements Memor
 	}
 
 	public int getMemoryWriteListenerCount(int a) {
-		FastArray<MemoryWriteListener> m = mwls[a];
+		FastArray<MemoryWriteListener> m = getWriteListeners(a);
 
 		return m == null ? 0 : m.getSize();
 	}
@@ -209,7 +517,7 @@ public abstract class AbstractMemory extends AbstractPeripheral implements Memor
 	}
 
 	public int getMemoryReadListenerCount(int a) {
-		FastArray<MemoryReadListener> m = mrls[a];
+		FastArray<MemoryReadListener> m = getReadListeners(a);
 
 		return m == null ? 0 : m.getSize();
 	}
@@ -223,30 +531,26 @@ public abstract class AbstractMemory extends AbstractPeripheral implements Memor
 	}
 
 	public MemoryWriteListener getMemoryWriteListenerAt(int a, int i) {
-		FastArray<MemoryWriteListener> m = mwls[a];
+		FastArray<MemoryWriteListener> m = getWriteListeners(a);
 
 		return m.get(i);
 
 	}
 
 	public MemoryReadListener getMemoryReadListenerAt(int a, int i) {
-		FastArray<MemoryReadListener> m = mrls[a];
+		FastArray<MemoryReadListener> m = getReadListeners(a);
 
 		return m.get(i);
 
 	}
 
-	@SuppressWarnings("unchecked")
 	public void setSize(int newSize) {
 		this.size = newSize;
 
-		FastArray<MemoryWriteListener> w = new FastArray<MemoryWriteListener>();
-		FastArray<MemoryReadListener> r = new FastArray<MemoryReadListener>();
-
-		mwls = (FastArray<MemoryWriteListener>[]) java.lang.reflect.Array.newInstance(w.getClass(), newSize);
-		mrls = (FastArray<MemoryReadListener>[]) java.lang.reflect.Array.newInstance(r.getClass(), newSize);
-		rol = new boolean[newSize];
-		names = new String[newSize];
+		pages = new Page[(newSize + PAGE_MASK) >>> PAGE_SHIFT];
+		names = new String[pages.length][];
+		newGeneration();
+		hooksChanged(-1);
 
 		if (size > 0x1000000)
 			nameLength = 8;
@@ -267,6 +571,148 @@ public abstract class AbstractMemory extends AbstractPeripheral implements Memor
 		return size;
 	}
 
+	/**
+	 * Set the whole memory as virtual.
+	 * <p>
+	 * Must be called from subclass overriding mapMemory() for every address, a virtual memory never use the fast path.
+	 *
+	 * @since 1.03
+	 */
+	protected final void setVirtual(boolean mode) {
+		virtual = mode;
+		updateFast();
+		newGeneration();
+		hooksChanged(-1);
+	}
+
+	/**
+	 * Set a range of memory as mapped on other memory.
+	 * <p>
+	 * Must be called from subclass overriding mapMemory() only for some range of address, the pages in the range never
+	 * use the fast path.
+	 *
+	 * @since 1.03
+	 */
+	protected final void setVirtual(int a, int len) {
+		if (len <= 0)
+			return;
+
+		for (int p = a >>> PAGE_SHIFT; p <= (a + len - 1) >>> PAGE_SHIFT; p++) {
+			Page page = getPage(p << PAGE_SHIFT);
+			page.mapped = page.read = page.write = true;
+		}
+
+		newGeneration();
+		hooksChanged(-1);
+	}
+
+	/**
+	 * Return true if the specified address can be read without any listener or mapping.
+	 * <p>
+	 * The result do not change till the generation of the memory is not changed.
+	 *
+	 * @since 1.03
+	 */
+	public final boolean isFastRead(int a) {
+		if (mrl.getSize() > 0)
+			return false;
+
+		/** Virtual memory are fast only if the mapped memory is fast */
+		if (virtual) {
+			Memory mm = mapMemory(a);
+
+			return mm != this && mm instanceof AbstractMemory && ((AbstractMemory) mm).isFastRead(mapAddress(a));
+		}
+
+		Page p = pages[a >>> PAGE_SHIFT];
+
+		return p == null || !p.read;
+	}
+
+	/**
+	 * Return the generation of the memory map.
+	 * <p>
+	 * The generation change every time the value read at one address can change without one write operation, for
+	 * example after a bank switch, a reset or when a read listener is added. The generation of one memory change also
+	 * when the generation of one of the memory added with addMemory() change. Used by cache of decoded memory.
+	 *
+	 * @since 1.03
+	 */
+	public final int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Start a new generation of the memory map.
+	 * <p>
+	 * Must be called from subclass when the memory is changed without calling setMemory().
+	 *
+	 * @since 1.03
+	 */
+	protected final void newGeneration() {
+		generation++;
+
+		for (int i = parents.getSize(); --i >= 0;)
+			parents.get(i).newGeneration();
+	}
+
+	/**
+	 * Return true if the whole memory is virtual.
+	 *
+	 * @since 1.03
+	 */
+	public final boolean isVirtual() {
+		return virtual;
+	}
+
+	/**
+	 * Called when the listeners, the read only flags or the mapping of one address are changed.
+	 * <p>
+	 * The address is -1 when the change can affect every address. The default implementation do nothing, subclass
+	 * that access the storage directly can override it to keep a copy of the state of the hooks.
+	 *
+	 * @since 1.03
+	 */
+	protected void hooksChanged(int a) {
+	}
+
+	/**
+	 * Update the fast path flags after a change of global listener.
+	 */
+	private void updateFast() {
+		fastRead = !virtual && mrl.getSize() == 0;
+		fastWrite = !virtual && mwl.getSize() == 0;
+	}
+
+	/**
+	 * Format memory names as segment:offset.
+	 * <p>
+	 * Memory location without a specific name are formatted as segment:offset where offset is composed by the low bits
+	 * of the address and segment by the remaining bits shifted right of 4 like in the I8086.
+	 *
+	 * @param bits - Number of bits of the offset, 0 to format the address in hex.
+	 *
+	 * @since 1.03
+	 */
+	public final void setMemoryNameSegment(int bits) {
+		nameSegment = bits;
+	}
+
+	/**
+	 * Return the default name of one memory location.
+	 *
+	 * @since 1.03
+	 */
+	protected String formatMemoryName(int a) {
+		if (nameSegment > 0) {
+			int mask = (1 << nameSegment) - 1;
+
+			return Hex.formatWord((a & ~mask) >>> 4) + ":" + Hex.formatWord(a & mask);
+		}
+
+		return Hex.formatValue(a, nameLength);
+	}
+
 	public final void setMemoryName(int a, String name) {
 		Memory m = mapMemory(a);
 		a = mapAddress(a);
@@ -276,19 +722,31 @@ public abstract class AbstractMemory extends AbstractPeripheral implements Memor
 			return;
 		}
 
-		names[a] = name;
+		String n[] = names[a >>> PAGE_SHIFT];
+
+		if (n == null) {
+			n = new String[PAGE_SIZE];
+			names[a >>> PAGE_SHIFT] = n;
+		}
+
+		n[a & PAGE_MASK] = name;
 	}
 
 	public final String getMemoryName(int a) {
 		Memory m = mapMemory(a);
-		a = mapAddress(a);
 
+		/** Segment names always refer to the address of this memory */
 		if (m != this)
-			return m.getMemoryName(a);
+			return nameSegment > 0 ? formatMemoryName(a) : m.getMemoryName(mapAddress(a));
 
-		if (names[a] == null)
-			names[a] = Hex.formatValue(a, nameLength);
-		return names[a];
+		a = mapAddress(a);
+
+		String n[] = names[a >>> PAGE_SHIFT];
+
+		if (n != null && n[a & PAGE_MASK] != null)
+			return n[a & PAGE_MASK];
+
+		return formatMemoryName(a);
 
 	}
 
@@ -309,6 +767,7 @@ public abstract class AbstractMemory extends AbstractPeripheral implements Memor
 	 */
 	public void addMemory(Memory v) {
 		vms.add((AbstractMemory) v);
+		((AbstractMemory) v).parents.add(this);
 
 	}
 
@@ -339,6 +798,14 @@ public abstract class AbstractMemory extends AbstractPeripheral implements Memor
 	public final int getMemory(int add) throws SIMException {
 		int i, v, a;
 
+		/** Fast path for pages without hooks */
+		if (fastRead) {
+			Page p = pages[add >>> PAGE_SHIFT];
+
+			if (p == null || !p.read)
+				return get(add);
+		}
+
 		Memory mm = mapMemory(add);
 		a = mapAddress(add);
 
@@ -357,7 +824,7 @@ public abstract class AbstractMemory extends AbstractPeripheral implements Memor
 		for (i = mrl.getSize(); --i >= 0;)
 			v = mrl.get(i).readMemory(this, a, v);
 
-		FastArray<MemoryReadListener> m = mrls[a];
+		FastArray<MemoryReadListener> m = getReadListeners(a);
 
 		if (m != null) {
 			for (i = m.getSize(); --i >= 0;)
@@ -371,6 +838,21 @@ public abstract class AbstractMemory extends AbstractPeripheral implements Memor
 	public final void setMemory(int add, int v) throws SIMException {
 		int i, a;
 
+		/** Fast path for pages without hooks */
+		if (fastWrite) {
+			Page p = pages[add >>> PAGE_SHIFT];
+
+			if (p == null || !p.write) {
+				if (p != null && p.code != null && p.code[add & PAGE_MASK]) {
+					int oldValue = get(add);
+					set(add, v & 0xff);
+					codeChanged(add, v & 0xff, oldValue);
+				} else
+					set(add, v & 0xff);
+				return;
+			}
+		}
+
 		Memory mm = mapMemory(add);
 		a = mapAddress(add);
 
@@ -388,7 +870,7 @@ public abstract class AbstractMemory extends AbstractPeripheral implements Memor
 		/**
 		 * If the memory is read only and the cpu is running do not change the memory but call the write listeners.
 		 */
-		if (rol[a] && cpu != null && cpu.isRunning()) {
+		if (getReadOnly(a) && cpu != null && cpu.isRunning()) {
 			if (v != oldValue) {
 				log.fine(getName() + " write ignored at " + getMemoryName(a) + " from " + Hex.formatByte(oldValue) + " to " + Hex.formatByte(v));
 			}
@@ -399,13 +881,112 @@ public abstract class AbstractMemory extends AbstractPeripheral implements Memor
 		for (i = mwl.getSize(); --i >= 0;)
 			mwl.get(i).writeMemory(this, a, v, oldValue);
 
-		FastArray<MemoryWriteListener> m = mwls[a];
+		FastArray<MemoryWriteListener> m = getWriteListeners(a);
 
 		if (m != null) {
 			for (i = m.getSize(); --i >= 0;)
 				m.get(i).writeMemory(this, a, v, oldValue);
 		}
 
+		if (isCode(a))
+			codeChanged(a, get(a), oldValue);
+
+	}
+
+	public final void setMemory(int a, byte data[], int offset, int len) throws SIMException {
+		while (len > 0) {
+			int n = PAGE_SIZE - (a & PAGE_MASK);
+
+			if (n > len)
+				n = len;
+
+			Page p = fastWrite ? pages[a >>> PAGE_SHIFT] : null;
+
+			if (fastWrite && (p == null || (!p.write && p.code == null)))
+				setBlock(a, data, offset, n);
+			else if (virtual && mwl.getSize() == 0) {
+				for (int i = 0, r; i < n; i += r) {
+					Memory mm = mapMemory(a + i);
+					r = getMappedLength(a + i, n - i);
+
+					if (mm != this)
+						mm.setMemory(mapAddress(a + i), data, offset + i, r);
+					else {
+						for (int j = 0; j < r; j++)
+							setMemory(a + i + j, data[offset + i + j] & 0xff);
+					}
+				}
+			} else {
+				for (int i = 0; i < n; i++)
+					setMemory(a + i, data[offset + i] & 0xff);
+			}
+
+			a += n;
+			offset += n;
+			len -= n;
+		}
+	}
+
+	public final void getMemory(int a, byte data[], int offset, int len) throws SIMException {
+		while (len > 0) {
+			int n = PAGE_SIZE - (a & PAGE_MASK);
+
+			if (n > len)
+				n = len;
+
+			Page p = fastRead ? pages[a >>> PAGE_SHIFT] : null;
+
+			if (fastRead && (p == null || !p.read))
+				getBlock(a, data, offset, n);
+			else if (virtual && mrl.getSize() == 0) {
+				for (int i = 0, r; i < n; i += r) {
+					Memory mm = mapMemory(a + i);
+					r = getMappedLength(a + i, n - i);
+
+					if (mm != this)
+						mm.getMemory(mapAddress(a + i), data, offset + i, r);
+					else {
+						for (int j = 0; j < r; j++)
+							data[offset + i + j] = (byte) getMemory(a + i + j);
+					}
+				}
+			} else {
+				for (int i = 0; i < n; i++)
+					data[offset + i] = (byte) getMemory(a + i);
+			}
+
+			a += n;
+			offset += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Return the number of byte starting from the address mapped on consecutive address of the same memory.
+	 */
+	private int getMappedLength(int a, int len) {
+		Memory mm = mapMemory(a);
+		int ma = mapAddress(a);
+		int n = 1;
+
+		while (n < len && mapMemory(a + n) == mm && mapAddress(a + n) == ma + n)
+			n++;
+
+		return n;
+	}
+
+	public final void copyMemory(int a, Memory from, int fromAddress, int len) throws SIMException {
+		byte block[] = new byte[len < PAGE_SIZE ? len : PAGE_SIZE];
+
+		while (len > 0) {
+			int n = len < block.length ? len : block.length;
+
+			from.getMemory(fromAddress, block, 0, n);
+			setMemory(a, block, 0, n);
+			a += n;
+			fromAddress += n;
+			len -= n;
+		}
 	}
 
 	/**
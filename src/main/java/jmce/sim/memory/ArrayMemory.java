@@ -36,14 +36,21 @@ import jmce.sim.*;
  * This type of memory are implemented using one array of memory and
  * only one can be enabled at time. It look like a BankedMemory but
  * each bank can be a different memory and do not support shared page.
+ * <p>
+ * Since 1.03 the selected memory is saved in the snapshot.
  *
  * @author Mario Viara
- * @version 1.01
+ * @version 1.03
  */
-public class ArrayMemory extends AbstractMemory 
+public class ArrayMemory extends AbstractMemory implements Snapshottable
 {
 	private int index;
 	private Memory m;
+
+	public ArrayMemory()
+	{
+		setVirtual(true);
+	}
 	
 	protected void set(int a,int v)
 	{
@@ -90,8 +97,28 @@ public class ArrayMemory extends AbstractMemory
 	{
 		index = i;
 		m = getMemoryAt(i);
+		newGeneration();
 	}
 	
+	/**
+	 * @since 1.03
+	 */
+	public void saveState(Snapshot s) throws SIMException
+	{
+		s.putInt(index);
+	}
+
+	/**
+	 * @since 1.03
+	 */
+	public void loadState(Snapshot s) throws SIMException
+	{
+		int i = s.getInt();
+
+		if (i >= 0 && i < getMemoryCount())
+			setIndex(i);
+	}
+
 	protected final Memory mapMemory(int a)
 	{
 		return m;
@@ -39,10 +39,12 @@ import jmce.util.Hex;
  * not called operated like a standard PlainMemory. Optionally the
  * memory can have one shared area mapped for each bank at the same
  * phisical address.
- * 
+ * <p>
+ * Since 1.03 the page map of all the bank and the selected bank are
+ * saved in the snapshot with the content of the memory.
  * 
  * @author Mario Viara
- * @version 1.02
+ * @version 1.03
  *
  */
 public class BankedMemory extends PlainMemory
@@ -152,6 +154,7 @@ public class BankedMemory extends PlainMemory
 
 		log.info("InitMMU NumBank="+numBank+" PageSize="+pageSize+" NumPage="+numPage+" Size="+getSize()+" SharedStart="+sharedStart+" Shared size="+sharedSize);
 		mmuInit = true;
+		newGeneration();
 		pages = new int[numBank][numPage];
 		tmpMemory = allocMemory(getSize());
 
@@ -222,6 +225,8 @@ public class BankedMemory extends PlainMemory
 	 */
 	public final void setBank(int n)
 	{
+		if (bank != n)
+			newGeneration();
 		bank = n;
 	}
 
@@ -256,11 +261,38 @@ public class BankedMemory extends PlainMemory
 		super.set(a,v);
 	}
 
+	@Override
+	protected final void setBlock(int a,byte data[],int offset,int len)
+	{
+		if (mmuInit)
+		{
+			for (int i = 0 ; i < len ; i++)
+				memory[mmuLookup(a + i)] = data[offset + i];
+			return;
+		}
+
+		super.setBlock(a,data,offset,len);
+	}
+
+	@Override
+	protected final void getBlock(int a,byte data[],int offset,int len)
+	{
+		if (mmuInit)
+		{
+			for (int i = 0 ; i < len ; i++)
+				data[offset + i] = (byte)memory[mmuLookup(a + i)];
+			return;
+		}
+
+		super.getBlock(a,data,offset,len);
+	}
+
 	@Override
 	public void reset() throws SIMException
 	{
 		memory = allocMemory(getSize());
 		mmuInit = false;
+		newGeneration();
 		super.reset();
 	}
 
@@ -317,6 +349,7 @@ public class BankedMemory extends PlainMemory
 	public final void setPageMap(int bank,int page,int p)
 	{
 		pages[bank][page] = p << pageShift;
+		newGeneration();
 	}
 
 	/**
@@ -333,6 +366,56 @@ public class BankedMemory extends PlainMemory
 		return pages[bank][page] >>> pageShift;
 	}
 	
+	/**
+	 * Save the memory and the MMU state.
+	 *
+	 * @since 1.03
+	 */
+	@Override
+	public void saveState(Snapshot s) throws SIMException
+	{
+		super.saveState(s);
+
+		s.putBoolean(mmuInit);
+		s.putInt(bank);
+
+		if (mmuInit)
+		{
+			s.putInt(numBank);
+			s.putInt(numPage);
+			for (int b = 0 ; b < numBank ; b++)
+				for (int p = 0 ; p < numPage ; p++)
+					s.putInt(pages[b][p]);
+		}
+	}
+
+	/**
+	 * Restore the memory and the MMU state.
+	 *
+	 * @since 1.03
+	 */
+	@Override
+	public void loadState(Snapshot s) throws SIMException
+	{
+		super.loadState(s);
+
+		mmuInit = s.getBoolean();
+		bank = s.getInt();
+
+		if (mmuInit)
+		{
+			int nb = s.getInt();
+			int np = s.getInt();
+
+			pages = new int[nb][np];
+			for (int b = 0 ; b < nb ; b++)
+				for (int p = 0 ; p < np ; p++)
+					pages[b][p] = s.getInt();
+		}
+
+		newGeneration();
+	}
+
 	public String toString()
 	{
 		String s = "MMU "+numBank+"x"+(getSize()/1024)+" KB";
@@ -59,11 +59,13 @@ public class CombinedMemory extends AbstractMemory implements Memory
 	
 	public CombinedMemory()
 	{
+		setVirtual(true);
 	}
 
 	public CombinedMemory(String name)
 	{
 		super(name);
+		setVirtual(true);
 	}
 	
 
@@ -129,7 +131,7 @@ public class CombinedMemory extends AbstractMemory implements Memory
 			}
 		}
 
-		
+		newGeneration();
 		super.init(parent);
 	}
 	
@@ -41,10 +41,12 @@ public abstract class DuplicateMemory extends AbstractMemory implements Memory
 			
 	protected DuplicateMemory()
 	{
+		setVirtual(true);
 	}
 
 	protected DuplicateMemory(AbstractMemory memory)
 	{
+		this();
 		setMemoryModel(memory);
 	}
 
@@ -101,6 +101,11 @@ public class MappedMemory extends PlainMemory
 		 */
 		int i = address / page;
 
+		/**
+		 * Mapped pages must not use the fast path.
+		 */
+		setVirtual(address,size);
+
 		/**
 		 * Map all requird pages.
 		 */
@@ -33,12 +33,14 @@ import jmce.sim.*;
  * Standard memory implemetation.
  *
  * <p>This implementation use simple array to implements memory.
+ *
+ * <p>Since 1.03 the content of the array is saved in the snapshot.
  * 
  * @author Mario Viara
- * @version 1.01
+ * @version 1.03
  *
  */
-public class  PlainMemory extends AbstractMemory
+public class  PlainMemory extends AbstractMemory implements Snapshottable
 {
 	/** Array with memory data */
 	protected int[]	memory	= allocMemory(0);
@@ -78,6 +80,34 @@ public class  PlainMemory extends AbstractMemory
 		return memory[a] & 0xff;
 	}
 
+	/**
+	 * Set a block of memory directly in the array.
+	 *
+	 * @since 1.03
+	 */
+	@Override
+	protected void setBlock(int a,byte data[],int offset,int len)
+	{
+		int m[] = memory;
+		
+		for (int i = 0 ; i < len ; i++)
+			m[a + i] = data[offset + i] & 0xff;
+	}
+
+	/**
+	 * Get a block of memory directly from the array.
+	 *
+	 * @since 1.03
+	 */
+	@Override
+	protected void getBlock(int a,byte data[],int offset,int len)
+	{
+		int m[] = memory;
+		
+		for (int i = 0 ; i < len ; i++)
+			data[offset + i] = (byte)m[a + i];
+	}
+
 	/**
 	 * Reset the memory to initial state. Fill the memory with 0xff
 	 *
@@ -88,6 +118,7 @@ public class  PlainMemory extends AbstractMemory
 	{
 		super.reset();
 		Arrays.fill(memory,(byte)0xff);
+		newGeneration();
 	}
 	
 
@@ -106,6 +137,33 @@ public class  PlainMemory extends AbstractMemory
 		}
 	}
 
+	/**
+	 * Save the content of the memory.
+	 *
+	 * @since 1.03
+	 */
+	public void saveState(Snapshot s) throws SIMException
+	{
+		s.putPages(memory,0,memory.length);
+	}
+
+	/**
+	 * Restore the content of the memory.
+	 *
+	 * @since 1.03
+	 */
+	public void loadState(Snapshot s) throws SIMException
+	{
+		int m[] = s.getPages();
+
+		if (m.length == memory.length)
+			copyMemory(m,0,memory,0,m.length);
+		else
+			memory = m;
+
+		newGeneration();
+	}
+
 	/**
 	 * Function used by subclass to allocate memory. The memory is
 	 * filled with 0xff. So the real type of memory is confinated
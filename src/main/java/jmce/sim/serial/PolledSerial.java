@@ -46,14 +46,13 @@ import jmce.util.Logger;
  * @version 1.02
  *
  */
-abstract public class PolledSerial extends Serial implements Runnable,DeviceConsumer<Integer>
+abstract public class PolledSerial extends Serial implements Runnable,ByteConsumer
 {
 	private static final Logger log = Logger.getLogger(PolledSerial.class);
 	
 	private static final boolean logFine = false;
 	private byte buffer[] = new byte[1024];
 	private int count;
-	private int i;
 	protected long sent= 0 ,rcvd=0;
 	
 	private final int MIN_CONNECT_DELAY = 100;
@@ -71,7 +70,7 @@ abstract public class PolledSerial extends Serial implements Runnable,DeviceCons
 	 * Receive data from the input device if the device is
 	 * connected the data are delivery to the output stream.
 	 */
-	public void consume(Integer c) throws SIMException
+	public void consume(int c) throws SIMException
 	{
 		if (connected)
 		{
@@ -87,6 +86,28 @@ abstract public class PolledSerial extends Serial implements Runnable,DeviceCons
 			}
 		}
 	}
+
+	/**
+	 * Receive one block of data from the input device.
+	 *
+	 * @since 1.03
+	 */
+	public void consume(byte b[],int off,int len) throws SIMException
+	{
+		if (connected)
+		{
+			try
+			{
+				os.write(b,off,len);
+				sent += len;
+			}
+			catch (Exception e)
+			{
+				log.info(e);
+				close();
+			}
+		}
+	}
 	
 	public void init(Hardware parent) throws SIMException
 	{
@@ -221,8 +242,7 @@ abstract public class PolledSerial extends Serial implements Runnable,DeviceCons
 					rcvd += count;
 					try
 					{
-						for (i = 0 ; i < count ; i++)
-							write(buffer[i] & 0xff);
+						write(buffer,0,count);
 					}
 					catch (SIMException e)
 					{
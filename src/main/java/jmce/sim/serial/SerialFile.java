@@ -42,7 +42,7 @@ import jmce.util.Logger;
  * @author Mario Viara
  * @version 1.00
  */
-public class SerialFile extends Serial implements DeviceConsumer<Integer>
+public class SerialFile extends Serial implements ByteConsumer
 {
 	private static final Logger log = Logger.getLogger(SerialFile.class);
 	private String filename = "";
@@ -79,7 +79,7 @@ public class SerialFile extends Serial implements DeviceConsumer<Integer>
 		addInputConsumer(this);
 	}
 
-	public void consume(Integer c) throws SIMException
+	public void consume(int c) throws SIMException
 	{
 		try
 		{
@@ -93,6 +93,20 @@ public class SerialFile extends Serial implements DeviceConsumer<Integer>
 
 	}
 
+	public void consume(byte b[],int off,int len) throws SIMException
+	{
+		try
+		{
+			if (os != null)
+				os.write(b,off,len);
+		}
+		catch (java.io.IOException e)
+		{
+			throw new SIMIOException(filename," Writing");
+		}
+
+	}
+
 	/**
 	 * Set the name of the file used as output
 	 */
@@ -24,24 +24,125 @@
    used in advertising or otherwise to promote the sale, use or other dealings
    in this Software without prior written authorization from Mario Viara.
 */
-
 package jmce.sim.tape;
 
 import jmce.sim.*;
-import jmce.util.Logger;
 import jmce.util.FastArray;
 
 /**
  * Cassette data.
  * This class rappresent a cassette tape loaded normally from file.
+ * <p>
+ * Since 1.03 the pulses are not stored as single object but in
+ * segments : a run of pulses packed in one int (type in the 2 upper
+ * bits and width in the others), a tone of one pulse repeated and a
+ * block of data bytes with the widths of the 0 and 1 bit. The
+ * pulses are generated on demand when the tape is played so the
+ * memory used is near to the size of the file. The packed pulses are
+ * returned using always the same instance so one pulse is valid only
+ * till the next call of nextPulse().
  *
  * @author Mario Viara
+ * @version 1.03
  * @since 1.02
  */
-public class TapeData extends FastArray<TapePulse>
+public class TapeData
 {
+	/** Max width of one packed pulse */
+	static public final int MAX_WIDTH = (1 << 30) - 1;
+	
 	private int clock;
 
+	/** Segments of the tape */
+	private FastArray<Segment> segments = new FastArray<Segment>();
+
+	/** Total number of pulses */
+	private int size = 0;
+
+	/** Current position */
+	private int position,segment,offset;
+
+	/** Pulse returned for the packed pulses */
+	private final TapePulse pulse = new TapePulse(0);
+
+	/**
+	 * Segment of the tape.
+	 */
+	static private abstract class Segment
+	{
+		/** Number of pulses */
+		int size;
+
+		/** Return the pulse at the specified offset */
+		abstract TapePulse get(int i);
+	}
+
+	/**
+	 * Run of packed pulses
+	 */
+	static private final class Pulses extends Segment
+	{
+		int pulses[] = new int[1024];
+		final TapePulse pulse;
+
+		Pulses(TapePulse pulse)
+		{
+			this.pulse = pulse;
+		}
+
+		void add(int type,int width)
+		{
+			if (size >= pulses.length)
+			{
+				int tmp[] = new int[pulses.length * 2];
+				System.arraycopy(pulses,0,tmp,0,size);
+				pulses = tmp;
+			}
+
+			pulses[size++] = (type << 30) | width;
+		}
+
+		TapePulse get(int i)
+		{
+			pulse.set(pulses[i] >>> 30,pulses[i] & MAX_WIDTH);
+
+			return pulse;
+		}
+	}
+
+	/**
+	 * One pulse repeated
+	 */
+	static private final class Tone extends Segment
+	{
+		TapePulse pulse;
+
+		TapePulse get(int i)
+		{
+			return pulse;
+		}
+	}
+
+	/**
+	 * Data bytes, every bit is rappresented by 2 pulses starting
+	 * from the most significant bit.
+	 */
+	static private final class Bits extends Segment
+	{
+		byte data[];
+		TapePulse pulse0,pulse1;
+
+		TapePulse get(int i)
+		{
+			int bit = i >> 1;
+
+			if ((data[bit >> 3] & (0x80 >> (bit & 7))) != 0)
+				return pulse1;
+			else
+				return pulse0;
+		}
+	}
+	
 	/**
 	 * Constructor without clock
 	 */
@@ -55,7 +156,6 @@ public class TapeData extends FastArray<TapePulse>
 	 */
 	public TapeData(int clock)
 	{
-		super(100000,0);
 		this.clock = clock;
 		
 	}
@@ -67,4 +167,213 @@ public class TapeData extends FastArray<TapePulse>
 	{
 		return clock;
 	}
+
+	private void addSegment(Segment s)
+	{
+		segments.add(s);
+		size += s.size;
+	}
+	
+	/**
+	 * Add one pulse.
+	 *
+	 * @since 1.03
+	 */
+	public void add(int type,int width)
+	{
+		Pulses p = null;
+		
+		if (segments.getSize() > 0 && segments.get(segments.getSize() - 1) instanceof Pulses)
+			p = (Pulses)segments.get(segments.getSize() - 1);
+		else
+		{
+			p = new Pulses(pulse);
+			segments.add(p);
+		}
+
+		if (width > MAX_WIDTH)
+			width = MAX_WIDTH;
+		
+		p.add(type,width);
+		size++;
+	}
+
+	/**
+	 * Add one pulse.
+	 */
+	public void add(TapePulse p)
+	{
+		add(p.getType(),p.getWidth());
+	}
+
+	/**
+	 * Add one pulse repeated count times.
+	 *
+	 * @since 1.03
+	 */
+	public void addTone(TapePulse p,int count)
+	{
+		if (count <= 0)
+			return;
+		
+		Tone t = new Tone();
+		t.pulse = p;
+		t.size = count;
+		addSegment(t);
+	}
+
+	/**
+	 * Add a block of data bytes.
+	 *
+	 * Every bit is rappresented by 2 pulses of the same width
+	 * starting from the most significant bit.
+	 *
+	 * @param data - Data bytes
+	 * @param bit0 - Width of the pulses for a bit 0
+	 * @param bit1 - Width of the pulses for a bit 1
+	 * @param last - Number of bit used in the last byte
+	 *
+	 * @since 1.03
+	 */
+	public void addBits(byte data[],int bit0,int bit1,int last)
+	{
+		if (data.length == 0)
+			return;
+		
+		Bits b = new Bits();
+		b.data = data;
+		b.pulse0 = new TapePulse(bit0);
+		b.pulse1 = new TapePulse(bit1);
+		b.size = ((data.length - 1) * 8 + last) * 2;
+
+		if (b.size > 0)
+			addSegment(b);
+	}
+
+	/**
+	 * Return the total number of pulses.
+	 */
+	public int getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * Return the number of pulses already played.
+	 *
+	 * @since 1.03
+	 */
+	public int getPosition()
+	{
+		return position;
+	}
+
+	/**
+	 * Restart the tape from the first pulse.
+	 *
+	 * @since 1.03
+	 */
+	public void rewind()
+	{
+		position = segment = offset = 0;
+	}
+
+	/**
+	 * Move the tape to the specified pulse.
+	 *
+	 * @since 1.03
+	 */
+	public void setPosition(int n)
+	{
+		rewind();
+
+		while (segment < segments.getSize() && n > 0)
+		{
+			Segment s = segments.get(segment);
+
+			if (n < s.size)
+			{
+				offset = n;
+				position += n;
+				break;
+			}
+
+			position += s.size;
+			n -= s.size;
+			segment++;
+		}
+	}
+
+	/**
+	 * Return the next data block without generating the pulses.
+	 * <p>
+	 * The pulses before the block (normally pilot and sync) are
+	 * skipped, a block already started is not returned. If the
+	 * block is found and use the specified widths the tape is moved
+	 * after the block and the data are returned, else the tape is
+	 * not changed and the method return null.
+	 *
+	 * @param bit0 - Width of the pulses for a bit 0
+	 * @param bit1 - Width of the pulses for a bit 1
+	 *
+	 * @since 1.03
+	 */
+	public byte[] nextBlock(int bit0,int bit1)
+	{
+		int i = segment;
+		int n = position;
+
+		/** Skip the current segment if already started */
+		if (i < segments.getSize() && offset > 0)
+			n += segments.get(i++).size - offset;
+
+		for (; i < segments.getSize() ; i++)
+		{
+			Segment s = segments.get(i);
+
+			if (s instanceof Bits)
+			{
+				Bits b = (Bits)s;
+
+				if (b.pulse0.getWidth() != bit0 || b.pulse1.getWidth() != bit1 || b.size != b.data.length * 16)
+					return null;
+
+				segment = i + 1;
+				offset = 0;
+				position = n + s.size;
+
+				return b.data;
+			}
+
+			n += s.size;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Return the next pulse or null at the end of the tape.
+	 * <p>
+	 * The pulse is valid only till the next call.
+	 *
+	 * @since 1.03
+	 */
+	public TapePulse nextPulse()
+	{
+		while (segment < segments.getSize())
+		{
+			Segment s = segments.get(segment);
+
+			if (offset < s.size)
+			{
+				position++;
+				return s.get(offset++);
+			}
+
+			segment++;
+			offset = 0;
+		}
+
+		return null;
+	}
 }
@@ -40,7 +40,7 @@ import java.io.*;
  * Tape emulator on file.
  *
  * @author Mario Viara
- * @version 1.00
+ * @version 1.03
  * @since 1.01
  */
 public class TapeFile extends AbstractTape
@@ -48,12 +48,12 @@ public class TapeFile extends AbstractTape
 	private static Logger log = Logger.getLogger(TapeFile.class);
 	private String config;
 	private FastArray<TapeFileDecoder> decoders = new FastArray<TapeFileDecoder>();
-	private boolean playing = false;
+	private volatile boolean playing = false;
 	private boolean recording = false;
 	private InputStream is = null;
 	private TapeFileDecoder decoder;
 	private TapeData data = null;
-	private int dataPtr;
+	private boolean fastLoad = false;
 	
 	public TapeFile()
 	{
@@ -81,7 +81,7 @@ public class TapeFile extends AbstractTape
 	{
 		if (data == null)
 			return 0;
-		return dataPtr;
+		return data.getPosition();
 	}
 	
 	public int getNumTapeData()
@@ -117,6 +117,25 @@ public class TapeFile extends AbstractTape
 		decoders.add(decoder);
 	}
 	
+	/**
+	 * Enable the fast load of the tape.
+	 * <p>
+	 * When enabled the machine that support it intercept the ROM
+	 * loader and copy the data block directly in memory, custom
+	 * loaders still read the pulses.
+	 *
+	 * @since 1.03
+	 */
+	public void setFastLoad(boolean mode)
+	{
+		fastLoad = mode;
+	}
+
+	public boolean getFastLoad()
+	{
+		return fastLoad;
+	}
+
 	public String getConfig()
 	{
 		return config;
@@ -135,7 +154,8 @@ public class TapeFile extends AbstractTape
 	
 	public void play() throws SIMException
 	{
-		dataPtr = 0;
+		if (data != null)
+			data.rewind();
 		
 		if (playing)
 			return;
@@ -227,15 +247,61 @@ public class TapeFile extends AbstractTape
 		notifyStop();
 	}
 	
+	/**
+	 * Return the tape data for the fast load or null if the tape is
+	 * not playing. If the tape was never played it is started.
+	 *
+	 * @since 1.03
+	 */
+	protected TapeData getFastLoadData()
+	{
+		if (data == null)
+		{
+			try
+			{
+				play();
+			}
+			catch (SIMException ex)
+			{
+				log.info(ex);
+			}
+		}
+
+		return playing ? data : null;
+	}
+	
+	/**
+	 * Return the data of the next block for the fast load or null
+	 * if the block is not available with the specified widths.
+	 *
+	 * @since 1.03
+	 */
+	public byte[] nextBlock(int bit0,int bit1) throws SIMException
+	{
+		TapeData data = getFastLoadData();
+
+		if (data == null)
+			return null;
+
+		byte block[] = data.nextBlock(bit0,bit1);
+
+		if (block != null && data.getPosition() == data.getSize())
+			stop();
+
+		return block;
+	}
+
 	public TapePulse nextPulse()
 	{
 		if (data == null)
 			return null;
 
-		if (dataPtr >= data.getSize())
+		TapePulse tp = data.nextPulse();
+
+		if (tp == null)
 			return null;
 
-		if (dataPtr == data.getSize() - 1)
+		if (data.getPosition() == data.getSize())
 		{
 			log.info("Play terminated");
 			try
@@ -247,7 +313,7 @@ public class TapeFile extends AbstractTape
 			}
 		}
 		
-		return data.get(dataPtr++);
+		return tp;
 	}
 	
 			
@@ -95,7 +95,7 @@ public class TapeFileC64 implements TapeFileDecoder
 
 			}
 		
-			data.add(new TapePulse(v*MULTIPLIER));
+			data.add(TapePulse.DATA_TOGGLE,v*MULTIPLIER);
 
 		}
 
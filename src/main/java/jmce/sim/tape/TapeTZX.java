@@ -235,7 +235,7 @@ public class TapeTZX implements TapeFileDecoder
 		for (int i = 0 ; i < n ; i++)
 		{
 			int p = getWord(is);
-			data.add(new TapePulse(p));
+			data.add(TapePulse.DATA_TOGGLE,p);
 		}
 	}
 
@@ -256,15 +256,9 @@ public class TapeTZX implements TapeFileDecoder
 	 */
 	void block(TapeData data,InputStream is,int pause,int len,int pilot,int pilotLen,int sync1,int sync2,int bit0,int bit1,int bitlast) throws java.io.IOException
 	{
-		int v;
-		TapePulse pulsePilot = new TapePulse(pilot);
-		TapePulse pulse0 = new TapePulse(bit0);
-		TapePulse pulse1 = new TapePulse(bit1);
-
 		log.info("Block Pause="+pause+" Pilot="+pilot+" sync1="+sync1+" sync2="+sync2+" len="+len);
 		
-		while (pilotLen-- > 0)
-			data.add(pulsePilot);
+		data.addTone(new TapePulse(pilot),pilotLen);
 
 		if (sync1 > 0)
 			data.add(new TapePulse(sync1));
@@ -272,30 +266,23 @@ public class TapeTZX implements TapeFileDecoder
 		if (sync2 > 0)
 			data.add(new TapePulse(sync2));
 
-		while (len-- > 0)
+		/** The data bytes are converted in pulses when played */
+		if (len > 0)
 		{
-			v = is.read();
+			byte buffer[] = new byte[len];
+			int n = 0;
 
-			/** Determine the number of bit in this byte */
-			int nbit = len == 0 ? bitlast : 8;
-			
-			for (int i = 0 ; i < nbit ; i++)
+			while (n < len)
 			{
-				if ((v & 0x80) != 0)
-				{
-					data.add(pulse1);
-					data.add(pulse1);
-				}
-				else
-				{
-					data.add(pulse0);
-					data.add(pulse0);
-				}
-
-				v <<= 1;
+				int count = is.read(buffer,n,len - n);
+				if (count <= 0)
+					break;
+				n += count;
 			}
-			
-			
+
+			/** Missing data are read as 0xff like is.read() == -1 */
+			java.util.Arrays.fill(buffer,n,len,(byte)0xff);
+			data.addBits(buffer,bit0,bit1,bitlast);
 		}
 
 
@@ -144,7 +144,7 @@ public class SampleTerminal extends Terminal
 	
 
 	
-	public void write(Integer k) throws SIMException
+	public void write(int k) throws SIMException
 	{
 		//log.info("Pressed "+k);
 		
@@ -387,13 +387,19 @@ public class SampleTerminal extends Terminal
 
 
 		log.info(this+" - Initialized");
-		addInputConsumer(new DeviceConsumer<Integer>()
+		addInputConsumer(new ByteConsumer()
 		{
-			public void consume(Integer c) throws SIMException
+			public void consume(int c) throws SIMException
 			{
 				//System.out.println("putchar "+c);
 				putchar(c);
 			}
+
+			public void consume(byte b[],int off,int len) throws SIMException
+			{
+				for (int i = 0 ; i < len ; i++)
+					putchar(b[off+i] & 0xff);
+			}
 			
 		});
 	}
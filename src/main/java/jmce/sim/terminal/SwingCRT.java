@@ -33,16 +33,19 @@ import jmce.sim.*;
 
 /**
  * Swing implementation of CRT.
+ * <p>
+ * Since 1.03 the screen is drawn in one FrameBuffer every 20 ms when
+ * changed and the component only display it.
  *
  * @author Mario Viara
- * @version 1.00
+ * @version 1.03
  */
-public class SwingCRT extends AbstractCRT implements jmce.sim.SwingHardware
+public class SwingCRT extends AbstractCRT implements jmce.sim.SwingHardware,Video
 {
 	private final int TIME_REFRESH = 20;
 	private final int TIME_BLINK = 500;
 	
-	private Image image = null;
+	private FrameBuffer fb = null;
 	private FontMetrics fm;
 	private Dimension size,sizeChar;
 	private Color color = new Color(0,255,0);
@@ -133,22 +136,6 @@ public class SwingCRT extends AbstractCRT implements jmce.sim.SwingHardware
 
 		public Dimension getPreferredSize()
 		{
-			if (size == null)
-			{
-				Graphics g = getGraphics();
-				g.setFont(terminal.getFont());
-				fm = g.getFontMetrics();
-
-				int width = 0;
-				int height = fm.getHeight();
-				for (int i = 0 ; i < 256 ; i++)
-					if (fm.charWidth(i) > width)
-						width = fm.charWidth(i);
-				sizeChar = new Dimension(width,height);
-
-				size = new Dimension(numCol*width,numRow*height);
-			}
-
 			return size;
 		}
 
@@ -166,12 +153,10 @@ public class SwingCRT extends AbstractCRT implements jmce.sim.SwingHardware
 
 		public void paint(Graphics g)
 		{
-			if (image == null)
-				image = createImage(size.width, size.height);
-
-			draw(image.getGraphics());
+			Insets insets = getInsets();
 
-			g.drawImage(image, 0, 0, this);
+			if (fb != null)
+				g.drawImage(fb.getImage(),insets.left,insets.top,this);
 
 		}
 
@@ -255,8 +240,6 @@ public class SwingCRT extends AbstractCRT implements jmce.sim.SwingHardware
 
 		private void draw(Graphics g)
 		{
-			Insets insets = getInsets();
-			g.translate(insets.left,insets.top);
 			g.setFont(terminal.getFont());
 
 			for (int r = 0 ; r < numRow ; r++)
@@ -317,10 +300,38 @@ public class SwingCRT extends AbstractCRT implements jmce.sim.SwingHardware
 
 	}
 	
+	public FrameBuffer getFrameBuffer()
+	{
+		return fb;
+	}
+
+	/**
+	 * Calculate the size of the screen from the font and create the
+	 * frame buffer.
+	 */
+	private void initFrameBuffer()
+	{
+		Graphics g = new java.awt.image.BufferedImage(1,1,java.awt.image.BufferedImage.TYPE_INT_RGB).getGraphics();
+		g.setFont(terminal.getFont());
+		fm = g.getFontMetrics();
+
+		int width = 0;
+		int height = fm.getHeight();
+		for (int i = 0 ; i < 256 ; i++)
+			if (fm.charWidth(i) > width)
+				width = fm.charWidth(i);
+		sizeChar = new Dimension(width,height);
+
+		size = new Dimension(numCol*width,numRow*height);
+		fb = new FrameBuffer(size.width,size.height);
+		g.dispose();
+	}
+	
 	public void init(Hardware parent) throws SIMException
 	{
 		super.init(parent);
 		line = new char[numCol];
+		initFrameBuffer();
 		timer1 = new javax.swing.Timer(TIME_REFRESH,new ActionListener()
 		{
 			public void actionPerformed(ActionEvent e)
@@ -331,9 +342,21 @@ public class SwingCRT extends AbstractCRT implements jmce.sim.SwingHardware
 					synchronized (lineChanged)
 					{
 						screenChanged = false;
-						component.repaint();
+					}
+
+					Graphics g = fb.getImage().getGraphics();
+					component.draw(g);
+					g.dispose();
 
+					try
+					{
+						fb.frame();
+					}
+					catch (SIMException ignore)
+					{
 					}
+					
+					component.repaint();
 				}
 			}
 			
@@ -36,6 +36,8 @@ import jmce.sim.MemoryWriteListener;
 import jmce.sim.ResetListener;
 import jmce.sim.SIMException;
 import jmce.sim.SIMSWException;
+import jmce.sim.Snapshot;
+import jmce.sim.Snapshottable;
 import jmce.sim.memory.ArrayMemory;
 import jmce.sim.memory.CombinedMemory;
 import jmce.sim.memory.LoadableMemory;
@@ -69,13 +71,15 @@ import jmce.util.Logger;
  *	Bit3	0 Select Bank5 as display memory 1 Select Bank7
  *	Bit2-0	Select Bank mapped at  C000.
  * </pre>
+ * <p>
+ * Since 1.03 the MMU register is saved in the snapshot.
  *
  * @author Mario Viara
  * @version 1.00
  * @since 1.02
  */
 public class Memory128K extends CombinedMemory implements MemoryWriteListener,
-SpectrumConstants,SpectrumMemory,ResetListener,MemoryReadListener
+SpectrumConstants,SpectrumMemory,ResetListener,MemoryReadListener,Snapshottable
 {
 	private static Logger log = Logger.getLogger(Memory128K.class);
 	private Memory bank[] = new Memory[8];
@@ -215,4 +219,21 @@ SpectrumConstants,SpectrumMemory,ResetListener,MemoryReadListener
 		mmu &= ~MMU_DISABLE;
 		writeMMU(0);
 	}
+
+	/**
+	 * @since 1.03
+	 */
+	public void saveState(Snapshot s) throws SIMException
+	{
+		s.putInt(mmu);
+	}
+
+	/**
+	 * @since 1.03
+	 */
+	public void loadState(Snapshot s) throws SIMException
+	{
+		mmu &= ~MMU_DISABLE;
+		writeMMU(s.getInt());
+	}
 }
\ No newline at end of file
@@ -27,6 +27,7 @@
 package jmce.sinclair.spectrum;
 
 import jmce.sim.*;
+import jmce.util.Logger;
 
 import java.awt.*;
 import javax.swing.*;
@@ -37,19 +38,85 @@ import javax.swing.*;
  * This device implements the Screen and the keyboard for the spectrum
  * and can optionally show the Spectrum keyboard if the property
  * <tt>keyboardVisible</tt> is true.
+ * <p>
+ * Since 1.03 the screen is rendered in one FrameBuffer at the
+ * original resolution. The writes to the video memory only mark the
+ * character cell as dirty, every 20 ms the dirty cells are drawn
+ * using the palette and, if something is changed, a new frame is
+ * notified to the consumers.
  * 
  * @author Mario Viara
- * @version 1.01
+ * @version 1.03
  * 
  * @see #setKeyboardVisible
  */
-public class Screen extends AbstractPeripheral implements SwingHardware, SpectrumConstants
+public class Screen extends AbstractPeripheral implements SwingHardware, SpectrumConstants, MemoryWriteListener, Video
 {
+	private static Logger log = Logger.getLogger(Screen.class);
+
+	/** Screen definition */
+	private static final int screenWidth	= 256;
+	private static final int screenHeight	= 192;
+	private static final int topBorder	= 24;
+	private static final int bottomBorder   = 24;
+	private static final int leftBorder	= 24;
+	private static final int rightBorder	= 24;
+	private static final int imageWidth	= screenWidth+leftBorder+rightBorder;
+	private static final int imageHeight	= screenHeight+topBorder+bottomBorder;
+
+	// R,G,B Value used for color
+	public static final int COLOR		= 0xbf;
+
+	// R,G,B Value used for bright color
+	public static final int COLORBRIGHT	= 0xff;
+
+	/** Color map as RGB value */
+	static private int colors[] = new int[16];
+
 	Component comp = null;
-	ScreenPanel	sp = new ScreenPanel();
+	private FrameBuffer fb = new FrameBuffer(imageWidth,imageHeight);
+	private int pixels[] = fb.getPixels();
+	ScreenPanel	sp = new ScreenPanel(fb,1);
 	private int scale = 1;
 	private boolean keyboardVisible = false;
-	private int border;
+
+	/** Bitset of the character cells to redraw */
+	private long dirty[] = new long[(SCREEN_ATTRIBUTE_SIZE + 63) / 64];
+	private boolean changed = false;
+	
+	/** New color border */
+	private int colorBorder = 0;
+
+	/** Current color border, -1 to force the redraw */
+	private int oldBorder = -1;
+	
+	// Flash state
+	private boolean flash = false;
+
+	/** Screen memory */
+	private Memory m;
+
+	/** At first load define the color map */
+	static
+	{
+		/** Normal color G,R,B */
+		for (int i = 0 ; i < 8 ; i++)
+		{
+			int c = 0;
+
+			if ((i & 1) != 0)
+				c |= COLOR;
+			if ((i & 2) != 0)
+				c |= COLOR << 16;
+			if ((i & 4) != 0)
+				c |= COLOR << 8;
+			colors[i] = c;
+
+			/** Bright color */
+			colors[8+i] = (c / COLOR) * COLORBRIGHT;
+		}
+
+	}
 
 	/**
 	 * Default constructor
@@ -90,7 +157,7 @@ public class Screen extends AbstractPeripheral implements SwingHardware, Spectru
 	 */
 	public void setBorder(int border)
 	{
-		sp.setBorder(border);
+		colorBorder = colors[border];
 	}
 	
 	public void setScale(int scale)
@@ -104,9 +171,154 @@ public class Screen extends AbstractPeripheral implements SwingHardware, Spectru
 		return comp;
 	}
 
+	public FrameBuffer getFrameBuffer()
+	{
+		return fb;
+	}
+
+	/**
+	 * Set the video memory
+	 *
+	 * @param m - The new video memory
+	 */
 	public void setMemory(Memory m)
 	{
-		sp.setMemory(m);
+		if (this.m != null)
+			this.m.removeMemoryWriteListener(this);
+		this.m = m;
+		m.removeMemoryWriteListener(this);
+		m.addMemoryWriteListener(this);
+
+		/** Repaint the whole screen */
+		for (int i = 0 ; i < SCREEN_ATTRIBUTE_SIZE ; i++)
+			repaintAttribute(i);
+	}
+
+	public void	writeMemory(Memory m,int add,int value,int oldValue) throws SIMException
+	{
+		if (add >= SCREEN_MEMORY_START && add <= SCREEN_MEMORY_END)
+			repaintScreen(add - SCREEN_MEMORY_START);
+		else if (add >= SCREEN_ATTRIBUTE_START && add <= SCREEN_ATTRIBUTE_END)
+			repaintAttribute(add - SCREEN_ATTRIBUTE_START);
+
+	}
+
+	private int getMemory(int offset)
+	{
+
+		try
+		{
+			return m.getMemory(offset);
+		}
+		catch (Exception e)
+		{
+			log.warning(e);
+		}
+
+		return 0xff;
+	}
+
+	/**
+	 * Draw one character cell (8x8 pixel) in the frame buffer.
+	 */
+	private void drawCell(int cell)
+	{
+		int col = cell & 0x1f;
+		int row = cell >> 5;
+		int attr = getMemory(SCREEN_MEMORY_SIZE + cell);
+
+		/** Check for flash */
+		if (flash & (attr & ATTRIBUTE_FLASH) != 0)
+			attr = (attr & 0xC0) | ((attr & 7) << 3) | ((attr >> 3) & 7);
+
+		int base = (attr & ATTRIBUTE_BRIGHT) != 0 ? 8 : 0;
+		int fg = colors[base + (attr & 7)];
+		int bg = colors[base + ((attr >> 3) & 7)];
+
+		int addr = ((row & 0x18) << 8) | ((row & 7) << 5) | col;
+		int p = (row * 8 + topBorder) * imageWidth + col * 8 + leftBorder;
+
+		for (int y = 0 ; y < 8 ; y++)
+		{
+			int pixel = getMemory(addr);
+
+			for (int x = 0 ; x < 8 ; x++)
+				pixels[p + x] = (pixel & (0x80 >> x)) != 0 ? fg : bg;
+
+			addr += 256;
+			p += imageWidth;
+		}
+		
+	}
+
+	/**
+	 * Draw the changed part of the screen and notify the new frame.
+	 */
+	private void updateFrame() throws SIMException
+	{
+		if (!changed && colorBorder == oldBorder)
+			return;
+
+		changed = false;
+		
+		/**
+		 * Draw the border if changed
+		 */
+		if (colorBorder != oldBorder)
+		{
+			oldBorder = colorBorder;
+			
+			fb.fill(0,0,imageWidth,topBorder,oldBorder);
+			fb.fill(0,imageHeight - bottomBorder,imageWidth,bottomBorder,oldBorder);
+			fb.fill(0,topBorder,leftBorder,screenHeight,oldBorder);
+			fb.fill(imageWidth - rightBorder,topBorder,rightBorder,screenHeight,oldBorder);
+		}	
+
+		for (int i = 0 ; i < dirty.length ; i++)
+		{
+			long bits = dirty[i];
+
+			dirty[i] = 0;
+
+			while (bits != 0)
+			{
+				int n = Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+				drawCell(i * 64 + n);
+			}
+		}
+
+		fb.frame();
+	}
+
+	/**
+	 * Polling called every 320 ms
+	 */
+	public void updateBlink()
+	{
+		// Reverse flash attribute
+		flash = ! flash;
+		
+		for (int i = 0; i < SCREEN_ATTRIBUTE_SIZE ; i++)
+		{
+
+			if ((getMemory(i+SCREEN_MEMORY_SIZE) & ATTRIBUTE_FLASH) != 0)
+			{
+				repaintAttribute(i);
+			}
+		}
+
+	}
+
+	private void repaintAttribute(int addr)
+	{
+		dirty[addr >> 6] |= 1L << addr;
+		changed = true;
+	}
+
+	private void repaintScreen(int add)
+	{
+		repaintAttribute(((add >> 3) & 0x300) | (add & 0xff));
 	}
 	
 	public void registerCPU(CPU cpu) throws SIMException
@@ -123,12 +335,21 @@ public class Screen extends AbstractPeripheral implements SwingHardware, Spectru
 		{
 			public void timerExpired()
 			{
-				sp.updateBlink();
+				updateBlink();
 			}
 		});
 
 		cpu.addTimerMs(timer);
 
+		/** One frame every 20 ms */
+		cpu.addTimerMs(new jmce.util.Timer(20,true,new jmce.util.TimerListener()
+		{
+			public void timerExpired() throws SIMException
+			{
+				updateFrame();
+			}
+		}));
+
 	}
 
 	public void init(Hardware parent) throws SIMException
@@ -152,5 +373,3 @@ public class Screen extends AbstractPeripheral implements SwingHardware, Spectru
 	
 	
 }
-
-
@@ -27,317 +27,31 @@
 package jmce.sinclair.spectrum;
 
 
-import java.awt.Color;
-import java.awt.Dimension;
-import java.awt.Graphics;
-import java.awt.Image;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.util.HashMap;
-
-import javax.swing.JComponent;
-
-import jmce.sim.Memory;
-import jmce.sim.MemoryWriteListener;
-import jmce.sim.SIMException;
-import jmce.util.Logger;
-import jmce.util.RingBuffer;
+import jmce.sim.FrameBuffer;
+import jmce.swing.FrameBufferComponent;
 
 /**
  * JComponent to rappresent the spectrum screen.
+ * <p>
+ * Since 1.03 the screen is rendered by {@link Screen} in one
+ * FrameBuffer and this component only display it scaled.
  *
  * @author Mario Viara
- * @version 1.02
+ * @version 1.03
  */
-public class ScreenPanel extends JComponent  implements SpectrumConstants,ActionListener,MemoryWriteListener
+public class ScreenPanel extends FrameBufferComponent
 {
 	private static final long serialVersionUID = 1L;
-	private static Logger log = Logger.getLogger(ScreenPanel.class);
-
-	/** Screen definition */
-	private static final int screenWidth	= 256;
-	private static final int screenHeight	= 192;
-	private static final int topBorder	= 24;
-	private static final int bottomBorder   = 24;
-	private static final int leftBorder	= 24;
-	private static final int rightBorder	= 24;
-	
-
-	private int pixelScale			= 2;
-
-
-	// R,G,B Value used for color
-	public static final int COLOR		= 0xbf;
-
-	// R,G,B Value used for bright color
-	public static final int COLORBRIGHT	= 0xff;
-
-	private Dimension size = null;
-	private Image image = null;
-	private HashMap<Integer,Image> patterns = new HashMap<Integer,Image>();
-
-	/** Color map */
-	static private Color colors[] = new Color[16];
-
-
-	/** Ring buffer with video memories changes */
-	private RingBuffer<Integer> memoryChanged = new RingBuffer<Integer>(SCREEN_MEMORY_SIZE*4);
-	
-	/** New color border */
-	private Color colorBorder = new Color(0,0,0);
-
-	/** Current color border */
-	private Color oldBorder = new Color(0,0,0);
-	
-	// Flash state
-	private boolean flash = false;
-
-	/** Screen memory */
-	private Memory m;
-	
-
-	/** At first load define the color map */
-	static
-	{
-		/** Normal color */
-		colors[0] = new Color(0,0,0);
-		colors[1] = new Color(0,0,COLOR);
-		colors[2] = new Color(COLOR,0,0);
-		colors[3] = new Color(COLOR,0,COLOR);
-		colors[4] = new Color(0,COLOR,0);
-		colors[5] = new Color(0,COLOR,COLOR);
-		colors[6] = new Color(COLOR,COLOR,0);
-		colors[7] = new Color(COLOR,COLOR,COLOR);
-
-		/** Bright color */
-		for (int i = 0 ; i < 8 ; i++)
-			colors[8+i] = new Color(colors[i].getRed()	!= 0 ? COLORBRIGHT : 0,
-						colors[i].getGreen()	!= 0 ? COLORBRIGHT : 0,
-						colors[i].getBlue()	!= 0 ? COLORBRIGHT : 0);
-
-	}
-
-	/** Default and unique constructor */
-	public ScreenPanel()
-	{
-
-		javax.swing.Timer timer = new javax.swing.Timer(20,this);
-		timer.setRepeats(true);
-		timer.start();
-		size = new Dimension((screenWidth+leftBorder+rightBorder)*pixelScale,(screenHeight+topBorder+bottomBorder)*pixelScale);
-		setPreferredSize(size);
-	}
-
-	/**
-	 * Set the border
-	 *
-	 * @since 1.02
-	 */
-	public void setBorder(int border)
-	{
-		colorBorder = colors[border];
-	}
-
-
-	private Image getImage(JComponent comp ,int pixel,int color)
-	{
-		/** Check for flash */
-		if (flash & (color & ATTRIBUTE_FLASH) != 0)
-		{
-			int c1 = color & 7;
-			int c2 = (color >> 3) & 7;
-			color &= 0xC0;
-			color |= c1 << 3 | c2;
-		}
-
-		color &= 0x7f;
-
-		// Calculate hashing using pixel and color
-		int hashValue = pixel << 8 | color;
-		Integer keyImage = new Integer(hashValue);
-		Image img = patterns.get(keyImage);
-
-
-		// Image not found draw it
-		if (img == null)
-		{
-			int base = 0;
-			Color bg;
-			Color fg;
-
-			if ((color & ATTRIBUTE_BRIGHT) != 0)
-				base = 8;
-
-
-			// Get color
-			bg = colors[base+((color >> 3) & 7)];
-			fg = colors[base+(color & 7)];
-
-			// Create one image
-			img = comp.createImage(8*pixelScale,1*pixelScale);
-			Graphics g = img.getGraphics();
-
-			// Draw the pattern
-			for (int c = 0 ; c < 8 ; c++)
-			{
-				Color clr = bg;
-
-				if ((pixel & (0x80 >> c)) != 0)
-					clr = fg;
-				g.setColor(clr);
-				g.fillRect(c*pixelScale,0,pixelScale,1*pixelScale);
-
-			}
-
-			patterns.put(keyImage,img);
-		}
-
-		return img;
-	}
 
-
-	public void	writeMemory(Memory m,int add,int value,int oldValue) throws SIMException
-	{
-		if (add >= SCREEN_MEMORY_START && add <= SCREEN_MEMORY_END)
-			repaintScreen(add - SCREEN_MEMORY_START);
-		else if (add >= SCREEN_ATTRIBUTE_START && add <= SCREEN_ATTRIBUTE_END)
-			repaintAttribute(add - SCREEN_ATTRIBUTE_START);
-
-	}
-
-	/**
-	 * Set the video memory
-	 *
-	 * @param m - The new video memory
-	 */
-	public void setMemory(Memory m)
-	{
-		this.m = m;
-		m.removeMemoryWriteListener(this);
-		m.addMemoryWriteListener(this);
-
-		/** Repaint the whole screen */
-		for (int i = 0 ; i < SCREEN_MEMORY_SIZE ; i++)
-			repaintScreen(i);
-
-	}
-
-	private int getMemory(int offset)
-	{
-
-		try
-		{
-			return m.getMemory(offset);
-		}
-		catch (Exception e)
-		{
-			log.warning(e);
-		}
-
-		return 0xff;
-	}
-
-	private void drawByte(int addr,Graphics g)
-	{
-		int pixel = getMemory(addr);
-		int x = ((addr    & 0x001f) << 3);
-		int y = (((addr   & 0x00e0)) >> 2) + 
-			  (((addr & 0x0700)) >> 8) +
-			  (((addr & 0x1800)) >> 5);
-		int X = (x+leftBorder)*pixelScale;
-		int Y = (y+topBorder)*pixelScale;
-
-		int attr = getMemory(SCREEN_MEMORY_SIZE+ (addr&0x1f) + ((y>>3)*32) ) & 0xff;
-		Image chars = getImage(this,pixel,attr);
-		g.drawImage(chars,X,Y,null);
-		
-	}
-
-	private void drawScreen()
-	{
-		Graphics g = image.getGraphics();
-
-		/**
-		 * Draw the border if changed
-		 */
-		if (colorBorder != oldBorder)
-		{
-			oldBorder = colorBorder;
-			
-			g.setColor(colorBorder);
-			g.fillRect(0,0,leftBorder*pixelScale,size.height);
-			g.fillRect(0,0,size.width,pixelScale*topBorder);
-			g.fillRect(size.width - rightBorder*pixelScale,0,rightBorder*pixelScale,size.height);
-			g.fillRect(0,size.height  - bottomBorder*pixelScale,size.width,pixelScale*bottomBorder);
-		}	
-
-		for (Integer n = memoryChanged.get() ; n != null ; n = memoryChanged.get())
-			drawByte(n,g);
-	}
-
-	public void paint(Graphics g)
-	{
-		if (image == null)
-			image = createImage(size.width, size.height);
-
-		drawScreen();
-
-		g.drawImage(image, 0, 0, this);
-
-	}
-
-
-
-	/**
-	 * Polling called every 320 ms
-	 */
-	public void updateBlink()
+	/** Constructor with the frame buffer and the scale */
+	public ScreenPanel(FrameBuffer fb,int scale)
 	{
-		// Reverse flash attribute
-		flash = ! flash;
-		
-		for (int i = 0; i < SCREEN_ATTRIBUTE_SIZE ; i++)
-		{
-
-			if ((getMemory(i+SCREEN_MEMORY_SIZE) & ATTRIBUTE_FLASH) != 0)
-			{
-				repaintAttribute(i);
-			}
-		}
-
+		super(fb,scale,scale);
 	}
 
-	void repaintAttribute(int addr)
-	{
-		int        scrAddr   = ((addr & 0x300) << 3) | (addr & 0xff);
-
-		for (int i = 0 ; i < 8 ; i++)
-		{
-			repaintScreen(scrAddr);
-
-			// Next address in memory
-			scrAddr += 256;
-		}
-	}
-
-	void repaintScreen(int add)
-	{
-		memoryChanged.put(add);
-	}
-
-	/**
-	 * Timer called every 20 ms to update the screen
-	 */
-	public void actionPerformed(ActionEvent e)
-	{
-		if (memoryChanged.getSize() > 0 || colorBorder != oldBorder)
-			repaint();
-	}
-
-
 	void setScale(int scale)
 	{
-		pixelScale = scale;
+		setScale(scale,scale);
 	}
 
 	public String toString()
@@ -27,59 +27,62 @@
 package jmce.sinclair.spectrum;
 
 import jmce.sim.*;
+import jmce.sim.audio.Audio;
+import jmce.sim.audio.AudioStream;
 import jmce.util.Logger;
-import javax.sound.sampled.*;
+import jmce.util.Timer;
+import jmce.util.TimerListener;
 
 /**
  * ZX spectrum Speaker emulation. Also manage the color of the border.
  * <p>
  * Very simple hardware means very time expensive emulation.
  * <p>
+ * Since 1.03 the changes of the beeper are posted, stamped with the
+ * cpu cycle, in one AudioStream and resampled by the mixer thread so
+ * no cycle listener is required. The beeper and the border are saved
+ * in the snapshot. After one reset of the cpu or the restore of one
+ * snapshot the time base of the stream is restarted at the first
+ * event, when the cpu cycle is already the new one.
+ * <p>
  * @author Mario Viara
- * @version 1.01
+ * @version 1.03
  */
-public class Speaker extends AbstractPeripheral implements MemoryWriteListener,CycleListener,SpectrumConstants
+public class Speaker extends AbstractPeripheral implements MemoryWriteListener,ResetListener,Audio,Snapshottable,SpectrumConstants
 {
 	private static Logger log = Logger.getLogger(Speaker.class);
-	private byte buffer[] = new byte[1024];
-	private int bufferLen = 0;
-	private SourceDataLine line;
-	private byte beeper = 0;
-	private byte oldBeeper;
-	private int noChangeCount = 0;
-	private int cycle = 0;
+
+	/** Sync time of the audio stream in ms */
+	private static final int syncTime = 20;
+
+	private int beeper = 0;
 	private boolean installed = false;
 	private int sample = 44100;
-	private int cycles;
-	private long clock;
 	private int border = 0;
 	private Screen screen = null;
+	private AudioStream stream = new AudioStream("Beeper",sample);
+
+	/** Set when the time base of the stream must be restarted */
+	private boolean restart = false;
 	
 	public void init(Hardware parent) throws SIMException
 	{
 		super.init(parent);
-		try
-		{
-				
-			AudioFormat fmt = new AudioFormat(sample ,8,1,false,false);
-			DataLine.Info info = new DataLine.Info(SourceDataLine.class, fmt);
-			line = (SourceDataLine) AudioSystem.getLine(info);
-			line.open(fmt);
-			line.start();
-			installed = true;
-		}
-		catch (Exception ex)
-		{
-			installed = false;
-			log.warning(ex);
-		}
-
-
+		installed = stream.openLine();
 	}
 	
 	public void	writeMemory(Memory m,int port,int value,int oldValue) throws SIMException
 	{
-		beeper = (byte)((value & ULA_OUT) != 0 ? 0xff : 0x00);
+		int b = (value & ULA_OUT) != 0 ? 0xff : 0x00;
+
+		if (restart)
+			restart();
+
+		if (b != beeper)
+		{
+			beeper = b;
+			stream.level(cpu.getCycle(),beeper);
+		}
 		
 		if ((value & ULA_BORDER) != border)
 		{
@@ -90,36 +93,51 @@ public class Speaker extends AbstractPeripheral implements MemoryWriteListener,C
 					
 	}
 
-	public void cycle(int n)
+	/**
+	 * Restart the time base of the stream at the current cycle.
+	 */
+	private void restart()
 	{
-		/** If the speaker do not change for 1 second ignore it **/
-		if (beeper == oldBeeper)
-		{
-			if (noChangeCount > clock)
-				return;
-			noChangeCount += n;
-		}
-		else
-		{
-			oldBeeper = beeper;
-			noChangeCount = 0;
-		}
-		
-		cycle += n;
-		
-		while (cycle > cycles)
-		{
-			buffer[bufferLen] = beeper;
-			if (++bufferLen >= buffer.length)
-			{
-				if (line.available() >= bufferLen)
-					line.write(buffer,0,bufferLen);
-				bufferLen = 0;
-			}
+		restart = false;
+		stream.reset(cpu.getCycle());
+		stream.level(cpu.getCycle(),beeper);
+	}
 
-			cycle -= cycles;
-		}
-		
+	/**
+	 * The cycle of the cpu restart from 0.
+	 *
+	 * @since 1.03
+	 */
+	public void reset(CPU cpu) throws SIMException
+	{
+		restart = true;
+	}
+
+	public AudioStream getAudioStream()
+	{
+		return stream;
+	}
+
+	/**
+	 * @since 1.03
+	 */
+	public void saveState(Snapshot s) throws SIMException
+	{
+		s.putInt(beeper);
+		s.putInt(border);
+	}
+
+	/**
+	 * @since 1.03
+	 */
+	public void loadState(Snapshot s) throws SIMException
+	{
+		/** The cpu restore the cycle after the peripherals */
+		beeper = s.getInt();
+		restart = true;
+		border = s.getInt();
+		if (screen != null)
+			screen.setBorder(border);
 	}
 
 	/**
@@ -131,38 +149,35 @@ public class Speaker extends AbstractPeripheral implements MemoryWriteListener,C
 	{
 		this.screen = scr;
 	}
-	/**
-	 * Calculate cycle using the cpu clock
-	 */
-	private void setClock(long clock)
-	{
-		this.clock = clock;
-		int ncycles = (int)(clock / sample)/2;
-		if (ncycles != cycles)
-		{
-			cycles = ncycles;
-			buffer = new byte[sample/100];
-			log.info("Cycles="+cycles+" Sample="+sample+" Clock="+clock+" Buffer="+buffer.length);
-			
-		}
-	}
 	
 	public void registerCPU(CPU _cpu)  throws SIMException
 	{
 		super.registerCPU(_cpu);
 
-		setClock(cpu.getClock());
+		stream.setClock(cpu.getClock() / Math.max(1,cpu.getClockPerCycle()));
+		log.info("Sample="+sample+" Clock="+stream.getClock());
 
 		cpu.addIOWriteListener(ULA_PORT,this);
-		
-		/** Enable listeners if the audio is installed */
-		if (installed)
+		cpu.addResetListener(this);
+
+		cpu.addTimerMs(new Timer(syncTime,true,new TimerListener()
 		{
-			cpu.addCycleListener(this);
-		}
+			public void timerExpired()
+			{
+				if (restart)
+					restart();
+				stream.sync(cpu.getCycle());
+			}
+		}));
 
+		stream.start();
 	}
 
+	public void destroy() throws SIMException
+	{
+		stream.close();
+		super.destroy();
+	}
 
 	public String toString()
 	{
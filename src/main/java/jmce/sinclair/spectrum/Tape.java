@@ -35,16 +35,29 @@ import jmce.util.Hex;
  *
  * Tape interface for sinclair spectrum.
  * <p>
+ * When the fast load is enabled the calls to the ROM LD-BYTES
+ * routine are intercepted and standard blocks are copied directly in
+ * memory.
  * 
  * @author Mario Viara
- * @version 1.00
+ * @version 1.03
  *
  * @since 1.02
  */
-public class Tape extends jmce.sim.tape.TapeFile implements CycleListener
+public class Tape extends jmce.sim.tape.TapeFile implements ScheduledCycleListener,CallListener
 {
 	private static Logger log = Logger.getLogger(Tape.class);
+
+	/** Address of the ROM LD-BYTES routine */
+	static public final int LD_BYTES = 0x0556;
+
+	/** First 4 bytes of LD-BYTES : INC D,EX AF,AF',DEC D,DI */
+	static private final int ldBytes[] = {0x14,0x08,0x15,0xF3};
+	
 	private int pulse;
+
+	/** Play state seen by the cpu thread */
+	private boolean running;
 	private Spectrum spectrum;
 	private TapePulse tp;
 	
@@ -62,12 +75,34 @@ public class Tape extends jmce.sim.tape.TapeFile implements CycleListener
 	public void reset() throws SIMException
 	{
 		super.reset();
+		stop();
 		pulse= 0;
 		tp = null;
-		stop();
 		setPower(true);
 	}
 
+	/**
+	 * Play and stop are called from the user interface thread, the
+	 * cpu only receive one request of sync and the new state is used
+	 * by the next call of cycle() so the cycles elapsed before belong
+	 * to the old state.
+	 *
+	 * @since 1.03
+	 */
+	public void play() throws SIMException
+	{
+		super.play();
+		if (cpu != null)
+			cpu.syncCycles();
+	}
+
+	public void stop() throws SIMException
+	{
+		super.stop();
+		if (cpu != null)
+			cpu.syncCycles();
+	}
+
 	public void registerCPU(CPU cpu) throws SIMException
 	{
 		super.registerCPU(cpu);
@@ -75,11 +110,99 @@ public class Tape extends jmce.sim.tape.TapeFile implements CycleListener
 		cpu.addCycleListener(this);
 
 		spectrum = (Spectrum)cpu;
+		spectrum.setCallListener(LD_BYTES,this);
+	}
+
+	/**
+	 * Fast load of one block called in place of LD-BYTES.
+	 * <p>
+	 * On entry A is the flag byte, carry set for LOAD or reset for
+	 * VERIFY, DE the length and IX the address. On exit carry is set
+	 * if the block was loaded without error.
+	 *
+	 * @since 1.03
+	 */
+	public int call(CPU cpu,int address) throws SIMException
+	{
+		if (!getFastLoad())
+			return -1;
+
+		/** Only the original ROM routine is replaced */
+		for (int i = 0 ; i < ldBytes.length ; i++)
+			if (spectrum.getByte(LD_BYTES + i) != ldBytes[i])
+				return -1;
+
+		/** Only standard blocks, other use the pulses */
+		byte block[] = nextBlock(855,1710);
+
+		if (block == null)
+			return -1;
+
+		boolean load = (spectrum.f() & jmce.intel.i8080.I8080Constants.FLAG_C) != 0;
+		boolean ok = block.length > 0 && (block[0] & 0xff) == spectrum.A;
+		int len = spectrum.DE;
+		int parity = 0;
+
+		/** Flag, data and parity byte */
+		for (int i = 0 ; i < block.length && i < len + 2 ; i++)
+			parity ^= block[i];
+
+		if (ok)
+		{
+			int n = Math.min(len,block.length - 1);
+
+			if (load)
+			{
+				int n1 = Math.min(n,0x10000 - spectrum.IX);
+				spectrum.getMemory().setMemory(spectrum.IX,block,1,n1);
+				spectrum.getMemory().setMemory(0,block,1 + n1,n - n1);
+			}
+			else
+			{
+				for (int i = 0 ; i < n && ok ; i++)
+					if (spectrum.getByte((spectrum.IX + i) & 0xffff) != (block[i+1] & 0xff))
+						ok = false;
+			}
+
+			spectrum.IX = (spectrum.IX + n) & 0xffff;
+			spectrum.DE = (len - n) & 0xffff;
+
+			/** The block must contains also the parity */
+			ok = ok && block.length >= len + 2 && parity == 0;
+		}
+
+		log.info("Fast load "+block.length+" bytes "+(ok ? "OK" : "Error"));
+
+		if (ok)
+			spectrum.f(spectrum.f() | jmce.intel.i8080.I8080Constants.FLAG_C);
+		else
+			spectrum.f(spectrum.f() & ~jmce.intel.i8080.I8080Constants.FLAG_C);
+
+		return 17;
+	}
+
+	/**
+	 * The tape change state only at the end of the current pulse.
+	 *
+	 * @since 1.03
+	 */
+	public int getCycleDeadline()
+	{
+		if (running != isPlay())
+			return 0;
+
+		if (!running || !getPower() || pulse < 0)
+			return Integer.MAX_VALUE;
+
+		return pulse;
 	}
 
 	public void cycle(int n) throws SIMException
 	{
-		if (!isPlay() || !getPower())
+		boolean run = running;
+		running = isPlay();
+
+		if (!run || !getPower())
 			return;
 
 		if (pulse < 0)
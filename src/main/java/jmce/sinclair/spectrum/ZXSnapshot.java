@@ -39,7 +39,7 @@ import jmce.util.Hex;
  * ZX Spectrum shapshot loader.
  *
  * @author Mario Viara
- * @version 1.00
+ * @version 1.03
  */
 public class ZXSnapshot extends jmce.sim.cpu.AbstractLoader
 {
@@ -81,7 +81,7 @@ public class ZXSnapshot extends jmce.sim.cpu.AbstractLoader
 		log.info("ZXSnapshot "+name+" lenght="+snapshotLength);
 		try
 		{
-			FileInputStream is = new FileInputStream(file);
+			InputStream is = new BufferedInputStream(new FileInputStream(file));
 
 			// Crude check but it'll work (SNA is a fixed size)
 			if ( (snapshotLength == 49179) ) {
@@ -113,14 +113,37 @@ public class ZXSnapshot extends jmce.sim.cpu.AbstractLoader
 		return len;
 	}
 
+	/**
+	 * Read a block of byte, the byte not available are set to 0xff.
+	 *
+	 * @since 1.03
+	 */
+	public int readBytes(InputStream is,byte mem[],int len) throws java.io.IOException
+	{
+		int n = 0;
+
+		while (n < len)
+		{
+			int count = is.read(mem,n,len - n);
+			if (count <= 0)
+				break;
+			n += count;
+		}
+
+		java.util.Arrays.fill(mem,n,len,(byte)0xff);
+
+		return n;
+	}
+
 	public void loadSNA( Spectrum cpu,String name, InputStream is ) throws java.io.IOException,SIMException
 	{
 		log.info("loadSNA "+name);
 		int        header[] = new int[27];
 
 		readBytes(is,header,27);
-		for (int i = 0 ; i < 49152 ; i++)
-			cpu.setByte(RAM_MEMORY_START+i,is.read());
+		byte ram[] = new byte[49152];
+		readBytes(is,ram,ram.length);
+		cpu.getMemory().setMemory(RAM_MEMORY_START,ram,0,ram.length);
 
 		cpu.I =  header[0];
 
@@ -128,7 +151,7 @@ public class ZXSnapshot extends jmce.sim.cpu.AbstractLoader
 		cpu.DE =  header[3] | (header[4]<<8);
 		cpu.BC =  header[5] | (header[6]<<8);
 		cpu.A  =  header[7];
-		cpu.F  =  header[8];
+		cpu.f(header[8]);
 
 		cpu.exx();
 		cpu.ex_af_af1();
@@ -150,7 +173,7 @@ public class ZXSnapshot extends jmce.sim.cpu.AbstractLoader
 		cpu.R =  header[20];
 
 		cpu.A = header[21];
-		cpu.F = header[22];
+		cpu.f(header[22]);
 		
 		cpu.SP  =  header[23] | (header[24]<<8) ;
 
@@ -187,7 +210,7 @@ public class ZXSnapshot extends jmce.sim.cpu.AbstractLoader
 		bytesLeft -= readBytes( is, header, 30 );
 
 		cpu.A = header[0];
-		cpu.F = header[1];
+		cpu.f(header[1]);
 
 		cpu.BC = header[2] | (header[3] << 8);
 		cpu.HL = header[4] | (header[5] << 8);
@@ -220,7 +243,7 @@ public class ZXSnapshot extends jmce.sim.cpu.AbstractLoader
 		cpu.HL = header[19] | (header[20] << 8);
 
 		cpu.A = header[21];
-		cpu.F = header[22];
+		cpu.f(header[22]);
 
 		cpu.ex_af_af1();
 		cpu.exx();
@@ -253,24 +276,26 @@ public class ZXSnapshot extends jmce.sim.cpu.AbstractLoader
 		}
 		/* Old format Z80 snapshot */
 
+		byte ram[] = new byte[49152];
+
 		if ( compressed ) {
 			int data[] = new int[ bytesLeft ];
-			int addr   = RAM_MEMORY_START;
+			int addr   = 0;
 
 			int size = readBytes( is, data, bytesLeft );
-			log.info("Byte "+size+" at "+Hex.formatWord(addr));
+			log.info("Byte "+size+" at "+Hex.formatWord(RAM_MEMORY_START));
 			int i    = 0;
 
-			while ( (addr < 65536) && (i < size) ) {
+			while ( (addr < ram.length) && (i < size) ) {
 				tbyte = data[i++];
 				if ( tbyte != 0xed ) {
-					cpu.setByte( addr, tbyte );
+					ram[addr] = (byte)tbyte;
 					addr++;
 				}
 				else {
 					tbyte = data[i++];
 					if ( tbyte != 0xed ) {
-						cpu.setByte( addr, 0xed );
+						ram[addr] = (byte)0xed;
 						i--;
 						addr++;
 					}
@@ -278,18 +303,19 @@ public class ZXSnapshot extends jmce.sim.cpu.AbstractLoader
 						int        count;
 						count = data[i++];
 						tbyte = data[i++];
-						while ( (count--) != 0 ) {
-							cpu.setByte( addr, tbyte );
+						while ( (count--) != 0 && addr < ram.length) {
+							ram[addr] = (byte)tbyte;
 							addr++;
 						}
 					}
 				}
 			}
+
+			cpu.getMemory().setMemory(RAM_MEMORY_START,ram,0,addr);
 		}
 		else {
-			for (int i = 0 ; i < 49152 ; i++)
-				cpu.setByte(RAM_MEMORY_START+i,is.read());
-			
+			readBytes(is,ram,ram.length);
+			cpu.getMemory().setMemory(RAM_MEMORY_START,ram,0,ram.length);
 		}
 
 	}
@@ -455,40 +481,44 @@ public class ZXSnapshot extends jmce.sim.cpu.AbstractLoader
 		page = data[i++];
 
 		int addr = page2address(type,page);
+		byte mem[] = new byte[16384];
+		int        n = 0;
 
 		int        k = 0;
 		while (k < blocklen) {
 			int        tbyte = data[i++]; k++;
 			if ( tbyte != 0xed ) {
-				cpu.setByte(addr, ~tbyte);
-				cpu.setByte(addr, tbyte);
-				addr++;
+				if (n >= mem.length)
+					throw new SIMException( "Z80 (page): overrun" );
+				mem[n++] = (byte)tbyte;
 			}
 			else {
 				tbyte = data[i++]; k++;
 				if ( tbyte != 0xed ) {
-					cpu.setByte(addr, 0);
-					cpu.setByte(addr, 0xed);
-					addr++;
+					if (n >= mem.length)
+						throw new SIMException( "Z80 (page): overrun" );
+					mem[n++] = (byte)0xed;
 					i--; k--;
 				}
 				else {
 					int        count;
 					count = data[i++]; k++;
 					tbyte = data[i++]; k++;
+					if (n + count > mem.length)
+						throw new SIMException( "Z80 (page): overrun" );
 					while ( count-- > 0 ) {
-						cpu.setByte(addr, ~tbyte);
-						cpu.setByte(addr, tbyte);
-						addr++;
+						mem[n++] = (byte)tbyte;
 					}
 				}
 			}
 		}
 
-		if ((addr & 16383) != 0) {
+		if (n != mem.length) {
 			throw new SIMException( "Z80 (page): overrun" );
 		}
 
+		cpu.getMemory().setMemory(addr,mem,0,n);
+
 		return i;
 	}
 
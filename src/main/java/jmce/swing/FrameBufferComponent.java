@@ -0,0 +1,100 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.swing;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Insets;
+
+import javax.swing.JComponent;
+
+import jmce.sim.FrameBuffer;
+import jmce.sim.FrameListener;
+
+/**
+ * Swing component that display one FrameBuffer.
+ * <p>
+ * The component is repainted at every new frame and the frame buffer
+ * is copied with one drawImage scaled with the specified factors.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ *
+ * @since 1.03
+ */
+public class FrameBufferComponent extends JComponent implements Repaintable,FrameListener
+{
+	private static final long serialVersionUID = 1L;
+	private FrameBuffer fb;
+	private int scaleWidth,scaleHeight;
+
+	public FrameBufferComponent(FrameBuffer fb,int scaleWidth,int scaleHeight)
+	{
+		this.fb = fb;
+		setScale(scaleWidth,scaleHeight);
+		fb.addFrameListener(this);
+	}
+
+	/**
+	 * Set the scale factors.
+	 */
+	public void setScale(int scaleWidth,int scaleHeight)
+	{
+		this.scaleWidth = scaleWidth;
+		this.scaleHeight = scaleHeight;
+	}
+
+	public FrameBuffer getFrameBuffer()
+	{
+		return fb;
+	}
+
+	public Dimension getPreferredSize()
+	{
+		Insets insets = getInsets();
+
+		return new Dimension(fb.getWidth() * scaleWidth + insets.left + insets.right,
+				     fb.getHeight() * scaleHeight + insets.top + insets.bottom);
+	}
+
+	public void frameUpdated(FrameBuffer fb)
+	{
+		Util.repaintLater(this);
+	}
+
+	public void updateComponent()
+	{
+		repaint();
+	}
+
+	public void paintComponent(Graphics g)
+	{
+		Insets insets = getInsets();
+
+		g.drawImage(fb.getImage(),insets.left,insets.top,fb.getWidth() * scaleWidth,fb.getHeight() * scaleHeight,null);
+	}
+}
@@ -26,6 +26,8 @@
 */
 package jmce.swing;
 
+import jmce.sim.FrameBuffer;
+import jmce.sim.Video;
 import jmce.util.Timer;
 import jmce.util.TimerListener;
 
@@ -39,11 +41,15 @@ import javax.swing.*;
  * Swing component for LCD characters display.
  * <p>
  * This component rappresent a LCD alphanumeric display.
+ * <p>
+ * Since 1.03 the display is rendered in one FrameBuffer with one
+ * pixel for every dot and the component only display it scaled by
+ * the dot size.
  *
  * @author Mario Viara
- * @version 1.00
+ * @version 1.03
  */
-public class KLcd extends JComponent
+public class KLcd extends JComponent implements Video
 {
 	private static final long serialVersionUID = 1L;
 
@@ -84,8 +90,11 @@ public class KLcd extends JComponent
 	/** Color used for space */
 	private Color colorSpace = new Color(0,0,127);
 	
-	/** Array with an image for all char */
-	private Image imageChar[] = new Image[256];
+	/** Frame buffer without the dot size */
+	private FrameBuffer fb = null;
+
+	/** True if the display must be rendered again */
+	private boolean changed = true;
 
 	/** Array with the screen memory */
 	private int memory[];
@@ -116,41 +125,49 @@ public class KLcd extends JComponent
 
 		return size;
 	}
+
+	public FrameBuffer getFrameBuffer()
+	{
+		if (fb == null)
+			initInternal();
+
+		return fb;
+	}
 	
 	/**
-	 * Initialize all internal variable. This method must be called
-	 * when the component is correctly initialized and displayable.
+	 * Initialize all internal variable. This method is called the
+	 * first time the display is used after the configuration.
 	 */
 	private void initInternal()
 	{
+		int width = numColumns*font.getWidth()+(numColumns+1)*hSpace;
+		int height = numRows*font.getHeight()+(numRows+1)*vSpace;
+		
 		/** Determinte the component size */
-		size = new Dimension((numColumns*font.getWidth()+(numColumns+1)*hSpace)*dotSize,
-				     (numRows*font.getHeight()+(numRows+1)*hSpace)*dotSize);
-
-		/** Initialize the image array */
-		for (int i = 0 ; i < 256 ; i++)
-		{
-			Image img = createImage(font.getWidth()*dotSize,font.getHeight()*dotSize);
-			Graphics g = img.getGraphics();
-			g.setColor(colorBack);
-			g.fillRect(0,0,font.getWidth()*dotSize,font.getHeight()*dotSize);
-			g.setColor(colorFront);
-			for (int x = 0 ; x < font.getWidth() ; x++)
-				for (int y = 0 ; y < font.getHeight() ; y++)
-				{
-					if (font.getPixel(i,x,y))
-						g.fillRect(x*dotSize,y*dotSize,
-							dotSize,dotSize);
-				}
-			imageChar[i] = img;
-			
-		}
+		size = new Dimension(width*dotSize,height*dotSize);
 
+		fb = new FrameBuffer(width,height);
+		
 		/** Create the array with the display memory */
 		memory = new int[numPages*numRows*numColumns];
 
 		resetDisplay();
 
+		/** One frame every 20 ms if the display is changed */
+		Timer.addTimer(new Timer(20,true,new TimerListener()
+		{
+			public void timerExpired() throws jmce.sim.SIMException
+			{
+				if (changed)
+				{
+					changed = false;
+					render();
+					fb.frame();
+					repaint();
+				}
+			}
+		}));
+
 		Timer timer = new Timer(410,true,new TimerListener()
 		{
 			public void timerExpired()
@@ -158,7 +175,7 @@ public class KLcd extends JComponent
 				if (cursorBlink)
 				{
 					cursorBlinkStatus = !cursorBlinkStatus;
-					repaint();
+					changed = true;
 				}
 			}
 		});
@@ -181,7 +198,7 @@ public class KLcd extends JComponent
 		setCursor(0,0);
 		setCursor(true);
 		setPage(0);
-		repaint();
+		changed = true;
 	}
 
 	/**
@@ -192,7 +209,7 @@ public class KLcd extends JComponent
 		this.row = row;
 		this.col = col;
 		if (cursor)
-			repaint();
+			changed = true;
 	}
 
 	/**
@@ -210,7 +227,7 @@ public class KLcd extends JComponent
 		if (on != mode)
 		{
 			on = mode;
-			repaint();
+			changed = true;
 		}
 	}
 
@@ -225,7 +242,7 @@ public class KLcd extends JComponent
 		if (mode != cursorBlink)
 		{
 			cursorBlink = mode;
-			repaint();
+			changed = true;
 		}
 	}
 
@@ -241,7 +258,7 @@ public class KLcd extends JComponent
 		if (mode != cursor)
 		{
 			this.cursor = mode;
-			repaint();
+			changed = true;
 		}
 			
 	
@@ -264,31 +281,47 @@ public class KLcd extends JComponent
 		if (displayPage != p)
 		{
 			displayPage = p;
-			repaint();
+			changed = true;
 		}
 	}
 	
 	public void paintComponent(Graphics g)
 	{
-		int base = displayPage * numRows * numColumns;
 		Insets insets = getInsets();
-		g.translate(insets.left,insets.top);
-		g.setColor(colorSpace);
-		g.fillRect(0,0,size.width,size.height);
+
+		if (fb != null)
+			g.drawImage(fb.getImage(),insets.left,insets.top,size.width,size.height,null);
+	}
+
+	/**
+	 * Render the display in the frame buffer.
+	 */
+	private void render()
+	{
+		int base = displayPage * numRows * numColumns;
+		int front = colorFront.getRGB() & 0xffffff;
+		int back = colorBack.getRGB() & 0xffffff;
+		int fw = font.getWidth();
+		int fh = font.getHeight();
 		int x,y;
 
+		fb.fill(0,0,fb.getWidth(),fb.getHeight(),colorSpace.getRGB() & 0xffffff);
+
 		if (!on)
 			return;
 		
-		y = vSpace * dotSize;
+		y = vSpace;
 		for (int r = 0 ; r < numRows ; r++)
 		{
 			
-			x = hSpace*dotSize;
+			x = hSpace;
 			for (int c = 0 ; c < numColumns ; c++)
 			{
-				g.drawImage(imageChar[memory[base+r*numColumns+c]],x,y,null);
-				
+				int ch = memory[base+r*numColumns+c];
+
+				for (int y1 = 0 ; y1 < fh ; y1++)
+					for (int x1 = 0 ; x1 < fw ; x1++)
+						fb.setPixel(x+x1,y+y1,font.getPixel(ch,x1,y1) ? front : back);
 
 				/** Show the cursor */
 				if (cursor && c == col && r == row && displayPage == currentPage)
@@ -296,39 +329,26 @@ public class KLcd extends JComponent
 					if (cursorBlink)
 					{
 						if (cursorBlinkStatus)
-						{
-							g.setColor(colorFront);
-							g.fillRect(x,y,font.getWidth()*dotSize,font.getHeight()*dotSize);
-							//g.drawImage(imageChar[32],x,y,null);
-						}
+							fb.fill(x,y,fw,fh,front);
 					}
 					else
-					{
-						g.setColor(colorFront);
-						for (int i = 0 ; i < dotSize ; i++)
-						{
-							int x1,y1,x2,y2;
-							x1 = x;
-							y1 = y +(font.getHeight()) * dotSize -i ;
-							x2 = x + font.getWidth()*dotSize;
-							y2 = y1;
-							g.drawLine(x1,y1,x2,y2);
-						}
-
-					}
+						fb.fill(x,y+fh-1,fw,1,front);
 				}
 
-				x += (font.getWidth()+hSpace) * dotSize;
+				x += fw+hSpace;
 
 			}
 
-			y += (font.getHeight()+vSpace) * dotSize;
+			y += fh+vSpace;
 		}
 		
 	}
 
 	public void putchar(int ch)
 	{
+		if (memory == null)
+			initInternal();
+
 		int base = currentPage * numRows * numColumns;
 
 		ch &= 0xff;
@@ -342,7 +362,7 @@ public class KLcd extends JComponent
 		}
 
 		if (currentPage == displayPage)
-			repaint();
+			changed = true;
 		
 	}
 
@@ -0,0 +1,250 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.util;
+
+/**
+ * Ring buffer of bytes.
+ *
+ * <p>Like RingBuffer but the elements are stored in one byte array so
+ * no object is allocated for each element. Bulk method are provided to
+ * put and get one array of bytes.
+ * <p>
+ * No syncronization is used but one thread can put and another thread
+ * can get at the same time : like RingBuffer only the producer change
+ * <tt>ps</tt> and only the consumer change <tt>pl</tt>, both are
+ * volatile and are written after the data. One slot of the array is
+ * always free to distinguish the full buffer from the empty one.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ *
+ * @since 1.03
+ * @see RingBuffer
+ */
+public class ByteRingBuffer
+{
+	private byte buffer[];
+	private volatile int pl,ps;
+
+	/**
+	 * Constructor with specified the size
+	 */
+	public ByteRingBuffer(int size)
+	{
+		buffer = new byte[size + 1];
+		pl = ps = 0;
+	}
+
+	/**
+	 * Default constructor.
+	 * <p>
+	 * A new ByteRingBuffer will be created with the default size of
+	 * 256 bytes.
+	 */
+	public ByteRingBuffer()
+	{
+		this(256);
+	}
+
+	/**
+	 * Remove all element from the buffer.
+	 * <p>
+	 * Must be called by the consumer.
+	 */
+	public final void purge()
+	{
+		pl = ps;
+	}
+
+	/**
+	 * Return the first byte in the buffer without advancing the
+	 * pointer. If the buffer is empty return -1.
+	 */
+	public final int peek()
+	{
+		int p = pl;
+
+		if (p == ps)
+			return -1;
+
+		return buffer[p] & 0xff;
+	}
+
+	/**
+	 * Return the first byte from the buffer and advance the
+	 * pointer to the next one. If the buffer is empty return -1.
+	 */
+	public final int get()
+	{
+		int p = pl;
+
+		if (p == ps)
+			return -1;
+
+		int c = buffer[p] & 0xff;
+		if (++p >= buffer.length)
+			p = 0;
+		pl = p;
+
+		return c;
+	}
+
+	/**
+	 * Get up to len bytes from the buffer.
+	 *
+	 * @return the number of bytes copied.
+	 */
+	public final int get(byte b[],int off,int len)
+	{
+		int p = pl;
+		int count = count(p,ps);
+
+		if (len > count)
+			len = count;
+
+		int n = len;
+
+		while (n > 0)
+		{
+			int l = buffer.length - p;
+			if (l > n)
+				l = n;
+			System.arraycopy(buffer,p,b,off,l);
+			off += l;
+			n -= l;
+			p += l;
+			if (p >= buffer.length)
+				p = 0;
+		}
+
+		pl = p;
+		
+		return len;
+	}
+
+	/**
+	 * Return the number of bytes between the two pointers.
+	 */
+	private int count(int l,int s)
+	{
+		int n = s - l;
+
+		return n < 0 ? n + buffer.length : n;
+	}
+
+	/**
+	 * Return the number of bytes in the buffer.
+	 */
+	public final int count()
+	{
+		return count(pl,ps);
+	}
+
+	/**
+	 * Add a new byte to the buffer.
+	 *
+	 * @return false if the buffer is full.
+	 */
+	public final boolean put(int c)
+	{
+		int p = ps;
+		int newPs = p + 1;
+
+		if (newPs >= buffer.length)
+			newPs = 0;
+
+		if (newPs == pl)
+			return false;
+
+		buffer[p] = (byte)c;
+		ps = newPs;
+
+		return true;
+	}
+
+	/**
+	 * Put up to len bytes in the buffer.
+	 *
+	 * @return the number of bytes copied.
+	 */
+	public final int put(byte b[],int off,int len)
+	{
+		int p = ps;
+		int free = buffer.length - 1 - count(pl,p);
+		
+		if (len > free)
+			len = free;
+
+		int n = len;
+
+		while (n > 0)
+		{
+			int l = buffer.length - p;
+			if (l > n)
+				l = n;
+			System.arraycopy(b,off,buffer,p,l);
+			off += l;
+			n -= l;
+			p += l;
+			if (p >= buffer.length)
+				p = 0;
+		}
+
+		ps = p;
+
+		return len;
+	}
+
+	/**
+	 * Return true if the buffer is empty.
+	 */
+	public final boolean isEmpty()
+	{
+		return pl == ps;
+	}
+
+	/**
+	 * Return true if the buffer is full.
+	 */
+	public final boolean isFull()
+	{
+		int newPs = ps + 1;
+
+		if (newPs >= buffer.length)
+			newPs = 0;
+
+		return newPs == pl;
+	}
+
+	/**
+	 * Return the size of the buffer.
+	 */
+	public final int getSize()
+	{
+		return buffer.length - 1;
+	}
+}
@@ -59,7 +59,9 @@ public class Timer
 	 * TimerManager for performance reason.
 	 */
 	int status;
-	int remainingTime,initialTime;
+	int initialTime;
+	long deadline,sequence;
+	int heapIndex = -1;
 	boolean repeat;
 	TimerListener target;
 	TimerManager manager = null;
@@ -251,7 +253,7 @@ public class Timer
 
 	public String toString()
 	{
-		return "Timer "+initialTime+" counter "+remainingTime+", repeat "+repeat;
+		return "Timer "+initialTime+" expire "+deadline+", repeat "+repeat;
 	}
 	
 }
\ No newline at end of file
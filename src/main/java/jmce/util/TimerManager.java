@@ -35,13 +35,19 @@ package jmce.util;
  * TimerManager in any other time unit the method elapsed() must be
  * called at regular interval with a number of unit time elapsed as
  * parameter.<p>
- * For performance reason the Timer are inserted in one double linked
- * list managed from the TimerManager itelf. Method are non sincronized
- * so be carefully if used from more than one thread.
- * 
+ * For performance reason the Timer are kept in a binary heap ordered
+ * by absolute expiry time managed from the TimerManager itself and the
+ * next expiry is cached so elapsed() costs a single compare until one
+ * timer expires. Method are non sincronized so be carefully if used from
+ * more than one thread.
+ * <p>
+ * Since 1.03 the remaining time of the queued timer can be saved in
+ * one snapshot. The timer objects cannot be saved so at restore the
+ * saved timer are matched with the queued timer of the same listener
+ * class in order of expiry.
  * 
  * @author Mario Viara
- * @version 1.02
+ * @version 1.03
  *
  * @see jmce.util.Timer
  *
@@ -51,7 +57,17 @@ public class TimerManager extends Thread
 	private static Logger log = Logger.getLogger(TimerManager.class);
 	private String name;
 	private static TimerManager msTimer = null;
-	private FastLinkedList<Timer> queue = new FastLinkedList<Timer>();
+
+	/** Heap of queued timer, heap[0] is the next to expire */
+	private Timer heap[] = new Timer[16];
+	private int size = 0;
+
+	/** Current time and cached expiry of heap[0] */
+	private long now = 0;
+	private long next = Long.MAX_VALUE;
+
+	/** Insertion counter used to order timer with the same expiry */
+	private long sequence = 0;
 	
 	/**
 	 * Standard constructor
@@ -66,7 +82,18 @@ public class TimerManager extends Thread
 	 */
 	public final int getSize()
 	{
-		return queue.getSize();
+		return size;
+	}
+
+	/**
+	 * Return the number of time unit before the next timer expire
+	 * or Long.MAX_VALUE if no timer is queued.
+	 *
+	 * @since 1.03
+	 */
+	public final long getNextExpiry()
+	{
+		return next == Long.MAX_VALUE ? next : next - now;
 	}
 
 	/**
@@ -88,26 +115,26 @@ public class TimerManager extends Thread
 	 */
 	public final  void add(Timer t)
 	{
+		/** Timer already queued must be removed first */
+		if (t.manager == this && t.heapIndex >= 0)
+			removeAt(t.heapIndex);
+
 		t.manager = this;
-		t.remainingTime = t.initialTime;
+		t.deadline = now + t.initialTime;
+		t.sequence = sequence++;
 		t.status = Timer.QUEUED;
 
-		for (FastLinkedList.Node<Timer> l = queue.getFirst(); !queue.isHead(l) ; l = l.Next())
+		if (size == heap.length)
 		{
-			int r = l.get().remainingTime;
-			
-			if (t.remainingTime <= r)
-			{
-				l.get().remainingTime -= t.remainingTime;
-				queue.addBefore(l,t);
-				return;
-			}
-
-			t.remainingTime -= r;
-			
+			Timer h[] = new Timer[size * 2];
+			System.arraycopy(heap,0,h,0,size);
+			heap = h;
 		}
-		
-		queue.addToEnd(t);
+
+		heap[size] = t;
+		t.heapIndex = size;
+		up(size++);
+		next = heap[0].deadline;
 	}
 
 	
@@ -118,11 +145,9 @@ public class TimerManager extends Thread
 	{
 		t.status = Timer.CANCELLED;
 		t.manager = null;
-		
-		FastLinkedList.Node<Timer> l = queue.search(t);
 
-		if (l != null)
-			queue.remove(l);
+		if (t.heapIndex >= 0 && t.heapIndex < size && heap[t.heapIndex] == t)
+			removeAt(t.heapIndex);
 
 	}
 
@@ -131,41 +156,214 @@ public class TimerManager extends Thread
 	 */
 	public final void elapsed(int n) throws jmce.sim.SIMException
 	{
-		Timer t;
+		if (n <= 0)
+			return;
+		
+		long target = now + n;
 
-		/** Advance the timer */
-		while (n > 0)
+		/** Fast path no timer expired */
+		if (target < next)
 		{
-			FastLinkedList.Node<Timer> l = queue.getFirst();
-			if (queue.isHead(l))
-				break;
-			
-			t = l.get();
-			
-			if (n >= t.remainingTime)
+			now = target;
+			return;
+		}
+
+		/**
+		 * Fire expired timer in order, like the old delta queue stop
+		 * when one timer expire exactly at the end of the interval.
+		 */
+		while (now < target && size > 0 && heap[0].deadline <= target)
+		{
+			Timer t = heap[0];
+			now = t.deadline;
+			removeAt(0);
+
+			/** Do not fire cancelled timer */
+			if (t.status == Timer.QUEUED)
 			{
-				n -= t.remainingTime;
-				queue.remove(l);
-
-				/** Do not fire cancelled timer */
-				if (t.status == Timer.QUEUED)
-				{
-					t.target.timerExpired();
-					t.status = Timer.IDLE;
-					if (t.isRepeat())
-						add(t);
-					
-				}
+				t.target.timerExpired();
+				t.status = Timer.IDLE;
+				if (t.isRepeat())
+					add(t);
+
 			}
-			else
-			{
-				t.remainingTime -= n;
+		}
+
+		now = target;
+	}
+
+	/**
+	 * Return true if the timer a expire before the timer b
+	 */
+	private final boolean before(Timer a,Timer b)
+	{
+		if (a.deadline != b.deadline)
+			return a.deadline < b.deadline;
+
+		/** Last added timer expire first */
+		return a.sequence > b.sequence;
+	}
+
+	/**
+	 * Remove the timer at the specified heap position.
+	 */
+	private final void removeAt(int i)
+	{
+		Timer t = heap[i];
+		t.heapIndex = -1;
+		
+		Timer last = heap[--size];
+		heap[size] = null;
+
+		if (i < size)
+		{
+			heap[i] = last;
+			last.heapIndex = i;
+			down(i);
+			up(last.heapIndex);
+		}
+
+		next = size > 0 ? heap[0].deadline : Long.MAX_VALUE;
+	}
+
+	private final void up(int i)
+	{
+		Timer t = heap[i];
+
+		while (i > 0)
+		{
+			int p = (i - 1) >>> 1;
+			if (!before(t,heap[p]))
 				break;
+			heap[i] = heap[p];
+			heap[i].heapIndex = i;
+			i = p;
+		}
+
+		heap[i] = t;
+		t.heapIndex = i;
+	}
+
+	private final void down(int i)
+	{
+		Timer t = heap[i];
+
+		for (;;)
+		{
+			int c = i * 2 + 1;
+			if (c >= size)
+				break;
+			if (c + 1 < size && before(heap[c+1],heap[c]))
+				c++;
+			if (!before(heap[c],t))
+				break;
+			heap[i] = heap[c];
+			heap[i].heapIndex = i;
+			i = c;
+		}
+
+		heap[i] = t;
+		t.heapIndex = i;
+	}
+
+
+	/**
+	 * Return the key used to match the timer in one snapshot.
+	 */
+	static private String key(Timer t)
+	{
+		return t.target == null ? "" : t.target.getClass().getName();
+	}
+
+	/**
+	 * Return the queued timer ordered by key and expiry.
+	 */
+	private Timer[] sorted()
+	{
+		Timer list[] = new Timer[size];
+
+		System.arraycopy(heap,0,list,0,size);
+		java.util.Arrays.sort(list,new java.util.Comparator<Timer>()
+		{
+			public int compare(Timer a,Timer b)
+			{
+				int c = key(a).compareTo(key(b));
+
+				if (c != 0)
+					return c;
+
+				return a.deadline < b.deadline ? -1 : a.deadline > b.deadline ? 1 : 0;
 			}
+		});
+
+		return list;
+	}
+
+	/**
+	 * Save the queued timer in the snapshot.
+	 *
+	 * @since 1.03
+	 */
+	public final void saveState(jmce.sim.Snapshot s) throws jmce.sim.SIMException
+	{
+		Timer list[] = sorted();
+
+		s.putInt(list.length);
+
+		for (int i = 0 ; i < list.length ; i++)
+		{
+			Timer t = list[i];
+			s.putString(key(t));
+			s.putLong(t.deadline - now);
+			s.putInt(t.initialTime);
+			s.putBoolean(t.repeat);
 		}
-	
 	}
 
+	/**
+	 * Restore the remaining time of the queued timer from the
+	 * snapshot.
+	 *
+	 * @since 1.03
+	 */
+	public final void loadState(jmce.sim.Snapshot s) throws jmce.sim.SIMException
+	{
+		Timer list[] = sorted();
+		int n = s.getInt();
+		int j = 0;
+
+		for (int i = 0 ; i < n ; i++)
+		{
+			String key = s.getString();
+			long remain = s.getLong();
+			int initialTime = s.getInt();
+			boolean repeat = s.getBoolean();
+
+			while (j < list.length && key(list[j]).compareTo(key) < 0)
+				j++;
+
+			if (j < list.length && key(list[j]).equals(key))
+			{
+				Timer t = list[j++];
+				t.deadline = now + remain;
+				t.initialTime = initialTime;
+				t.repeat = repeat;
+			}
+			else
+				log.fine("No timer for "+key);
+		}
+
+		/** Rebuild the heap with the new expiry */
+		size = 0;
+		for (int i = 0 ; i < list.length ; i++)
+		{
+			heap[size] = list[i];
+			list[i].heapIndex = size;
+			up(size++);
+		}
+
+		next = size > 0 ? heap[0].deadline : Long.MAX_VALUE;
+	}
 
 	/**
 	 * Thread to manage the standard  ms based timer manager.
@@ -81,7 +81,7 @@ public class Console extends jmce.sim.Serial implements YazeConstants,MemoryWrit
 
 			case	CONDAT:
 				setLive();
-				return read();
+				return readByte();
 			default:
 				return 0;
 		}
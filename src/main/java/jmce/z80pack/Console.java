@@ -67,7 +67,7 @@ public class Console extends jmce.sim.Serial implements Z80PackConstants,MemoryR
 				
 			case	CONDAT:
 				setLive();
-				return read();
+				return readByte();
 			default:
 				return 0;
 		}
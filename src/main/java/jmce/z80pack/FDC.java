@@ -84,6 +84,28 @@ public class FDC extends jmce.sim.disk.AbstractDiskController implements Z80Pack
 
 	}
 
+	/**
+	 * @since 1.03
+	 */
+	public void saveState(Snapshot s) throws SIMException
+	{
+		super.saveState(s);
+		s.putInt(dma);
+		s.putInt(commandResult);
+		s.putBoolean(commandInProcess);
+	}
+
+	/**
+	 * @since 1.03
+	 */
+	public void loadState(Snapshot s) throws SIMException
+	{
+		super.loadState(s);
+		setDma(s.getInt());
+		commandResult = s.getInt();
+		commandInProcess = s.getBoolean();
+	}
+
 	/**
 	 * Set the DMA address for the next read/write operation
 	 */
@@ -123,14 +145,12 @@ public class FDC extends jmce.sim.disk.AbstractDiskController implements Z80Pack
 				if (disk.read() != buffer.length)
 					return;
 
-				for (i = 0 ; i < buffer.length ; i ++)
-					cpu.setByte(dma+i,buffer[i] & 0xff);
+				cpu.getMemory().setMemory(dma,buffer,0,buffer.length);
 				break;
 
 			case	FDC_CMD_WRITE:
 				cpu.setStatusLine('W');
-				for (i = 0 ; i < buffer.length ; i ++)
-					buffer[i] = (byte)cpu.getByte(dma+i);
+				cpu.getMemory().getMemory(dma,buffer,0,buffer.length);
 
 				i = disk.write();
 				if (i != buffer.length)
@@ -106,7 +106,7 @@ public class Network extends jmce.sim.Serial implements MemoryReadListener,Memor
 		else if (address == base + 1)
 		{
 			setLive();
-			value = read();
+			value = readByte();
 			cpu.setStatusLine('r');
 		}
 
@@ -38,13 +38,15 @@ import jmce.intel.i8080.I8080;
  * control the timer if a value different from 0 is written the timer
  * is enabled otherwise the timer is disabled.
  * <p>
+ * Since 1.03 the control register is saved in the snapshot.
+ * <p>
  *
  * @author Mario Viara
  * @version 1.01
  */
 public class Timer extends AbstractPeripheral implements
    Z80PackConstants,MemoryReadListener,MemoryWriteListener,ResetListener,
-   jmce.util.TimerListener
+   jmce.util.TimerListener,Snapshottable
 	   
 					
 {
@@ -91,6 +93,25 @@ public class Timer extends AbstractPeripheral implements
 		}
 	}
 
+	/**
+	 * @since 1.03
+	 */
+	public void saveState(Snapshot s) throws SIMException
+	{
+		s.putInt(timerMode);
+	}
+
+	/**
+	 * Restore the control register, the cpu restore the remaining
+	 * time of the timer.
+	 *
+	 * @since 1.03
+	 */
+	public void loadState(Snapshot s) throws SIMException
+	{
+		writeMemory(null,TIMER_CTRL,s.getInt(),timerMode);
+	}
+
 	public void reset(CPU cpu) throws SIMException
 	{
 		timer.cancel();
@@ -53,12 +53,17 @@ import jmce.util.Hex;
  * <p>
  * base - Base address of the peripheral (default to 0)<p>
  * <p>
+ * Since 1.03 the channels in timer mode are not decremented after every
+ * instruction, the counters are updated from the elapsed cycles when
+ * the CTC is accessed and the cpu call the CTC only when one channel
+ * with the interrupt enabled reach zero.
+ * <p>
  * @author Mario Viara
- * @version 1.01
+ * @version 1.03
  * 
  * @since 1.01
  */ 
-public class CTC extends AbstractPeripheral implements ResetListener,MemoryReadListener,MemoryWriteListener,CycleListener
+public class CTC extends AbstractPeripheral implements ResetListener,MemoryReadListener,MemoryWriteListener,ScheduledCycleListener,Snapshottable
 {
 	private static Logger log = Logger.getLogger(CTC.class);
 	static public final int CTC_CHANNEL = 4;
@@ -82,6 +87,9 @@ public class CTC extends AbstractPeripheral implements ResetListener,MemoryReadL
 	private int clock[] = new int[CTC_CHANNEL];
 	private boolean waitTime[] = new boolean[CTC_CHANNEL];
 
+	/** Last interrupt vector written, -1 if not programmed */
+	private int vector = -1;
+
 	/**
 	 * Default constructor
 	 */
@@ -120,6 +128,7 @@ public class CTC extends AbstractPeripheral implements ResetListener,MemoryReadL
 	{
 		int ch = address - base;
 
+		z80.syncCycles();
 		value = counter[ch];
 
 		log.fine("CTC RD="+Hex.formatByte(value)+" AT "+ch+" = "+value);
@@ -133,6 +142,18 @@ public class CTC extends AbstractPeripheral implements ResetListener,MemoryReadL
 
 		log.fine("CTC WR="+Hex.formatByte(value)+" AT "+ch);
 
+		/** Elapsed cycles belong to the old state of the channel */
+		z80.syncCycles();
+		write(ch,value);
+		z80.syncCycles();
+	}
+
+	/**
+	 * Write a control word, a time costant or the interrupt vector.
+	 */
+	private void write(int ch,int value) throws SIMException
+	{
+
 		/** Check if a time costants must be loaded */
 		if (waitTime[ch])
 		{
@@ -145,9 +166,10 @@ public class CTC extends AbstractPeripheral implements ResetListener,MemoryReadL
 		if ((value & CW_VECTOR) == 0)
 		{
 			log.fine("Vector="+(value & 0xf8));
+			vector = value & 0xF8;
 			for (int i = 0 ; i < 4 ; i++)
 			{
-				irq[i].setVector(value & 0xF8 | (i << 1));
+				irq[i].setVector(vector | (i << 1));
 			}
 
 			return;
@@ -185,22 +207,35 @@ public class CTC extends AbstractPeripheral implements ResetListener,MemoryReadL
 		if (waitTime[i])
 			return;
 
-		clock[i] += n;
+		int c = clock[i] + n;
+		int p = prescaler[i];
 
-		while (clock[i] > prescaler[i])
+		if (c <= p)
 		{
+			clock[i] = c;
+			return;
+		}
 
-			clock[i] -= prescaler[i];
-			counter[i] = (counter[i] - 1) & 0xff;
-			if (counter[i] == 0)
-			{
-				if ((cw[i] & 0x80) != 0)
-				{
-					log.fine("CH="+i+" IRQ "+irq[i].toString());
-					irq[i].setActive(true);
-				}
-				counter[i] = time[i];
-			}
+		/** Number of decrement of the counter */
+		int k = (c - 1) / p;
+		clock[i] = c - k * p;
+
+		int zero = counter[i] == 0 ? 256 : counter[i];
+
+		if (k < zero)
+		{
+			counter[i] = (counter[i] - k) & 0xff;
+			return;
+		}
+
+		k -= zero;
+		int period = time[i] == 0 ? 256 : time[i];
+		counter[i] = (time[i] - k % period) & 0xff;
+		
+		if ((cw[i] & 0x80) != 0)
+		{
+			log.fine("CH="+i+" IRQ "+irq[i].toString());
+			irq[i].setActive(true);
 		}
 		
 	}
@@ -217,7 +252,7 @@ public class CTC extends AbstractPeripheral implements ResetListener,MemoryReadL
 	}
 	
 	/**
-	 * Called at every instruction cycle to decrement the timer.
+	 * Called by the cpu to decrement the timer of the elapsed cycles.
 	 */
 	public final void cycle(int n)  throws SIMException
 	{
@@ -233,6 +268,28 @@ public class CTC extends AbstractPeripheral implements ResetListener,MemoryReadL
 	}
 
 
+	/**
+	 * The cpu must call the CTC when one timer with the interrupt
+	 * enabled reach zero.
+	 *
+	 * @since 1.03
+	 */
+	public int getCycleDeadline()
+	{
+		int d = Integer.MAX_VALUE;
+
+		for (int i = 0 ; i < CTC_CHANNEL ; i++)
+		{
+			if ((cw[i] & 0x48) != 0 || (cw[i] & CW_IE) == 0 || waitTime[i])
+				continue;
+
+			int zero = counter[i] == 0 ? 256 : counter[i];
+			d = Math.min(d,zero * prescaler[i] + 1 - clock[i]);
+		}
+
+		return d;
+	}
+
 	/**
 	 * Reset a CTC channel.<p>
 	 *
@@ -246,6 +303,48 @@ public class CTC extends AbstractPeripheral implements ResetListener,MemoryReadL
 		clock[ch] = 0;
 	}
 
+	/**
+	 * Save the state of all the channels, the cpu save the state of
+	 * the interrupts.
+	 *
+	 * @since 1.03
+	 */
+	public void saveState(Snapshot s) throws SIMException
+	{
+		s.putInt(vector);
+
+		for (int i = 0 ; i < CTC_CHANNEL ; i++)
+		{
+			s.putInt(counter[i]);
+			s.putInt(time[i]);
+			s.putInt(prescaler[i]);
+			s.putInt(cw[i]);
+			s.putInt(clock[i]);
+			s.putBoolean(waitTime[i]);
+		}
+	}
+
+	/**
+	 * @since 1.03
+	 */
+	public void loadState(Snapshot s) throws SIMException
+	{
+		vector = s.getInt();
+
+		for (int i = 0 ; i < CTC_CHANNEL ; i++)
+		{
+			counter[i] = s.getInt();
+			time[i] = s.getInt();
+			prescaler[i] = s.getInt();
+			cw[i] = s.getInt();
+			clock[i] = s.getInt();
+			waitTime[i] = s.getBoolean();
+
+			if (vector >= 0)
+				irq[i].setVector(vector | (i << 1));
+		}
+	}
+
 	/**
 	 * Set the base addres of this CTC
 	 */
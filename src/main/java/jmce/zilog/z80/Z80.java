@@ -74,6 +74,9 @@ public class Z80 extends jmce.intel.i8080.I8080
 	public int IX,IY,I,R;
 	private int interruptMode;
 
+	/** Index register used by the switch core for DD and FD opcodes */
+	private int xy;
+
 	/**
 	 * Default constructor.
 	 */
@@ -160,6 +163,38 @@ public class Z80 extends jmce.intel.i8080.I8080
 
 	}
 
+	/**
+	 * Save the alternate registers and the interrupt mode.
+	 *
+	 * @since 1.03
+	 */
+	public void saveState(Snapshot s) throws SIMException
+	{
+		super.saveState(s);
+		s.putInt(A1);
+		s.putInt(F1);
+		s.putInt(BC1);
+		s.putInt(DE1);
+		s.putInt(HL1);
+		s.putInt(R);
+		s.putInt(interruptMode);
+	}
+
+	/**
+	 * @since 1.03
+	 */
+	public void loadState(Snapshot s) throws SIMException
+	{
+		super.loadState(s);
+		A1 = s.getInt();
+		F1 = s.getInt();
+		BC1 = s.getInt();
+		DE1 = s.getInt();
+		HL1 = s.getInt();
+		R = s.getInt();
+		interruptMode = s.getInt();
+	}
+
 	/**
 	 * Return the value of the I register.
 	 *
@@ -174,7 +209,7 @@ public class Z80 extends jmce.intel.i8080.I8080
 	{
 		boolean  c = (value & 0x01) != 0;
 		value = (value >>> 1);
-		F = booleanTable[value];
+		f(booleanTable[value]);
 		FLAG_C(c);
 
 		return value;
@@ -184,7 +219,7 @@ public class Z80 extends jmce.intel.i8080.I8080
 	{
 		boolean  c = (value & 0x80) != 0;
 		value = ((value << 1) | 1) & 0xff;
-		F = booleanTable[value];
+		f(booleanTable[value]);
 		FLAG_C(c);
 
 		return value;
@@ -194,7 +229,7 @@ public class Z80 extends jmce.intel.i8080.I8080
 	{
 		boolean  c = (value & 0x01) != 0;
 		value = ((value >>> 1)| ( value & 0x80)) & 0xff;
-		F = booleanTable[value];
+		f(booleanTable[value]);
 		FLAG_C(c);
 
 		return value;
@@ -205,7 +240,7 @@ public class Z80 extends jmce.intel.i8080.I8080
 	{
 		boolean  c = (value & 0x80) != 0;
 		value = (value << 1) & 0xff;
-		F = booleanTable[value];
+		f(booleanTable[value]);
 		FLAG_C(c);
 		
 		return value;
@@ -263,7 +298,7 @@ public class Z80 extends jmce.intel.i8080.I8080
 		
 		A = -A & 0xff;
 		
-		F = 0;
+		f(0);
 		FLAG_S((A & 0x80) != 0);
 		FLAG_5((A & 0x20) != 0);
 		FLAG_3((A & 0x08) != 0);
@@ -318,7 +353,7 @@ public class Z80 extends jmce.intel.i8080.I8080
 	{
 		int v;
 		
-		v = F;F = F1;F1 = v;
+		v = f();f(F1);F1 = v;
 		v = A;A = A1;A1 = v;
 		
 	}
@@ -390,7 +425,7 @@ public class Z80 extends jmce.intel.i8080.I8080
 	 */
 	public final void cpSpecial(int v)
 	{
-		int savedF = F;
+		int savedF = f();
 		cp(v);
 
 		/** Restore CY and PV */
@@ -591,7 +626,7 @@ public class Z80 extends jmce.intel.i8080.I8080
 			public int exec(int pc) throws SIMException
 			{
 				A = I;
-				F = booleanTable[A];
+				f(booleanTable[A]);
 				FLAG_V(iff2);
 				return 9;
 			}
@@ -613,7 +648,7 @@ public class Z80 extends jmce.intel.i8080.I8080
 			public int exec(int pc) throws SIMException
 			{
 				A = R;
-				F = booleanTable[A];
+				f(booleanTable[A]);
 				FLAG_V(iff2);
 				return 9;
 			}
@@ -2353,6 +2388,868 @@ public class Z80 extends jmce.intel.i8080.I8080
 		initOpcodes_DD();
 		
 	}
+
+	/**
+	 * Switch core for the Z80 opcodes, the 8080 opcodes are
+	 * executed by the I8080 switch core.
+	 *
+	 * @since 1.03
+	 */
+	protected int execSwitch(int pc) throws SIMException
+	{
+		int v;
+		
+		switch (getByte(pc))
+		{
+			// EX AF,AF'
+			case	0x08:
+				PC = pc + 1;
+				ex_af_af1();
+				return 4;
+
+			// DJNZ
+			case	0x10:
+				PC = pc + 2;
+				v = ((BC >>> 8) - 1) & 0xff;
+				BC = (BC & 0xff) | (v << 8);
+				if (v != 0)
+				{
+					PC = addOffset(PC,getByte(pc+1));
+					return 13;
+				}
+				return 8;
+
+			// JR
+			case	0x18:
+				PC = pc + 2;
+				PC = addOffset(PC,getByte(pc+1));
+				return 12;
+
+			// JR NZ
+			case	0x20:
+				PC = pc + 2;
+				if (FLAG_Z())
+					return 7;
+				PC = addOffset(PC,getByte(pc+1));
+				return 12;
+
+			// JR Z
+			case	0x28:
+				PC = pc + 2;
+				if (!FLAG_Z())
+					return 7;
+				PC = addOffset(PC,getByte(pc+1));
+				return 12;
+
+			// JR NC
+			case	0x30:
+				PC = pc + 2;
+				if (FLAG_C())
+					return 7;
+				PC = addOffset(PC,getByte(pc+1));
+				return 12;
+
+			// JR C
+			case	0x38:
+				PC = pc + 2;
+				if (!FLAG_C())
+					return 7;
+				PC = addOffset(PC,getByte(pc+1));
+				return 12;
+
+			// EXX
+			case	0xD9:
+				PC = pc + 1;
+				exx();
+				return 4;
+
+			case	0xCB:
+				return execSwitchCB(pc);
+
+			case	0xED:
+				return execSwitchED(pc);
+
+			case	0xDD:
+				xy = IX;
+				v = execSwitchXY(pc);
+				if (v < 0)
+					return execOpcode(pc);
+				IX = xy;
+				return v;
+
+			case	0xFD:
+				xy = IY;
+				v = execSwitchXY(pc);
+				if (v < 0)
+					return execOpcode(pc);
+				IY = xy;
+				return v;
+
+			default:
+				return super.execSwitch(pc);
+		}
+	}
+
+	/**
+	 * Switch core for the CBxx opcodes.
+	 */
+	private final int execSwitchCB(int pc) throws SIMException
+	{
+		int op = getByte(pc+1);
+		int hl = (op & 0x07) == 6 ? 1 : 0;
+		int bit = (op >> 3) & 0x07;
+
+		PC = pc + 2;
+		
+		switch (op >> 6)
+		{
+			case	0:
+				int v = getValueRRR(op);
+				
+				switch (bit)
+				{
+					case	0:
+						setValueRRR(op,rlc(v));
+						return 2 + hl * 2;
+					case	1:
+						setValueRRR(op,rrc(v));
+						return 8;
+					case	2:
+						setValueRRR(op,rl(v));
+						return 8;
+					case	3:
+						setValueRRR(op,rr(v));
+						return 2 + hl * 2;
+					case	4:
+						setValueRRR(op,sla(v));
+						return 8;
+					case	5:
+						setValueRRR(op,sra(v));
+						return 8;
+					case	6:
+						setValueRRR(op,sll(v));
+						return 8;
+					default:
+						setValueRRR(op,srl(v));
+						return 2 + hl * 2;
+				}
+
+			// BIT b,r
+			case	1:
+				bit(getValueRRR(op),bit);
+				return 8 + hl * 4;
+
+			// RES b,r
+			case	2:
+				setValueRRR(op,res(getValueRRR(op),bit));
+				return 8 + hl * 7;
+
+			// SET b,r
+			default:
+				setValueRRR(op,set(getValueRRR(op),bit));
+				return 8 + hl * 7;
+		}
+	}
+
+	/**
+	 * Switch core for the EDxx opcodes.
+	 */
+	private final int execSwitchED(int pc) throws SIMException
+	{
+		int op = getByte(pc+1);
+		int v;
+
+		switch (op)
+		{
+			// IN r,(C)
+			case	0x40:
+			case	0x48:
+			case	0x50:
+			case	0x58:
+			case	0x60:
+			case	0x68:
+			case	0x78:
+				PC = pc + 2;
+				v = in(BC & 0xff,BC >> 8);
+				FLAG_S((v & 0x80) != 0);
+				FLAG_Z(v == 0);
+				FLAG_H(false);
+				FLAG_V(parityTable[v]);
+				FLAG_N(false);
+				setValueRRR(op >> 3,v);
+				return 9;
+
+			// OUT (C),r
+			case	0x41:
+			case	0x49:
+			case	0x51:
+			case	0x59:
+			case	0x61:
+			case	0x69:
+			case	0x79:
+				PC = pc + 2;
+				out(BC & 0xff,BC >> 8,getValueRRR(op >> 3));
+				return 9;
+
+			// SBC HL,pp
+			case	0x42:
+			case	0x52:
+			case	0x62:
+			case	0x72:
+				PC = pc + 2;
+				HL = sbc16(HL,getValuePP(op),carry());
+				return 11;
+
+			// LD (word),pp
+			case	0x43:
+			case	0x53:
+			case	0x63:
+			case	0x73:
+				PC = pc + 4;
+				setWord(getWord(pc+2),getValuePP(op));
+				return 20;
+
+			// NEG
+			case	0x44:
+			case	0x4C:
+			case	0x54:
+			case	0x5C:
+			case	0x64:
+			case	0x6C:
+			case	0x74:
+			case	0x7C:
+				PC = pc + 2;
+				neg();
+				return 8;
+
+			// RETN
+			case	0x45:
+				PC = pop();
+				iff1 = iff2;
+				return 14;
+
+			// IM 0
+			case	0x46:
+				PC = pc + 2;
+				im(0);
+				return 8;
+
+			// LD I,A
+			case	0x47:
+				PC = pc + 2;
+				I = A;
+				return 9;
+
+			// ADC HL,pp
+			case	0x4A:
+			case	0x5A:
+			case	0x6A:
+			case	0x7A:
+				PC = pc + 2;
+				HL = adc16(HL,getValuePP(op),carry());
+				return 15;
+
+			// LD pp,(word)
+			case	0x4B:
+			case	0x5B:
+			case	0x6B:
+			case	0x7B:
+				PC = pc + 4;
+				setValuePP(op,getWord(getWord(pc+2)));
+				return 20;
+
+			// RETI
+			case	0x4D:
+				PC = pop();
+				return 20;
+
+			// LD R,A
+			case	0x4F:
+				PC = pc + 2;
+				R = (int)((getCycle() & 0xff));
+				return 9;
+
+			// IM 1
+			case	0x56:
+				PC = pc + 2;
+				im(1);
+				return 8;
+
+			// LD A,I
+			case	0x57:
+				PC = pc + 2;
+				A = I;
+				f(booleanTable[A]);
+				FLAG_V(iff2);
+				return 9;
+
+			// IM 2
+			case	0x5E:
+				PC = pc + 2;
+				im(2);
+				return 8;
+
+			// LD A,R
+			case	0x5F:
+				PC = pc + 2;
+				A = R;
+				f(booleanTable[A]);
+				FLAG_V(iff2);
+				return 9;
+
+			// RRD
+			case	0x67:
+				PC = pc + 2;
+				rrd();
+				return 18;
+
+			// RLD
+			case	0x6F:
+				PC = pc + 2;
+				rld();
+				return 18;
+
+			// LDI
+			case	0xA0:
+				PC = pc + 2;
+				ldi();
+				return 16;
+
+			// CPI
+			case	0xA1:
+				PC = pc + 2;
+				cpi();
+				return 16;
+
+			// INI
+			case	0xA2:
+				PC = pc + 2;
+				ini();
+				return 16;
+
+			// OUTI
+			case	0xA3:
+				PC = pc + 2;
+				outi();
+				return 16;
+
+			// LDD
+			case	0xA8:
+				PC = pc + 2;
+				ldd();
+				return 16;
+
+			// CPD
+			case	0xA9:
+				PC = pc + 2;
+				cpd();
+				return 16;
+
+			// IND
+			case	0xAA:
+				PC = pc + 2;
+				ind();
+				return 16;
+
+			// OUTD
+			case	0xAB:
+				PC = pc + 2;
+				outd();
+				return 16;
+
+			// LDIR
+			case	0xB0:
+				PC = pc + 2;
+				ldi();
+				if (BC != 0)
+				{
+					PC = pc;
+					return 21;
+				}
+				return 16;
+
+			// CPIR
+			case	0xB1:
+				PC = pc + 2;
+				cpi();
+				if (BC != 0 && !FLAG_Z())
+				{
+					PC = pc;
+					return 21;
+				}
+				return 16;
+
+			// INIR
+			case	0xB2:
+				PC = pc + 2;
+				ini();
+				if ((BC >>> 8) != 0)
+					PC = pc;
+				return 16;
+
+			// OTIR
+			case	0xB3:
+				PC = pc + 2;
+				outi();
+				if ((BC >>> 8) != 0)
+					PC = pc;
+				return 16;
+
+			// LDDR
+			case	0xB8:
+				PC = pc + 2;
+				ldd();
+				if (BC != 0)
+				{
+					PC = pc;
+					return 21;
+				}
+				return 16;
+
+			// CPDR
+			case	0xB9:
+				PC = pc + 2;
+				cpd();
+				if (BC != 0 && !FLAG_Z())
+				{
+					PC = pc;
+					return 21;
+				}
+				return 16;
+
+			// INDR
+			case	0xBA:
+				PC = pc + 2;
+				ind();
+				if ((BC >>> 8) != 0)
+					PC = pc;
+				return 16;
+
+			// OTDR
+			case	0xBB:
+				PC = pc + 2;
+				outd();
+				if ((BC >>> 8) != 0)
+					PC = pc;
+				return 16;
+
+			default:
+				return execOpcode(pc);
+		}
+	}
+
+	/**
+	 * Switch core for the DDxx and FDxx opcodes, the index
+	 * register is in xy.
+	 *
+	 * @return the number of cycle or -1 if the opcode is not
+	 * implemented.
+	 */
+	private final int execSwitchXY(int pc) throws SIMException
+	{
+		int op = getByte(pc+1);
+		int v;
+
+		switch (op)
+		{
+			// Skip the prefix
+			case	0x40:
+			case	0x41:
+			case	0x42:
+			case	0x43:
+			case	0x47:
+			case	0x48:
+			case	0x49:
+			case	0x4A:
+			case	0x4B:
+			case	0x4F:
+			case	0x50:
+			case	0x51:
+			case	0x52:
+			case	0x53:
+			case	0x57:
+			case	0x58:
+			case	0x59:
+			case	0x5A:
+			case	0x5B:
+			case	0x5F:
+			case	0x78:
+			case	0x79:
+			case	0x7A:
+			case	0x7B:
+			case	0x7F:
+			case	0x80:
+			case	0x81:
+			case	0x82:
+			case	0x83:
+				PC = pc + 1;
+				return 0;
+
+			// ADD XY,pp
+			case	0x09:
+			case	0x19:
+			case	0x39:
+				PC = pc + 2;
+				xy = add16(xy,getValuePP(op));
+				return 20;
+
+			// ADD XY,XY
+			case	0x29:
+				PC = pc + 2;
+				xy = add16(xy,xy);
+				return 20;
+
+			// LD XY,word
+			case	0x21:
+				PC = pc + 4;
+				xy = getWord(pc+2);
+				return 14;
+
+			// LD (word),XY
+			case	0x22:
+				PC = pc + 4;
+				setWord(getWord(pc+2),xy);
+				return 22;
+
+			// INC XY
+			case	0x23:
+				PC = pc + 2;
+				xy = (xy + 1) & 0xffff;
+				return 10;
+
+			// INC XYH
+			case	0x24:
+				PC = pc + 2;
+				xy = (inc(xy >> 8) << 8) | (xy & 0xff);
+				return 10;
+
+			// DEC XYH
+			case	0x25:
+				PC = pc + 2;
+				xy = (dec(xy >> 8) << 8) | (xy & 0xff);
+				return 10;
+
+			// LD XYH,byte
+			case	0x26:
+				PC = pc + 3;
+				xy = (getByte(pc+2) << 8) | (xy & 0xff);
+				return 10;
+
+			// LD XY,(word)
+			case	0x2A:
+				PC = pc + 4;
+				xy = getWord(getWord(pc+2));
+				return 20;
+
+			// DEC XY
+			case	0x2B:
+				PC = pc + 2;
+				xy = (xy - 1) & 0xffff;
+				return 10;
+
+			// INC XYL
+			case	0x2C:
+				PC = pc + 2;
+				xy = inc(xy & 0xff) | (xy & 0xff00);
+				return 10;
+
+			// DEC XYL
+			case	0x2D:
+				PC = pc + 2;
+				xy = dec(xy & 0xff) | (xy & 0xff00);
+				return 10;
+
+			// LD XYL,byte
+			case	0x2E:
+				PC = pc + 3;
+				xy = getByte(pc+2) | (xy & 0xff00);
+				return 10;
+
+			// INC (XY+d)
+			case	0x34:
+				PC = pc + 3;
+				v = addOffset(xy,getByte(pc+2));
+				setByte(v,inc(getByte(v)));
+				return 23;
+
+			// DEC (XY+d)
+			case	0x35:
+				PC = pc + 3;
+				v = addOffset(xy,getByte(pc+2));
+				setByte(v,dec(getByte(v)));
+				return 23;
+
+			// LD (XY+d),byte
+			case	0x36:
+				PC = pc + 4;
+				setByte(addOffset(xy,getByte(pc+2)),getByte(pc+3));
+				return 19;
+
+			// LD r,XYH
+			case	0x44:
+			case	0x4C:
+			case	0x54:
+			case	0x5C:
+			case	0x7C:
+				PC = pc + 2;
+				setValueRRR(op >> 3,xy >> 8);
+				return 10;
+
+			// LD r,XYL
+			case	0x45:
+			case	0x4D:
+			case	0x55:
+			case	0x5D:
+			case	0x7D:
+				PC = pc + 2;
+				setValueRRR(op >> 3,xy & 0xff);
+				return 10;
+
+			// LD r,(XY+d)
+			case	0x46:
+			case	0x4E:
+			case	0x56:
+			case	0x5E:
+			case	0x66:
+			case	0x6E:
+			case	0x7E:
+				PC = pc + 3;
+				setValueRRR(op >> 3,getByte(addOffset(xy,getByte(pc+2))));
+				return 19;
+
+			// LD XYH,r
+			case	0x60:
+			case	0x61:
+			case	0x62:
+			case	0x63:
+			case	0x67:
+				PC = pc + 2;
+				xy = (xy & 0x00ff) | (getValueRRR(op) << 8);
+				return 10;
+
+			// LD XYH,XYH and LD XYL,XYL
+			case	0x64:
+			case	0x6D:
+				PC = pc + 2;
+				return 10;
+
+			// LD XYH,XYL
+			case	0x65:
+				PC = pc + 2;
+				xy = (xy & 0xff) | ((xy & 0xff) << 8);
+				return 10;
+
+			// LD XYL,r
+			case	0x68:
+			case	0x69:
+			case	0x6A:
+			case	0x6B:
+			case	0x6F:
+				PC = pc + 2;
+				xy = (xy & 0xff00) | (getValueRRR(op) & 0xff);
+				return 10;
+
+			// LD XYL,XYH
+			case	0x6C:
+				PC = pc + 2;
+				xy = (xy & 0xff00) | (xy >>> 8);
+				return 10;
+
+			// LD (XY+d),r
+			case	0x70:
+			case	0x71:
+			case	0x72:
+			case	0x73:
+			case	0x74:
+			case	0x75:
+			case	0x77:
+				PC = pc + 3;
+				setByte(addOffset(xy,getByte(pc+2)),getValueRRR(op));
+				return 19;
+
+			// ALU A,XYH
+			case	0x84:
+			case	0x8C:
+			case	0x94:
+			case	0x9C:
+			case	0xA4:
+			case	0xAC:
+			case	0xB4:
+			case	0xBC:
+				PC = pc + 2;
+				alu(op,xy >> 8);
+				return 10;
+
+			// ALU A,XYL
+			case	0x85:
+			case	0x8D:
+			case	0x95:
+			case	0x9D:
+			case	0xA5:
+			case	0xAD:
+			case	0xB5:
+			case	0xBD:
+				PC = pc + 2;
+				alu(op,xy & 0xff);
+				return 10;
+
+			// ALU A,(XY+d)
+			case	0x86:
+			case	0x8E:
+			case	0x96:
+			case	0x9E:
+			case	0xA6:
+			case	0xAE:
+			case	0xB6:
+			case	0xBE:
+				PC = pc + 3;
+				alu(op,getByte(addOffset(xy,getByte(pc+2))));
+				return 10;
+
+			// XXX (XY+d)
+			case	0xCB:
+				return execSwitchXYCB(pc);
+
+			// POP XY
+			case	0xE1:
+				PC = pc + 2;
+				xy = pop();
+				return 10;
+
+			// EX (SP),XY
+			case	0xE3:
+				PC = pc + 2;
+				v = getByte(SP);
+				setByte(SP,xy & 0xFF);
+				xy = (xy & 0xff00) | v;
+				v = getByte(SP+1);
+				setByte(SP+1,xy >>> 8);
+				xy = (xy & 0x00ff) | (v << 8);
+				return 20;
+
+			// PUSH XY
+			case	0xE5:
+				PC = pc + 2;
+				push(xy);
+				return 10;
+
+			// JP XY
+			case	0xE9:
+				PC = xy;
+				return 8;
+
+			// LD SP,XY
+			case	0xF9:
+				PC = pc + 2;
+				SP = xy;
+				return 8;
+
+			default:
+				return -1;
+		}
+	}
+
+	/**
+	 * Switch core for the DDCBddxx and FDCBddxx opcodes.
+	 */
+	private final int execSwitchXYCB(int pc) throws SIMException
+	{
+		int a = addOffset(xy,getByte(pc+2));
+		int op = getByte(pc+3);
+		int bit = (op >> 3) & 0x07;
+		int v = getByte(a);
+
+		PC = pc + 4;
+
+		switch (op >> 6)
+		{
+			case	0:
+				switch (bit)
+				{
+					case	0:
+						v = rlc(v);
+						break;
+					case	1:
+						v = rrc(v);
+						break;
+					case	2:
+						v = rl(v);
+						break;
+					case	3:
+						v = rr(v);
+						break;
+					case	4:
+						v = sla(v);
+						break;
+					case	5:
+						v = sra(v);
+						break;
+					case	6:
+						v = sll(v);
+						break;
+					default:
+						v = srl(v);
+						break;
+				}
+				break;
+
+			// BIT b,(XY+d)
+			case	1:
+				bit(v,bit);
+				return 10;
+
+			// RES b,(XY+d)
+			case	2:
+				v = res(v,bit);
+				break;
+
+			// SET b,(XY+d)
+			default:
+				v = set(v,bit);
+				break;
+		}
+
+		if ((op & 0x07) != 6)
+			setValueRRR(op,v);
+		setByte(a,v);
+
+		return 10;
+	}
+
+	/**
+	 * Exec the ALU operation of the opcode with the accumulator
+	 * and the value.
+	 */
+	private final void alu(int op,int v)
+	{
+		switch ((op >> 3) & 0x07)
+		{
+			case	0:
+				add8(v);
+				break;
+			case	1:
+				adc8(v,carry());
+				break;
+			case	2:
+				sub8(v);
+				break;
+			case	3:
+				sbc8(v,carry());
+				break;
+			case	4:
+				and(v);
+				break;
+			case	5:
+				xor(v);
+				break;
+			case	6:
+				or(v);
+				break;
+			default:
+				cp(v);
+				break;
+		}
+	}
 	
 }
 
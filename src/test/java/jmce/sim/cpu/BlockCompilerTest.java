@@ -0,0 +1,237 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.sim.cpu;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import jmce.sim.*;
+
+/**
+ * Run the compiled blocks in lockstep with the interpreter.
+ * <p>
+ * After every block the interpreter execute the same number of
+ * cycles and the registers must be the same, at the end also the
+ * memory and the sequence of I/O with the cycle of every access
+ * must be the same.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ * @since 1.03
+ */
+public class BlockCompilerTest
+{
+	/** Max number of steps for one program */
+	static private final int MAX_STEPS = 2000000;
+
+	/**
+	 * ALU, DAA, rotate and memory in one loop executed 2048 times.
+	 */
+	static private final int ALU[] =
+	{
+		0x31,0x00,0xF0,		// 0100 LXI  SP,F000
+		0x21,0x00,0x20,		// 0103 LXI  H,2000
+		0x06,0x00,		// 0106 MVI  B,0
+		0x16,0x08,		// 0108 MVI  D,8
+		0x0E,0x00,		// 010A MVI  C,0
+		0x7E,			// 010C MOV  A,M
+		0x88,			// 010D ADC  B
+		0x27,			// 010E DAA
+		0xA9,			// 010F XRA  C
+		0x07,			// 0110 RLC
+		0x96,			// 0111 SUB  M
+		0x77,			// 0112 MOV  M,A
+		0x23,			// 0113 INX  H
+		0x04,			// 0114 INR  B
+		0x3F,			// 0115 CMC
+		0x0D,			// 0116 DCR  C
+		0xC2,0x0C,0x01,		// 0117 JNZ  010C
+		0x15,			// 011A DCR  D
+		0xC2,0x0A,0x01,		// 011B JNZ  010A
+		0xC3,0x1E,0x01		// 011E JMP  011E
+	};
+
+	/**
+	 * Loop that change one opcode of the inner loop (INR A / DCR A)
+	 * at every iteration of the outer loop.
+	 */
+	static private final int SMC[] =
+	{
+		0x21,0x00,0x20,		// 0100 LXI  H,2000
+		0x0E,0x00,		// 0103 MVI  C,0
+		0x06,0x00,		// 0105 MVI  B,0
+		0x7E,			// 0107 MOV  A,M
+		0x80,			// 0108 ADD  B
+		0x77,			// 0109 MOV  M,A
+		0x3C,			// 010A INR  A
+		0x32,0x00,0x21,		// 010B STA  2100
+		0x05,			// 010E DCR  B
+		0xC2,0x07,0x01,		// 010F JNZ  0107
+		0x3A,0x0A,0x01,		// 0112 LDA  010A
+		0xEE,0x01,		// 0115 XRI  1
+		0x32,0x0A,0x01,		// 0117 STA  010A
+		0x0D,			// 011A DCR  C
+		0xC2,0x05,0x01,		// 011B JNZ  0105
+		0xC3,0x1E,0x01		// 011E JMP  011E
+	};
+
+	/**
+	 * Loop with one CALL and I/O, the blocks end at the CALL, at the
+	 * RET and before the IN/OUT.
+	 */
+	static private final int CALLIO[] =
+	{
+		0x31,0x00,0xF0,		// 0100 LXI  SP,F000
+		0x16,0x04,		// 0103 MVI  D,4
+		0x0E,0x00,		// 0105 MVI  C,0
+		0x79,			// 0107 MOV  A,C
+		0xCD,0x20,0x01,		// 0108 CALL 0120
+		0xD3,0x10,		// 010B OUT  10
+		0xDB,0x11,		// 010D IN   11
+		0x81,			// 010F ADD  C
+		0x32,0x00,0x30,		// 0110 STA  3000
+		0x0D,			// 0113 DCR  C
+		0xC2,0x07,0x01,		// 0114 JNZ  0107
+		0x15,			// 0117 DCR  D
+		0xC2,0x05,0x01,		// 0118 JNZ  0105
+		0xC3,0x1B,0x01,		// 011B JMP  011B
+		0x00,0x00,0x00,0x00,	// 011E
+		0x3C,			// 0120 INR  A
+		0x87,			// 0121 ADD  A
+		0x47,			// 0122 MOV  B,A
+		0x0F,			// 0123 RRC
+		0xC9			// 0124 RET
+	};
+
+	/**
+	 * Record the I/O write and return the low byte of the cycle
+	 * on I/O read so the timing inside the blocks is checked.
+	 */
+	static private class IO implements MemoryWriteListener,MemoryReadListener
+	{
+		private CPU cpu;
+		List<String> trace = new ArrayList<String>();
+
+		IO(CPU cpu)
+		{
+			this.cpu = cpu;
+			cpu.addIOWriteListener(this);
+			cpu.addIOReadListener(this);
+		}
+
+		public void writeMemory(Memory m,int a,int v,int oldValue)
+		{
+			trace.add("OUT "+a+","+v+" at "+cpu.getCycle());
+		}
+
+		public int readMemory(Memory m,int a,int v)
+		{
+			trace.add("IN "+a+" at "+cpu.getCycle());
+
+			return (int)(cpu.getCycle() & 0xff);
+		}
+	}
+
+	private void run(Class<? extends AbstractCPU> c,int program[],int end) throws Exception
+	{
+		AbstractCPU ref = CpuTest.create(c);
+		AbstractCPU jit = CpuTest.create(c);
+
+		jit.setCompiler(true);
+
+		for (AbstractCPU cpu : new AbstractCPU[]{ref,jit})
+		{
+			CpuTest.fill(cpu,new Random(1),0x2000,0x1000);
+			CpuTest.load(cpu,0x100,program);
+			cpu.pc(0x100);
+		}
+
+		IO refIO = new IO(ref);
+		IO jitIO = new IO(jit);
+		int steps = 0;
+
+		while (jit.pc() != end)
+		{
+			assertTrue("Program not terminated",++steps < MAX_STEPS);
+			jit.stepBlock();
+
+			while (ref.getCycle() < jit.getCycle())
+				ref.step0();
+
+			assertEquals("Cycle",ref.getCycle(),jit.getCycle());
+			assertEquals("Registers at cycle "+ref.getCycle(),CpuTest.registers(ref),CpuTest.registers(jit));
+		}
+
+		assertEquals(ref.getInstructions(),jit.getInstructions());
+		assertTrue("No block executed",jit.getInstructions() > steps);
+		assertEquals(CpuTest.memory(ref,0x100,0x40),CpuTest.memory(jit,0x100,0x40));
+		assertEquals(CpuTest.memory(ref,0x2000,0x1100),CpuTest.memory(jit,0x2000,0x1100));
+		assertEquals(CpuTest.memory(ref,0xEF00,0x100),CpuTest.memory(jit,0xEF00,0x100));
+		assertEquals(refIO.trace,jitIO.trace);
+	}
+
+	@Test
+	public void alu8080() throws Exception
+	{
+		run(jmce.intel.i8080.I8080.class,ALU,0x11E);
+	}
+
+	@Test
+	public void aluZ80() throws Exception
+	{
+		run(jmce.zilog.z80.Z80.class,ALU,0x11E);
+	}
+
+	@Test
+	public void selfModifying8080() throws Exception
+	{
+		run(jmce.intel.i8080.I8080.class,SMC,0x11E);
+	}
+
+	@Test
+	public void selfModifyingZ80() throws Exception
+	{
+		run(jmce.zilog.z80.Z80.class,SMC,0x11E);
+	}
+
+	@Test
+	public void callIO8080() throws Exception
+	{
+		run(jmce.intel.i8080.I8080.class,CALLIO,0x11B);
+	}
+
+	@Test
+	public void callIOZ80() throws Exception
+	{
+		run(jmce.zilog.z80.Z80.class,CALLIO,0x11B);
+	}
+}
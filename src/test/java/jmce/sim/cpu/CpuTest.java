@@ -0,0 +1,105 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.sim.cpu;
+
+import java.util.Random;
+
+import jmce.sim.*;
+
+/**
+ * Helper used by the tests to set up and compare cpu.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ * @since 1.03
+ */
+final class CpuTest
+{
+	private CpuTest()
+	{
+	}
+
+	/**
+	 * Create, init and reset one cpu.
+	 */
+	static AbstractCPU create(Class<? extends AbstractCPU> c) throws Exception
+	{
+		AbstractCPU cpu = c.getDeclaredConstructor().newInstance();
+
+		cpu.init(null);
+		cpu.reset();
+
+		return cpu;
+	}
+
+	/**
+	 * Store the bytes in memory starting at the specified address.
+	 */
+	static void load(CPU cpu,int a,int ... bytes) throws SIMException
+	{
+		for (int i = 0 ; i < bytes.length ; i++)
+			cpu.setByte(a + i,bytes[i]);
+	}
+
+	/**
+	 * Fill the memory range with random values.
+	 */
+	static void fill(CPU cpu,Random r,int a,int len) throws SIMException
+	{
+		for (int i = 0 ; i < len ; i++)
+			cpu.setByte(a + i,r.nextInt(256));
+	}
+
+	/**
+	 * Return all the registers of the cpu as one string.
+	 */
+	static String registers(CPU cpu) throws SIMException
+	{
+		StringBuilder sb = new StringBuilder();
+
+		for (int i = 0 ; i < cpu.getRegisterCount() ; i++)
+		{
+			Register r = cpu.getRegisterAt(i);
+			sb.append(r.getName()).append('=').append(Integer.toHexString(r.getRegister())).append(' ');
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Return the memory range as one string.
+	 */
+	static String memory(CPU cpu,int a,int len) throws SIMException
+	{
+		StringBuilder sb = new StringBuilder();
+
+		for (int i = 0 ; i < len ; i++)
+			sb.append(Integer.toHexString(cpu.getByte(a + i))).append(' ');
+
+		return sb.toString();
+	}
+}
@@ -0,0 +1,413 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.sim.cpu;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import jmce.intel.i8080.I8080;
+import jmce.intel.i8080.I8080Constants;
+import jmce.zilog.z80.Z80;
+
+/**
+ * Compare the lazy flags of the I8080 and Z80 with an eager
+ * reference.
+ * <p>
+ * Every ALU, rotate, BIT and DAA instruction is executed for all
+ * the values of the accumulator and of the operand and F is
+ * compared with the value calculated by the reference after each
+ * instruction. Random sequences, with F read only at the end,
+ * check the flags left pending from one instruction to the next.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ * @since 1.03
+ */
+public class LazyFlagsTest implements I8080Constants
+{
+	/** Address of the instruction under test */
+	static private final int ORG = 0x100;
+
+	/** ADD, ADC, SUB, SBC, AND, XOR, OR, CP with register B */
+	static private final int ALU[] = {0x80,0x88,0x90,0x98,0xa0,0xa8,0xb0,0xb8};
+
+	/** INC B, DEC B */
+	static private final int INCDEC[] = {0x04,0x05};
+
+	/** RLCA, RRCA, RLA, RRA, DAA */
+	static private final int ACC[] = {0x07,0x0f,0x17,0x1f,0x27};
+
+	/** Z80 RLC, RRC, RL, RR, SLA, SRA, SLL, SRL and BIT 0-7 with register B */
+	static private final int CB[] = {0x00,0x08,0x10,0x18,0x20,0x28,0x30,0x38,
+		0x40,0x48,0x50,0x58,0x60,0x68,0x70,0x78};
+
+	/** Number of random sequences */
+	static private final int SEQUENCES = 20000;
+
+	/** Number of instructions in one sequence */
+	static private final int LENGTH = 16;
+
+	/**
+	 * Execute the instruction at ORG with the specified A, B and F
+	 * and compare the result with the reference.
+	 */
+	private void single(I8080 cpu,int op,int cb,int a,int b,int f) throws Exception
+	{
+		int s[] = {a,b,f};
+
+		cpu.A = a;
+		cpu.BC = b << 8;
+		cpu.f(f);
+		cpu.PC = ORG;
+		cpu.step0();
+		eager(op,cb,s);
+
+		if (cpu.f() != s[2] || cpu.A != s[0] || cpu.BC >> 8 != s[1])
+			fail(cpu.getName()+" "+Integer.toHexString(op)+" "+Integer.toHexString(cb)+
+			     " A="+Integer.toHexString(a)+" B="+Integer.toHexString(b)+" F="+Integer.toHexString(f)+
+			     " expected A="+Integer.toHexString(s[0])+" B="+Integer.toHexString(s[1])+" F="+Integer.toHexString(s[2])+
+			     " found A="+Integer.toHexString(cpu.A)+" B="+Integer.toHexString(cpu.BC >> 8)+" F="+Integer.toHexString(cpu.f()));
+	}
+
+	/**
+	 * Run all the instructions for every value of A, B and the flags
+	 * used by the instruction.
+	 */
+	private void exhaustive(Class<? extends I8080> c,boolean z80) throws Exception
+	{
+		I8080 cpu = (I8080)CpuTest.create(c);
+		Random r = new Random(8080);
+
+		for (int op : ALU)
+		{
+			CpuTest.load(cpu,ORG,op);
+			for (int a = 0 ; a < 256 ; a++)
+				for (int b = 0 ; b < 256 ; b++)
+					for (int carry = 0 ; carry < 2 ; carry++)
+						single(cpu,op,0,a,b,(r.nextInt(256) & ~FLAG_C) | carry);
+		}
+
+		for (int op : INCDEC)
+		{
+			CpuTest.load(cpu,ORG,op);
+			for (int b = 0 ; b < 256 ; b++)
+				for (int f = 0 ; f < 256 ; f++)
+					single(cpu,op,0,r.nextInt(256),b,f);
+		}
+
+		for (int op : ACC)
+		{
+			CpuTest.load(cpu,ORG,op);
+			for (int a = 0 ; a < 256 ; a++)
+				for (int f = 0 ; f < 256 ; f++)
+					single(cpu,op,0,a,r.nextInt(256),f);
+		}
+
+		if (!z80)
+			return;
+
+		for (int cb : CB)
+		{
+			CpuTest.load(cpu,ORG,0xcb,cb);
+			for (int b = 0 ; b < 256 ; b++)
+				for (int f = 0 ; f < 256 ; f++)
+					single(cpu,0xcb,cb,r.nextInt(256),b,f);
+		}
+	}
+
+	/**
+	 * Execute random sequences of instructions, F is read only after
+	 * the last one so every instruction start with the flags of the
+	 * previous one still pending.
+	 */
+	private void sequences(Class<? extends I8080> c,boolean z80) throws Exception
+	{
+		I8080 cpu = (I8080)CpuTest.create(c);
+		Random r = new Random(80);
+		int ops[] = new int[LENGTH];
+		int cbs[] = new int[LENGTH];
+
+		for (int n = 0 ; n < SEQUENCES ; n++)
+		{
+			int a = ORG;
+			StringBuilder sb = new StringBuilder();
+
+			for (int i = 0 ; i < LENGTH ; i++)
+			{
+				int k = r.nextInt(ALU.length + INCDEC.length + ACC.length + (z80 ? CB.length : 0));
+
+				cbs[i] = 0;
+				if (k < ALU.length)
+					ops[i] = ALU[k];
+				else if ((k -= ALU.length) < INCDEC.length)
+					ops[i] = INCDEC[k];
+				else if ((k -= INCDEC.length) < ACC.length)
+					ops[i] = ACC[k];
+				else
+				{
+					ops[i] = 0xcb;
+					cbs[i] = CB[k - ACC.length];
+				}
+
+				cpu.setByte(a++,ops[i]);
+				sb.append(Integer.toHexString(ops[i])).append(' ');
+				if (ops[i] == 0xcb)
+				{
+					cpu.setByte(a++,cbs[i]);
+					sb.append(Integer.toHexString(cbs[i])).append(' ');
+				}
+			}
+
+			int s[] = {r.nextInt(256),r.nextInt(256),r.nextInt(256)};
+			String start = "A="+Integer.toHexString(s[0])+" B="+Integer.toHexString(s[1])+" F="+Integer.toHexString(s[2]);
+
+			cpu.A = s[0];
+			cpu.BC = s[1] << 8;
+			cpu.f(s[2]);
+			cpu.PC = ORG;
+
+			for (int i = 0 ; i < LENGTH ; i++)
+			{
+				cpu.step0();
+				eager(ops[i],cbs[i],s);
+			}
+
+			assertEquals(sb+start+" A",s[0],cpu.A);
+			assertEquals(sb+start+" B",s[1],cpu.BC >> 8);
+			assertEquals(sb+start+" F",s[2],cpu.f());
+		}
+	}
+
+	/**
+	 * Eager reference, execute one instruction on the state
+	 * {A,B,F} calculating all the flags.
+	 */
+	static private void eager(int op,int cb,int s[])
+	{
+		int a = s[0],b = s[1],f = s[2];
+
+		switch (op)
+		{
+			case	0x80:
+				add(s,b,0);
+				break;
+			case	0x88:
+				add(s,b,f & FLAG_C);
+				break;
+			case	0x90:
+				sub(s,b,0);
+				break;
+			case	0x98:
+				sub(s,b,f & FLAG_C);
+				break;
+			case	0xb8:
+				sub(s,b,0);
+				s[0] = a;
+				break;
+			case	0xa0:
+				s[0] = a & b;
+				s[2] = logic(s[0]) | FLAG_H;
+				break;
+			case	0xa8:
+				s[0] = a ^ b;
+				s[2] = logic(s[0]);
+				break;
+			case	0xb0:
+				s[0] = a | b;
+				s[2] = logic(s[0]);
+				break;
+
+			case	0x04:
+				s[1] = (b + 1) & 0xff;
+				s[2] = (f & FLAG_C) | szxy(s[1]) | ((b & 0x0f) == 0x0f ? FLAG_H : 0) | (b == 0x7f ? FLAG_PV : 0);
+				break;
+			case	0x05:
+				s[1] = (b - 1) & 0xff;
+				s[2] = (f & FLAG_C) | szxy(s[1]) | ((b & 0x0f) == 0x00 ? FLAG_H : 0) | (b == 0x80 ? FLAG_PV : 0) | FLAG_N;
+				break;
+
+			case	0x07:
+				s[0] = ((a << 1) | (a >> 7)) & 0xff;
+				s[2] = (f & (FLAG_S|FLAG_Z|FLAG_PV)) | (s[0] & (FLAG_3|FLAG_5)) | (a >> 7);
+				break;
+			case	0x0f:
+				s[0] = ((a >> 1) | (a << 7)) & 0xff;
+				s[2] = (f & (FLAG_S|FLAG_Z|FLAG_PV)) | (s[0] & (FLAG_3|FLAG_5)) | (a & 1);
+				break;
+			case	0x17:
+				s[0] = ((a << 1) | (f & FLAG_C)) & 0xff;
+				s[2] = (f & (FLAG_S|FLAG_Z|FLAG_PV|FLAG_3|FLAG_5)) | (a >> 7);
+				break;
+			case	0x1f:
+				s[0] = (a >> 1) | ((f & FLAG_C) << 7);
+				s[2] = (f & (FLAG_S|FLAG_Z|FLAG_PV|FLAG_3|FLAG_5)) | (a & 1);
+				break;
+
+			case	0x27:
+				daa(s);
+				break;
+
+			case	0xcb:
+				if (cb >= 0x40)
+				{
+					int v = b & (1 << ((cb >> 3) & 7));
+
+					s[2] = (f & (FLAG_PV|FLAG_3|FLAG_5|FLAG_C)) | FLAG_H | (v == 0 ? FLAG_Z : 0) | (v & FLAG_S);
+					break;
+				}
+
+				int c;
+
+				switch (cb)
+				{
+					case	0x00:	c = b >> 7;	s[1] = (b << 1) | c;			break;
+					case	0x08:	c = b & 1;	s[1] = (b >> 1) | (c << 7);		break;
+					case	0x10:	c = b >> 7;	s[1] = (b << 1) | (f & FLAG_C);		break;
+					case	0x18:	c = b & 1;	s[1] = (b >> 1) | ((f & FLAG_C) << 7);	break;
+					case	0x20:	c = b >> 7;	s[1] = b << 1;				break;
+					case	0x28:	c = b & 1;	s[1] = (b >> 1) | (b & 0x80);		break;
+					case	0x30:	c = b >> 7;	s[1] = (b << 1) | 1;			break;
+					default:	c = b & 1;	s[1] = b >> 1;				break;
+				}
+				s[1] &= 0xff;
+				s[2] = logic(s[1]) | c;
+				break;
+
+			default:
+				throw new IllegalArgumentException(Integer.toHexString(op));
+		}
+	}
+
+	/**
+	 * A = A + v + c
+	 */
+	static private void add(int s[],int v,int c)
+	{
+		int a = s[0];
+		int ans = a + v + c;
+		int r = ans & 0xff;
+
+		s[0] = r;
+		s[2] = szxy(r) | (ans > 0xff ? FLAG_C : 0) |
+			(((a & 0x0f) + (v & 0x0f) + c) > 0x0f ? FLAG_H : 0) |
+			((a & 0x80) == (v & 0x80) && (a & 0x80) != (r & 0x80) ? FLAG_PV : 0);
+	}
+
+	/**
+	 * A = A - v - c
+	 */
+	static private void sub(int s[],int v,int c)
+	{
+		int a = s[0];
+		int ans = a - v - c;
+		int r = ans & 0xff;
+
+		s[0] = r;
+		s[2] = szxy(r) | FLAG_N | (ans < 0 ? FLAG_C : 0) |
+			(((a & 0x0f) - (v & 0x0f) - c) < 0 ? FLAG_H : 0) |
+			((a & 0x80) != (v & 0x80) && (a & 0x80) != (r & 0x80) ? FLAG_PV : 0);
+	}
+
+	/**
+	 * DAA as implemented by the I8080, the correction is added or
+	 * subtracted and carry and parity are set from the result.
+	 */
+	static private void daa(int s[])
+	{
+		int a = s[0],f = s[2];
+		int corr = 0;
+		int c = f & FLAG_C;
+
+		if ((f & FLAG_H) != 0 || (a & 0x0f) > 9)
+			corr |= 0x06;
+		if (c != 0 || a > 0x9f || (a > 0x8f && (a & 0x0f) > 9))
+		{
+			corr |= 0x60;
+			c = 1;
+		}
+		if (a > 0x99)
+			c = 1;
+
+		if ((f & FLAG_N) != 0)
+			sub(s,corr,0);
+		else
+			add(s,corr,0);
+
+		s[2] = (s[2] & ~(FLAG_C|FLAG_PV)) | c | parity(s[0]);
+	}
+
+	/**
+	 * Flags of one logical operation.
+	 */
+	static private int logic(int r)
+	{
+		return szxy(r) | parity(r);
+	}
+
+	/**
+	 * Sign, zero and the undocumented flags.
+	 */
+	static private int szxy(int r)
+	{
+		return (r & (FLAG_S|FLAG_3|FLAG_5)) | (r == 0 ? FLAG_Z : 0);
+	}
+
+	/**
+	 * Even parity flag.
+	 */
+	static private int parity(int r)
+	{
+		return (Integer.bitCount(r) & 1) == 0 ? FLAG_PV : 0;
+	}
+
+	@Test
+	public void i8080() throws Exception
+	{
+		exhaustive(I8080.class,false);
+	}
+
+	@Test
+	public void z80() throws Exception
+	{
+		exhaustive(Z80.class,true);
+	}
+
+	@Test
+	public void i8080Sequences() throws Exception
+	{
+		sequences(I8080.class,false);
+	}
+
+	@Test
+	public void z80Sequences() throws Exception
+	{
+		sequences(Z80.class,true);
+	}
+}
@@ -0,0 +1,174 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.sim.cpu;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import jmce.intel.i8080.I8080;
+import jmce.sim.*;
+import jmce.sim.memory.ArrayMemory;
+import jmce.sim.memory.CombinedMemory;
+import jmce.sim.memory.PlainMemory;
+
+/**
+ * Check that a write to cached code invalidate the decoded opcode.
+ * <p>
+ * One loop with INC A is executed to cache the opcode, then the
+ * INC A is changed to DEC A and the loop must decrement A. The
+ * code is changed with the single byte and the block write of the
+ * memory, on one plain memory and on one bank mapped twice in a
+ * virtual memory using the other mapping.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ * @since 1.03
+ */
+public class OpcodeCacheTest
+{
+	static private final int INC_A = 0x3c;
+	static private final int DEC_A = 0x3d;
+	static private final int JMP = 0xc3;
+
+	/**
+	 * Execute the loop at the specified address n times.
+	 */
+	private void loop(I8080 cpu,int a,int n) throws Exception
+	{
+		cpu.PC = a;
+
+		for (int i = 0 ; i < n ; i++)
+		{
+			cpu.step0();
+			cpu.step0();
+			assertEquals(a,cpu.PC);
+		}
+	}
+
+	/**
+	 * Run the loop stored at <tt>a</tt>, change it writing at
+	 * <tt>w</tt> and run it again.
+	 */
+	private void run(I8080 cpu,int a,int w,boolean block) throws Exception
+	{
+		CpuTest.load(cpu,a,INC_A,JMP,a & 0xff,a >>> 8);
+		cpu.A = 0;
+		loop(cpu,a,3);
+		assertEquals(3,cpu.A);
+
+		if (block)
+			cpu.getMemory().setMemory(w,new byte[]{DEC_A,(byte)JMP,(byte)a,(byte)(a >>> 8)},0,4);
+		else
+			cpu.setByte(w,DEC_A);
+
+		loop(cpu,a,2);
+		assertEquals(1,cpu.A);
+	}
+
+	/**
+	 * Create one cpu with 32 KB of memory, 16 KB of bank at 0x8000
+	 * and the same bank or another one at 0xC000.
+	 */
+	private I8080 banked(ArrayMemory banks,PlainMemory bank) throws Exception
+	{
+		I8080 cpu = new I8080();
+		CombinedMemory m = new CombinedMemory(CPU.MAIN_MEMORY);
+
+		banks.addHardwareMemory(new PlainMemory("Other",0x4000));
+		banks.addHardwareMemory(bank);
+		m.addMemory(new PlainMemory("Low",0x8000));
+		m.addMemory(bank);
+		m.addHardware(banks);
+		m.addMemory(banks);
+		cpu.addHardware(m);
+		cpu.init(null);
+		cpu.reset();
+		assertSame(m,cpu.getMemory());
+
+		return cpu;
+	}
+
+	@Test
+	public void plainByte() throws Exception
+	{
+		I8080 cpu = (I8080)CpuTest.create(I8080.class);
+
+		run(cpu,0x100,0x100,false);
+	}
+
+	@Test
+	public void plainBlock() throws Exception
+	{
+		I8080 cpu = (I8080)CpuTest.create(I8080.class);
+
+		run(cpu,0x100,0x100,true);
+	}
+
+	@Test
+	public void bankByte() throws Exception
+	{
+		ArrayMemory banks = new ArrayMemory();
+		PlainMemory bank = new PlainMemory("Bank",0x4000);
+		I8080 cpu = banked(banks,bank);
+
+		banks.setIndex(1);
+		run(cpu,0x8100,0xc100,false);
+		run(cpu,0xc200,0x8200,false);
+	}
+
+	@Test
+	public void bankBlock() throws Exception
+	{
+		ArrayMemory banks = new ArrayMemory();
+		PlainMemory bank = new PlainMemory("Bank",0x4000);
+		I8080 cpu = banked(banks,bank);
+
+		banks.setIndex(1);
+		run(cpu,0x8100,0xc100,true);
+		run(cpu,0xc200,0x8200,true);
+	}
+
+	/**
+	 * The code in the bank must be invalidated also when the write
+	 * use the physical memory directly.
+	 */
+	@Test
+	public void bankPhysical() throws Exception
+	{
+		ArrayMemory banks = new ArrayMemory();
+		PlainMemory bank = new PlainMemory("Bank",0x4000);
+		I8080 cpu = banked(banks,bank);
+
+		CpuTest.load(cpu,0x8100,INC_A,JMP,0x00,0x81);
+		cpu.A = 0;
+		loop(cpu,0x8100,3);
+		bank.setMemory(0x100,DEC_A);
+		loop(cpu,0x8100,2);
+		assertEquals(1,cpu.A);
+	}
+}
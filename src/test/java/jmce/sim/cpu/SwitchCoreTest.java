@@ -0,0 +1,175 @@
+/**
+   $Id$
+
+   Copyright (c) 2010, Mario Viara
+
+   Permission is hereby granted, free of charge, to any person obtaining a
+   copy of this software and associated documentation files (the "Software"),
+   to deal in the Software without restriction, including without limitation
+   the rights to use, copy, modify, merge, publish, distribute, sublicense,
+   and/or sell copies of the Software, and to permit persons to whom the
+   Software is furnished to do so, subject to the following conditions:
+
+   The above copyright notice and this permission notice shall be included in
+   all copies or substantial portions of the Software.
+
+   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL
+   ROBERT M SUPNIK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+   Except as contained in this notice, the name of Mario Viara shall not be
+   used in advertising or otherwise to promote the sale, use or other dealings
+   in this Software without prior written authorization from Mario Viara.
+*/
+package jmce.sim.cpu;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import jmce.sim.*;
+
+/**
+ * Differential test of the switch core against the table
+ * interpreter.
+ * <p>
+ * Two cpu start with the same random memory and registers, one
+ * execute with <tt>step0()</tt> and the other with
+ * <tt>stepSwitch()</tt>. After every instruction the registers, the
+ * cycles, the memory written and the exception thrown must be the
+ * same. Executing past the end of the memory must fail in the
+ * same way too.
+ *
+ * @author Mario Viara
+ * @version 1.03
+ * @since 1.03
+ */
+public class SwitchCoreTest
+{
+	/** Number of random states */
+	static private final int TRIALS = 300;
+
+	/** Instructions executed from every state */
+	static private final int STEPS = 200;
+
+	/**
+	 * Record the memory write.
+	 */
+	static private class Writes implements MemoryWriteListener
+	{
+		List<String> list = new ArrayList<String>();
+
+		public void writeMemory(Memory m,int a,int v,int oldValue)
+		{
+			list.add(Integer.toHexString(a)+"="+Integer.toHexString(v));
+		}
+	}
+
+	/**
+	 * Execute one instruction and return the exception thrown or
+	 * null.
+	 */
+	static private String step(AbstractCPU cpu,boolean switchCore)
+	{
+		try
+		{
+			if (switchCore)
+				cpu.stepSwitch();
+			else
+				cpu.step0();
+		}
+		catch (SIMException e)
+		{
+			return e.getClass().getName();
+		}
+		catch (RuntimeException e)
+		{
+			return e.getClass().getName();
+		}
+
+		return null;
+	}
+
+	private void run(Class<? extends AbstractCPU> c) throws Exception
+	{
+		AbstractCPU ref = CpuTest.create(c);
+		AbstractCPU sw = CpuTest.create(c);
+		Writes refWrites = new Writes();
+		Writes swWrites = new Writes();
+
+		for (AbstractCPU cpu : new AbstractCPU[]{ref,sw})
+		{
+			/** HALT throw one exception in batch mode */
+			cpu.setBatchMode(true);
+			cpu.setSwitchCore(cpu == sw);
+		}
+
+		ref.getMemory().addMemoryWriteListener(refWrites);
+		sw.getMemory().addMemoryWriteListener(swWrites);
+
+		Random r = new Random(0x8080);
+
+		for (int trial = 0 ; trial < TRIALS ; trial++)
+		{
+			long seed = r.nextLong();
+
+			for (AbstractCPU cpu : new AbstractCPU[]{ref,sw})
+			{
+				Random rs = new Random(seed);
+
+				CpuTest.fill(cpu,rs,0,cpu.getMemory().getSize());
+
+				for (int i = 0 ; i < cpu.getRegisterCount() ; i++)
+				{
+					Register reg = cpu.getRegisterAt(i);
+					reg.setRegister(rs.nextInt() & (int)((1L << reg.getWidth()) - 1));
+				}
+			}
+
+			refWrites.list.clear();
+			swWrites.list.clear();
+
+			for (int i = 0 ; i < STEPS ; i++)
+			{
+				String state = CpuTest.registers(ref);
+				String pc = Integer.toHexString(ref.pc());
+				String refEx = step(ref,false);
+				String swEx = step(sw,true);
+				String where = "Trial "+trial+" step "+i+" at "+pc+" from "+state;
+
+				assertEquals(where,refEx,swEx);
+				assertEquals(where,CpuTest.registers(ref),CpuTest.registers(sw));
+				assertEquals(where,ref.getCycle(),sw.getCycle());
+				assertEquals(where,refWrites.list,swWrites.list);
+
+				if (refEx != null)
+					break;
+			}
+		}
+	}
+
+	@Test
+	public void i8080() throws Exception
+	{
+		run(jmce.intel.i8080.I8080.class);
+	}
+
+	@Test
+	public void z80() throws Exception
+	{
+		run(jmce.zilog.z80.Z80.class);
+	}
+
+	@Test
+	public void m6502() throws Exception
+	{
+		run(jmce.mos.M6502.class);
+	}
+}